@@ -0,0 +1,176 @@
+/**
+ * BucketQueueMax - A max-priority queue of int keys from a small fixed range.
+ *
+ * The queue keeps one counter per possible key (a bucket queue), plus a bitmap
+ * of the non-empty buckets and a summary bitmap of the non-empty bitmap words.
+ * insert is O(1); when extractMax empties the top bucket, the next non-empty
+ * one is found with Long.numberOfLeadingZeros on the two bitmaps, which skips
+ * 4096 empty keys per summary word, so keys are never compared. The memory is
+ * proportional to the range, not to the number of keys: the 4 digit range of
+ * the user interface (-9999..9999) takes 80 KB of counters.
+ */
+public class BucketQueueMax implements IntPriorityQueue {
+
+	public static final int MAX_RANGE = 1 << 26; // Largest number of distinct keys (256 MB of counters)
+
+	private final int min; // Smallest accepted key
+	private final int max; // Largest accepted key
+	private final int[] counts; // counts[k - min] = occurrences of key k
+	private final long[] nonEmpty; // Bit k - min is set if counts[k - min] > 0
+	private final long[] summary; // Bit w is set if nonEmpty[w] != 0
+	private int size; // Number of keys in the queue
+	private int top = -1; // Bucket of the largest key, -1 if the queue is empty
+
+	/**
+	 * Constructs a bucket queue for keys in [min, max].
+	 *
+	 * @param min The smallest accepted key.
+	 * @param max The largest accepted key.
+	 * @throws IllegalArgumentException If the range is empty or larger than
+	 *                                  MAX_RANGE.
+	 */
+	public BucketQueueMax(int min, int max) {
+		long range = (long) max - min + 1;
+		if (range < 1 || range > MAX_RANGE) {
+			throw new IllegalArgumentException(
+					DHeapError.INVALID_KEY_RANGE.getMessage() + ": " + range + " keys, at most " + MAX_RANGE);
+		}
+		this.min = min;
+		this.max = max;
+		this.counts = new int[(int) range];
+		this.nonEmpty = new long[(int) ((range + 63) >>> 6)];
+		this.summary = new long[(nonEmpty.length + 63) >>> 6];
+	}
+
+	/**
+	 * Constructs a bucket queue for the 4 digit range accepted by the user
+	 * interface (DHeapValidator.MIN_VALID_NUMBER .. MAX_VALID_NUMBER).
+	 *
+	 * @return The queue.
+	 */
+	public static BucketQueueMax forUserInput() {
+		return new BucketQueueMax(DHeapValidator.MIN_VALID_NUMBER, DHeapValidator.MAX_VALID_NUMBER);
+	}
+
+	/** Returns the smallest accepted key. */
+	public int getMin() {
+		return this.min;
+	}
+
+	/** Returns the largest accepted key. */
+	public int getMax() {
+		return this.max;
+	}
+
+	@Override
+	public int getSize() {
+		return this.size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	/**
+	 * Inserts a key in O(1).
+	 *
+	 * @param key The value to insert, in [getMin(), getMax()].
+	 * @throws IllegalArgumentException If the key is out of range, or the queue
+	 *                                  is full.
+	 */
+	@Override
+	public void insert(int key) {
+		if (key < min || key > max) {
+			throw new IllegalArgumentException(DHeapError.KEY_OUT_OF_RANGE.getMessage());
+		}
+		if (size == Integer.MAX_VALUE) {
+			throw new IllegalArgumentException(DHeapError.HEAP_OVERFLOW.getMessage());
+		}
+		int b = key - min;
+		if (counts[b]++ == 0) {
+			setNonEmpty(b);
+		}
+		size++;
+		if (b > top) {
+			top = b;
+		}
+	}
+
+	@Override
+	public int peek() {
+		if (size == 0) {
+			throw new IllegalStateException(DHeapError.HEAP_UNDERFLOW.getMessage());
+		}
+		return min + top;
+	}
+
+	@Override
+	public int extractMax() {
+		if (size == 0) {
+			throw new IllegalStateException(DHeapError.HEAP_UNDERFLOW.getMessage());
+		}
+		int b = top;
+		size--;
+		if (--counts[b] == 0) {
+			clearNonEmpty(b);
+			top = highestNonEmpty(b);
+		}
+		return min + b;
+	}
+
+	/** Removes all keys. */
+	public void clear() {
+		while (size > 0) {
+			int b = top;
+			size -= counts[b];
+			counts[b] = 0;
+			clearNonEmpty(b);
+			top = highestNonEmpty(b);
+		}
+		top = -1;
+	}
+
+	/** Marks bucket b as non-empty in both bitmaps. */
+	private void setNonEmpty(int b) {
+		int word = b >>> 6;
+		if (nonEmpty[word] == 0) {
+			summary[word >>> 6] |= 1L << word;
+		}
+		nonEmpty[word] |= 1L << b;
+	}
+
+	/** Marks bucket b as empty in both bitmaps. */
+	private void clearNonEmpty(int b) {
+		int word = b >>> 6;
+		if ((nonEmpty[word] &= ~(1L << b)) == 0) {
+			summary[word >>> 6] &= ~(1L << word);
+		}
+	}
+
+	/**
+	 * Returns the highest non-empty bucket at or below bucket 'from', or -1 if
+	 * there is none.
+	 */
+	private int highestNonEmpty(int from) {
+		int word = from >>> 6;
+		long bits = nonEmpty[word] & (-1L >>> (63 - (from & 63))); // Bits 0 .. from & 63
+		if (bits == 0) {
+			// Find the highest non-empty word below 'word' in the summary
+			if (--word < 0) {
+				return -1;
+			}
+			int s = word >>> 6;
+			long words = summary[s] & (-1L >>> (63 - (word & 63)));
+			while (words == 0) {
+				if (--s < 0) {
+					return -1;
+				}
+				words = summary[s];
+			}
+			word = (s << 6) + 63 - Long.numberOfLeadingZeros(words);
+			bits = nonEmpty[word];
+		}
+		return (word << 6) + 63 - Long.numberOfLeadingZeros(bits);
+	}
+}
@@ -0,0 +1,283 @@
+import java.util.OptionalInt;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * ConcurrentDHeapMax - A thread-safe D-ary Max Heap for many producers and
+ * consumers.
+ *
+ * Two modes are supported: - STRICT: a FineGrainedDHeapMax, a single heap with
+ * one lock per node. Every extraction returns the true maximum (the heap is
+ * linearizable), and operations only hold the nodes on their path, so threads
+ * whose sifts take different paths do not wait for each other. - RELAXED: a
+ * MultiQueue of several locked
+ * DHeapMax stripes. An insert goes to a random stripe; an extraction looks at
+ * the tops of two random stripes and takes the larger one. Extractions return
+ * one of the largest elements rather than always the largest, in exchange for
+ * throughput that scales with the number of threads.
+ *
+ * In relaxed mode an extraction reports an empty heap only after it found every
+ * stripe empty, so an element inserted concurrently with that scan may be
+ * missed by it.
+ */
+public class ConcurrentDHeapMax {
+
+	/** The consistency mode of the heap. */
+	public enum Mode {
+		STRICT, RELAXED
+	}
+
+	private static final long EMPTY = Long.MIN_VALUE; // Stripe.top of an empty stripe
+	private static final int STRIPES_PER_THREAD = 2; // Default MultiQueue factor
+
+	private final Mode mode;
+	private final FineGrainedDHeapMax strict; // The heap in strict mode, null in relaxed mode
+	private final Stripe[] stripes; // The stripes in relaxed mode, none in strict mode
+
+	/**
+	 * One locked heap. Its current maximum is published in a volatile field, so
+	 * that threads can choose a stripe without taking its lock.
+	 */
+	private static final class Stripe {
+		final ReentrantLock lock = new ReentrantLock();
+		final DHeapMax heap;
+		volatile long top = EMPTY; // heap.peek() while the heap is not empty
+
+		Stripe(int d) {
+			this.heap = new DHeapMax(d);
+		}
+
+		/** Publishes the current maximum; must be called while holding the lock. */
+		void publishTop() {
+			top = heap.isEmpty() ? EMPTY : heap.peek();
+		}
+	}
+
+	/**
+	 * Constructs a strict concurrent D-ary Max Heap.
+	 *
+	 * @param d The number of children per node.
+	 * @throws IllegalArgumentException If d is out of valid range.
+	 */
+	public ConcurrentDHeapMax(int d) {
+		this(d, Mode.STRICT, 1);
+	}
+
+	/**
+	 * Constructs a concurrent D-ary Max Heap in the given mode, with the default
+	 * number of stripes for relaxed mode (two per available processor).
+	 *
+	 * @param d    The number of children per node.
+	 * @param mode STRICT or RELAXED.
+	 * @throws IllegalArgumentException If d is out of valid range.
+	 */
+	public ConcurrentDHeapMax(int d, Mode mode) {
+		this(d, mode, STRIPES_PER_THREAD * Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Constructs a concurrent D-ary Max Heap.
+	 *
+	 * @param d           The number of children per node.
+	 * @param mode        STRICT or RELAXED.
+	 * @param stripeCount Number of stripes in relaxed mode (ignored in strict
+	 *                    mode, which has none).
+	 * @throws IllegalArgumentException If d or stripeCount is out of range.
+	 */
+	public ConcurrentDHeapMax(int d, Mode mode, int stripeCount) {
+		if (stripeCount < 1) {
+			throw new IllegalArgumentException(DHeapError.INVALID_STRIPES.getMessage());
+		}
+		this.mode = mode;
+		this.strict = mode == Mode.STRICT ? new FineGrainedDHeapMax(d) : null;
+		this.stripes = new Stripe[mode == Mode.STRICT ? 0 : stripeCount];
+		for (int i = 0; i < stripes.length; i++) {
+			stripes[i] = new Stripe(d);
+		}
+	}
+
+	/** Returns the consistency mode of the heap. */
+	public Mode getMode() {
+		return this.mode;
+	}
+
+	/** Returns the number of stripes (0 in strict mode). */
+	public int getStripeCount() {
+		return this.stripes.length;
+	}
+
+	/**
+	 * Returns the number of elements. With concurrent updates the result is only
+	 * a snapshot of each stripe at a slightly different time.
+	 *
+	 * @return The number of elements.
+	 */
+	public int getSize() {
+		if (strict != null) {
+			return strict.getSize();
+		}
+		long total = 0;
+		for (Stripe stripe : stripes) {
+			stripe.lock.lock();
+			try {
+				total += stripe.heap.getSize();
+			} finally {
+				stripe.lock.unlock();
+			}
+		}
+		return (int) Math.min(total, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Checks whether every stripe looks empty, without taking any lock.
+	 *
+	 * @return true if no element was visible.
+	 */
+	public boolean isEmpty() {
+		if (strict != null) {
+			return strict.isEmpty();
+		}
+		for (Stripe stripe : stripes) {
+			if (stripe.top != EMPTY) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Inserts a new key.
+	 *
+	 * @param key The value to insert into the heap.
+	 * @throws IllegalArgumentException If the heap or the chosen stripe is full.
+	 */
+	public void insert(int key) {
+		if (strict != null) {
+			strict.insert(key);
+			return;
+		}
+		Stripe stripe = lockForInsert();
+		try {
+			stripe.heap.insert(key);
+			if (key > stripe.top) {
+				stripe.top = key;
+			}
+		} finally {
+			stripe.lock.unlock();
+		}
+	}
+
+	/**
+	 * Removes and returns the maximum (strict mode) or one of the largest
+	 * elements (relaxed mode).
+	 *
+	 * @return The extracted element.
+	 * @throws IllegalStateException If the heap is empty.
+	 */
+	public int extractMax() {
+		OptionalInt max = pollMax();
+		if (!max.isPresent()) {
+			throw new IllegalStateException(DHeapError.HEAP_UNDERFLOW.getMessage());
+		}
+		return max.getAsInt();
+	}
+
+	/**
+	 * Removes and returns the maximum (strict mode) or one of the largest
+	 * elements (relaxed mode), if there is one.
+	 *
+	 * @return The extracted element, or an empty OptionalInt if the heap is empty.
+	 */
+	public OptionalInt pollMax() {
+		if (strict != null) {
+			return strict.pollMax();
+		}
+		if (stripes.length == 1) {
+			return pollStripe(stripes[0]);
+		}
+
+		ThreadLocalRandom rnd = ThreadLocalRandom.current();
+		while (true) {
+			// Pick the better of two random stripes, judging by their published tops
+			Stripe a = stripes[rnd.nextInt(stripes.length)];
+			Stripe b = stripes[rnd.nextInt(stripes.length)];
+			Stripe best = a.top >= b.top ? a : b;
+			if (best.top == EMPTY) {
+				return pollAnyStripe();
+			}
+			if (best.lock.tryLock()) {
+				try {
+					if (!best.heap.isEmpty()) {
+						int max = best.heap.exctractDMax();
+						best.publishTop();
+						return OptionalInt.of(max);
+					}
+				} finally {
+					best.lock.unlock();
+				}
+			}
+			// Contended or emptied in the meantime, try another pair
+		}
+	}
+
+	/**
+	 * Locks a stripe for an insert: the only stripe if there is one, otherwise
+	 * the first random stripe whose lock is free.
+	 *
+	 * @return The locked stripe.
+	 */
+	private Stripe lockForInsert() {
+		if (stripes.length == 1) {
+			stripes[0].lock.lock();
+			return stripes[0];
+		}
+		ThreadLocalRandom rnd = ThreadLocalRandom.current();
+		while (true) {
+			Stripe stripe = stripes[rnd.nextInt(stripes.length)];
+			if (stripe.lock.tryLock()) {
+				return stripe;
+			}
+		}
+	}
+
+	/**
+	 * Scans all stripes in order and extracts from the first non-empty one. Used
+	 * when the two random stripes were empty, so that a nearly empty heap still
+	 * finds its last elements.
+	 *
+	 * @return The extracted element, or empty if every stripe was empty.
+	 */
+	private OptionalInt pollAnyStripe() {
+		int start = ThreadLocalRandom.current().nextInt(stripes.length);
+		for (int i = 0; i < stripes.length; i++) {
+			Stripe stripe = stripes[(start + i) % stripes.length];
+			if (stripe.top != EMPTY) {
+				OptionalInt max = pollStripe(stripe);
+				if (max.isPresent()) {
+					return max;
+				}
+			}
+		}
+		return OptionalInt.empty();
+	}
+
+	/**
+	 * Extracts the maximum of one stripe, waiting for its lock.
+	 *
+	 * @param stripe The stripe.
+	 * @return The extracted element, or empty if the stripe was empty.
+	 */
+	private static OptionalInt pollStripe(Stripe stripe) {
+		stripe.lock.lock();
+		try {
+			if (stripe.heap.isEmpty()) {
+				return OptionalInt.empty();
+			}
+			int max = stripe.heap.exctractDMax();
+			stripe.publishTop();
+			return OptionalInt.of(max);
+		} finally {
+			stripe.lock.unlock();
+		}
+	}
+}
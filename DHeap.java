@@ -0,0 +1,182 @@
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Objects;
+
+/**
+ * DHeap - A generic D-ary heap of objects.
+ *
+ * The order of the elements is decided by a Comparator (or by their natural
+ * ordering). A max heap returns the largest element first, a min heap the
+ * smallest. Internally the heap is always a max heap; a min heap simply uses
+ * the reversed comparator.
+ *
+ * @param <T> The type of the elements.
+ */
+public class DHeap<T> {
+
+	private Object[] heap; // Array representation of the heap
+	private int size; // Number of elements in the heap
+	private int d; // Number of children per node (D-ary)
+	private final boolean maxHeap; // true for a max heap, false for a min heap
+	private final Comparator<? super T> comparator; // Order as given by the caller
+	private final Comparator<? super T> order; // Order used by the sifts (largest first)
+
+	/**
+	 * Constructs a D-ary heap of Comparable elements in their natural ordering.
+	 *
+	 * @param d       The number of children per node.
+	 * @param maxHeap true to extract the largest element first, false for the
+	 *                smallest.
+	 * @throws IllegalArgumentException If d is out of valid range.
+	 */
+	@SuppressWarnings("unchecked")
+	public DHeap(int d, boolean maxHeap) {
+		this(d, (Comparator<? super T>) Comparator.naturalOrder(), maxHeap);
+	}
+
+	/**
+	 * Constructs a D-ary heap ordered by the given comparator.
+	 *
+	 * @param d          The number of children per node.
+	 * @param comparator The comparator deciding which element is larger.
+	 * @param maxHeap    true to extract the largest element first, false for the
+	 *                   smallest.
+	 * @throws IllegalArgumentException If d is out of valid range.
+	 */
+	public DHeap(int d, Comparator<? super T> comparator, boolean maxHeap) {
+		this(d, comparator, maxHeap, DHeapMax.DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructs a D-ary heap ordered by the given comparator, with room for
+	 * initialCapacity elements.
+	 *
+	 * @param d               The number of children per node.
+	 * @param comparator      The comparator deciding which element is larger.
+	 * @param maxHeap         true to extract the largest element first, false for
+	 *                        the smallest.
+	 * @param initialCapacity The number of elements to allocate room for.
+	 * @throws IllegalArgumentException If d or initialCapacity is out of range.
+	 */
+	public DHeap(int d, Comparator<? super T> comparator, boolean maxHeap, int initialCapacity) {
+		if (!DHeapValidator.isValidD(d)) {
+			throw new IllegalArgumentException(DHeapError.INVALID_D.getMessage());
+		}
+		if (!DHeapValidator.isValidCapacity(initialCapacity)) {
+			throw new IllegalArgumentException(DHeapError.INVALID_CAPACITY.getMessage());
+		}
+		this.d = d;
+		this.maxHeap = maxHeap;
+		this.comparator = Objects.requireNonNull(comparator);
+		this.order = maxHeap ? comparator : comparator.reversed();
+		this.heap = new Object[initialCapacity];
+	}
+
+	/** Returns the current value of 'd'. */
+	public int getD() {
+		return this.d;
+	}
+
+	/** Returns the current size of the heap. */
+	public int getSize() {
+		return this.size;
+	}
+
+	/** Returns true if the heap holds no elements. */
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	/** Returns true for a max heap, false for a min heap. */
+	public boolean isMaxHeap() {
+		return this.maxHeap;
+	}
+
+	/** Returns the comparator the heap was created with. */
+	public Comparator<? super T> getComparator() {
+		return this.comparator;
+	}
+
+	/**
+	 * Makes sure the heap can hold at least minCapacity elements without growing
+	 * again.
+	 *
+	 * @param minCapacity The number of elements the heap must be able to hold.
+	 * @throws IllegalArgumentException If minCapacity exceeds MAX_CAPACITY.
+	 */
+	public void ensureCapacity(int minCapacity) {
+		if (minCapacity <= heap.length) {
+			return;
+		}
+		if (!DHeapValidator.isValidCapacity(minCapacity)) {
+			throw new IllegalArgumentException(DHeapError.HEAP_OVERFLOW.getMessage());
+		}
+		heap = Arrays.copyOf(heap, DHeapArrays.newCapacity(heap.length, minCapacity, DHeapMax.MAX_CAPACITY));
+	}
+
+	/**
+	 * Inserts a new element into the heap and restores the heap property.
+	 *
+	 * @param element The element to insert (not null).
+	 * @throws IllegalArgumentException If the heap reaches its maximum capacity.
+	 */
+	public void insert(T element) {
+		Objects.requireNonNull(element);
+		if (!DHeapValidator.canInsert(size)) {
+			throw new IllegalArgumentException(DHeapError.HEAP_OVERFLOW.getMessage());
+		}
+		ensureCapacity(size + 1);
+		heap[size] = element;
+		DHeapArrays.siftUp(heap, 0, d, size, order);
+		size++;
+	}
+
+	/**
+	 * Returns the top element (the largest for a max heap, the smallest for a min
+	 * heap) without removing it.
+	 *
+	 * @return The top element.
+	 * @throws IllegalStateException If the heap is empty.
+	 */
+	@SuppressWarnings("unchecked")
+	public T peek() {
+		if (!DHeapValidator.canExtract(size)) {
+			throw new IllegalStateException(DHeapError.HEAP_UNDERFLOW.getMessage());
+		}
+		return (T) heap[0];
+	}
+
+	/**
+	 * Removes and returns the top element.
+	 *
+	 * @return The top element.
+	 * @throws IllegalStateException If the heap is empty.
+	 */
+	public T extract() {
+		T top = peek();
+		heap[0] = heap[--size]; // Replace root with last element
+		heap[size] = null; // Let the removed element be collected
+		DHeapArrays.siftDown(heap, 0, size, d, 0, order);
+		return top;
+	}
+
+	/**
+	 * Changes the value of 'd' and re-heapifies the elements in place.
+	 *
+	 * @param newD The new value of 'd'.
+	 * @throws IllegalArgumentException If newD is out of valid range.
+	 */
+	public void changeD(int newD) {
+		if (!DHeapValidator.isValidD(newD)) {
+			throw new IllegalArgumentException(DHeapError.INVALID_D.getMessage());
+		}
+		this.d = newD;
+		DHeapArrays.heapify(heap, 0, size, d, order);
+	}
+
+	/** Removes all elements from the heap. */
+	public void clear() {
+		Arrays.fill(heap, 0, size, null);
+		size = 0;
+	}
+}
@@ -0,0 +1,224 @@
+/**
+ * DHeapArityTuner - Picks the arity of a DHeapMax from its observed workload.
+ *
+ * A higher d makes the tree flatter, so an insert rises through fewer levels,
+ * while an extract compares d children on every level it sinks. Which d is
+ * cheapest therefore depends on the mix of inserts and extracts and on how far
+ * inserted keys rise (keys that grow over time, like timestamps, rise to the
+ * root; random keys stop after a level or two).
+ *
+ * The tuner counts the inserts and extracts of a window of operations and
+ * measures how far every 16th insert rises and every 16th extract's
+ * replacement key sinks. At the end of each window it predicts the cost of
+ * every candidate arity, in comparisons, with
+ *
+ * cost(d) = log_d(n) * (inserts * rise * UP_LEVEL_COST + extracts * sink * (d + DOWN_LEVEL_COST))
+ *
+ * where rise and sink are the measured fractions of the height an insert and
+ * an extract travel (a window without samples assumes no rise and a full
+ * sink). A sift-down level costs d comparisons plus the visit of the level;
+ * the level costs were fitted to the 'tune' benchmark, where a sift-up level
+ * costs about half a child comparison.
+ *
+ * To avoid thrashing, the heap is only re-heapified with changeD when the same
+ * candidate is predicted to be at least MIN_GAIN cheaper in CONFIRM_WINDOWS or
+ * more consecutive windows, and the savings predicted over those windows pay
+ * for the rebuild of the heap.
+ *
+ * Every operation that adds or removes keys is observed: insert (also lazy
+ * ones), insertAll, meld, exctractDMax and extractTopK. Lazy inserts and the
+ * batch operations only add to the counts; their sift depths are not sampled. The tuner runs on the thread that uses the heap and costs a few
+ * counter updates per operation.
+ */
+public class DHeapArityTuner {
+
+	public static final int DEFAULT_WINDOW = 1 << 16; // Operations per decision
+	static final int[] CANDIDATES = { 2, 3, 4, 6, 8, 12, 16, 24, 32, 64 };
+	static final double UP_LEVEL_COST = 0.5; // Cost of a sift-up level, in comparisons
+	static final double DOWN_LEVEL_COST = 1.0; // Cost of a sift-down level beyond its d comparisons
+	static final double REBUILD_COST = 3.0; // Cost of changeD per element, in comparisons
+	static final double MIN_GAIN = 0.15; // Required predicted saving relative to the current d
+	static final int CONFIRM_WINDOWS = 2; // Windows in a row that must agree before a change
+	static final int MIN_SIZE = 1024; // Smaller heaps are too cheap to be worth tuning
+	private static final int SAMPLE_MASK = 15; // One insert and one extract in 16 are measured
+
+	private final DHeapMax heap;
+	private final int window;
+	private int inserts; // Counts of the current window
+	private int extracts;
+	private long risenLevels; // Levels risen by the sampled inserts
+	private long startDepths; // Depths the sampled inserts started at
+	private long sunkLevels; // Levels sunk by the sampled extracts
+	private long bottomDepths; // Depths of the last element at the sampled extracts
+	private int candidate; // Arity that won the last windows
+	private int streak; // Number of windows in a row that candidate won
+	private double saving; // Predicted saving of candidate over those windows
+	private double lastRise; // Rise fraction of the last finished window
+	private double lastSink = 1; // Sink fraction of the last finished window
+	private double lastInsertShare; // Share of inserts in the last finished window
+	private long changes; // Number of times d was changed
+
+	/**
+	 * Constructs a tuner for a heap. Use DHeapMax.enableAutoTune to attach it.
+	 *
+	 * @param heap   The heap whose arity is tuned.
+	 * @param window The number of operations per decision.
+	 * @throws IllegalArgumentException If window is not positive.
+	 */
+	DHeapArityTuner(DHeapMax heap, int window) {
+		if (window <= 0) {
+			throw new IllegalArgumentException(DHeapError.INVALID_WINDOW.getMessage());
+		}
+		this.heap = heap;
+		this.window = window;
+	}
+
+	/** Returns the number of operations per decision. */
+	public int getWindow() {
+		return this.window;
+	}
+
+	/** Returns the number of times the tuner changed d. */
+	public long getChanges() {
+		return this.changes;
+	}
+
+	/** Returns the share of inserts among the operations of the last window. */
+	public double getLastInsertShare() {
+		return this.lastInsertShare;
+	}
+
+	/** Returns the fraction of the height that inserts rose in the last window. */
+	public double getLastRise() {
+		return this.lastRise;
+	}
+
+	/** Returns the fraction of the height that extracts sank in the last window. */
+	public double getLastSink() {
+		return this.lastSink;
+	}
+
+	/**
+	 * Returns the predicted cost of a window with the given operations for a
+	 * heap of n elements and arity d, in comparisons.
+	 *
+	 * @param n        Number of elements in the heap.
+	 * @param d        The arity, at least 2.
+	 * @param inserts  Number of inserts.
+	 * @param extracts Number of extracts.
+	 * @param rise     Fraction of the height an insert rises.
+	 * @param sink     Fraction of the height an extract sinks.
+	 * @return The predicted cost.
+	 */
+	static double predictCost(int n, int d, long inserts, long extracts, double rise, double sink) {
+		double levels = Math.log(n) / Math.log(d);
+		return levels * (inserts * rise * UP_LEVEL_COST + extracts * sink * (d + DOWN_LEVEL_COST));
+	}
+
+	/**
+	 * Records an insert whose element started at logical index 'from' and came
+	 * to rest at index 'to'.
+	 */
+	void afterInsert(int from, int to) {
+		if ((++inserts & SAMPLE_MASK) == 0) {
+			int d = heap.getD();
+			int fromDepth = depth(from, d);
+			risenLevels += fromDepth - depth(to, d);
+			startDepths += fromDepth;
+		}
+		if (inserts + extracts >= window) {
+			endWindow();
+		}
+	}
+
+	/**
+	 * Records a batch of inserts (insertAll, meld) or a lazy insert, whose rise
+	 * was not measured; the rise of the window comes from the sampled single
+	 * inserts.
+	 */
+	void afterInserts(int count) {
+		inserts += count;
+		if (inserts + extracts >= window) {
+			endWindow();
+		}
+	}
+
+	/**
+	 * Records an extract whose replacement key, moved from the last position to
+	 * the root, came to rest at logical index 'to'.
+	 */
+	void afterExtract(int to) {
+		if ((++extracts & SAMPLE_MASK) == 0) {
+			int d = heap.getD();
+			sunkLevels += depth(to, d);
+			bottomDepths += depth(heap.getSize() - 1, d);
+		}
+		if (inserts + extracts >= window) {
+			endWindow();
+		}
+	}
+
+	/** Records a batch of extracts (extractTopK). */
+	void afterExtracts(int count) {
+		extracts += count;
+		if (inserts + extracts >= window) {
+			endWindow();
+		}
+	}
+
+	/** Returns the depth of logical index i (the root has depth 0). */
+	private static int depth(int i, int d) {
+		int depth = 0;
+		while (i > 0) {
+			i = DHeapArrays.parent(i, d);
+			depth++;
+		}
+		return depth;
+	}
+
+	/** Predicts the best arity for the finished window and changes d if it pays off. */
+	private void endWindow() {
+		int n = heap.getSize();
+		int d = heap.getD();
+		lastRise = startDepths == 0 ? 0 : (double) risenLevels / startDepths;
+		lastSink = bottomDepths == 0 ? 1 : (double) sunkLevels / bottomDepths;
+		lastInsertShare = (double) inserts / (inserts + extracts);
+
+		if (n >= MIN_SIZE) {
+			// A 1-ary heap is a sorted list: every candidate beats it
+			double current = d == 1 ? Double.POSITIVE_INFINITY : predictCost(n, d, inserts, extracts, lastRise, lastSink);
+			int best = d;
+			double bestCost = current;
+			for (int c : CANDIDATES) {
+				double cost = predictCost(n, c, inserts, extracts, lastRise, lastSink);
+				if (cost < bestCost) {
+					best = c;
+					bestCost = cost;
+				}
+			}
+
+			if (bestCost >= current * (1 - MIN_GAIN)) {
+				streak = 0; // Not clearly better, keep d
+			} else if (best == candidate && streak > 0) {
+				streak++;
+				saving += current - bestCost;
+			} else {
+				candidate = best;
+				streak = 1;
+				saving = current - bestCost;
+			}
+			if (streak >= CONFIRM_WINDOWS && saving >= REBUILD_COST * n) {
+				heap.changeD(best);
+				changes++;
+				streak = 0;
+			}
+		}
+
+		inserts = 0;
+		extracts = 0;
+		risenLevels = 0;
+		startDepths = 0;
+		sunkLevels = 0;
+		bottomDepths = 0;
+	}
+}
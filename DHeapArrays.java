@@ -0,0 +1,676 @@
+import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * DHeapArrays - Arity math and sift routines shared by all D-ary heaps.
+ *
+ * Every heap in this project stores its nodes in an array with the root at
+ * logical index 0, where: - parent(i) = (i - 1) / d - the children of i are
+ * d * i + 1 .. d * i + d
+ *
+ * The routines take a 'base' offset so that a heap can start anywhere in its
+ * array: logical index i lives at a[base + i]. The sifts are hole-based: the
+ * moving element is held in a local variable and every level costs one write.
+ *
+ * There is one overload per element type so that primitive heaps never box.
+ * Java generics cannot range over primitives, and a shared version behind a
+ * comparator or boxed keys costs a call or an allocation per comparison, so
+ * the int, long and Object loops are kept as copies. Each one is built from
+ * the same pieces (maxIndex, siftUp), so only the comparison differs. double
+ * keys have no copy: DoubleDHeapMax maps them to longs of the same order.
+ *
+ * All routines order elements as a max heap (largest at the root), except the
+ * int routines whose names end in Min; other min heaps are obtained with a
+ * reversed Comparator.
+ */
+final class DHeapArrays {
+
+	private static final int CANDIDATE_D = 4; // Arity of the candidate heap of selectTop
+	static final int PARALLEL_MIN_SIZE = 1 << 16; // Smaller heaps are built sequentially
+	private static final int PARALLEL_GRAIN = 1 << 15; // Child comparisons per fork/join task
+
+	/**
+	 * true if int sifts scan wide sibling groups with DHeapVectorScan. Enabled with
+	 * -Ddheap.vector=true, and only when the jdk.incubator.vector module was added
+	 * to the VM (--add-modules jdk.incubator.vector).
+	 */
+	static final boolean VECTOR_SCAN = Boolean.getBoolean("dheap.vector")
+			&& ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+	static final int VECTOR_MIN_CHILDREN = 8; // Narrower groups are faster with the scalar loop
+
+	/** Utility class, not instantiable. */
+	private DHeapArrays() {
+	}
+
+	/**
+	 * Returns the logical index of the parent node.
+	 *
+	 * @param i Logical index of the child node (greater than 0).
+	 * @param d Number of children per node.
+	 * @return Parent index.
+	 */
+	static int parent(int i, int d) {
+		return (i - 1) / d;
+	}
+
+	/**
+	 * Returns the logical index of the first child of a node.
+	 *
+	 * @param i Logical index of the parent node.
+	 * @param d Number of children per node.
+	 * @return Index of the first child (may be beyond the end of the heap).
+	 */
+	static int firstChild(int i, int d) {
+		return d * i + 1;
+	}
+
+	/**
+	 * Returns the logical index of the last node that has at least one child.
+	 *
+	 * @param size Number of elements in the heap.
+	 * @param d    Number of children per node.
+	 * @return Index of the last non-leaf node, or -1 if there is none.
+	 */
+	static int lastParent(int size, int d) {
+		return size > 1 ? parent(size - 1, d) : -1;
+	}
+
+	/**
+	 * Returns the capacity a backing array should grow to. The capacity grows by
+	 * half of its current value (or more if needed), so a sequence of inserts
+	 * costs amortized O(1) copying per element.
+	 *
+	 * @param oldCapacity Current length of the array.
+	 * @param minCapacity Required length of the array.
+	 * @param maxCapacity Largest length the array may have.
+	 * @return The new length.
+	 */
+	static int newCapacity(int oldCapacity, int minCapacity, int maxCapacity) {
+		long grown = (long) oldCapacity + (oldCapacity >> 1) + 1;
+		return (int) Math.min(Math.max(grown, minCapacity), maxCapacity);
+	}
+
+	// ---------------------------------------------------------------- int[]
+
+	/**
+	 * Moves the element at logical index i up until its parent is not smaller.
+	 *
+	 * @param a    The heap array.
+	 * @param base Offset of the root in the array.
+	 * @param d    Number of children per node.
+	 * @param i    Logical index of the element to move.
+	 * @return The logical index where the element came to rest.
+	 */
+	static int siftUp(int[] a, int base, int d, int i) {
+		int value = a[base + i];
+		while (i > 0) {
+			int p = parent(i, d);
+			int parentValue = a[base + p];
+			if (parentValue >= value) {
+				break; // The parent is not smaller, the element stays here
+			}
+			a[base + i] = parentValue; // Move the parent down into the hole
+			i = p;
+		}
+		a[base + i] = value;
+		return i;
+	}
+
+	/**
+	 * Moves the element at logical index i down until no child is larger.
+	 *
+	 * @param a    The heap array.
+	 * @param base Offset of the root in the array.
+	 * @param size Number of elements in the heap.
+	 * @param d    Number of children per node.
+	 * @param i    Logical index of the element to move.
+	 * @return The logical index where the element came to rest.
+	 */
+	static int siftDown(int[] a, int base, int size, int d, int i) {
+		int value = a[base + i];
+		int lastParent = lastParent(size, d); // Nodes beyond this one are leaves
+
+		while (i <= lastParent) {
+			// Find the largest child in the contiguous range of children
+			int first = firstChild(i, d);
+			int end = base + first + Math.min(d, size - first);
+			int maxIndex = maxIndex(a, base + first, end);
+
+			int maxValue = a[maxIndex];
+			if (maxValue <= value) {
+				break; // The element is not smaller than any child
+			}
+
+			a[base + i] = maxValue; // Move the child up into the hole
+			i = maxIndex - base;
+		}
+
+		a[base + i] = value;
+		return i;
+	}
+
+	/**
+	 * Returns the index of the largest element in a[from .. end - 1], the first
+	 * one if there are several. Wide ranges use the SIMD scan when it is enabled.
+	 *
+	 * @param a    The array.
+	 * @param from First index of the range (inclusive).
+	 * @param end  Last index of the range (exclusive), greater than from.
+	 * @return Index of the largest element.
+	 */
+	static int maxIndex(int[] a, int from, int end) {
+		if (VECTOR_SCAN && end - from >= VECTOR_MIN_CHILDREN) {
+			return DHeapVectorScan.maxIndex(a, from, end);
+		}
+		int maxIndex = from;
+		for (int c = from + 1; c < end; c++) {
+			if (a[c] > a[maxIndex]) {
+				maxIndex = c;
+			}
+		}
+		return maxIndex;
+	}
+
+	/**
+	 * Restores the heap property over size elements using Floyd's bottom-up
+	 * heapify, starting from the last non-leaf node down to the root.
+	 *
+	 * @param a    The heap array.
+	 * @param base Offset of the root in the array.
+	 * @param size Number of elements in the heap.
+	 * @param d    Number of children per node.
+	 */
+	static void heapify(int[] a, int base, int size, int d) {
+		for (int i = lastParent(size, d); i >= 0; i--) {
+			siftDown(a, base, size, d, i);
+		}
+	}
+
+	/**
+	 * Restores the heap property like heapify, sifting the nodes of each level in
+	 * parallel. Nodes on the same level root disjoint subtrees, so their sifts
+	 * never touch the same slots; the levels are processed from the bottom up,
+	 * each one after the level below it is complete. Small heaps and pools with
+	 * a parallelism of 1 use the sequential heapify.
+	 *
+	 * @param a    The heap array.
+	 * @param base Offset of the root in the array.
+	 * @param size Number of elements.
+	 * @param d    Number of children per node.
+	 * @param pool The pool that runs the sifts.
+	 */
+	static void parallelHeapify(int[] a, int base, int size, int d, ForkJoinPool pool) {
+		int lastParent = lastParent(size, d);
+		if (size < PARALLEL_MIN_SIZE || pool.getParallelism() == 1 || d == 1) {
+			heapify(a, base, size, d);
+			return;
+		}
+
+		// Start index of every level, root level first
+		int height = height(size, d);
+		long[] levelStart = new long[height + 1];
+		for (int level = 1; level <= height; level++) {
+			levelStart[level] = levelStart[level - 1] * d + 1;
+		}
+
+		for (int level = height - 2; level >= 0; level--) { // The last level holds only leaves
+			int from = (int) levelStart[level];
+			int to = (int) Math.min(levelStart[level + 1] - 1, lastParent);
+			// A sift from this level compares at most d children per level below it
+			long costPerNode = (long) d * (height - 1 - level);
+			int grain = (int) Math.max(1, PARALLEL_GRAIN / costPerNode);
+			pool.invoke(new SiftRange(a, base, size, d, from, to + 1, grain));
+		}
+	}
+
+	/**
+	 * Sifts down the nodes lo .. hi - 1 of one level, splitting the range in
+	 * halves until it is at most 'grain' nodes long.
+	 */
+	private static final class SiftRange extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final int[] a;
+		private final int base;
+		private final int size;
+		private final int d;
+		private final int lo;
+		private final int hi;
+		private final int grain;
+
+		SiftRange(int[] a, int base, int size, int d, int lo, int hi, int grain) {
+			this.a = a;
+			this.base = base;
+			this.size = size;
+			this.d = d;
+			this.lo = lo;
+			this.hi = hi;
+			this.grain = grain;
+		}
+
+		@Override
+		protected void compute() {
+			if (hi - lo <= grain) {
+				for (int i = hi - 1; i >= lo; i--) {
+					siftDown(a, base, size, d, i);
+				}
+				return;
+			}
+			int mid = (lo + hi) >>> 1;
+			invokeAll(new SiftRange(a, base, size, d, lo, mid, grain), new SiftRange(a, base, size, d, mid, hi, grain));
+		}
+	}
+
+	/**
+	 * Restores the heap property after the elements at logical indices from ..
+	 * size - 1 were appended to a valid heap of 'from' elements.
+	 * 
+	 * Only the appended nodes and their ancestors can violate the heap property,
+	 * and the ancestors of a contiguous range of nodes form a contiguous range on
+	 * every level. The ranges are heapified bottom-up as in Floyd's algorithm,
+	 * level by level, which costs O(len + d * log_d(n)^2) comparisons instead of
+	 * rebuilding the whole heap.
+	 *
+	 * @param a    The heap array.
+	 * @param base Offset of the root in the array.
+	 * @param size Number of elements in the heap, including the appended ones.
+	 * @param d    Number of children per node.
+	 * @param from Number of elements that already formed a valid heap.
+	 */
+	static void heapifyAppended(int[] a, int base, int size, int d, int from) {
+		if (from >= size) {
+			return;
+		}
+		int lastParent = lastParent(size, d);
+		int lo = from;
+		int hi = size - 1;
+		while (true) {
+			for (int i = Math.min(hi, lastParent); i >= lo; i--) {
+				siftDown(a, base, size, d, i);
+			}
+			if (lo == 0) {
+				break;
+			}
+			lo = parent(lo, d);
+			hi = parent(hi, d);
+		}
+	}
+
+	/**
+	 * Moves the element at index i up a min-heap: larger parents move down into
+	 * the hole.
+	 *
+	 * @param a    The heap array.
+	 * @param base Offset of the root in the array.
+	 * @param d    Number of children per node.
+	 * @param i    Index of the element, relative to base.
+	 */
+	static void siftUpMin(int[] a, int base, int d, int i) {
+		int value = a[base + i];
+		while (i > 0) {
+			int p = parent(i, d);
+			int parentValue = a[base + p];
+			if (parentValue <= value) {
+				break;
+			}
+			a[base + i] = parentValue;
+			i = p;
+		}
+		a[base + i] = value;
+	}
+
+	/**
+	 * Moves the element at index i down a min-heap: the smallest child moves up
+	 * into the hole while it is smaller than the element.
+	 *
+	 * @param a    The heap array.
+	 * @param base Offset of the root in the array.
+	 * @param size Number of elements in the heap.
+	 * @param d    Number of children per node.
+	 * @param i    Index of the element, relative to base.
+	 */
+	static void siftDownMin(int[] a, int base, int size, int d, int i) {
+		int value = a[base + i];
+		int lastParent = lastParent(size, d);
+		while (i <= lastParent) {
+			int first = firstChild(i, d);
+			int end = base + first + Math.min(d, size - first);
+			int minIndex = base + first;
+			for (int c = minIndex + 1; c < end; c++) {
+				if (a[c] < a[minIndex]) {
+					minIndex = c;
+				}
+			}
+			int minValue = a[minIndex];
+			if (minValue >= value) {
+				break;
+			}
+			a[base + i] = minValue;
+			i = minIndex - base;
+		}
+		a[base + i] = value;
+	}
+
+	/**
+	 * Places value into the hole at the root with the bottom-up sift of
+	 * Floyd/Wegener: the largest children move up along their path down to a
+	 * leaf without being compared against value, and value then climbs back up
+	 * from the leaf hole. Since a value taken from the bottom of the heap usually
+	 * belongs near the bottom, the climb is short and the sift needs about d - 1
+	 * instead of d comparisons per level.
+	 *
+	 * @param a     The heap array.
+	 * @param base  Offset of the root in the array.
+	 * @param size  Number of elements in the heap, including the hole.
+	 * @param d     Number of children per node.
+	 * @param value The value to place; the root slot holds no element.
+	 */
+	static void siftDownBottomUp(int[] a, int base, int size, int d, int value) {
+		// Move the largest children up along the path to a leaf
+		int i = 0;
+		int lastParent = lastParent(size, d);
+		while (i <= lastParent) {
+			int first = firstChild(i, d);
+			int maxIndex = maxIndex(a, base + first, base + first + Math.min(d, size - first));
+			a[base + i] = a[maxIndex];
+			i = maxIndex - base;
+		}
+
+		// Climb back from the leaf hole to the place of value
+		a[base + i] = value;
+		siftUp(a, base, d, i);
+	}
+
+	/**
+	 * Checks the heap property of every parent.
+	 *
+	 * @param a    The heap array.
+	 * @param base Offset of the root in the array.
+	 * @param size Number of elements in the heap.
+	 * @param d    Number of children per node.
+	 * @return true if no child is larger than its parent.
+	 */
+	static boolean isHeap(int[] a, int base, int size, int d) {
+		for (int i = 1; i < size; i++) {
+			if (a[base + i] > a[base + parent(i, d)]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the number of levels of a heap.
+	 *
+	 * @param size Number of elements in the heap.
+	 * @param d    Number of children per node.
+	 * @return The height, 0 for an empty heap.
+	 */
+	static int height(int size, int d) {
+		int height = 0;
+		long levelEnd = 0; // Number of nodes on all levels so far
+		long levelWidth = 1;
+		while (levelEnd < size) {
+			levelEnd += levelWidth;
+			levelWidth *= d;
+			height++;
+		}
+		return height;
+	}
+
+	/**
+	 * Returns how many candidate slots selectTop needs for its candidate heap.
+	 *
+	 * @param size Number of elements in the heap.
+	 * @param d    Number of children per node.
+	 * @param k    Number of elements to select (at most size).
+	 * @return The required length of the candidate arrays.
+	 */
+	static int selectTopCandidates(int size, int d, int k) {
+		return (int) Math.min((long) k * (d - 1) + 1, size);
+	}
+
+	/**
+	 * Finds the k largest elements of a heap without modifying it.
+	 * 
+	 * The k largest elements of a heap form a subtree around the root, so they can
+	 * be found by a best-first walk: a small 4-ary heap of candidates starts with
+	 * the root, and every time the best candidate is taken its children become
+	 * candidates. Candidates are stored as key/slot pairs, so the walk never reads
+	 * the large heap array indirectly. The candidate heap never holds more than
+	 * k * (d - 1) + 1 entries.
+	 * 
+	 * The slots are reported in the order they were selected, which lists every
+	 * parent before its children.
+	 *
+	 * @param a          The heap array.
+	 * @param base       Offset of the root in the array.
+	 * @param size       Number of elements in the heap.
+	 * @param d          Number of children per node.
+	 * @param k          Number of elements to select (at most size).
+	 * @param out        Receives the k values in descending order.
+	 * @param selected   Receives the k slots of those values.
+	 * @param candKeys   Working memory, at least selectTopCandidates() long.
+	 * @param candSlots  Working memory, at least selectTopCandidates() long.
+	 */
+	static void selectTop(int[] a, int base, int size, int d, int k, int[] out, int[] selected, int[] candKeys,
+			int[] candSlots) {
+		int candidates = 1;
+		candKeys[0] = a[base]; // The root is always the first candidate
+		candSlots[0] = 0;
+
+		for (int j = 0; j < k; j++) {
+			// Take the best candidate
+			int slot = candSlots[0];
+			out[j] = candKeys[0];
+			selected[j] = slot;
+			candidates--;
+			candKeys[0] = candKeys[candidates];
+			candSlots[0] = candSlots[candidates];
+			if (candidates > 0) {
+				siftDown(candKeys, candSlots, 0, candidates, CANDIDATE_D, 0);
+			}
+
+			// Its children become candidates
+			int first = firstChild(slot, d);
+			int end = first < size ? first + Math.min(d, size - first) : first;
+			for (int c = first; c < end; c++) {
+				candKeys[candidates] = a[base + c];
+				candSlots[candidates] = c;
+				siftUp(candKeys, candSlots, 0, CANDIDATE_D, candidates++);
+			}
+		}
+	}
+
+	// ------------------------------------------------------ int[] + int[]
+
+	/**
+	 * Same as {@link #siftUp(int[], int, int, int)} for a heap of keys with a
+	 * parallel array of values. The values move in lockstep with their keys.
+	 */
+	static void siftUp(int[] keys, int[] values, int base, int d, int i) {
+		int key = keys[base + i];
+		int value = values[base + i];
+		while (i > 0) {
+			int p = parent(i, d);
+			int parentKey = keys[base + p];
+			if (parentKey >= key) {
+				break;
+			}
+			keys[base + i] = parentKey;
+			values[base + i] = values[base + p];
+			i = p;
+		}
+		keys[base + i] = key;
+		values[base + i] = value;
+	}
+
+	/**
+	 * Same as {@link #siftDown(int[], int, int, int, int)} for a heap of keys with
+	 * a parallel array of values. Only the keys are compared.
+	 */
+	static void siftDown(int[] keys, int[] values, int base, int size, int d, int i) {
+		int key = keys[base + i];
+		int value = values[base + i];
+		int lastParent = lastParent(size, d);
+
+		while (i <= lastParent) {
+			int first = firstChild(i, d);
+			int end = base + first + Math.min(d, size - first);
+			int maxIndex = base + first;
+			for (int c = maxIndex + 1; c < end; c++) {
+				if (keys[c] > keys[maxIndex]) {
+					maxIndex = c;
+				}
+			}
+
+			int maxKey = keys[maxIndex];
+			if (maxKey <= key) {
+				break;
+			}
+
+			keys[base + i] = maxKey;
+			values[base + i] = values[maxIndex];
+			i = maxIndex - base;
+		}
+
+		keys[base + i] = key;
+		values[base + i] = value;
+	}
+
+	/** Same as {@link #heapify(int[], int, int, int)} for keys with values. */
+	static void heapify(int[] keys, int[] values, int base, int size, int d) {
+		for (int i = lastParent(size, d); i >= 0; i--) {
+			siftDown(keys, values, base, size, d, i);
+		}
+	}
+
+	// --------------------------------------------------------------- long[]
+
+	/** Same as {@link #siftUp(int[], int, int, int)} for long elements. */
+	static void siftUp(long[] a, int base, int d, int i) {
+		long value = a[base + i];
+		while (i > 0) {
+			int p = parent(i, d);
+			long parentValue = a[base + p];
+			if (parentValue >= value) {
+				break;
+			}
+			a[base + i] = parentValue;
+			i = p;
+		}
+		a[base + i] = value;
+	}
+
+	/** Same as {@link #siftDown(int[], int, int, int, int)} for long elements. */
+	static void siftDown(long[] a, int base, int size, int d, int i) {
+		long value = a[base + i];
+		int lastParent = lastParent(size, d);
+
+		while (i <= lastParent) {
+			int first = firstChild(i, d);
+			int maxIndex = maxIndex(a, base + first, base + first + Math.min(d, size - first));
+
+			long maxValue = a[maxIndex];
+			if (maxValue <= value) {
+				break;
+			}
+
+			a[base + i] = maxValue;
+			i = maxIndex - base;
+		}
+
+		a[base + i] = value;
+	}
+
+	/** Same as {@link #maxIndex(int[], int, int)} for long elements, always scalar. */
+	static int maxIndex(long[] a, int from, int end) {
+		int maxIndex = from;
+		for (int c = from + 1; c < end; c++) {
+			if (a[c] > a[maxIndex]) {
+				maxIndex = c;
+			}
+		}
+		return maxIndex;
+	}
+
+	/** Same as {@link #heapify(int[], int, int, int)} for long elements. */
+	static void heapify(long[] a, int base, int size, int d) {
+		for (int i = lastParent(size, d); i >= 0; i--) {
+			siftDown(a, base, size, d, i);
+		}
+	}
+
+	/** Same as {@link #siftDownBottomUp(int[], int, int, int, int)} for long elements. */
+	static void siftDownBottomUp(long[] a, int base, int size, int d, long value) {
+		int i = 0;
+		int lastParent = lastParent(size, d);
+		while (i <= lastParent) {
+			int first = firstChild(i, d);
+			int maxIndex = maxIndex(a, base + first, base + first + Math.min(d, size - first));
+			a[base + i] = a[maxIndex];
+			i = maxIndex - base;
+		}
+		a[base + i] = value;
+		siftUp(a, base, d, i);
+	}
+
+	// ------------------------------------------------------------- Object[]
+
+	/**
+	 * Same as {@link #siftUp(int[], int, int, int)} for objects, where the
+	 * comparator decides which element is larger.
+	 */
+	@SuppressWarnings("unchecked")
+	static <T> void siftUp(Object[] a, int base, int d, int i, Comparator<? super T> cmp) {
+		T value = (T) a[base + i];
+		while (i > 0) {
+			int p = parent(i, d);
+			T parentValue = (T) a[base + p];
+			if (cmp.compare(parentValue, value) >= 0) {
+				break;
+			}
+			a[base + i] = parentValue;
+			i = p;
+		}
+		a[base + i] = value;
+	}
+
+	/**
+	 * Same as {@link #siftDown(int[], int, int, int, int)} for objects, where the
+	 * comparator decides which element is larger.
+	 */
+	@SuppressWarnings("unchecked")
+	static <T> void siftDown(Object[] a, int base, int size, int d, int i, Comparator<? super T> cmp) {
+		T value = (T) a[base + i];
+		int lastParent = lastParent(size, d);
+
+		while (i <= lastParent) {
+			int first = firstChild(i, d);
+			int end = base + first + Math.min(d, size - first);
+			int maxIndex = base + first;
+			for (int c = maxIndex + 1; c < end; c++) {
+				if (cmp.compare((T) a[c], (T) a[maxIndex]) > 0) {
+					maxIndex = c;
+				}
+			}
+
+			T maxValue = (T) a[maxIndex];
+			if (cmp.compare(maxValue, value) <= 0) {
+				break;
+			}
+
+			a[base + i] = maxValue;
+			i = maxIndex - base;
+		}
+
+		a[base + i] = value;
+	}
+
+	/** Same as {@link #heapify(int[], int, int, int)} for objects. */
+	static <T> void heapify(Object[] a, int base, int size, int d, Comparator<? super T> cmp) {
+		for (int i = lastParent(size, d); i >= 0; i--) {
+			siftDown(a, base, size, d, i, cmp);
+		}
+	}
+}
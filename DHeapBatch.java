@@ -0,0 +1,276 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * DHeapBatch - Non-interactive command mode for replaying traces against a
+ * D-ary Max Heap.
+ *
+ * Reads one command per line from a file or stdin and runs it without printing
+ * the heap after every operation:
+ *
+ * - build v1 v2 ... - insert v - extract - changeD d - print
+ *
+ * Empty lines and lines starting with '#' are ignored. Output is buffered and
+ * written at the end, followed by a summary of the throughput and the latency
+ * percentiles of every command. The latencies go into the fixed-size
+ * log-linear histograms of DHeapMetrics, so long traces take no extra memory
+ * and the percentiles are exact to within 6.25%. An invalid line is reported with its line
+ * number and counted as an error; the batch goes on with the next line.
+ *
+ * Usage: java DHeapMain --batch [file] [--d N] [--auto-d] [--lazy] [--echo]
+ *
+ * With --auto-d the arity starts at N and is then chosen by a DHeapArityTuner
+ * from the observed mix of inserts and extracts. With --lazy inserts are
+ * buffered and folded into the heap by the next extract or print.
+ */
+public class DHeapBatch {
+
+	public static final int DEFAULT_D = 4; // Arity of the heap unless --d is given
+	private static final int OUTPUT_BUFFER_BYTES = 1 << 16;
+
+	// Commands, also the indexes of their latency logs
+	private static final String[] COMMANDS = { "build", "insert", "extract", "changeD", "print" };
+	private static final int BUILD = 0;
+	private static final int INSERT = 1;
+	private static final int EXTRACT = 2;
+	private static final int CHANGE_D = 3;
+	private static final int PRINT = 4;
+
+	private final DHeapMax heap;
+	private final PrintStream out;
+	private final boolean echo; // Print the value of every extract
+	private final DHeapInputParser parser = new DHeapInputParser(Integer.MIN_VALUE, Integer.MAX_VALUE);
+	private final DHeapMetrics.LatencyHistogram[] latencies = new DHeapMetrics.LatencyHistogram[COMMANDS.length];
+	private long errors;
+	private boolean argumentValid; // Whether the last parseArgument found a single int
+
+	/**
+	 * Constructs a batch runner.
+	 *
+	 * @param d     The initial value of d.
+	 * @param autoD true to let a DHeapArityTuner change d.
+	 * @param lazy  true for lazy inserts (see DHeapMax.setLazyInsert).
+	 * @param out   The stream for the output and the summary.
+	 * @param echo  true to print the value of every extract.
+	 * @throws IllegalArgumentException If d is out of valid range.
+	 */
+	public DHeapBatch(int d, boolean autoD, boolean lazy, PrintStream out, boolean echo) {
+		this.heap = new DHeapMax(d);
+		if (autoD) {
+			heap.enableAutoTune();
+		}
+		heap.setLazyInsert(lazy);
+		this.out = out;
+		this.echo = echo;
+		for (int i = 0; i < latencies.length; i++) {
+			latencies[i] = new DHeapMetrics.LatencyHistogram();
+		}
+	}
+
+	/**
+	 * Runs batch mode with the command line arguments that follow "--batch".
+	 *
+	 * @param args [file] [--d N] [--auto-d] [--lazy] [--echo]; without a file,
+	 *             commands are read from stdin.
+	 * @throws IOException If the command file cannot be read.
+	 */
+	public static void run(String[] args) throws IOException {
+		run(args, new FileOutputStream(FileDescriptor.out), System.err); // Bypass the autoflushing System.out
+	}
+
+	/**
+	 * Runs batch mode with the given output streams. An invalid option is
+	 * reported as one line on err and nothing is run.
+	 *
+	 * @param args   The arguments, as for run(String[]).
+	 * @param stdout The stream for the output and the summary; it is buffered
+	 *               here and flushed at the end, but not closed.
+	 * @param err    The stream for option errors.
+	 * @throws IOException If the command file cannot be read.
+	 */
+	static void run(String[] args, OutputStream stdout, PrintStream err) throws IOException {
+		String file = null;
+		int d = DEFAULT_D;
+		boolean autoD = false;
+		boolean lazy = false;
+		boolean echo = false;
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("--d")) {
+				if (i + 1 == args.length) {
+					err.println("--d: " + DHeapError.MISSING_OPTION_VALUE.getMessage());
+					return;
+				}
+				String value = args[++i];
+				d = parseD(value);
+				if (!DHeapValidator.isValidD(d)) {
+					err.println("--d: " + DHeapError.INVALID_D.getMessage() + ": " + value);
+					return;
+				}
+			} else if (args[i].equals("--auto-d")) {
+				autoD = true;
+			} else if (args[i].equals("--lazy")) {
+				lazy = true;
+			} else if (args[i].equals("--echo")) {
+				echo = true;
+			} else {
+				file = args[i];
+			}
+		}
+
+		PrintStream out = new PrintStream(new BufferedOutputStream(stdout, OUTPUT_BUFFER_BYTES), false);
+		DHeapBatch batch = new DHeapBatch(d, autoD, lazy, out, echo);
+		try (InputStream in = file == null ? System.in : Files.newInputStream(Paths.get(file))) {
+			batch.execute(in);
+		} finally {
+			out.flush();
+		}
+	}
+
+	/**
+	 * Parses the value of --d without printing anything, unlike
+	 * DHeapValidator.tryParseInt.
+	 *
+	 * @return The value, or DHeapMax.ERROR_CODE if it is not a single int.
+	 */
+	private static int parseD(String value) {
+		DHeapInputParser parser = new DHeapInputParser(Integer.MIN_VALUE, Integer.MAX_VALUE);
+		return parser.parse(value) && parser.getCount() == 1 ? parser.get(0) : DHeapMax.ERROR_CODE;
+	}
+
+	/**
+	 * Runs every command of a stream, then prints the summary.
+	 *
+	 * @param in The command stream; it is not closed.
+	 * @throws IOException If reading fails.
+	 */
+	public void execute(InputStream in) throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.ISO_8859_1),
+				OUTPUT_BUFFER_BYTES);
+		long start = System.nanoTime();
+		long lineNumber = 0;
+		String line;
+		while ((line = reader.readLine()) != null) {
+			lineNumber++;
+			String problem = executeLine(line.trim());
+			if (problem != null) {
+				errors++;
+				out.println("line " + lineNumber + ": " + problem);
+			}
+		}
+		printSummary(System.nanoTime() - start);
+	}
+
+	/**
+	 * Parses and runs one command, timing only the heap operation.
+	 *
+	 * @param line The trimmed line.
+	 * @return null on success, otherwise a description of the problem.
+	 */
+	private String executeLine(String line) {
+		if (line.isEmpty() || line.charAt(0) == '#') {
+			return null;
+		}
+		int space = line.indexOf(' ');
+		String command = space < 0 ? line : line.substring(0, space);
+		String argument = space < 0 ? "" : line.substring(space + 1).trim();
+
+		long start;
+		switch (command) {
+		case "build":
+			if (!parser.parse(argument)) {
+				return parser.getErrorMessage();
+			}
+			start = System.nanoTime();
+			heap.buildDHeap(parser);
+			latencies[BUILD].record(System.nanoTime() - start);
+			return null;
+		case "insert":
+			int key = parseArgument(argument);
+			if (!argumentValid) {
+				return DHeapError.NON_INTEGER_INPUT.getMessage() + ": " + argument;
+			}
+			start = System.nanoTime();
+			heap.insert(key);
+			latencies[INSERT].record(System.nanoTime() - start);
+			return null;
+		case "extract":
+			if (!DHeapValidator.canExtract(heap.getSize())) {
+				return DHeapError.HEAP_UNDERFLOW.getMessage();
+			}
+			start = System.nanoTime();
+			int max = heap.exctractDMax();
+			latencies[EXTRACT].record(System.nanoTime() - start);
+			if (echo) {
+				out.println(max);
+			}
+			return null;
+		case "changeD":
+			int d = parseArgument(argument);
+			if (!argumentValid || !DHeapValidator.isValidD(d)) {
+				return DHeapError.INVALID_D.getMessage() + ": " + argument;
+			}
+			start = System.nanoTime();
+			heap.changeD(d);
+			latencies[CHANGE_D].record(System.nanoTime() - start);
+			return null;
+		case "print":
+			start = System.nanoTime();
+			heap.printHeap(out);
+			latencies[PRINT].record(System.nanoTime() - start);
+			return null;
+		default:
+			return DHeapError.UNKNOWN_COMMAND.getMessage() + ": " + command;
+		}
+	}
+
+	/**
+	 * Parses an int argument without exceptions, boxing or copying. Sets
+	 * argumentValid to whether the argument is a single int.
+	 *
+	 * @return The value, or 0 if the argument is not a single int.
+	 */
+	private int parseArgument(String argument) {
+		argumentValid = parser.parse(argument) && parser.getCount() == 1;
+		return argumentValid ? parser.get(0) : 0;
+	}
+
+	/**
+	 * Prints the number of operations, the overall throughput and the latency
+	 * percentiles of every command that ran.
+	 *
+	 * @param elapsedNanos Wall time of the whole batch, parsing included.
+	 */
+	private void printSummary(long elapsedNanos) {
+		DHeapMetrics.LatencySummary[] summaries = new DHeapMetrics.LatencySummary[COMMANDS.length];
+		long operations = 0;
+		for (int i = 0; i < COMMANDS.length; i++) {
+			summaries[i] = latencies[i].summary();
+			operations += summaries[i].getCount();
+		}
+		out.printf("Batch summary: %d operations in %.3f s (%.0f ops/s), %d errors, final size %d, d=%d%n",
+				operations, elapsedNanos / 1e9, operations / (elapsedNanos / 1e9), errors, heap.getSize(),
+				heap.getD());
+		if (heap.getArityTuner() != null) {
+			out.printf("Arity tuner: %d changes of d%n", heap.getArityTuner().getChanges());
+		}
+		out.printf("%-8s %12s %10s %10s %10s %12s%n", "command", "count", "p50 ns", "p90 ns", "p99 ns", "max ns");
+		for (int i = 0; i < COMMANDS.length; i++) {
+			DHeapMetrics.LatencySummary summary = summaries[i];
+			if (summary.getCount() == 0) {
+				continue;
+			}
+			out.printf("%-8s %12d %10d %10d %10d %12d%n", COMMANDS[i], summary.getCount(), summary.getP50(),
+					summary.getP90(), summary.getP99(), summary.getMax());
+		}
+	}
+}
@@ -0,0 +1,324 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * DHeapInputParser - Single-pass parser for whitespace separated integers.
+ *
+ * The input is read as bytes and every token is validated and converted in the
+ * same pass, straight into a growable int[]: no regex split, no String per
+ * token and no exceptions for invalid tokens. A token is an optional '+' or '-'
+ * followed by decimal digits; it must lie in the range given to the
+ * constructor. Parsing stops at the first invalid token, whose text and
+ * position are reported by getErrorMessage().
+ *
+ * The parsed values are handed to DHeapMax.buildDHeap(DHeapInputParser), which
+ * takes over the array without copying it.
+ */
+public class DHeapInputParser {
+
+	private static final int INITIAL_CAPACITY = 1024;
+	private static final int CHUNK_BYTES = 64 * 1024; // Read size for streams and files
+	private static final int MAX_DIGITS = 11; // Longer numbers (without leading zeros) are out of any int range
+	private static final int FAST_DIGITS = 9; // Longest number that cannot overflow an int
+
+	private final int min; // Smallest accepted value
+	private final int max; // Largest accepted value
+	private int[] values = new int[INITIAL_CAPACITY];
+	private int count; // Number of values parsed so far
+	private String errorMessage; // Problem of the last parse, null if it succeeded
+
+	// Tokenizer state, kept across the chunks of one input
+	private boolean inToken;
+	private boolean negative;
+	private boolean hasDigits;
+	private boolean invalid; // The current token contains a bad character
+	private boolean tooLong; // The current token has more than MAX_DIGITS significant digits
+	private int digits;
+	private long value;
+	private final StringBuilder carry = new StringBuilder(); // Token text from earlier chunks
+
+	/**
+	 * Constructs a parser that accepts values in [min, max].
+	 *
+	 * @param min The smallest accepted value.
+	 * @param max The largest accepted value.
+	 */
+	public DHeapInputParser(int min, int max) {
+		this.min = min;
+		this.max = max;
+	}
+
+	/**
+	 * Constructs a parser for the 4 digit range accepted by the user interface
+	 * (DHeapValidator.MIN_VALID_NUMBER .. MAX_VALID_NUMBER).
+	 *
+	 * @return The parser.
+	 */
+	public static DHeapInputParser forUserInput() {
+		return new DHeapInputParser(DHeapValidator.MIN_VALID_NUMBER, DHeapValidator.MAX_VALID_NUMBER);
+	}
+
+	/**
+	 * Parses one line of input.
+	 *
+	 * @param line The line.
+	 * @return true if every token was valid.
+	 */
+	public boolean parse(String line) {
+		reset();
+		byte[] bytes = line.getBytes(StandardCharsets.ISO_8859_1); // Non-Latin-1 chars become '?'
+		for (int from = 0; from < bytes.length; from += CHUNK_BYTES) {
+			// Chunks keep the hot loop short enough to be compiled as a whole method
+			if (!parseChunk(bytes, from, Math.min(bytes.length, from + CHUNK_BYTES))) {
+				return false;
+			}
+		}
+		return finish();
+	}
+
+	/**
+	 * Parses a stream, such as System.in, until its end.
+	 *
+	 * @param in The stream; it is not closed.
+	 * @return true if every token was valid.
+	 * @throws IOException If reading fails.
+	 */
+	public boolean parse(InputStream in) throws IOException {
+		reset();
+		byte[] chunk = new byte[CHUNK_BYTES];
+		int n;
+		while ((n = in.read(chunk)) >= 0) {
+			if (!parseChunk(chunk, 0, n)) {
+				return false;
+			}
+		}
+		return finish();
+	}
+
+	/**
+	 * Parses a file.
+	 *
+	 * @param file The file.
+	 * @return true if every token was valid.
+	 * @throws IOException If the file cannot be read.
+	 */
+	public boolean parse(Path file) throws IOException {
+		try (InputStream in = Files.newInputStream(file)) {
+			return parse(in);
+		}
+	}
+
+	/** Returns the number of values of the last parse. */
+	public int getCount() {
+		return this.count;
+	}
+
+	/** Returns the problem of the last parse, or null if it succeeded. */
+	public String getErrorMessage() {
+		return this.errorMessage;
+	}
+
+	/**
+	 * Returns one parsed value without copying the values.
+	 *
+	 * @param index The position of the value in the input.
+	 * @return The value.
+	 * @throws IndexOutOfBoundsException If index is not below getCount().
+	 */
+	public int get(int index) {
+		return values[Objects.checkIndex(index, count)];
+	}
+
+	/**
+	 * Returns a copy of the parsed values.
+	 *
+	 * @return A new array of getCount() values in input order.
+	 */
+	public int[] toArray() {
+		return Arrays.copyOf(values, count);
+	}
+
+	/**
+	 * Hands the array holding the parsed values to the caller, which may keep
+	 * it; the parser allocates a new one for its next parse. Only the first
+	 * getCount() elements are values.
+	 *
+	 * @return The array of the last parse.
+	 */
+	int[] takeValues() {
+		int[] taken = values;
+		values = new int[INITIAL_CAPACITY];
+		return taken;
+	}
+
+	/** Clears the values and the tokenizer state before a new input. */
+	private void reset() {
+		count = 0;
+		errorMessage = null;
+		inToken = false;
+		carry.setLength(0);
+	}
+
+	/**
+	 * Tokenizes and converts the bytes chunk[from .. to - 1]. Tokens of up to 9
+	 * digits that end inside the chunk take a fast path on local variables; a
+	 * token that continues from the previous chunk or into the next one, or that
+	 * is malformed, is scanned by scanToken.
+	 *
+	 * @return false if an invalid token was found.
+	 */
+	private boolean parseChunk(byte[] chunk, int from, int to) {
+		int i = from;
+		if (inToken) {
+			i = scanToken(chunk, from, from, to); // Rest of a token from the previous chunk
+			if (i < 0) {
+				return false;
+			}
+		}
+		while (i < to) {
+			byte b = chunk[i];
+			if (isSpace(b)) {
+				i++;
+				continue;
+			}
+
+			int start = i;
+			boolean minus = b == '-';
+			if (minus || b == '+') {
+				i++;
+			}
+			int digitsStart = i;
+			int limit = Math.min(to, digitsStart + FAST_DIGITS);
+			int v = 0;
+			while (i < limit && (b = chunk[i]) >= '0' && b <= '9') {
+				v = v * 10 + (b - '0');
+				i++;
+			}
+			if (i < to && i > digitsStart && isSpace(chunk[i])) {
+				v = minus ? -v : v;
+				if (v < min || v > max) {
+					return fail(chunk, start, i, DHeapError.INVALID_NUMBER_RANGE);
+				}
+				if (!add(v)) {
+					return fail(chunk, start, i, DHeapError.HEAP_OVERFLOW);
+				}
+				continue;
+			}
+
+			// Too long, malformed or cut by the end of the chunk: rescan it
+			startToken();
+			i = scanToken(chunk, start, start, to);
+			if (i < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Scans the current token byte by byte from chunk[i] until it ends at a
+	 * whitespace byte or the chunk ends; in the latter case the token text is
+	 * kept for the next chunk.
+	 *
+	 * @return The index of the whitespace after the token, to if the chunk ended,
+	 *         or -1 if the token is invalid.
+	 */
+	private int scanToken(byte[] chunk, int tokenStart, int i, int to) {
+		for (; i < to; i++) {
+			byte b = chunk[i];
+			if (isSpace(b)) {
+				return endToken(chunk, tokenStart, i) ? i : -1;
+			}
+			if (i == tokenStart && carry.length() == 0 && (b == '-' || b == '+')) {
+				negative = b == '-';
+			} else if (b >= '0' && b <= '9') {
+				hasDigits = true;
+				if (digits == 0 && b == '0') {
+					continue; // Leading zeros do not count
+				}
+				if (digits < MAX_DIGITS) {
+					value = value * 10 + (b - '0');
+					digits++;
+				} else {
+					tooLong = true; // Out of any int range, but still a number
+				}
+			} else {
+				invalid = true;
+			}
+		}
+		carry.append(new String(chunk, tokenStart, to - tokenStart, StandardCharsets.ISO_8859_1));
+		return to;
+	}
+
+	/** Returns true for the bytes that separate tokens. */
+	private static boolean isSpace(byte b) {
+		return b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == '\f';
+	}
+
+	/** Appends a valid value, growing the array when it is full. */
+	private boolean add(int v) {
+		if (count == values.length) {
+			if (count >= DHeapMax.MAX_CAPACITY) {
+				return false;
+			}
+			values = Arrays.copyOf(values, DHeapArrays.newCapacity(count, count + 1, DHeapMax.MAX_CAPACITY));
+		}
+		values[count++] = v;
+		return true;
+	}
+
+	/** Ends the input: a token that runs until the end is completed. */
+	private boolean finish() {
+		if (inToken) {
+			return endToken(null, 0, 0);
+		}
+		return true;
+	}
+
+	/** Starts a new token. */
+	private void startToken() {
+		inToken = true;
+		negative = false;
+		hasDigits = false;
+		invalid = false;
+		tooLong = false;
+		digits = 0;
+		value = 0;
+		carry.setLength(0);
+	}
+
+	/**
+	 * Validates and stores the current token, which ends before chunk[end].
+	 *
+	 * @return false if the token is invalid; the error message is set.
+	 */
+	private boolean endToken(byte[] chunk, int tokenStart, int end) {
+		inToken = false;
+		long v = negative ? -value : value;
+		if (invalid || !hasDigits) {
+			return fail(chunk, tokenStart, end, DHeapError.INVALID_INPUT);
+		}
+		if (tooLong || v < min || v > max) {
+			return fail(chunk, tokenStart, end, DHeapError.INVALID_NUMBER_RANGE);
+		}
+		if (!add((int) v)) {
+			return fail(chunk, tokenStart, end, DHeapError.HEAP_OVERFLOW);
+		}
+		carry.setLength(0);
+		return true;
+	}
+
+	/** Records the text of the bad token and the reason, in the format of DHeapValidator.checkHeapInput. */
+	private boolean fail(byte[] chunk, int tokenStart, int end, DHeapError error) {
+		if (chunk != null) {
+			carry.append(new String(chunk, tokenStart, end - tokenStart, StandardCharsets.ISO_8859_1));
+		}
+		errorMessage = "The issue: " + carry + " " + error.getMessage() + " (value " + (count + 1) + ")";
+		return false;
+	}
+}
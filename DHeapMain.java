@@ -1,17 +1,28 @@
+import java.io.IOException;
+import java.util.Arrays;
+
 /**
  * DHeapMain - Entry point for the D-ary Max Heap program.
  *
  * This class initializes the user interface and starts the interactive loop for
- * performing heap operations.
+ * performing heap operations. With "--batch" as the first argument, commands
+ * are read from a file or stdin instead (see DHeapBatch).
  */
 public class DHeapMain {
 
 	/**
 	 * Main method to run the heap program.
 	 *
-	 * @param args Command-line arguments (not used).
+	 * @param args Command-line arguments: none for the interactive mode, or
+	 *             "--batch [file] [--d N] [--auto-d] [--lazy] [--echo]" for batch
+	 *             mode.
+	 * @throws IOException If the batch command file cannot be read.
 	 */
-	public static void main(String[] args) {
+	public static void main(String[] args) throws IOException {
+		if (args.length > 0 && args[0].equals("--batch")) {
+			DHeapBatch.run(Arrays.copyOfRange(args, 1, args.length));
+			return;
+		}
 
 		// Create and start the user interface for heap operations
 		DHeapUserInterface userInterface = new DHeapUserInterface();
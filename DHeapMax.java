@@ -1,3 +1,14 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 
 /**
  * DHeapMax - A D-ary Max Heap implementation.
@@ -13,14 +24,30 @@
  * The heap property ensures that each parent node is greater than or equal to
  * its children.
  */
-public class DHeapMax {
+public class DHeapMax implements IntPriorityQueue {
 
-	public static final int HEAP_SIZE = 1000; // Maximum heap capacity
+	public static final int DEFAULT_CAPACITY = 16; // Initial capacity when none is given
+	public static final int MAX_CAPACITY = Integer.MAX_VALUE - 8; // Largest array the VM can allocate
 	public static final int ERROR_CODE = -99999; // Special value indicating an error
-	public static final int D_MAX_VAL = HEAP_SIZE - 1;// Maximum value of d
+	public static final int D_MAX_VAL = 999;// Maximum value of d
+	public static final int CACHE_LINE_BYTES = 64; // Size of a CPU cache line
+	public static final int CACHE_LINE_ARITY = CACHE_LINE_BYTES / Integer.BYTES; // ints per cache line
+	private static final int ARRAY_HEADER_INTS = 16 / Integer.BYTES; // int[] header with compressed class pointers
 	private int[] heap;// Array representation of the heap
+	private int base; // Index of the root in the array (0 unless cache-aligned)
+	private boolean cacheAligned; // Sibling groups start on cache line boundaries
 	private int size; // Number of elements in the heap
 	private int d; // Number of children per node (D-ary)
+	private final int initialCapacity; // Capacity the heap never shrinks below
+	private boolean shrinkOnExtract; // Release memory when the heap drains
+	private static final int TOP_K_MIN = 16; // Smaller batches use root extractions
+	private int[] topKSlots = new int[0]; // Reused working memory of extractTopK
+	private int[] topKKeys = new int[0];
+	private int[] topKCandidates = new int[0];
+	private DHeapMetrics metrics; // Set by enableMetrics, null while not instrumented
+	private DHeapArityTuner tuner; // Set by enableAutoTune, null while d is fixed
+	private boolean lazyInsert; // Inserts are appended without sifting
+	private int pending; // Elements at the end of the array that are not yet in heap order
 
 	/**
 	 * Constructs a D-ary Max Heap with a given value of 'd'.
@@ -29,21 +56,36 @@ public class DHeapMax {
 	 * @throws IllegalArgumentException If d <= 0.
 	 */
 	public DHeapMax(int d) {
+		this(d, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructs a D-ary Max Heap with a given value of 'd' and an initial
+	 * capacity. The backing array grows geometrically when it fills up, so the
+	 * capacity is only a hint for how many elements are expected.
+	 * 
+	 * @param d               The number of children per node (must be greater
+	 *                        than 0).
+	 * @param initialCapacity The number of elements to allocate room for.
+	 * @throws IllegalArgumentException If initialCapacity is out of range.
+	 */
+	public DHeapMax(int d, int initialCapacity) {
+		if (!DHeapValidator.isValidCapacity(initialCapacity)) {
+			throw new IllegalArgumentException(DHeapError.INVALID_CAPACITY.getMessage());
+		}
 		setD(d);
+		this.initialCapacity = initialCapacity;
+		this.heap = new int[initialCapacity];
 		setSize(0);
-		this.heap = new int[HEAP_SIZE];
 	}
-	
 
 
 	/** Set D */
 	private void setD(int d) {
-		if (DHeapValidator.isValidD(d)) {
-			this.d = d;
-		} else {
-			System.out.println(DHeapError.INVALID_NUMBER_RANGE.getMessage());
+		if (!DHeapValidator.isValidD(d)) {
+			throw new IllegalArgumentException(DHeapError.INVALID_D.getMessage());
 		}
-
+		this.d = d;
 	}
 
 	/** Returns the current value of 'd'. */
@@ -56,16 +98,219 @@ public class DHeapMax {
 		return this.size;
 	}
 
+	/**
+	 * Starts recording metrics for this heap (see DHeapMetrics). Calling it again
+	 * returns the same metrics.
+	 * 
+	 * @return The metrics of this heap.
+	 * @throws IllegalStateException If the VM was not started with
+	 *                               -Ddheap.metrics=true.
+	 */
+	public DHeapMetrics enableMetrics() {
+		if (!DHeapMetrics.ENABLED) {
+			throw new IllegalStateException(DHeapError.METRICS_DISABLED.getMessage());
+		}
+		if (metrics == null) {
+			metrics = new DHeapMetrics(d);
+			metrics.recordSize(size);
+		}
+		return metrics;
+	}
+
+	/** Returns the metrics of this heap, or null if they are not enabled. */
+	public DHeapMetrics getMetrics() {
+		return this.metrics;
+	}
+
+	/** Returns true if operations are recorded; a constant false without -Ddheap.metrics=true. */
+	private boolean metered() {
+		return DHeapMetrics.ENABLED && metrics != null;
+	}
+
+	/**
+	 * Lets a DHeapArityTuner choose d from the observed mix of inserts and
+	 * extracts, deciding every DHeapArityTuner.DEFAULT_WINDOW operations.
+	 * 
+	 * @return The tuner of this heap.
+	 */
+	public DHeapArityTuner enableAutoTune() {
+		return enableAutoTune(DHeapArityTuner.DEFAULT_WINDOW);
+	}
+
+	/**
+	 * Lets a DHeapArityTuner choose d from the observed mix of inserts and
+	 * extracts. A tuner that is already attached is replaced.
+	 * 
+	 * @param window The number of operations per decision.
+	 * @return The tuner of this heap.
+	 * @throws IllegalArgumentException If window is not positive.
+	 */
+	public DHeapArityTuner enableAutoTune(int window) {
+		tuner = new DHeapArityTuner(this, window);
+		return tuner;
+	}
+
+	/** Stops tuning d; the current d is kept. */
+	public void disableAutoTune() {
+		tuner = null;
+	}
+
+	/** Returns the tuner of this heap, or null if d is fixed. */
+	public DHeapArityTuner getArityTuner() {
+		return this.tuner;
+	}
+
+	/** Returns true if the heap holds no elements. */
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	/** Returns the number of elements the heap can hold before it grows. */
+	public int getCapacity() {
+		return this.heap.length - this.base;
+	}
+
+	/** Returns true if sibling groups are laid out on cache line boundaries. */
+	public boolean isCacheAligned() {
+		return this.cacheAligned;
+	}
+
+	/**
+	 * Enables or disables the cache-aligned layout.
+	 * 
+	 * With the root at index 0, the children of node i start at d * i + 1, so a
+	 * group of siblings usually straddles two cache lines. The aligned layout
+	 * leaves a few unused slots in front of the root (11 with a 16-byte array
+	 * header and 64-byte lines, for every d), so that every sibling group
+	 * starts at a multiple of d from a cache line boundary. When d is a multiple
+	 * of CACHE_LINE_ARITY (16 ints), or divides it, no sibling group straddles
+	 * two lines and the child scan of a sift touches the fewest lines possible.
+	 * 
+	 * The offset assumes that the int[] itself starts on a cache line, which is
+	 * the case for the large arrays that exceed the CPU caches (G1 places them at
+	 * the start of a region) or with -XX:ObjectAlignmentInBytes=64.
+	 * 
+	 * @param cacheAligned true to enable the aligned layout.
+	 */
+	public void setCacheAligned(boolean cacheAligned) {
+		this.cacheAligned = cacheAligned;
+		relayout();
+	}
+
+	/**
+	 * Constructs a cache-aligned D-ary Max Heap whose arity is picked from the
+	 * element width, so that every sibling group fills exactly one cache line
+	 * (d = CACHE_LINE_ARITY = 16 for 4-byte ints on 64-byte lines).
+	 * 
+	 * @param initialCapacity The number of elements to allocate room for.
+	 * @return The new heap.
+	 * @throws IllegalArgumentException If initialCapacity is out of range.
+	 */
+	public static DHeapMax withCacheLineArity(int initialCapacity) {
+		DHeapMax heap = new DHeapMax(CACHE_LINE_ARITY, initialCapacity);
+		heap.setCacheAligned(true);
+		return heap;
+	}
+
+	/** Returns true if the backing array shrinks as elements are extracted. */
+	public boolean isShrinkOnExtract() {
+		return this.shrinkOnExtract;
+	}
+
+	/**
+	 * Enables or disables shrinking of the backing array on extraction. When
+	 * enabled, the capacity is halved whenever the heap drops to a quarter of it,
+	 * but never below the initial capacity.
+	 */
+	public void setShrinkOnExtract(boolean shrinkOnExtract) {
+		this.shrinkOnExtract = shrinkOnExtract;
+	}
+
+	/** Returns true if inserts are buffered until the next read of the heap. */
+	public boolean isLazyInsert() {
+		return this.lazyInsert;
+	}
+
+	/**
+	 * Enables or disables lazy insertion. When enabled, insert only appends the
+	 * key behind the heap in O(1); the buffered keys are folded into the heap in
+	 * one batch by the next operation that needs the heap order (peek,
+	 * exctractDMax, extractTopK, printHeap, insertAll, meld, writeSnapshot) or by
+	 * flushPending. Write-heavy bursts then cost one bulk fix instead of one
+	 * sift-up per key. Disabling it flushes the buffered keys.
+	 *
+	 * @param lazyInsert true to buffer inserts.
+	 */
+	public void setLazyInsert(boolean lazyInsert) {
+		this.lazyInsert = lazyInsert;
+		if (!lazyInsert) {
+			flushPending();
+		}
+	}
+
+	/** Returns the number of lazily inserted keys that are not yet in heap order. */
+	public int getPending() {
+		return this.pending;
+	}
+
+	/**
+	 * Folds the lazily inserted keys into the heap (see setLazyInsert). Does
+	 * nothing if no key is pending.
+	 */
+	public void flushPending() {
+		if (pending > 0) {
+			int kept = size - pending;
+			pending = 0;
+			fixAppended(kept);
+		}
+	}
+
 	/**
 	 * Updates the size of the heap (used for testing). Ensures the size remains
 	 * within valid bounds.
 	 */
 	public void setSize(int newSize) {
-		if (newSize < 0 || newSize > HEAP_SIZE) {
+		if (newSize < 0 || newSize > getCapacity()) {
 			throw new IllegalArgumentException(DHeapError.INVALID_HEAP_SIZE.getMessage());
 
 		}
+		if (newSize < size) {
+			pending = Math.max(0, pending - (size - newSize)); // The pending keys are cut off first
+		}
 		this.size = newSize;
+		if (metered()) {
+			metrics.recordSize(newSize);
+		}
+	}
+
+	/**
+	 * Makes sure the heap can hold at least minCapacity elements without growing
+	 * again. The capacity grows by half of its current value (or more if needed),
+	 * so a sequence of inserts costs amortized O(1) copying per element.
+	 * 
+	 * @param minCapacity The number of elements the heap must be able to hold.
+	 * @throws IllegalArgumentException If minCapacity exceeds MAX_CAPACITY.
+	 */
+	public void ensureCapacity(int minCapacity) {
+		if (minCapacity <= getCapacity()) {
+			return;
+		}
+		if (!DHeapValidator.isValidCapacity(minCapacity) || minCapacity > MAX_CAPACITY - base) {
+			throw new IllegalArgumentException(DHeapError.HEAP_OVERFLOW.getMessage());
+		}
+
+		heap = Arrays.copyOf(heap, DHeapArrays.newCapacity(heap.length, base + minCapacity, MAX_CAPACITY));
+	}
+
+	/**
+	 * Shrinks the backing array so that its capacity equals the current size (or
+	 * one element, for an empty heap).
+	 */
+	public void trimToSize() {
+		int newLength = base + Math.max(size, 1);
+		if (newLength < heap.length) {
+			heap = Arrays.copyOf(heap, newLength);
+		}
 	}
 
 	/**
@@ -73,29 +318,38 @@ public class DHeapMax {
 	 * reconstructs the heap to maintain the correct d-ary structure after changing
 	 * the number of children per node.
 	 * 
-	 * The current heap elements are converted into a temporary string array before
-	 * rebuilding to ensure consistency.
+	 * The existing elements are re-heapified in place under the new arity, so no
+	 * memory is allocated.
 	 * 
 	 * @param newD The new value of 'd'.
 	 * @throws IllegalArgumentException If newD is out of valid range.
 	 */
 	public void changeD(int newD) {
 
-		// Validate newD before proceeding
-		if (!DHeapValidator.isValidD(newD)) {
-			System.out.println(DHeapError.INVALID_D.getMessage());
-			return; // Stop execution if newD is invalid
-		}
-
-		this.d = newD; // Only change if valid
+		long start = metered() ? System.nanoTime() : 0;
+		setD(newD); // Throws before anything changes if newD is invalid
 
-		// Convert current heap elements to a String[] array
-		String[] heapElements = new String[size];
-		for (int i = 0; i < size; i++) {
-			heapElements[i] = String.valueOf(heap[i]); // Convert int to String
+		if (cacheAligned) {
+			relayout(); // The padding in front of the root depends on d
 		}
+		heapify(); // Rebuild heap to maintain the new structure
+		if (metered()) {
+			metrics.recordChangeD(newD, System.nanoTime() - start);
+		}
+	}
 
-		buildDHeap(heapElements); // Rebuild heap to maintain the new structure
+	/**
+	 * Returns the maximum element (root) without removing it.
+	 * 
+	 * @return The maximum element.
+	 * @throws IllegalStateException If the heap is empty.
+	 */
+	public int peek() {
+		if (!DHeapValidator.canExtract(size)) {
+			throw new IllegalStateException(DHeapError.HEAP_UNDERFLOW.getMessage());
+		}
+		flushPending();
+		return heap[base];
 	}
 
 	/**
@@ -104,14 +358,249 @@ public class DHeapMax {
 	 * @return The maximum element or ERROR_CODE if the heap is empty.
 	 */
 	public int exctractDMax() {
-		int max = heap[0]; // Store the max element
-		heap[0] = heap[size - 1]; // Replace root with last element
+		long start = metered() ? System.nanoTime() : 0;
+		flushPending();
+		int max = heap[base]; // Store the max element
+		heap[base] = heap[base + size - 1]; // Replace root with last element
 		setSize(size - 1);
-		heapifyDown(0); // Restore heap property
+		int at = heapifyDown(0); // Restore heap property
+		if (shrinkOnExtract) {
+			shrinkIfSparse();
+		}
+		if (metered()) {
+			metrics.recordExtract(System.nanoTime() - start);
+		}
+		if (tuner != null) {
+			tuner.afterExtract(at);
+		}
 		return max;
 
 	}
 
+	/**
+	 * Extracts the maximum element (root) from the heap, like exctractDMax, but
+	 * throws on an empty heap as required by IntPriorityQueue.
+	 * 
+	 * @return The maximum element.
+	 * @throws IllegalStateException If the heap is empty.
+	 */
+	@Override
+	public int extractMax() {
+		if (!DHeapValidator.canExtract(getSize())) {
+			throw new IllegalStateException(DHeapError.HEAP_UNDERFLOW.getMessage());
+		}
+		return exctractDMax();
+	}
+
+	/**
+	 * Inserts a batch of keys into the heap.
+	 * 
+	 * Small batches are inserted one by one with heapifyUp. Large batches are
+	 * appended as a whole and only the appended nodes and their ancestors are
+	 * re-heapified bottom-up, which is linear in the batch size no matter how the
+	 * keys are ordered. No memory is allocated unless the heap has to grow.
+	 * 
+	 * @param keys The source array.
+	 * @param off  Index of the first key to insert.
+	 * @param len  Number of keys to insert.
+	 * @throws IndexOutOfBoundsException If the range is outside of keys.
+	 * @throws IllegalArgumentException  If the heap would exceed its maximum
+	 *                                   capacity.
+	 */
+	public void insertAll(int[] keys, int off, int len) {
+		Objects.checkFromIndexSize(off, len, keys.length);
+		if ((long) size + len > MAX_CAPACITY) {
+			throw new IllegalArgumentException(DHeapError.HEAP_OVERFLOW.getMessage());
+		}
+		flushPending();
+		long start = metered() ? System.nanoTime() : 0;
+		int oldSize = size;
+		int newSize = size + len;
+		ensureCapacity(newSize);
+		System.arraycopy(keys, off, heap, base + oldSize, len);
+		setSize(newSize);
+
+		// heapifyUp costs up to 'height' levels per key, while the bottom-up rebuild
+		// costs about d comparisons per key plus d * height per ancestor level
+		if (len <= (long) d * DHeapArrays.height(newSize, d)) {
+			for (int i = oldSize; i < newSize; i++) {
+				heapifyUp(i);
+			}
+		} else {
+			DHeapArrays.heapifyAppended(heap, base, newSize, d, oldSize);
+		}
+		if (metered()) {
+			metrics.recordInserts(len, System.nanoTime() - start);
+		}
+		if (tuner != null) {
+			tuner.afterInserts(len); // After the loop: the tuner may change d
+		}
+	}
+
+	/**
+	 * Moves all elements of another heap into this one; the other heap is left
+	 * empty.
+	 * 
+	 * The elements of the smaller heap are appended behind those of the larger
+	 * one, whose array is already in heap order, so only the appended part has to
+	 * be fixed. If the other heap is the larger one and has the same arity, this
+	 * heap continues from a copy of its array. The fix is chosen by the size
+	 * ratio, see fixAppended.
+	 * 
+	 * @param other The heap to take the elements from.
+	 * @throws IllegalArgumentException If other is this heap, or the heap would
+	 *                                  exceed its maximum capacity.
+	 */
+	public void meld(DHeapMax other) {
+		if (other == this) {
+			throw new IllegalArgumentException(DHeapError.MELD_WITH_ITSELF.getMessage());
+		}
+		int otherSize = other.size;
+		if (otherSize == 0) {
+			return;
+		}
+		if ((long) size + otherSize > MAX_CAPACITY) {
+			throw new IllegalArgumentException(DHeapError.HEAP_OVERFLOW.getMessage());
+		}
+		flushPending();
+		other.flushPending();
+		long start = metered() ? System.nanoTime() : 0;
+		int newSize = size + otherSize;
+		int kept; // Number of leading elements that already form a valid heap
+		if (otherSize > size && other.d == d) {
+			// Keep the larger heap's order: copy it and append this heap's elements
+			int[] melded = new int[base + Math.max(newSize, getCapacity())];
+			System.arraycopy(other.heap, other.base, melded, base, otherSize);
+			System.arraycopy(heap, base, melded, base + otherSize, size);
+			heap = melded;
+			kept = otherSize;
+		} else {
+			ensureCapacity(newSize);
+			System.arraycopy(other.heap, other.base, heap, base + size, otherSize);
+			kept = size;
+		}
+		setSize(newSize);
+		other.setSize(0);
+		fixAppended(kept);
+		if (metered()) {
+			metrics.recordInserts(otherSize, System.nanoTime() - start);
+		}
+		if (tuner != null) {
+			tuner.afterInserts(otherSize);
+		}
+	}
+
+	/**
+	 * Restores the heap property after elements were appended behind a valid
+	 * heap of 'kept' elements, choosing the fix by the size ratio: a few
+	 * appended elements are sifted up one by one; a tail smaller than the kept
+	 * heap is re-heapified bottom-up over its ancestors only (heapifyAppended);
+	 * a tail at least as large as the kept heap covers nearly every parent
+	 * anyway and the whole heap is rebuilt.
+	 * 
+	 * @param kept Number of leading elements that form a valid heap.
+	 */
+	private void fixAppended(int kept) {
+		int appended = size - kept;
+		if (appended <= d || appended <= (long) d * DHeapArrays.height(size, d)) { // Up to d keys skip computing the height
+			for (int i = kept; i < size; i++) {
+				heapifyUp(i);
+			}
+		} else if (appended < kept) {
+			DHeapArrays.heapifyAppended(heap, base, size, d, kept);
+		} else {
+			heapify();
+		}
+	}
+
+	/**
+	 * Extracts the k largest elements (or all of them, if the heap holds fewer)
+	 * in descending order.
+	 * 
+	 * Instead of k root extractions, the k maxima are found with a small
+	 * candidate heap that walks the top of the tree. They are then removed in one
+	 * pass: their slots are refilled from the end of the array and only those
+	 * slots are re-heapified, children before parents. Working memory is kept
+	 * between calls, so repeated calls do not allocate. For very small k the walk
+	 * does not pay off and plain root extractions are used.
+	 * 
+	 * @param k   Number of elements to extract.
+	 * @param out Receives the extracted elements, largest first.
+	 * @return The number of elements extracted.
+	 * @throws IndexOutOfBoundsException If out is too small.
+	 */
+	public int extractTopK(int k, int[] out) {
+		flushPending();
+		int count = Math.max(0, Math.min(k, size));
+		Objects.checkFromIndexSize(0, count, out.length);
+		if (count < TOP_K_MIN) {
+			// Too few elements to pay for the candidate walk
+			for (int j = 0; j < count; j++) {
+				out[j] = exctractDMax();
+			}
+			return count;
+		}
+		long start = metered() ? System.nanoTime() : 0;
+
+		int candidates = Math.max(DHeapArrays.selectTopCandidates(size, d, count), count);
+		if (topKCandidates.length < candidates) {
+			topKSlots = new int[count];
+			topKKeys = new int[candidates];
+			topKCandidates = new int[candidates];
+		} else if (topKSlots.length < count) {
+			topKSlots = new int[count];
+		}
+		int[] selected = topKSlots;
+		DHeapArrays.selectTop(heap, base, size, d, count, out, selected, topKKeys, topKCandidates);
+
+		// Mark the selected slots that lie in the tail, which is about to be cut off
+		int newSize = size - count;
+		int[] inTail = topKKeys; // Reused, the candidate keys are no longer needed
+		Arrays.fill(inTail, 0, count, 0);
+		for (int j = 0; j < count; j++) {
+			if (selected[j] >= newSize) {
+				inTail[selected[j] - newSize] = 1;
+			}
+		}
+		setSize(newSize);
+
+		// Walk the selection backwards so that every slot is fixed after its
+		// children: fill each hole with an unselected tail element and sift it down
+		int tail = count - 1;
+		for (int j = count - 1; j >= 0; j--) {
+			int slot = selected[j];
+			if (slot < newSize) {
+				while (inTail[tail] != 0) {
+					tail--;
+				}
+				heap[base + slot] = heap[base + newSize + tail--];
+				heapifyDown(slot);
+			}
+		}
+		if (shrinkOnExtract) {
+			shrinkIfSparse();
+		}
+		if (metered()) {
+			metrics.recordExtracts(count, System.nanoTime() - start);
+		}
+		if (tuner != null) {
+			tuner.afterExtracts(count);
+		}
+		return count;
+	}
+
+	/**
+	 * Halves the backing array once the heap uses a quarter of it or less. The gap
+	 * between the grow and shrink thresholds keeps alternating inserts and
+	 * extracts from reallocating on every call.
+	 */
+	private void shrinkIfSparse() {
+		int half = getCapacity() >> 1;
+		if (size <= (getCapacity() >> 2) && half >= initialCapacity) {
+			heap = Arrays.copyOf(heap, base + half);
+		}
+	}
+
 	/**
 	 * Prints the heap structure in a hierarchical format.
 	 * 
@@ -120,26 +609,38 @@ public class DHeapMax {
 	 * level starts based on the power of `d`.
 	 */
 	public void printHeap() {
+		printHeap(System.out);
+	}
+
+	/**
+	 * Prints the heap structure level by level to the given stream, e.g. a
+	 * buffered stream that is flushed once at the end of a batch.
+	 * 
+	 * @param out The stream to print to.
+	 */
+	public void printHeap(PrintStream out) {
+		flushPending();
 	    if (DHeapValidator.isEmptyHeap(this.size)) {
-	        System.out.println(DHeapError.EMPTY_HEAP.getMessage());
+	        out.println(DHeapError.EMPTY_HEAP.getMessage());
 	        return;
 	    }
 	    int nodesThisLevel = 1;// expected nodes in current level (1 for lvl 0)
 	    int count = 0;   // counter for nodes printed on the current level
 
-	    System.out.println("d-ary Heap: ");
+	    out.println("d-ary Heap: ");
 	    for (int i = 0; i < size; i++) {
-	    	System.out.print(heap[i] + " ");
+	    	out.print(heap[base + i]);
+	    	out.print(' ');
 	        count++;
 	        // When done print all the nodes require in this lvl
 	        if (count == nodesThisLevel) {
-	            System.out.println(); // move to next line
+	            out.println(); // move to next line
 	            count = 0;           // reset counter
 	            nodesThisLevel *= d; // next level should have d times more nodes
 
 	        }
 	    }
-	    System.out.println();
+	    out.println();
 	}
 
 
@@ -153,65 +654,32 @@ public class DHeapMax {
 	 * @param value The new value to assign to the specified index.
 	 */
 	private void setHeapElement(int index, int value) {
-		if (index >= 0 && index < HEAP_SIZE) {
-			heap[index] = value;// Ensure index is within bounds
+		if (index >= 0 && index < getCapacity()) {
+			heap[base + index] = value;// Ensure index is within bounds
 		}
 	}
 
-	/**
-	 * Returns the index of the parent node.
-	 * 
-	 * @param i Index of the child node.
-	 * @return Parent index.
-	 */
-	private int parent(int i) {
-		return (i - 1) / this.d;
-	}
-
-	/**
-	 * Returns the index of the k-th child of a node.
-	 * 
-	 * @param i Index of the parent node.
-	 * @param k Child number (0-based).
-	 * @return Index of the child or ERROR_CODE if out of bounds.
-	 */
-	private int child(int i, int k) {
-		int index = this.d * i + k + 1;
-		return (index < size) ? index : ERROR_CODE;
-	}
-
 	/**
 	 * Restores the max-heap property by moving an element down the tree. Ensures
 	 * that the node at index 'i' is greater than its children.
 	 * 
 	 * @param i Index of the node to heapify down.
+	 * @return The index where the element came to rest.
 	 */
-	private void heapifyDown(int i) {
-
-		int maxIndex = i; // Assume the current node is the largest
-
-		// Find the largest child
-		for (int k = 0; k < d; k++) {
-			int childIndex = child(i, k);
-			if (childIndex != ERROR_CODE && heap[childIndex] > heap[maxIndex]) {
-				maxIndex = childIndex;
-			}
-
-		}
-
-		// Swap if necessary and continue heapifying
-		if (maxIndex != i) {
-			swap(i, maxIndex);
-			heapifyDown(maxIndex);
+	private int heapifyDown(int i) {
+		int to = DHeapArrays.siftDown(heap, base, size, d, i);
+		if (metered()) {
+			metrics.recordSiftDown(i, to, size, d);
 		}
-
+		return to;
 	}
 
 	/**
 	 * Inserts a new key into the heap and restores the heap property.
 	 * 
 	 * The key is initially placed at the next available position in the heap, and
-	 * the heap is restored by moving the key up the tree if necessary.
+	 * the heap is restored by moving the key up the tree if necessary. In lazy
+	 * insert mode the key is only appended (see setLazyInsert).
 	 * 
 	 * @param key The value to insert into the heap.
 	 * @throws RuntimeException If the heap reaches its maximum capacity.
@@ -220,10 +688,29 @@ public class DHeapMax {
 		if (!DHeapValidator.canInsert(size)) {
 			throw new IllegalArgumentException(DHeapError.HEAP_OVERFLOW.getMessage());
 		}
-
-		heap[size] = key; // Insert key at Last position
-		heapifyUp(size);// Restore heap property
+		long start = metered() ? System.nanoTime() : 0;
+		ensureCapacity(size + 1);
+
+		heap[base + size] = key; // Insert key at Last position
+		if (lazyInsert) {
+			setSize(size + 1);
+			pending++; // Sifted in by the next flushPending
+			if (metered()) {
+				metrics.recordInsert(System.nanoTime() - start);
+			}
+			if (tuner != null) {
+				tuner.afterInserts(1); // A change of d heapifies the pending keys too
+			}
+			return;
+		}
+		int at = heapifyUp(size);// Restore heap property
 		setSize(size + 1);
+		if (metered()) {
+			metrics.recordInsert(System.nanoTime() - start);
+		}
+		if (tuner != null) {
+			tuner.afterInsert(size - 1, at);
+		}
 
 	}
 
@@ -231,12 +718,14 @@ public class DHeapMax {
 	 * Moves an element up the tree to restore the heap property.
 	 * 
 	 * @param i Index of the inserted element.
+	 * @return The index where the element came to rest.
 	 */
-	private void heapifyUp(int i) {
-		while (i > 0 && heap[parent(i)] < heap[i]) {
-			swap(i, parent(i));// Swap
-			i = parent(i); // Move up to the parent's index
+	private int heapifyUp(int i) {
+		int to = DHeapArrays.siftUp(heap, base, d, i);
+		if (metered()) {
+			metrics.recordSiftUp(i, to, d);
 		}
+		return to;
 	}
 
 	/**
@@ -250,27 +739,230 @@ public class DHeapMax {
 	 * @param parts An array of string representations of integer values.
 	 */
 	public void buildDHeap(String[] parts) {
+		long start = metered() ? System.nanoTime() : 0;
+		ensureCapacity(parts.length);
+
 		// Parse the value to integers
 		for (int i = 0; i < parts.length; i++) {
-			if (i < HEAP_SIZE && parts != null) {
-				setHeapElement(i, Integer.parseInt(parts[i]));
-			}
+			setHeapElement(i, Integer.parseInt(parts[i]));
 		}
 
 		// Update heap size
 		setSize(parts.length);
 
-		// Start heapifying from the last non-leaf node down to the root
-		for (int i = parent(size - 1); i >= 0; i--) {
-			heapifyDown(i);
+		heapify();
+		if (metered()) {
+			metrics.recordBuild(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Builds the heap from the values of a successful DHeapInputParser parse.
+	 * The heap takes over the parser's array instead of copying it, so the
+	 * values are parsed straight into the heap's storage.
+	 * 
+	 * @param parser A parser whose last parse succeeded.
+	 */
+	public void buildDHeap(DHeapInputParser parser) {
+		long start = metered() ? System.nanoTime() : 0;
+		int count = parser.getCount();
+		int[] values = parser.takeValues();
+		if (values.length == 0) {
+			values = new int[DEFAULT_CAPACITY];
+		}
+		heap = values;
+		base = 0;
+		setSize(count);
+		relayout(); // Moves the values behind the padding if the layout is aligned
+
+		heapify();
+		if (metered()) {
+			metrics.recordBuild(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Converts a range of an unordered int array into a max heap, replacing the
+	 * current contents. The values are copied in bulk and heapified bottom-up, so
+	 * no memory is allocated unless the heap has to grow.
+	 * 
+	 * @param values The source array.
+	 * @param from   Index of the first value to use.
+	 * @param len    Number of values to use.
+	 * @throws IndexOutOfBoundsException If the range is outside of values.
+	 */
+	public void buildDHeap(int[] values, int from, int len) {
+		Objects.checkFromIndexSize(from, len, values.length);
+		long start = metered() ? System.nanoTime() : 0;
+		ensureCapacity(len);
+
+		System.arraycopy(values, from, heap, base, len);
+		setSize(len);
+
+		heapify();
+		if (metered()) {
+			metrics.recordBuild(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Writes a binary snapshot of the heap: d, the size and the array in heap
+	 * order, followed by a CRC32 checksum. See DHeapSnapshot for the format.
+	 * 
+	 * @param out        The stream to write to; it is not closed.
+	 * @param compressed true to store the differences between consecutive
+	 *                   elements as varints, which is smaller when the values
+	 *                   are close to each other.
+	 * @throws IOException If writing fails.
+	 */
+	public void writeSnapshot(OutputStream out, boolean compressed) throws IOException {
+		writeSnapshot(Channels.newChannel(out), compressed);
+	}
+
+	/**
+	 * Writes a binary snapshot of the heap to a channel such as a FileChannel.
+	 * 
+	 * @param out        The channel to write to; it is not closed.
+	 * @param compressed true for the delta/varint encoding.
+	 * @throws IOException If writing fails.
+	 */
+	public void writeSnapshot(WritableByteChannel out, boolean compressed) throws IOException {
+		flushPending();
+		int flags = (compressed ? DHeapSnapshot.COMPRESSED : 0) | (cacheAligned ? DHeapSnapshot.CACHE_ALIGNED : 0);
+		DHeapSnapshot.write(out, heap, base, size, d, flags);
+	}
+
+	/**
+	 * Restores a heap from a snapshot written by writeSnapshot. The elements are
+	 * copied in heap order, so no heapify is needed; the order is checked in one
+	 * linear pass instead, since a well-formed file need not come from
+	 * writeSnapshot.
+	 * 
+	 * @param in The stream to read from; it is not closed.
+	 * @return The restored heap.
+	 * @throws IOException If reading fails, the snapshot is corrupt or not in
+	 *                     heap order.
+	 */
+	public static DHeapMax readSnapshot(InputStream in) throws IOException {
+		return readSnapshot(Channels.newChannel(in));
+	}
+
+	/**
+	 * Restores a heap from a snapshot read from a channel such as a FileChannel.
+	 * 
+	 * @param in The channel to read from; it is not closed.
+	 * @return The restored heap.
+	 * @throws IOException If reading fails, the snapshot is corrupt or not in
+	 *                     heap order.
+	 */
+	public static DHeapMax readSnapshot(ReadableByteChannel in) throws IOException {
+		DHeapSnapshot.Reader reader = new DHeapSnapshot.Reader(in);
+		DHeapMax restored = new DHeapMax(reader.d, Math.max(reader.size, 1));
+		restored.setCacheAligned((reader.flags & DHeapSnapshot.CACHE_ALIGNED) != 0);
+		reader.readElements(restored.heap, restored.base);
+		reader.verify();
+		if (!DHeapArrays.isHeap(restored.heap, restored.base, reader.size, reader.d)) {
+			throw new IOException(DHeapError.SNAPSHOT_NOT_HEAP.getMessage());
+		}
+		restored.setSize(reader.size);
+		return restored;
+	}
+
+	/**
+	 * Parses an array of string numbers in parallel and builds the heap with the
+	 * parallel bottom-up heapify of the common ForkJoinPool.
+	 * 
+	 * @param parts An array of string representations of integer values.
+	 * @throws NumberFormatException If a part is not an integer.
+	 */
+	public void buildDHeapParallel(String[] parts) {
+		long start = metered() ? System.nanoTime() : 0;
+		ensureCapacity(parts.length);
+		int[] a = heap;
+		int offset = base;
+		IntStream.range(0, parts.length).parallel().forEach(i -> a[offset + i] = Integer.parseInt(parts[i]));
+		setSize(parts.length);
+		pending = 0;
+		DHeapArrays.parallelHeapify(heap, base, size, d, ForkJoinPool.commonPool());
+		if (metered()) {
+			metrics.recordBuild(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Builds the heap from a range of unordered values like buildDHeap, but
+	 * heapifies disjoint subtrees concurrently in the common ForkJoinPool.
+	 * 
+	 * @param values The source array.
+	 * @param from   Index of the first value to use.
+	 * @param len    Number of values to use.
+	 * @throws IndexOutOfBoundsException If the range is outside of values.
+	 */
+	public void buildDHeapParallel(int[] values, int from, int len) {
+		buildDHeapParallel(values, from, len, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Builds the heap from a range of unordered values, heapifying disjoint
+	 * subtrees concurrently in the given pool. Heaps smaller than
+	 * DHeapArrays.PARALLEL_MIN_SIZE are built sequentially.
+	 * 
+	 * @param values The source array.
+	 * @param from   Index of the first value to use.
+	 * @param len    Number of values to use.
+	 * @param pool   The pool that runs the sifts.
+	 * @throws IndexOutOfBoundsException If the range is outside of values.
+	 */
+	public void buildDHeapParallel(int[] values, int from, int len, ForkJoinPool pool) {
+		Objects.checkFromIndexSize(from, len, values.length);
+		long start = metered() ? System.nanoTime() : 0;
+		ensureCapacity(len);
+
+		System.arraycopy(values, from, heap, base, len);
+		setSize(len);
+
+		pending = 0;
+		DHeapArrays.parallelHeapify(heap, base, size, d, pool); // Timed, but the sifts are not counted
+		if (metered()) {
+			metrics.recordBuild(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Restores the heap property over the whole array using Floyd's bottom-up
+	 * heapify, starting from the last non-leaf node down to the root.
+	 */
+	private void heapify() {
+		pending = 0; // Every element is put in heap order
+		if (metered()) {
+			metrics.heapify(heap, base, size, d);
+		} else {
+			DHeapArrays.heapify(heap, base, size, d);
 		}
 	}
 
-	/** Swaps two elements in the heap array. */
-	private void swap(int i, int j) {
-		int temp = heap[i];
-		heap[i] = heap[j];
-		heap[j] = temp;
+	/**
+	 * Moves the elements to the root offset required by the current layout and
+	 * arity, growing the array if the offset got larger.
+	 */
+	private void relayout() {
+		int newBase = 0;
+		if (cacheAligned) {
+			// The children of node i start at base + d * i + 1: the smallest base that
+			// puts base + 1 on a line boundary aligns every sibling group, whatever d
+			int firstChild = ARRAY_HEADER_INTS + 1; // Offset of base + 1 with base = 0
+			newBase = (CACHE_LINE_ARITY - firstChild % CACHE_LINE_ARITY) % CACHE_LINE_ARITY;
+		}
+		if (newBase == base) {
+			return;
+		}
+
+		int capacity = getCapacity();
+		if (newBase > base) {
+			heap = Arrays.copyOf(heap, newBase + capacity);
+		}
+		System.arraycopy(heap, base, heap, newBase, size);
+		base = newBase;
 	}
 
 }
@@ -0,0 +1,344 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * DHeapMerge - K-way merge and external sort on top of the D-ary max heap.
+ *
+ * Every input run must be sorted in descending order (highest priority first)
+ * and the merged output is in descending order as well. The heads of the runs
+ * are kept in a KeyValueDHeapMax (key = head, value = run index); each output
+ * element costs one replaceMax, i.e. one sift of O(d log_d K) comparisons.
+ *
+ * Files hold raw little-endian ints without a header. sortFile sorts a file
+ * larger than memory: it cuts the input into runs that fit in memory, sorts
+ * each with DHeapSort, spills it to a temporary file and merges the runs.
+ *
+ * The read buffers of one file merge share MERGE_BUFFER_BYTES: every run gets
+ * an equal share of it, between MIN_BUFFER_BYTES and BUFFER_BYTES, and
+ * MAX_FAN_IN is the number of runs the budget holds at the smallest share.
+ */
+public final class DHeapMerge {
+
+	public static final int DEFAULT_D = 4; // Arity of the merge heap when none is given
+	public static final int MERGE_BUFFER_BYTES = 4 << 20; // Read buffers of one file merge together
+	private static final int BUFFER_BYTES = 64 * 1024; // Largest read buffer per run, and the write buffer
+	private static final int MIN_BUFFER_BYTES = 4 * 1024; // Smallest read buffer per run
+	public static final int MAX_FAN_IN = MERGE_BUFFER_BYTES / MIN_BUFFER_BYTES; // Runs merged at once by sortFile
+
+	/** Utility class, not instantiable. */
+	private DHeapMerge() {
+	}
+
+	/**
+	 * Merges sorted runs lazily: the runs are advanced only as far as the
+	 * returned iterator is consumed.
+	 *
+	 * @param d    The arity of the merge heap.
+	 * @param runs The runs, each in descending order.
+	 * @return An iterator over all elements of all runs in descending order.
+	 * @throws IllegalArgumentException If d is out of valid range.
+	 */
+	public static PrimitiveIterator.OfInt merge(int d, List<? extends PrimitiveIterator.OfInt> runs) {
+		return new MergeIterator(d, runs);
+	}
+
+	/**
+	 * Merges sorted runs lazily.
+	 *
+	 * @param d    The arity of the merge heap.
+	 * @param runs The runs, each in descending order.
+	 * @return An iterator over all elements of all runs in descending order.
+	 * @throws IllegalArgumentException If d is out of valid range.
+	 */
+	public static PrimitiveIterator.OfInt merge(int d, PrimitiveIterator.OfInt... runs) {
+		return new MergeIterator(d, Arrays.asList(runs));
+	}
+
+	/**
+	 * Merges the remaining elements of sorted buffers into an output buffer.
+	 *
+	 * @param d    The arity of the merge heap.
+	 * @param runs The runs, each in descending order from its position to its
+	 *             limit; their positions are advanced.
+	 * @param out  The output buffer.
+	 * @throws java.nio.BufferOverflowException If out has too little room.
+	 */
+	public static void merge(int d, IntBuffer[] runs, IntBuffer out) {
+		List<PrimitiveIterator.OfInt> iterators = new ArrayList<>(runs.length);
+		for (IntBuffer run : runs) {
+			iterators.add(new BufferRun(run));
+		}
+		PrimitiveIterator.OfInt merged = merge(d, iterators);
+		while (merged.hasNext()) {
+			out.put(merged.nextInt());
+		}
+	}
+
+	/**
+	 * Merges sorted run files into one sorted file. The read buffers take
+	 * MERGE_BUFFER_BYTES in total for up to MAX_FAN_IN runs, and
+	 * MIN_BUFFER_BYTES per run beyond that.
+	 *
+	 * @param d    The arity of the merge heap.
+	 * @param runs The run files, each in descending order.
+	 * @param out  The output file; it is replaced if it exists.
+	 * @throws IOException If a file cannot be read or written.
+	 */
+	public static void mergeFiles(int d, List<Path> runs, Path out) throws IOException {
+		List<FileRun> readers = new ArrayList<>(runs.size());
+		int bufferBytes = Math.max(MIN_BUFFER_BYTES,
+				Math.min(BUFFER_BYTES, MERGE_BUFFER_BYTES / Math.max(1, runs.size())));
+		try (IntWriter writer = new IntWriter(out)) {
+			for (Path run : runs) {
+				readers.add(new FileRun(run, bufferBytes));
+			}
+			PrimitiveIterator.OfInt merged = merge(d, readers);
+			while (merged.hasNext()) {
+				writer.write(merged.nextInt());
+			}
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		} finally {
+			for (FileRun reader : readers) {
+				reader.channel.close();
+			}
+		}
+	}
+
+	/**
+	 * Sorts a file of ints in descending order with bounded memory. Runs of
+	 * runLength elements are sorted in memory with DHeapSort and spilled to
+	 * temporary files in tempDir, which are then merged MAX_FAN_IN at a time.
+	 *
+	 * @param in        The input file.
+	 * @param out       The output file; it is replaced if it exists.
+	 * @param runLength The number of elements sorted in memory at once.
+	 * @param d         The arity of the run heaps and the merge heap.
+	 * @param tempDir   The directory for the temporary run files.
+	 * @throws IllegalArgumentException If runLength or d is out of range.
+	 * @throws IOException              If a file cannot be read or written.
+	 */
+	public static void sortFile(Path in, Path out, int runLength, int d, Path tempDir) throws IOException {
+		if (!DHeapValidator.isValidCapacity(runLength)) {
+			throw new IllegalArgumentException(DHeapError.INVALID_CAPACITY.getMessage());
+		}
+		List<Path> runs = new ArrayList<>();
+		List<Path> next = new ArrayList<>(); // Runs written by the current merge pass
+		try {
+			spillRuns(in, runLength, d, tempDir, runs);
+			// Merge passes until one pass can merge all remaining runs
+			while (runs.size() > MAX_FAN_IN) {
+				next = new ArrayList<>();
+				for (int i = 0; i < runs.size(); i += MAX_FAN_IN) {
+					List<Path> group = runs.subList(i, Math.min(i + MAX_FAN_IN, runs.size()));
+					Path merged = Files.createTempFile(tempDir, "dheap-run", ".bin");
+					next.add(merged);
+					mergeFiles(d, group, merged);
+					for (Path run : group) {
+						Files.delete(run);
+					}
+				}
+				runs = next;
+			}
+			mergeFiles(d, runs, out);
+		} finally {
+			for (Path run : runs) {
+				Files.deleteIfExists(run);
+			}
+			for (Path run : next) {
+				Files.deleteIfExists(run);
+			}
+		}
+	}
+
+	/**
+	 * Reads the input in runs of runLength elements, sorts each run in place
+	 * with DHeapSort, reverses it to descending order and writes it to a new
+	 * temporary file.
+	 */
+	private static void spillRuns(Path in, int runLength, int d, Path tempDir, List<Path> runs) throws IOException {
+		int[] run = new int[runLength];
+		try (FileRun reader = new FileRun(in, BUFFER_BYTES)) {
+			while (reader.hasNext()) {
+				int len = 0;
+				while (len < runLength && reader.hasNext()) {
+					run[len++] = reader.nextInt();
+				}
+				DHeapSort.sort(run, 0, len, d, true);
+				for (int i = 0, j = len - 1; i < j; i++, j--) {
+					int t = run[i];
+					run[i] = run[j];
+					run[j] = t;
+				}
+				Path file = Files.createTempFile(tempDir, "dheap-run", ".bin");
+				runs.add(file);
+				try (IntWriter writer = new IntWriter(file)) {
+					writer.write(run, 0, len);
+				}
+			}
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/** Lazily merges runs with a KeyValueDHeapMax of their heads. */
+	private static final class MergeIterator implements PrimitiveIterator.OfInt {
+		private final PrimitiveIterator.OfInt[] runs;
+		private final KeyValueDHeapMax heads;
+
+		MergeIterator(int d, List<? extends PrimitiveIterator.OfInt> runs) {
+			this.runs = runs.toArray(new PrimitiveIterator.OfInt[0]);
+			this.heads = new KeyValueDHeapMax(d, Math.max(this.runs.length, 1));
+			for (int i = 0; i < this.runs.length; i++) {
+				if (this.runs[i].hasNext()) {
+					heads.insert(this.runs[i].nextInt(), i);
+				}
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return !heads.isEmpty();
+		}
+
+		@Override
+		public int nextInt() {
+			if (heads.isEmpty()) {
+				throw new NoSuchElementException();
+			}
+			int max = heads.peekKey();
+			int run = heads.peekValue();
+			if (runs[run].hasNext()) {
+				heads.replaceMax(runs[run].nextInt(), run); // The run stays in the heap
+			} else {
+				heads.extractMaxValue();
+			}
+			return max;
+		}
+	}
+
+	/** Iterates over the remaining elements of an IntBuffer. */
+	private static final class BufferRun implements PrimitiveIterator.OfInt {
+		private final IntBuffer buffer;
+
+		BufferRun(IntBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return buffer.hasRemaining();
+		}
+
+		@Override
+		public int nextInt() {
+			return buffer.get();
+		}
+	}
+
+	/**
+	 * Iterates over the ints of a file through a buffered FileChannel. I/O errors
+	 * are thrown as UncheckedIOException.
+	 */
+	private static final class FileRun implements PrimitiveIterator.OfInt, AutoCloseable {
+		private final FileChannel channel;
+		private final ByteBuffer buffer;
+
+		FileRun(Path file, int bufferBytes) throws IOException {
+			this.channel = FileChannel.open(file, StandardOpenOption.READ);
+			this.buffer = ByteBuffer.allocateDirect(bufferBytes).order(ByteOrder.LITTLE_ENDIAN);
+			buffer.limit(0);
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (buffer.remaining() >= Integer.BYTES) {
+				return true;
+			}
+			try {
+				buffer.compact();
+				while (buffer.position() < Integer.BYTES && channel.read(buffer) >= 0) {
+					// Read until at least one int is buffered or the file ends
+				}
+				buffer.flip();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			return buffer.remaining() >= Integer.BYTES; // A trailing partial int is ignored
+		}
+
+		@Override
+		public int nextInt() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			return buffer.getInt();
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+	}
+
+	/** Writes ints to a file through a buffered FileChannel. */
+	private static final class IntWriter implements AutoCloseable {
+		private final FileChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+		IntWriter(Path file) throws IOException {
+			this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING);
+		}
+
+		void write(int value) throws IOException {
+			if (!buffer.hasRemaining()) {
+				flush();
+			}
+			buffer.putInt(value);
+		}
+
+		/** Writes len values starting at values[from], a buffer at a time. */
+		void write(int[] values, int from, int len) throws IOException {
+			while (len > 0) {
+				if (buffer.remaining() < Integer.BYTES) {
+					flush();
+				}
+				int count = Math.min(len, buffer.remaining() / Integer.BYTES);
+				buffer.asIntBuffer().put(values, from, count);
+				buffer.position(buffer.position() + count * Integer.BYTES);
+				from += count;
+				len -= count;
+			}
+		}
+
+		private void flush() throws IOException {
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			buffer.clear();
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				flush();
+			} finally {
+				channel.close();
+			}
+		}
+	}
+}
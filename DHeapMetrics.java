@@ -0,0 +1,584 @@
+import java.beans.ConstructorProperties;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * DHeapMetrics - Opt-in instrumentation of a DHeapMax.
+ *
+ * Counts the comparisons and moves of every sift, records how many levels each
+ * sift travels (one histogram for sift-up, one for sift-down), the latency of
+ * insert, extract, build and changeD in log-linear histograms (a small
+ * HdrHistogram substitute, see LatencyHistogram), and the size high-water
+ * mark. The data is read with snapshot() or over JMX (register).
+ *
+ * Nothing is recorded unless the VM is started with -Ddheap.metrics=true and
+ * metrics are enabled on the heap (DHeapMax.enableMetrics). ENABLED is a
+ * static final constant, so without the flag the JIT removes the
+ * instrumentation from the heap operations entirely. The sifts themselves are
+ * the ones of DHeapArrays in both cases: the counts are derived afterwards
+ * from the index where a sift started and the index where it stopped.
+ *
+ * Like DHeapMax, the recording methods are not thread-safe; they are called by
+ * the thread that owns the heap. Snapshots and JMX reads may run on other
+ * threads and then see values that are a few operations old.
+ */
+public final class DHeapMetrics implements DHeapMetricsMXBean {
+
+	/** true if the VM was started with -Ddheap.metrics=true. */
+	public static final boolean ENABLED = Boolean.getBoolean("dheap.metrics");
+
+	static final int MAX_DEPTH = 64; // Deeper sifts share the last bucket (only reachable with d = 1)
+
+	private int d;
+	private long inserts;
+	private long extracts;
+	private long rebuilds;
+	private long comparisons;
+	private long moves;
+	private int sizeHighWaterMark;
+	private final long[] siftUpDepths = new long[MAX_DEPTH];
+	private final long[] siftDownDepths = new long[MAX_DEPTH];
+	private final LatencyHistogram insertLatency = new LatencyHistogram();
+	private final LatencyHistogram extractLatency = new LatencyHistogram();
+	private final LatencyHistogram buildLatency = new LatencyHistogram();
+	private final LatencyHistogram changeDLatency = new LatencyHistogram();
+	private ObjectName objectName; // Set while registered with JMX
+
+	/**
+	 * Constructs empty metrics for a heap of arity d.
+	 *
+	 * @param d The current arity of the heap.
+	 */
+	DHeapMetrics(int d) {
+		this.d = d;
+	}
+
+	// ---------------------------------------------------------------- JMX
+
+	/**
+	 * Registers these metrics with the platform MBean server under
+	 * "DHeap:type=DHeapMax,name=" + name.
+	 *
+	 * @param name A name that identifies the heap, e.g. "scheduler".
+	 * @throws JMException If the name is invalid or already registered.
+	 */
+	public synchronized void register(String name) throws JMException {
+		ObjectName objectName = new ObjectName("DHeap:type=DHeapMax,name=" + ObjectName.quote(name));
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+		this.objectName = objectName;
+	}
+
+	/**
+	 * Removes these metrics from the platform MBean server, if registered.
+	 *
+	 * @throws JMException If the unregistration fails.
+	 */
+	public synchronized void unregister() throws JMException {
+		if (objectName != null) {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			if (server.isRegistered(objectName)) {
+				server.unregisterMBean(objectName);
+			}
+			objectName = null;
+		}
+	}
+
+	// ---------------------------------------------------------------- Reading
+
+	@Override
+	public int getD() {
+		return d;
+	}
+
+	@Override
+	public long getInserts() {
+		return inserts;
+	}
+
+	@Override
+	public long getExtracts() {
+		return extracts;
+	}
+
+	@Override
+	public long getRebuilds() {
+		return rebuilds;
+	}
+
+	@Override
+	public long getComparisons() {
+		return comparisons;
+	}
+
+	@Override
+	public long getMoves() {
+		return moves;
+	}
+
+	@Override
+	public int getSizeHighWaterMark() {
+		return sizeHighWaterMark;
+	}
+
+	@Override
+	public Snapshot getSnapshot() {
+		return snapshot();
+	}
+
+	/**
+	 * Returns a copy of all counters, histograms and latency summaries.
+	 *
+	 * @return The snapshot.
+	 */
+	public Snapshot snapshot() {
+		return new Snapshot(d, inserts, extracts, rebuilds, comparisons, moves, sizeHighWaterMark,
+				siftUpDepths.clone(), siftDownDepths.clone(), insertLatency.summary(), extractLatency.summary(),
+				buildLatency.summary(), changeDLatency.summary());
+	}
+
+	@Override
+	public void reset() {
+		inserts = 0;
+		extracts = 0;
+		rebuilds = 0;
+		comparisons = 0;
+		moves = 0;
+		sizeHighWaterMark = 0;
+		Arrays.fill(siftUpDepths, 0);
+		Arrays.fill(siftDownDepths, 0);
+		insertLatency.reset();
+		extractLatency.reset();
+		buildLatency.reset();
+		changeDLatency.reset();
+	}
+
+	// ---------------------------------------------------------------- Recording
+
+	/** Records an insert that took the given time. */
+	void recordInsert(long nanos) {
+		inserts++;
+		insertLatency.record(nanos);
+	}
+
+	/** Records an extract that took the given time. */
+	void recordExtract(long nanos) {
+		extracts++;
+		extractLatency.record(nanos);
+	}
+
+	/**
+	 * Records a batch of inserts (meld) that took the given time in total; every
+	 * insert is recorded with an equal share of it.
+	 */
+	void recordInserts(int count, long nanos) {
+		inserts += count;
+		insertLatency.record(nanos / Math.max(count, 1), count);
+	}
+
+	/**
+	 * Records a batch of extracts (extractTopK) that took the given time in
+	 * total; every extract is recorded with an equal share of it.
+	 */
+	void recordExtracts(int count, long nanos) {
+		extracts += count;
+		extractLatency.record(nanos / Math.max(count, 1), count);
+	}
+
+	/** Records a build from new values that took the given time. */
+	void recordBuild(long nanos) {
+		rebuilds++;
+		buildLatency.record(nanos);
+	}
+
+	/** Records a rebuild for a new arity that took the given time. */
+	void recordChangeD(int newD, long nanos) {
+		d = newD;
+		rebuilds++;
+		changeDLatency.record(nanos);
+	}
+
+	/** Raises the high-water mark to size if it is larger. */
+	void recordSize(int size) {
+		if (size > sizeHighWaterMark) {
+			sizeHighWaterMark = size;
+		}
+	}
+
+	/**
+	 * Records a DHeapArrays.siftUp from logical index 'from' that came to rest at
+	 * 'to'. The counts follow from the path: one comparison and one move per
+	 * level risen, one more comparison unless the element reached the root, and
+	 * the final store.
+	 */
+	void recordSiftUp(int from, int to, int d) {
+		int levels = levels(to, from, d);
+		comparisons += levels + (to > 0 ? 1 : 0);
+		moves += levels + 1;
+		siftUpDepths[Math.min(levels, MAX_DEPTH - 1)]++;
+	}
+
+	/**
+	 * Records a DHeapArrays.siftDown from logical index 'from' that came to rest
+	 * at 'to'. Every node on the path scanned its children, and so did 'to' if it
+	 * has any; finding the largest of c children and comparing it with the
+	 * element counts as c comparisons, whether the scan is scalar or SIMD. Only
+	 * the last parent can have fewer than d children, and on a path it can only
+	 * be the parent of 'to'.
+	 */
+	void recordSiftDown(int from, int to, int size, int d) {
+		int levels = levels(from, to, d);
+		long compared = (long) levels * d;
+		if (levels > 0) {
+			compared += children(DHeapArrays.parent(to, d), size, d) - d;
+		}
+		if (to <= DHeapArrays.lastParent(size, d)) {
+			compared += children(to, size, d);
+		}
+		comparisons += compared;
+		moves += levels + 1;
+		siftDownDepths[Math.min(levels, MAX_DEPTH - 1)]++;
+	}
+
+	/**
+	 * Returns how many levels 'descendant' lies below 'ancestor', descending
+	 * through the index ranges of the ancestor's subtree (multiplications only).
+	 */
+	private static int levels(int ancestor, int descendant, int d) {
+		int levels = 0;
+		long last = ancestor; // Last index of the ancestor's subtree on the current level
+		while (descendant > last) {
+			last = last * d + d;
+			levels++;
+		}
+		return levels;
+	}
+
+	/** Returns the number of children of a parent node. */
+	private static int children(int i, int size, int d) {
+		int first = DHeapArrays.firstChild(i, d);
+		return Math.min(d, size - first);
+	}
+
+	/** DHeapArrays.heapify with every sift recorded. */
+	void heapify(int[] a, int base, int size, int d) {
+		for (int i = DHeapArrays.lastParent(size, d); i >= 0; i--) {
+			recordSiftDown(i, DHeapArrays.siftDown(a, base, size, d, i), size, d);
+		}
+	}
+
+	/**
+	 * Log-linear latency histogram in the style of HdrHistogram: every power of
+	 * two is split into SUB_BUCKETS linear buckets, so a recorded value is known
+	 * to within 1 / SUB_BUCKETS (6.25%) at any magnitude, in a fixed 8 KB array.
+	 *
+	 * This stands in for HdrHistogram itself, which would be the heap's only
+	 * external dependency. The bucket layout is the same, but the precision is
+	 * fixed instead of configurable in significant digits, and there is no
+	 * coordinated-omission correction, which only matters for latencies of a
+	 * fixed-rate load generator, not for heap operations timed inline.
+	 */
+	static final class LatencyHistogram {
+		private static final int SUB_BUCKET_BITS = 4;
+		private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+		private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+		private final long[] counts = new long[BUCKETS];
+		private long count;
+		private long sum;
+		private long max;
+
+		/** Adds one value; negative values are recorded as 0. */
+		void record(long nanos) {
+			record(nanos, 1);
+		}
+
+		/** Adds the same value 'times' times; negative values are recorded as 0. */
+		void record(long nanos, long times) {
+			long value = Math.max(nanos, 0);
+			counts[bucket(value)] += times;
+			count += times;
+			sum += value * times;
+			if (value > max) {
+				max = value;
+			}
+		}
+
+		/** Clears the histogram. */
+		void reset() {
+			Arrays.fill(counts, 0);
+			count = 0;
+			sum = 0;
+			max = 0;
+		}
+
+		/**
+		 * Returns the value at the given percentile, as the highest value of its
+		 * bucket (capped at the recorded maximum), or 0 if nothing was recorded.
+		 *
+		 * @param p The percentile, between 0 and 1.
+		 */
+		long percentile(double p) {
+			long rank = Math.max(1, (long) Math.ceil(p * count));
+			long seen = 0;
+			for (int b = 0; b < BUCKETS; b++) {
+				seen += counts[b];
+				if (seen >= rank) {
+					return Math.min(highestValue(b), max);
+				}
+			}
+			return max;
+		}
+
+		/** Returns the count, mean and the usual percentiles. */
+		LatencySummary summary() {
+			return new LatencySummary(count, count == 0 ? 0 : (double) sum / count, percentile(0.50),
+					percentile(0.90), percentile(0.99), percentile(0.999), max);
+		}
+
+		/** Returns the bucket of a non-negative value. */
+		static int bucket(long value) {
+			if (value < SUB_BUCKETS) {
+				return (int) value;
+			}
+			int shift = (Long.SIZE - 1 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+			return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+		}
+
+		/** Returns the largest value that falls into a bucket. */
+		static long highestValue(int bucket) {
+			if (bucket < SUB_BUCKETS) {
+				return bucket;
+			}
+			int shift = bucket / SUB_BUCKETS - 1;
+			long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+			return lowest + (1L << shift) - 1;
+		}
+	}
+
+	/** Latency of one kind of operation, in nanoseconds. */
+	public static final class LatencySummary {
+		private final long count;
+		private final double mean;
+		private final long p50;
+		private final long p90;
+		private final long p99;
+		private final long p999;
+		private final long max;
+
+		/**
+		 * Constructs a summary.
+		 *
+		 * @param count Number of operations.
+		 * @param mean  Mean latency.
+		 * @param p50   Median latency.
+		 * @param p90   90th percentile.
+		 * @param p99   99th percentile.
+		 * @param p999  99.9th percentile.
+		 * @param max   Largest latency.
+		 */
+		@ConstructorProperties({ "count", "mean", "p50", "p90", "p99", "p999", "max" })
+		public LatencySummary(long count, double mean, long p50, long p90, long p99, long p999, long max) {
+			this.count = count;
+			this.mean = mean;
+			this.p50 = p50;
+			this.p90 = p90;
+			this.p99 = p99;
+			this.p999 = p999;
+			this.max = max;
+		}
+
+		/** Returns the number of operations. */
+		public long getCount() {
+			return count;
+		}
+
+		/** Returns the mean latency. */
+		public double getMean() {
+			return mean;
+		}
+
+		/** Returns the median latency. */
+		public long getP50() {
+			return p50;
+		}
+
+		/** Returns the 90th percentile. */
+		public long getP90() {
+			return p90;
+		}
+
+		/** Returns the 99th percentile. */
+		public long getP99() {
+			return p99;
+		}
+
+		/** Returns the 99.9th percentile. */
+		public long getP999() {
+			return p999;
+		}
+
+		/** Returns the largest latency. */
+		public long getMax() {
+			return max;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("count=%d mean=%.0f p50=%d p90=%d p99=%d p99.9=%d max=%d ns", count, mean, p50, p90,
+					p99, p999, max);
+		}
+	}
+
+	/** Immutable copy of the metrics at one point in time. */
+	public static final class Snapshot {
+		private final int d;
+		private final long inserts;
+		private final long extracts;
+		private final long rebuilds;
+		private final long comparisons;
+		private final long moves;
+		private final int sizeHighWaterMark;
+		private final long[] siftUpDepths;
+		private final long[] siftDownDepths;
+		private final LatencySummary insertLatency;
+		private final LatencySummary extractLatency;
+		private final LatencySummary buildLatency;
+		private final LatencySummary changeDLatency;
+
+		/**
+		 * Constructs a snapshot; the arrays are not copied.
+		 *
+		 * @param d                 The arity of the heap.
+		 * @param inserts           Number of inserts.
+		 * @param extracts          Number of extracts.
+		 * @param rebuilds          Number of builds and changeD rebuilds.
+		 * @param comparisons       Comparisons made by the sifts.
+		 * @param moves             Array writes made by the sifts.
+		 * @param sizeHighWaterMark Largest size reached.
+		 * @param siftUpDepths      Number of sift-ups per number of levels.
+		 * @param siftDownDepths    Number of sift-downs per number of levels.
+		 * @param insertLatency     Latency of insert.
+		 * @param extractLatency    Latency of extract.
+		 * @param buildLatency      Latency of buildDHeap.
+		 * @param changeDLatency    Latency of changeD.
+		 */
+		@ConstructorProperties({ "d", "inserts", "extracts", "rebuilds", "comparisons", "moves", "sizeHighWaterMark",
+				"siftUpDepths", "siftDownDepths", "insertLatency", "extractLatency", "buildLatency",
+				"changeDLatency" })
+		public Snapshot(int d, long inserts, long extracts, long rebuilds, long comparisons, long moves,
+				int sizeHighWaterMark, long[] siftUpDepths, long[] siftDownDepths, LatencySummary insertLatency,
+				LatencySummary extractLatency, LatencySummary buildLatency, LatencySummary changeDLatency) {
+			this.d = d;
+			this.inserts = inserts;
+			this.extracts = extracts;
+			this.rebuilds = rebuilds;
+			this.comparisons = comparisons;
+			this.moves = moves;
+			this.sizeHighWaterMark = sizeHighWaterMark;
+			this.siftUpDepths = siftUpDepths;
+			this.siftDownDepths = siftDownDepths;
+			this.insertLatency = insertLatency;
+			this.extractLatency = extractLatency;
+			this.buildLatency = buildLatency;
+			this.changeDLatency = changeDLatency;
+		}
+
+		/** Returns the arity of the heap. */
+		public int getD() {
+			return d;
+		}
+
+		/** Returns the number of inserts. */
+		public long getInserts() {
+			return inserts;
+		}
+
+		/** Returns the number of extracts. */
+		public long getExtracts() {
+			return extracts;
+		}
+
+		/** Returns the number of builds and changeD rebuilds. */
+		public long getRebuilds() {
+			return rebuilds;
+		}
+
+		/** Returns the comparisons made by the sifts. */
+		public long getComparisons() {
+			return comparisons;
+		}
+
+		/** Returns the array writes made by the sifts. */
+		public long getMoves() {
+			return moves;
+		}
+
+		/** Returns the largest size reached. */
+		public int getSizeHighWaterMark() {
+			return sizeHighWaterMark;
+		}
+
+		/** Returns the number of sift-ups that rose by each number of levels. */
+		public long[] getSiftUpDepths() {
+			return siftUpDepths.clone();
+		}
+
+		/** Returns the number of sift-downs that sank by each number of levels. */
+		public long[] getSiftDownDepths() {
+			return siftDownDepths.clone();
+		}
+
+		/** Returns the latency of insert. */
+		public LatencySummary getInsertLatency() {
+			return insertLatency;
+		}
+
+		/** Returns the latency of extract. */
+		public LatencySummary getExtractLatency() {
+			return extractLatency;
+		}
+
+		/** Returns the latency of buildDHeap. */
+		public LatencySummary getBuildLatency() {
+			return buildLatency;
+		}
+
+		/** Returns the latency of changeD. */
+		public LatencySummary getChangeDLatency() {
+			return changeDLatency;
+		}
+
+		/** Returns the mean number of levels per sift-down, the main cost of d. */
+		public double getMeanSiftDownDepth() {
+			return meanDepth(siftDownDepths);
+		}
+
+		/** Returns the mean number of levels per sift-up. */
+		public double getMeanSiftUpDepth() {
+			return meanDepth(siftUpDepths);
+		}
+
+		private static double meanDepth(long[] depths) {
+			long sifts = 0;
+			long levels = 0;
+			for (int i = 0; i < depths.length; i++) {
+				sifts += depths[i];
+				levels += i * depths[i];
+			}
+			return sifts == 0 ? 0 : (double) levels / sifts;
+		}
+
+		@Override
+		public String toString() {
+			return String.format(
+					"d=%d inserts=%d extracts=%d rebuilds=%d comparisons=%d moves=%d highWaterMark=%d"
+							+ " meanSiftUp=%.2f meanSiftDown=%.2f%n  insert:  %s%n  extract: %s%n  build:   %s%n  changeD: %s",
+					d, inserts, extracts, rebuilds, comparisons, moves, sizeHighWaterMark, getMeanSiftUpDepth(),
+					getMeanSiftDownDepth(), insertLatency, extractLatency, buildLatency, changeDLatency);
+		}
+	}
+}
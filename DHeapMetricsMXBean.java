@@ -0,0 +1,37 @@
+/**
+ * DHeapMetricsMXBean - JMX view of the metrics of one DHeapMax.
+ *
+ * Registered by DHeapMetrics.register under the name
+ * "DHeap:type=DHeapMax,name=...", so the counters can be watched with jconsole
+ * or any JMX client. The attributes are read without locking while the heap
+ * may be in use, so a value can be a few operations behind.
+ */
+public interface DHeapMetricsMXBean {
+
+	/** Returns the current arity of the heap. */
+	int getD();
+
+	/** Returns the number of insert calls. */
+	long getInserts();
+
+	/** Returns the number of extract calls. */
+	long getExtracts();
+
+	/** Returns the number of builds (buildDHeap) and rebuilds (changeD). */
+	long getRebuilds();
+
+	/** Returns the number of element comparisons made by the sifts. */
+	long getComparisons();
+
+	/** Returns the number of array writes made by the sifts. */
+	long getMoves();
+
+	/** Returns the largest size the heap has reached. */
+	int getSizeHighWaterMark();
+
+	/** Returns all counters, histograms and latency summaries at once. */
+	DHeapMetrics.Snapshot getSnapshot();
+
+	/** Clears every counter and histogram. */
+	void reset();
+}
@@ -0,0 +1,267 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.zip.CRC32;
+
+/**
+ * DHeapSnapshot - The binary snapshot format of DHeapMax.
+ *
+ * A snapshot stores the heap array in heap order, so restoring it is a bulk
+ * copy without heapify. All numbers are little-endian:
+ *
+ * - header: magic "DHSN", version, flags, d, size, payload length (long),
+ * CRC32 of these fields - payload: size raw ints, or with COMPRESSED the zigzag
+ * varints of the differences between consecutive elements - trailer: CRC32 of
+ * header and payload
+ *
+ * The header has its own checksum because the reader sizes the heap array from
+ * it: a corrupt size is rejected before anything is allocated.
+ */
+final class DHeapSnapshot {
+
+	static final int MAGIC = 0x4E534844; // "DHSN" in little-endian
+	static final int VERSION = 2; // 2 added the header checksum
+	static final int COMPRESSED = 1; // Flag: delta + zigzag + varint payload
+	static final int CACHE_ALIGNED = 2; // Flag: restore with the cache-aligned layout
+	private static final int HEADER_FIELD_BYTES = 28; // Header without its checksum
+	private static final int HEADER_BYTES = HEADER_FIELD_BYTES + Integer.BYTES;
+	private static final int CHUNK_BYTES = 64 * 1024; // I/O buffer size
+	private static final int MAX_VARINT_BYTES = 5;
+
+	/** Utility class, not instantiable. */
+	private DHeapSnapshot() {
+	}
+
+	/**
+	 * Writes a snapshot of a[base .. base + size - 1].
+	 *
+	 * @param out   The channel to write to.
+	 * @param a     The heap array.
+	 * @param base  Index of the root in a.
+	 * @param size  Number of elements.
+	 * @param d     The arity of the heap.
+	 * @param flags COMPRESSED and/or CACHE_ALIGNED.
+	 * @throws IOException If writing fails.
+	 */
+	static void write(WritableByteChannel out, int[] a, int base, int size, int d, int flags) throws IOException {
+		boolean compressed = (flags & COMPRESSED) != 0;
+		CRC32 crc = new CRC32();
+		ByteBuffer buf = ByteBuffer.allocate(CHUNK_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+		buf.putInt(MAGIC).putInt(VERSION).putInt(flags).putInt(d).putInt(size);
+		buf.putLong(compressed ? compressedLength(a, base, size) : (long) size * Integer.BYTES);
+		CRC32 headerCrc = new CRC32();
+		headerCrc.update(buf.array(), 0, HEADER_FIELD_BYTES);
+		buf.putInt((int) headerCrc.getValue());
+
+		if (compressed) {
+			int previous = 0;
+			for (int i = base; i < base + size; i++) {
+				if (buf.remaining() < MAX_VARINT_BYTES) {
+					flush(out, buf, crc);
+				}
+				int delta = a[i] - previous; // Wraps around, which the reader undoes
+				putVarint(buf, (delta << 1) ^ (delta >> 31));
+				previous = a[i];
+			}
+		} else {
+			for (int i = base; i < base + size;) {
+				if (buf.remaining() < Integer.BYTES) {
+					flush(out, buf, crc);
+				}
+				int n = Math.min(base + size - i, buf.remaining() / Integer.BYTES);
+				buf.asIntBuffer().put(a, i, n);
+				buf.position(buf.position() + n * Integer.BYTES);
+				i += n;
+			}
+		}
+		flush(out, buf, crc);
+
+		buf.putInt((int) crc.getValue());
+		flush(out, buf, null);
+	}
+
+	/**
+	 * Returns the number of payload bytes of the compressed encoding.
+	 */
+	private static long compressedLength(int[] a, int base, int size) {
+		long length = 0;
+		int previous = 0;
+		for (int i = base; i < base + size; i++) {
+			int delta = a[i] - previous;
+			int zigzag = (delta << 1) ^ (delta >> 31);
+			length += (38 - Integer.numberOfLeadingZeros(zigzag | 1)) / 7; // 7 bits per byte
+			previous = a[i];
+		}
+		return length;
+	}
+
+	/** Appends an unsigned int as a varint: 7 bits per byte, high bit set on all but the last. */
+	private static void putVarint(ByteBuffer buf, int value) {
+		while ((value & ~0x7F) != 0) {
+			buf.put((byte) (value & 0x7F | 0x80));
+			value >>>= 7;
+		}
+		buf.put((byte) value);
+	}
+
+	/**
+	 * Writes the buffered bytes to the channel, adding them to the checksum, and
+	 * clears the buffer.
+	 */
+	private static void flush(WritableByteChannel out, ByteBuffer buf, CRC32 crc) throws IOException {
+		buf.flip();
+		if (crc != null) {
+			crc.update(buf.duplicate());
+		}
+		while (buf.hasRemaining()) {
+			out.write(buf);
+		}
+		buf.clear();
+	}
+
+	/**
+	 * Reads a snapshot in three steps: the constructor reads and validates the
+	 * header, readElements() the payload, and verify() the checksum.
+	 */
+	static final class Reader {
+		private final ReadableByteChannel in;
+		private final ByteBuffer buf = ByteBuffer.allocate(CHUNK_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		private final CRC32 crc = new CRC32();
+		private long unread; // Payload bytes that were not read from the channel yet
+		final int flags;
+		final int d;
+		final int size;
+
+		/**
+		 * Reads the header and checks its checksum before trusting any field. On a
+		 * seekable channel the payload must also fit into what is left of it.
+		 *
+		 * @param in The channel to read from.
+		 * @throws IOException If reading fails or the header is invalid.
+		 */
+		Reader(ReadableByteChannel in) throws IOException {
+			this.in = in;
+			buf.limit(HEADER_BYTES);
+			fill();
+			crc.update(buf.array(), 0, HEADER_FIELD_BYTES);
+			if (buf.getInt(HEADER_FIELD_BYTES) != (int) crc.getValue()) {
+				throw new IOException(DHeapError.INVALID_SNAPSHOT.getMessage());
+			}
+			crc.update(buf.array(), HEADER_FIELD_BYTES, Integer.BYTES);
+			int magic = buf.getInt();
+			int version = buf.getInt();
+			flags = buf.getInt();
+			d = buf.getInt();
+			size = buf.getInt();
+			unread = buf.getLong();
+			boolean compressed = (flags & COMPRESSED) != 0;
+			if (magic != MAGIC || version != VERSION || !DHeapValidator.isValidD(d) || size < 0
+					|| size > DHeapMax.MAX_CAPACITY || unread < 0
+					|| unread > (long) size * (compressed ? MAX_VARINT_BYTES : Integer.BYTES)
+					|| !compressed && unread != (long) size * Integer.BYTES
+					|| in instanceof SeekableByteChannel && unread + Integer.BYTES > remaining((SeekableByteChannel) in)) {
+				throw new IOException(DHeapError.INVALID_SNAPSHOT.getMessage());
+			}
+			buf.clear().limit(0);
+		}
+
+		/**
+		 * Reads the payload into a[off .. off + size - 1].
+		 *
+		 * @param a   The destination array.
+		 * @param off Index of the first element in a.
+		 * @throws IOException If reading fails or the payload is malformed.
+		 */
+		void readElements(int[] a, int off) throws IOException {
+			if ((flags & COMPRESSED) != 0) {
+				int previous = 0;
+				for (int i = off; i < off + size; i++) {
+					int zigzag = getVarint();
+					previous += (zigzag >>> 1) ^ -(zigzag & 1);
+					a[i] = previous;
+				}
+			} else {
+				for (int i = off; i < off + size;) {
+					if (buf.remaining() < Integer.BYTES) {
+						refill();
+					}
+					int n = Math.min(off + size - i, buf.remaining() / Integer.BYTES);
+					buf.asIntBuffer().get(a, i, n);
+					buf.position(buf.position() + n * Integer.BYTES);
+					i += n;
+				}
+			}
+			if (buf.hasRemaining() || unread != 0) {
+				throw new IOException(DHeapError.INVALID_SNAPSHOT.getMessage());
+			}
+		}
+
+		/**
+		 * Reads the trailer and compares it with the checksum of everything read.
+		 *
+		 * @throws IOException If reading fails or the checksums differ.
+		 */
+		void verify() throws IOException {
+			buf.clear().limit(Integer.BYTES);
+			fill();
+			if (buf.getInt() != (int) crc.getValue()) {
+				throw new IOException(DHeapError.INVALID_SNAPSHOT.getMessage());
+			}
+		}
+
+		/** Returns the number of bytes between the position and the end of a channel. */
+		private static long remaining(SeekableByteChannel channel) throws IOException {
+			return channel.size() - channel.position();
+		}
+
+		/** Reads one unsigned varint of the payload. */
+		private int getVarint() throws IOException {
+			int value = 0;
+			for (int shift = 0; shift < 35; shift += 7) {
+				if (!buf.hasRemaining()) {
+					refill();
+				}
+				byte b = buf.get();
+				value |= (b & 0x7F) << shift;
+				if (b >= 0) {
+					return value;
+				}
+			}
+			throw new IOException(DHeapError.INVALID_SNAPSHOT.getMessage());
+		}
+
+		/**
+		 * Keeps the unread bytes of the buffer and reads the next chunk of the
+		 * payload behind them.
+		 */
+		private void refill() throws IOException {
+			if (unread == 0) {
+				throw new IOException(DHeapError.INVALID_SNAPSHOT.getMessage());
+			}
+			buf.compact();
+			int start = buf.position();
+			buf.limit(start + (int) Math.min(unread, buf.remaining()));
+			fill();
+			crc.update(buf.array(), start, buf.limit() - start);
+			unread -= buf.limit() - start;
+			buf.position(0);
+		}
+
+		/**
+		 * Reads from the channel until the buffer is full up to its limit, then
+		 * flips it to the start of the buffer.
+		 */
+		private void fill() throws IOException {
+			while (buf.hasRemaining()) {
+				if (in.read(buf) < 0) {
+					throw new IOException(DHeapError.INVALID_SNAPSHOT.getMessage());
+				}
+			}
+			buf.position(0);
+		}
+	}
+}
@@ -0,0 +1,123 @@
+import java.util.Objects;
+
+/**
+ * DHeapSort - In-place heapsort with a configurable arity.
+ *
+ * The range is turned into a D-ary max heap with Floyd's bottom-up heapify,
+ * then the maximum is repeatedly swapped to the end of the shrinking heap. The
+ * sort runs in O(n log n) time in the worst case and uses O(1) extra memory;
+ * it is not stable.
+ *
+ * With bottomUp the extraction uses the bottom-up sift of Floyd/Wegener (see
+ * DHeapArrays.siftDownBottomUp), which saves about one comparison per level.
+ */
+public final class DHeapSort {
+
+	public static final int DEFAULT_D = 4; // Arity used when none is given
+
+	/** Utility class, not instantiable. */
+	private DHeapSort() {
+	}
+
+	/**
+	 * Sorts an array in ascending order with a 4-ary heap.
+	 *
+	 * @param a The array to sort.
+	 */
+	public static void sort(int[] a) {
+		sort(a, 0, a.length, DEFAULT_D, false);
+	}
+
+	/**
+	 * Sorts an array in ascending order.
+	 *
+	 * @param a The array to sort.
+	 * @param d The arity of the heap.
+	 * @throws IllegalArgumentException If d is out of valid range.
+	 */
+	public static void sort(int[] a, int d) {
+		sort(a, 0, a.length, d, false);
+	}
+
+	/**
+	 * Sorts the range a[from .. to - 1] in ascending order.
+	 *
+	 * @param a        The array to sort.
+	 * @param from     Index of the first element (inclusive).
+	 * @param to       Index of the last element (exclusive).
+	 * @param d        The arity of the heap.
+	 * @param bottomUp true to extract with the bottom-up sift.
+	 * @throws IllegalArgumentException  If d is out of valid range.
+	 * @throws IndexOutOfBoundsException If the range is outside of a.
+	 */
+	public static void sort(int[] a, int from, int to, int d, boolean bottomUp) {
+		checkArguments(from, to, a.length, d);
+		int n = to - from;
+		DHeapArrays.heapify(a, from, n, d);
+		for (int end = n - 1; end > 0; end--) {
+			int value = a[from + end];
+			a[from + end] = a[from]; // The maximum goes behind the heap
+			if (bottomUp) {
+				DHeapArrays.siftDownBottomUp(a, from, end, d, value);
+			} else {
+				a[from] = value;
+				DHeapArrays.siftDown(a, from, end, d, 0);
+			}
+		}
+	}
+
+	/**
+	 * Sorts an array in ascending order with a 4-ary heap.
+	 *
+	 * @param a The array to sort.
+	 */
+	public static void sort(long[] a) {
+		sort(a, 0, a.length, DEFAULT_D, false);
+	}
+
+	/**
+	 * Sorts an array in ascending order.
+	 *
+	 * @param a The array to sort.
+	 * @param d The arity of the heap.
+	 * @throws IllegalArgumentException If d is out of valid range.
+	 */
+	public static void sort(long[] a, int d) {
+		sort(a, 0, a.length, d, false);
+	}
+
+	/**
+	 * Sorts the range a[from .. to - 1] in ascending order.
+	 *
+	 * @param a        The array to sort.
+	 * @param from     Index of the first element (inclusive).
+	 * @param to       Index of the last element (exclusive).
+	 * @param d        The arity of the heap.
+	 * @param bottomUp true to extract with the bottom-up sift.
+	 * @throws IllegalArgumentException  If d is out of valid range.
+	 * @throws IndexOutOfBoundsException If the range is outside of a.
+	 */
+	public static void sort(long[] a, int from, int to, int d, boolean bottomUp) {
+		checkArguments(from, to, a.length, d);
+		int n = to - from;
+		DHeapArrays.heapify(a, from, n, d);
+		for (int end = n - 1; end > 0; end--) {
+			long value = a[from + end];
+			a[from + end] = a[from];
+			if (bottomUp) {
+				DHeapArrays.siftDownBottomUp(a, from, end, d, value);
+			} else {
+				a[from] = value;
+				DHeapArrays.siftDown(a, from, end, d, 0);
+			}
+		}
+	}
+
+	/** Validates the range and the arity of a sort call. */
+	private static void checkArguments(int from, int to, int length, int d) {
+		Objects.checkFromToIndex(from, to, length);
+		if (!DHeapValidator.isValidD(d)) {
+			throw new IllegalArgumentException(DHeapError.INVALID_D.getMessage());
+		}
+	}
+}
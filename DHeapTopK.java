@@ -0,0 +1,252 @@
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.stream.Collector;
+import java.util.stream.IntStream;
+
+/**
+ * DHeapTopK - Keeps the K largest values of a stream of any length.
+ *
+ * The values are held in a D-ary min-heap of fixed capacity K, so the smallest
+ * of the kept values is on top. Once the heap is full, a new value that is
+ * larger than the top replaces it in a single sift-down (replace-top) and
+ * smaller values are rejected after one comparison. Memory stays O(K) however
+ * many values are offered.
+ *
+ * A DHeapTopK is not thread-safe; parallel streams give every thread its own
+ * collector and merge them (see collector() and of()).
+ */
+public class DHeapTopK {
+
+	public static final int DEFAULT_D = 4; // Arity used when none is given
+
+	private final int[] heap; // Min-heap of the kept values
+	private final int k; // Number of values to keep
+	private final int d; // Number of children per node (D-ary)
+	private int size; // Number of kept values, at most k
+	private long offered; // Number of values offered so far
+
+	/**
+	 * Constructs a collector for the k largest values, using the default arity.
+	 *
+	 * @param k The number of values to keep.
+	 * @throws IllegalArgumentException If k is out of range.
+	 */
+	public DHeapTopK(int k) {
+		this(k, DEFAULT_D);
+	}
+
+	/**
+	 * Constructs a collector for the k largest values.
+	 *
+	 * @param k The number of values to keep.
+	 * @param d The number of children per node of the min-heap.
+	 * @throws IllegalArgumentException If k or d is out of range.
+	 */
+	public DHeapTopK(int k, int d) {
+		if (!DHeapValidator.isValidCapacity(k)) {
+			throw new IllegalArgumentException(DHeapError.INVALID_CAPACITY.getMessage());
+		}
+		if (!DHeapValidator.isValidD(d)) {
+			throw new IllegalArgumentException(DHeapError.INVALID_D.getMessage());
+		}
+		this.k = k;
+		this.d = d;
+		this.heap = new int[k];
+	}
+
+	/** Returns the number of values kept at most. */
+	public int getK() {
+		return this.k;
+	}
+
+	/** Returns the value of 'd'. */
+	public int getD() {
+		return this.d;
+	}
+
+	/** Returns the number of values kept so far, at most K. */
+	public int getSize() {
+		return this.size;
+	}
+
+	/** Returns true if no value was kept yet. */
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	/** Returns the number of values offered so far, kept or not. */
+	public long getOffered() {
+		return this.offered;
+	}
+
+	/**
+	 * Returns the smallest kept value: once K values are kept, a value has to be
+	 * larger than this one to get in.
+	 *
+	 * @return The smallest kept value.
+	 * @throws IllegalStateException If no value was kept yet.
+	 */
+	public int peekMin() {
+		if (!DHeapValidator.canExtract(size)) {
+			throw new IllegalStateException(DHeapError.HEAP_UNDERFLOW.getMessage());
+		}
+		return heap[0];
+	}
+
+	/**
+	 * Offers a value, which is kept if it is among the K largest seen so far.
+	 *
+	 * @param value The value.
+	 * @return true if the value was kept.
+	 */
+	public boolean offer(int value) {
+		offered++;
+		if (size < k) {
+			heap[size] = value;
+			DHeapArrays.siftUpMin(heap, 0, d, size);
+			size++;
+			return true;
+		}
+		if (value <= heap[0]) {
+			return false;
+		}
+		heap[0] = value; // Replace the smallest kept value
+		DHeapArrays.siftDownMin(heap, 0, size, d, 0);
+		return true;
+	}
+
+	/**
+	 * Offers a range of values.
+	 *
+	 * @param values The source array.
+	 * @param from   Index of the first value to offer.
+	 * @param len    Number of values to offer.
+	 * @throws IndexOutOfBoundsException If the range is outside of values.
+	 */
+	public void offerAll(int[] values, int from, int len) {
+		Objects.checkFromIndexSize(from, len, values.length);
+		int end = from + len;
+		int i = from;
+		for (; i < end && size < k; i++) {
+			offer(values[i]);
+		}
+		// Full from here on: most values lose against the top without a call
+		offered += end - i;
+		int min = heap[0];
+		for (; i < end; i++) {
+			if (values[i] > min) {
+				heap[0] = values[i];
+				DHeapArrays.siftDownMin(heap, 0, size, d, 0);
+				min = heap[0];
+			}
+		}
+	}
+
+	/**
+	 * Offers all values of an array.
+	 *
+	 * @param values The values.
+	 */
+	public void offerAll(int[] values) {
+		offerAll(values, 0, values.length);
+	}
+
+	/**
+	 * Offers all values of a stream. A parallel stream is collected into one
+	 * DHeapTopK per thread, which are then merged into this one.
+	 *
+	 * @param values The values.
+	 */
+	public void offerAll(IntStream values) {
+		if (values.isParallel()) {
+			merge(values.collect(() -> new DHeapTopK(k, d), DHeapTopK::offer, DHeapTopK::merge));
+		} else {
+			values.forEach(this::offer);
+		}
+	}
+
+	/**
+	 * Offers every value kept by another collector, so that this one keeps the
+	 * K largest values of both streams.
+	 *
+	 * @param other The other collector; it is not modified.
+	 * @return This collector.
+	 */
+	public DHeapTopK merge(DHeapTopK other) {
+		long offeredBefore = offered;
+		offerAll(other.heap, 0, other.size);
+		offered = offeredBefore + other.offered;
+		return this;
+	}
+
+	/**
+	 * Returns the kept values, largest first.
+	 *
+	 * @return A new array of getSize() values in descending order.
+	 */
+	public int[] toSortedArray() {
+		int[] sorted = Arrays.copyOf(heap, size);
+		Arrays.sort(sorted);
+		for (int i = 0, j = size - 1; i < j; i++, j--) {
+			int tmp = sorted[i];
+			sorted[i] = sorted[j];
+			sorted[j] = tmp;
+		}
+		return sorted;
+	}
+
+	/**
+	 * Returns a Collector for Stream&lt;Integer&gt; that yields the k largest
+	 * values, largest first. Parallel streams merge one DHeapTopK per thread.
+	 * Every element is unboxed on the way in; for an IntStream use of(), which
+	 * never boxes.
+	 *
+	 * @param k The number of values to keep.
+	 * @return The collector.
+	 * @throws IllegalArgumentException If k is out of range.
+	 */
+	public static Collector<Integer, ?, int[]> collector(int k) {
+		if (!DHeapValidator.isValidCapacity(k)) {
+			throw new IllegalArgumentException(DHeapError.INVALID_CAPACITY.getMessage());
+		}
+		return Collector.of(() -> new DHeapTopK(k), DHeapTopK::offer, DHeapTopK::merge, DHeapTopK::toSortedArray,
+				Collector.Characteristics.UNORDERED);
+	}
+
+	/**
+	 * Returns the k largest values of an IntStream, largest first, using the
+	 * default arity.
+	 *
+	 * @param values The values; may be parallel.
+	 * @param k      The number of values to keep.
+	 * @return The k largest values in descending order (fewer if the stream is
+	 *         shorter).
+	 * @throws IllegalArgumentException If k is out of range.
+	 */
+	public static int[] of(IntStream values, int k) {
+		return of(values, k, DEFAULT_D);
+	}
+
+	/**
+	 * Returns the k largest values of an IntStream, largest first. The values
+	 * stay primitive: the stream is collected with IntStream.collect into one
+	 * DHeapTopK per thread (a single one for a sequential stream), and the
+	 * per-thread collectors are merged pairwise as their parts complete.
+	 *
+	 * @param values The values; may be parallel.
+	 * @param k      The number of values to keep.
+	 * @param d      The number of children per node of the min-heaps.
+	 * @return The k largest values in descending order (fewer if the stream is
+	 *         shorter).
+	 * @throws IllegalArgumentException If k or d is out of range.
+	 */
+	public static int[] of(IntStream values, int k, int d) {
+		if (!DHeapValidator.isValidCapacity(k)) {
+			throw new IllegalArgumentException(DHeapError.INVALID_CAPACITY.getMessage());
+		}
+		if (!DHeapValidator.isValidD(d)) {
+			throw new IllegalArgumentException(DHeapError.INVALID_D.getMessage());
+		}
+		return values.collect(() -> new DHeapTopK(k, d), DHeapTopK::offer, DHeapTopK::merge).toSortedArray();
+	}
+}
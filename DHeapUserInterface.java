@@ -100,8 +100,8 @@ public class DHeapUserInterface {
 	 * Prompts the user to input a list of values to build a D-ary Max Heap.
 	 *
 	 * This method repeatedly asks the user to enter a space-separated list of values,
-	 * validates the input using helper methods from DHeapValidator, and if valid,
-	 * builds the heap and updates its size accordingly.
+	 * validates and parses it in one pass with DHeapInputParser, and if valid,
+	 * builds the heap from the parsed values.
 	 *
 	 * The loop continues until the user provides valid input.
 	 * 
@@ -110,6 +110,7 @@ public class DHeapUserInterface {
 	private void userChooseBuildHeap() {
 
 		boolean inputIsValid  = false;
+		DHeapInputParser parser = DHeapInputParser.forUserInput();
 
 		//Continue till we got valid input and build the heap
 		while (!inputIsValid ) {
@@ -117,14 +118,13 @@ public class DHeapUserInterface {
 			System.out.println("Example: 1 2 3 4 .... 23");
 			String userInput  = scan.nextLine().trim();
 			if (!DHeapValidator.isEmptyLine(userInput )) {
-				String[] inputValues = userInput .split("\\s+");
 
-				if (DHeapValidator.checkHeapInput(inputValues)) {
+				if (parser.parse(userInput)) {
 
-					heap.buildDHeap(inputValues);
-					heap.setSize(inputValues.length); // Set the correct size
+					heap.buildDHeap(parser);
 					inputIsValid  = true;
 				} else {
+					System.out.println(parser.getErrorMessage());
 					System.out.println("Heap was not built due to input errors.");
 				}
 
@@ -140,7 +140,11 @@ public class DHeapUserInterface {
 	 * accordingly.
 	 */
 	private void userChooseChangeD() {
-		heap.changeD(DHeapValidator.promptValidD(scan));
+		try {
+			heap.changeD(DHeapValidator.promptValidD(scan));
+		} catch (IllegalArgumentException e) {
+			System.out.println(e.getMessage());
+		}
 
 	}
 
@@ -13,7 +13,34 @@ enum DHeapError {
 
 	// Heap Operation Errors
 	HEAP_OVERFLOW("Heap Overflow: no more space in the heap"), HEAP_UNDERFLOW("Heap Underflow: the heap is empty"),
-	INVALID_HEAP_SIZE("Heap size is invalid"),
+	MELD_WITH_ITSELF("A heap cannot be melded with itself"),
+	NOT_MONOTONE("The key is larger than the last extracted key"),
+	INVALID_KEY_RANGE("The key range is empty or larger than the queue supports"),
+	KEY_OUT_OF_RANGE("The key is outside the range of the queue"),
+	INVALID_HEAP_SIZE("Heap size is invalid"), INVALID_CAPACITY("Capacity must be between 1 and " + DHeapMax.MAX_CAPACITY),
+
+	// Indexed Heap Errors
+	INVALID_HANDLE("Handle must be between 0 and the maximum handle of the heap"), HANDLE_NOT_FOUND("The handle is not in the heap"),
+	INVALID_MAX_HANDLE("The maximum handle must be between 0 and " + (DHeapMax.MAX_CAPACITY - 1)),
+	DUPLICATE_HANDLE("The handle is already in the heap"),
+	KEY_NOT_INCREASED("The new key is smaller than the current key"),
+	KEY_NOT_DECREASED("The new key is larger than the current key"),
+
+	// Concurrent Heap Errors
+	INVALID_STRIPES("The number of stripes must be at least 1"),
+	INVALID_WINDOW("The tuning window must be at least 1 operation"),
+
+	// Persistent Heap Errors
+	INVALID_HEAP_FILE("The file is not a D-heap file of a supported version"),
+	INVALID_SNAPSHOT("The snapshot is corrupt or of an unsupported version"),
+	SNAPSHOT_NOT_HEAP("The snapshot is not in heap order"),
+
+	// Batch Mode Errors
+	UNKNOWN_COMMAND("Unknown command, expected build, insert, extract, changeD or print"),
+	MISSING_OPTION_VALUE("The option needs a value"),
+
+	// Metrics Errors
+	METRICS_DISABLED("Metrics are disabled, start the VM with -Ddheap.metrics=true"),
 
 	// Menu and UI Errors
 	INVALID_MENU_CHOICE("Invalid choice! You must choose whole number between 1-6!"), EMPTY_HEAP("The Heap is empty");
@@ -170,13 +197,24 @@ public class DHeapValidator {
 	}
 
 	/**
-	 * Checks if there is space to insert a new value.
+	 * Checks if there is space to insert a new value. The heap grows on demand,
+	 * so this only fails once the largest possible array is full.
 	 * 
 	 * @param size Current heap size.
 	 * @return true if there is space.
 	 */
 	public static boolean canInsert(int size) {
-		return size < DHeapMax.HEAP_SIZE;
+		return size < DHeapMax.MAX_CAPACITY;
+	}
+
+	/**
+	 * Validates a requested heap capacity.
+	 * 
+	 * @param capacity Capacity to validate.
+	 * @return true if the heap can allocate an array of that length.
+	 */
+	public static boolean isValidCapacity(int capacity) {
+		return capacity >= 1 && capacity <= DHeapMax.MAX_CAPACITY;
 	}
 
 	/**
@@ -202,14 +240,14 @@ public class DHeapValidator {
 
 	/**
 	 * Checks if the given number of elements can be used to build a heap without
-	 * exceeding the maximum allowed heap size.
+	 * exceeding the maximum capacity the heap can grow to.
 	 *
 	 * @param numberOfElements The number of elements to insert into the heap.
 	 * @return true if the heap can be built with the given number of elements;
 	 *         false otherwise.
 	 */
 	public static boolean canBuildHeap(int numberOfElements) {
-		return numberOfElements <= DHeapMax.HEAP_SIZE;
+		return numberOfElements <= DHeapMax.MAX_CAPACITY;
 	}
 
 	/**
@@ -225,7 +263,7 @@ public class DHeapValidator {
 
 		// Check if there too many elements
 		if (!canBuildHeap(parts.length)) {
-			System.out.println("Too many elements. Max heap size is " + DHeapMax.HEAP_SIZE);
+			System.out.println("Too many elements. Max heap size is " + DHeapMax.MAX_CAPACITY);
 			return false;
 		}
 
@@ -0,0 +1,84 @@
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * DHeapVectorScan - Finds the largest child of a node with SIMD instructions.
+ *
+ * Uses the incubating Java Vector API, so this class must be compiled and run
+ * with "--add-modules jdk.incubator.vector". DHeapArrays only calls it when the
+ * vector scan is enabled (see DHeapArrays.VECTOR_SCAN), so the rest of the
+ * project keeps working without the module at run time.
+ */
+final class DHeapVectorScan {
+
+	private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+	/** Utility class, not instantiable. */
+	private DHeapVectorScan() {
+	}
+
+	/** Returns the number of ints processed per vector instruction. */
+	static int lanes() {
+		return SPECIES.length();
+	}
+
+	/**
+	 * Returns the index of the largest element in a[from .. end - 1]. If the
+	 * maximum occurs several times the first index is returned, like the scalar
+	 * scan.
+	 *
+	 * The maximum is found with a lane-wise max over full vectors plus a scalar
+	 * tail, and its position with a lane-wise compare against the maximum. Ranges
+	 * shorter than one vector are scanned with a plain loop.
+	 *
+	 * @param a    The array.
+	 * @param from First index of the range (inclusive).
+	 * @param end  Last index of the range (exclusive), greater than from.
+	 * @return Index of the largest element.
+	 */
+	static int maxIndex(int[] a, int from, int end) {
+		int lanes = SPECIES.length();
+		int bound = from + SPECIES.loopBound(end - from);
+		if (bound == from) {
+			return scalarMaxIndex(a, from, end); // Shorter than one vector
+		}
+
+		IntVector best = IntVector.fromArray(SPECIES, a, from);
+		int i;
+		for (i = from + lanes; i < bound; i += lanes) {
+			best = best.max(IntVector.fromArray(SPECIES, a, i));
+		}
+		int max = best.reduceLanes(VectorOperators.MAX);
+		for (; i < end; i++) {
+			max = Math.max(max, a[i]); // Scalar tail
+		}
+
+		// Locate the first occurrence of the maximum
+		for (i = from; i < bound; i += lanes) {
+			VectorMask<Integer> hit = IntVector.fromArray(SPECIES, a, i).eq(max);
+			if (hit.anyTrue()) {
+				return i + hit.firstTrue();
+			}
+		}
+		while (a[i] != max) {
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * Returns the index of the first largest element in a[from .. end - 1] with a
+	 * plain loop.
+	 */
+	private static int scalarMaxIndex(int[] a, int from, int end) {
+		int maxIndex = from;
+		for (int c = from + 1; c < end; c++) {
+			if (a[c] > a[maxIndex]) {
+				maxIndex = c;
+			}
+		}
+		return maxIndex;
+	}
+}
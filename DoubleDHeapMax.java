@@ -0,0 +1,157 @@
+import java.util.Objects;
+
+/**
+ * DoubleDHeapMax - A D-ary Max Heap of primitive double keys.
+ *
+ * Same API as LongDHeapMax, for double keys (e.g. scores). Keys are ordered by
+ * Double.compare, so NaN sorts above every other value and -0.0 below 0.0.
+ *
+ * The heap is a LongDHeapMax of the keys mapped to longs whose signed order is
+ * the Double.compare order (see toSortableLong), so it shares the long sift
+ * routines instead of keeping a copy of them for doubles. The mapping is exact
+ * for every value except NaN: all NaNs are stored as the canonical Double.NaN,
+ * which Double.compare cannot tell apart from them anyway.
+ */
+public class DoubleDHeapMax {
+
+	private final LongDHeapMax heap; // The keys as sortable longs
+
+	/**
+	 * Constructs a D-ary Max Heap of doubles with the default initial capacity.
+	 *
+	 * @param d The number of children per node.
+	 * @throws IllegalArgumentException If d is out of valid range.
+	 */
+	public DoubleDHeapMax(int d) {
+		this(d, DHeapMax.DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructs a D-ary Max Heap of doubles with the given initial capacity.
+	 *
+	 * @param d               The number of children per node.
+	 * @param initialCapacity The number of elements to allocate room for.
+	 * @throws IllegalArgumentException If d or initialCapacity is out of range.
+	 */
+	public DoubleDHeapMax(int d, int initialCapacity) {
+		this.heap = new LongDHeapMax(d, initialCapacity);
+	}
+
+	/**
+	 * Maps a double to a long with the same order: the bits of a positive value
+	 * already compare like the value, and flipping all but the sign bit of a
+	 * negative value reverses the order of its magnitude. The mapping is its own
+	 * inverse except for NaN, which doubleToLongBits collapses to Double.NaN.
+	 *
+	 * @param value The key.
+	 * @return A long that compares like the key under Double.compare.
+	 */
+	static long toSortableLong(double value) {
+		long bits = Double.doubleToLongBits(value);
+		return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+	}
+
+	/**
+	 * Reverses toSortableLong.
+	 *
+	 * @param sortable A value returned by toSortableLong.
+	 * @return The key.
+	 */
+	static double fromSortableLong(long sortable) {
+		return Double.longBitsToDouble(sortable ^ ((sortable >> 63) & Long.MAX_VALUE));
+	}
+
+	/** Returns the current value of 'd'. */
+	public int getD() {
+		return heap.getD();
+	}
+
+	/** Returns the current size of the heap. */
+	public int getSize() {
+		return heap.getSize();
+	}
+
+	/** Returns true if the heap holds no elements. */
+	public boolean isEmpty() {
+		return heap.isEmpty();
+	}
+
+	/** Returns the number of elements the heap can hold before it grows. */
+	public int getCapacity() {
+		return heap.getCapacity();
+	}
+
+	/**
+	 * Makes sure the heap can hold at least minCapacity elements without growing
+	 * again.
+	 *
+	 * @param minCapacity The number of elements the heap must be able to hold.
+	 * @throws IllegalArgumentException If minCapacity exceeds MAX_CAPACITY.
+	 */
+	public void ensureCapacity(int minCapacity) {
+		heap.ensureCapacity(minCapacity);
+	}
+
+	/** Shrinks the backing array to the current size (at least one element). */
+	public void trimToSize() {
+		heap.trimToSize();
+	}
+
+	/**
+	 * Inserts a new key into the heap and restores the heap property.
+	 *
+	 * @param key The value to insert into the heap.
+	 * @throws IllegalArgumentException If the heap reaches its maximum capacity.
+	 */
+	public void insert(double key) {
+		heap.insert(toSortableLong(key));
+	}
+
+	/**
+	 * Returns the maximum element without removing it.
+	 *
+	 * @return The maximum element.
+	 * @throws IllegalStateException If the heap is empty.
+	 */
+	public double peek() {
+		return fromSortableLong(heap.peek());
+	}
+
+	/**
+	 * Extracts the maximum element (root) from the heap.
+	 *
+	 * @return The maximum element.
+	 * @throws IllegalStateException If the heap is empty.
+	 */
+	public double extractMax() {
+		return fromSortableLong(heap.extractMax());
+	}
+
+	/**
+	 * Changes the value of 'd' and re-heapifies the elements in place.
+	 *
+	 * @param newD The new value of 'd'.
+	 * @throws IllegalArgumentException If newD is out of valid range.
+	 */
+	public void changeD(int newD) {
+		heap.changeD(newD);
+	}
+
+	/**
+	 * Replaces the contents of the heap with a range of an unordered array and
+	 * heapifies it bottom-up. The range is mapped into a temporary long[] first.
+	 *
+	 * @param values The source array.
+	 * @param from   Index of the first value to use.
+	 * @param len    Number of values to use.
+	 * @throws IndexOutOfBoundsException If the range is outside of values.
+	 */
+	public void buildDHeap(double[] values, int from, int len) {
+		Objects.checkFromIndexSize(from, len, values.length);
+		long[] sortable = new long[len];
+		for (int i = 0; i < len; i++) {
+			sortable[i] = toSortableLong(values[from + i]);
+		}
+		heap.buildDHeap(sortable, 0, len);
+	}
+}
@@ -0,0 +1,352 @@
+import java.util.OptionalInt;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * FineGrainedDHeapMax - A linearizable concurrent D-ary Max Heap with one lock
+ * per node (the strict mode of ConcurrentDHeapMax).
+ *
+ * The algorithm is the concurrent heap of Hunt, Michael, Parthasarathy and
+ * Scott (1996), generalized from two to d children. A short global lock only
+ * guards the size: an insert claims the next free slot under it, an extract
+ * claims the last element. The sifts then run hand over hand on node locks,
+ * always parent before child, so operations on different paths of the tree
+ * run in parallel and no deadlock is possible.
+ *
+ * Every node carries a tag: EMPTY, AVAILABLE, or the id of the thread whose
+ * insert is still moving the key up. An insert only moves its own key, and
+ * follows it when an extract moved it in the meantime. Slots are filled in
+ * digit-reversed order within each level, so consecutive inserts start in
+ * different subtrees and do not contend for the same parents.
+ *
+ * The nodes live in segments of SEGMENT_SIZE that are allocated on first use
+ * and kept afterwards, so the memory stays at the largest size reached. The
+ * directory of the segments starts small and doubles as segments are added.
+ */
+public class FineGrainedDHeapMax {
+
+	private static final long EMPTY = 0; // Tag of a slot without a key
+	private static final long AVAILABLE = 1; // Tag of a key that is in heap order
+	static final long FIRST_OWNER = 2; // Tags from here on are inserting threads
+	private static final int SEGMENT_BITS = 12;
+	private static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+	private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+	private static final int INITIAL_SEGMENTS = 16; // Directory length of a new heap
+	private static final int MAX_SEGMENTS = (DHeapMax.MAX_CAPACITY >>> SEGMENT_BITS) + 1;
+	private static final int SPINS_BEFORE_YIELD = 64;
+
+	private final int d; // Number of children per node (D-ary)
+	private final ReentrantLock sizeLock = new ReentrantLock();
+	private int size; // Number of claimed slots, guarded by sizeLock
+	private volatile AtomicReferenceArray<Segment> segments; // Replaced by a longer copy under sizeLock
+
+	/** A block of nodes: keys and tags, guarded by the per-node locks. */
+	private static final class Segment {
+		final int[] keys = new int[SEGMENT_SIZE];
+		final long[] tags = new long[SEGMENT_SIZE];
+		final AtomicIntegerArray locks = new AtomicIntegerArray(SEGMENT_SIZE); // 1 while locked
+	}
+
+	/**
+	 * Constructs an empty heap.
+	 *
+	 * @param d The number of children per node.
+	 * @throws IllegalArgumentException If d is out of valid range.
+	 */
+	public FineGrainedDHeapMax(int d) {
+		if (!DHeapValidator.isValidD(d)) {
+			throw new IllegalArgumentException(DHeapError.INVALID_D.getMessage());
+		}
+		this.d = d;
+		this.segments = new AtomicReferenceArray<>(INITIAL_SEGMENTS);
+	}
+
+	/** Returns the value of 'd'. */
+	public int getD() {
+		return this.d;
+	}
+
+	/** Returns the number of elements, including inserts that are still sifting. */
+	public int getSize() {
+		sizeLock.lock();
+		try {
+			return size;
+		} finally {
+			sizeLock.unlock();
+		}
+	}
+
+	/** Returns true if the heap holds no elements. */
+	public boolean isEmpty() {
+		return getSize() == 0;
+	}
+
+	/**
+	 * Inserts a new key.
+	 *
+	 * @param key The value to insert into the heap.
+	 * @throws IllegalArgumentException If the heap is full.
+	 */
+	public void insert(int key) {
+		long owner = FIRST_OWNER + Thread.currentThread().getId();
+		if (rise(key, owner)) {
+			finish(owner);
+		}
+	}
+
+	/**
+	 * Claims a slot for the key and moves it up while it is larger than its
+	 * parent. If the key reached the root, it still carries the owner's tag and
+	 * the caller has to complete the insert with finish (package-private so that
+	 * tests can stop an insert before that last step).
+	 *
+	 * @param key   The value to insert into the heap.
+	 * @param owner The tag of the inserting thread, at least FIRST_OWNER.
+	 * @return true if the key reached the root.
+	 * @throws IllegalArgumentException If the heap is full.
+	 */
+	boolean rise(int key, long owner) {
+		int i;
+		Segment s;
+		sizeLock.lock();
+		try {
+			if (!DHeapValidator.canInsert(size)) {
+				throw new IllegalArgumentException(DHeapError.HEAP_OVERFLOW.getMessage());
+			}
+			i = slot(size++);
+			s = segment(i);
+			if (s == null) {
+				s = new Segment();
+				directory(i >>> SEGMENT_BITS).set(i >>> SEGMENT_BITS, s);
+			}
+			lock(s, i);
+		} finally {
+			sizeLock.unlock();
+		}
+		s.keys[i & SEGMENT_MASK] = key;
+		s.tags[i & SEGMENT_MASK] = owner;
+		unlock(s, i);
+
+		// Move the key up while it is larger than its parent
+		while (i > 0) {
+			int p = DHeapArrays.parent(i, d);
+			Segment ps = segment(p);
+			lock(ps, p);
+			s = segment(i);
+			lock(s, i);
+			int next = i;
+			long parentTag = ps.tags[p & SEGMENT_MASK];
+			long tag = s.tags[i & SEGMENT_MASK];
+			if (parentTag == AVAILABLE && tag == owner) {
+				if (s.keys[i & SEGMENT_MASK] > ps.keys[p & SEGMENT_MASK]) {
+					swap(s, i, ps, p);
+					next = p;
+				} else {
+					s.tags[i & SEGMENT_MASK] = AVAILABLE; // In heap order, done
+					next = -1;
+				}
+			} else if (parentTag == EMPTY) {
+				next = -1; // An extract moved the key to the root and sifts it itself
+			} else if (tag != owner) {
+				next = p; // An extract moved the key up, follow it
+			} // Otherwise the parent is another insert's key that has to move first
+			unlock(s, i);
+			unlock(ps, p);
+			if (next < 0) {
+				return false;
+			}
+			if (next == i) {
+				Thread.yield(); // Let the other insert move its key first
+			}
+			i = next;
+		}
+		return true;
+	}
+
+	/**
+	 * Completes an insert whose key reached the root: marks it as in heap order,
+	 * unless an extract has taken it meanwhile.
+	 *
+	 * @param owner The tag of the inserting thread.
+	 */
+	void finish(long owner) {
+		Segment root = segment(0);
+		lock(root, 0);
+		if (root.tags[0] == owner) {
+			root.tags[0] = AVAILABLE;
+		}
+		unlock(root, 0);
+	}
+
+	/**
+	 * Removes and returns the maximum, if there is one.
+	 *
+	 * @return The maximum, or an empty OptionalInt if the heap is empty.
+	 */
+	public OptionalInt pollMax() {
+		int bottom;
+		Segment bs;
+		sizeLock.lock();
+		try {
+			if (size == 0) {
+				return OptionalInt.empty();
+			}
+			bottom = slot(--size);
+			bs = segment(bottom);
+			lock(bs, bottom);
+		} finally {
+			sizeLock.unlock();
+		}
+		int key = bs.keys[bottom & SEGMENT_MASK];
+		bs.tags[bottom & SEGMENT_MASK] = EMPTY;
+		unlock(bs, bottom);
+		if (bottom == 0) {
+			return OptionalInt.of(key); // It was the only element
+		}
+
+		Segment root = segment(0);
+		lock(root, 0);
+		int rootKey = root.keys[0];
+		if (root.tags[0] == EMPTY || key >= rootKey) {
+			// The root was taken meanwhile, or holds an insert that is not
+			// complete yet and smaller than the bottom key: return the bottom key
+			unlock(root, 0);
+			return OptionalInt.of(key);
+		}
+		root.keys[0] = key; // The bottom key replaces the maximum and sinks
+		root.tags[0] = AVAILABLE;
+		siftDown(root);
+		return OptionalInt.of(rootKey);
+	}
+
+	/**
+	 * Moves the key at the root down while a child is larger. The root is locked
+	 * on entry; every node is unlocked on return.
+	 */
+	private void siftDown(Segment root) {
+		int i = 0;
+		Segment s = root;
+		while (true) {
+			long first = (long) d * i + 1;
+			int best = -1;
+			Segment bestSegment = null;
+			for (long c = first; c < first + d && c < DHeapMax.MAX_CAPACITY; c++) {
+				int child = (int) c;
+				Segment cs = segment(child);
+				if (cs == null) {
+					continue; // Never used, so empty
+				}
+				lock(cs, child);
+				if (cs.tags[child & SEGMENT_MASK] != EMPTY && (best < 0
+						|| cs.keys[child & SEGMENT_MASK] > bestSegment.keys[best & SEGMENT_MASK])) {
+					if (best >= 0) {
+						unlock(bestSegment, best);
+					}
+					best = child;
+					bestSegment = cs;
+				} else {
+					unlock(cs, child);
+				}
+			}
+			if (best < 0) {
+				break;
+			}
+			if (bestSegment.keys[best & SEGMENT_MASK] > s.keys[i & SEGMENT_MASK]) {
+				swap(bestSegment, best, s, i);
+				unlock(s, i);
+				i = best;
+				s = bestSegment;
+			} else {
+				unlock(bestSegment, best);
+				break;
+			}
+		}
+		unlock(s, i);
+	}
+
+	/**
+	 * Returns the node of the k-th claimed slot (counting from 0): the levels are
+	 * filled top-down, and each level in digit-reversed order, so that slot k + 1
+	 * lies in another subtree than slot k.
+	 */
+	private int slot(int k) {
+		if (d == 1) {
+			return k;
+		}
+		long start = 0; // First node of the level
+		long width = 1; // Nodes in the level
+		int digits = 0;
+		while (k >= start + width) {
+			start += width;
+			width *= d;
+			digits++;
+		}
+		long offset = k - start;
+		long reversed = 0;
+		for (int j = 0; j < digits; j++) {
+			reversed = reversed * d + offset % d;
+			offset /= d;
+		}
+		return (int) (start + reversed);
+	}
+
+	/** Returns the segment of node i, or null if it was never allocated. */
+	private Segment segment(int i) {
+		AtomicReferenceArray<Segment> directory = segments;
+		int index = i >>> SEGMENT_BITS;
+		return index < directory.length() ? directory.get(index) : null;
+	}
+
+	/**
+	 * Returns a directory that has room for the given segment index, doubling
+	 * the current one if needed. Must be called while holding sizeLock; the old
+	 * directory stays valid for readers, as no segment is ever removed.
+	 */
+	private AtomicReferenceArray<Segment> directory(int index) {
+		AtomicReferenceArray<Segment> directory = segments;
+		if (index < directory.length()) {
+			return directory;
+		}
+		int length = directory.length();
+		while (length <= index) {
+			length = (int) Math.min(2L * length, MAX_SEGMENTS);
+		}
+		AtomicReferenceArray<Segment> grown = new AtomicReferenceArray<>(length);
+		for (int j = 0; j < directory.length(); j++) {
+			grown.set(j, directory.get(j));
+		}
+		segments = grown;
+		return grown;
+	}
+
+	/** Swaps the keys and tags of two locked nodes. */
+	private static void swap(Segment as, int a, Segment bs, int b) {
+		int ai = a & SEGMENT_MASK;
+		int bi = b & SEGMENT_MASK;
+		int key = as.keys[ai];
+		as.keys[ai] = bs.keys[bi];
+		bs.keys[bi] = key;
+		long tag = as.tags[ai];
+		as.tags[ai] = bs.tags[bi];
+		bs.tags[bi] = tag;
+	}
+
+	/** Spins until node i is locked; yields the CPU while the lock stays taken. */
+	private static void lock(Segment s, int i) {
+		int j = i & SEGMENT_MASK;
+		int spins = 0;
+		while (!s.locks.compareAndSet(j, 0, 1)) {
+			if (++spins < SPINS_BEFORE_YIELD) {
+				Thread.onSpinWait();
+			} else {
+				Thread.yield();
+			}
+		}
+	}
+
+	/** Releases the lock of node i. */
+	private static void unlock(Segment s, int i) {
+		s.locks.set(i & SEGMENT_MASK, 0);
+	}
+}
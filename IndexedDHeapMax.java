@@ -0,0 +1,405 @@
+import java.util.Arrays;
+
+/**
+ * IndexedDHeapMax - A D-ary Max Heap of int keys addressed by handles.
+ *
+ * Every key is inserted together with a caller chosen handle (an int from 0 to
+ * getMaxHandle(), such as a job or vertex id). The heap keeps a position map
+ * from handle to slot that is updated on every move of a sift, so the key of
+ * any handle can be changed or removed in O(d log_d n) without rebuilding the
+ * heap.
+ *
+ * Three arrays hold the state: keys[slot] and handles[slot] form the heap
+ * itself, and positions[handle] is the slot of the handle, or NOT_IN_HEAP.
+ *
+ * The position map grows up to the largest handle inserted, so the maximum
+ * handle bounds its memory: DEFAULT_MAX_HANDLE allows a 64 MB map. Heaps
+ * addressed by larger ids can raise the bound in the constructor.
+ */
+public class IndexedDHeapMax {
+
+	public static final int DEFAULT_MAX_HANDLE = (1 << 24) - 1; // Largest handle unless the constructor raises it
+	private static final int NOT_IN_HEAP = -1; // positions[] value of absent handles
+
+	private int[] keys; // Array representation of the heap
+	private int[] handles; // handles[slot] owns keys[slot]
+	private int[] positions; // positions[handle] is the slot of the handle
+	private int size; // Number of elements in the heap
+	private int d; // Number of children per node (D-ary)
+	private final int maxHandle; // Largest accepted handle
+
+	/**
+	 * Constructs an indexed D-ary Max Heap with the default initial capacity.
+	 *
+	 * @param d The number of children per node.
+	 * @throws IllegalArgumentException If d is out of valid range.
+	 */
+	public IndexedDHeapMax(int d) {
+		this(d, DHeapMax.DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructs an indexed D-ary Max Heap. The initial capacity is used both for
+	 * the number of elements and for the range of handles; both grow on demand.
+	 *
+	 * @param d               The number of children per node.
+	 * @param initialCapacity The number of elements to allocate room for.
+	 * @throws IllegalArgumentException If d or initialCapacity is out of range.
+	 */
+	public IndexedDHeapMax(int d, int initialCapacity) {
+		this(d, initialCapacity, DEFAULT_MAX_HANDLE);
+	}
+
+	/**
+	 * Constructs an indexed D-ary Max Heap that accepts handles from 0 to
+	 * maxHandle. The position map grows on demand up to maxHandle + 1 entries.
+	 *
+	 * @param d               The number of children per node.
+	 * @param initialCapacity The number of elements to allocate room for.
+	 * @param maxHandle       The largest accepted handle, below MAX_CAPACITY.
+	 * @throws IllegalArgumentException If d, initialCapacity or maxHandle is out
+	 *                                  of range.
+	 */
+	public IndexedDHeapMax(int d, int initialCapacity, int maxHandle) {
+		if (!DHeapValidator.isValidD(d)) {
+			throw new IllegalArgumentException(DHeapError.INVALID_D.getMessage());
+		}
+		if (!DHeapValidator.isValidCapacity(initialCapacity)) {
+			throw new IllegalArgumentException(DHeapError.INVALID_CAPACITY.getMessage());
+		}
+		if (maxHandle < 0 || maxHandle >= DHeapMax.MAX_CAPACITY) {
+			throw new IllegalArgumentException(DHeapError.INVALID_MAX_HANDLE.getMessage());
+		}
+		this.d = d;
+		this.maxHandle = maxHandle;
+		this.keys = new int[initialCapacity];
+		this.handles = new int[initialCapacity];
+		this.positions = new int[Math.min(initialCapacity, maxHandle + 1)];
+		Arrays.fill(positions, NOT_IN_HEAP);
+	}
+
+	/** Returns the largest handle the heap accepts. */
+	public int getMaxHandle() {
+		return this.maxHandle;
+	}
+
+	/** Returns the current value of 'd'. */
+	public int getD() {
+		return this.d;
+	}
+
+	/** Returns the current size of the heap. */
+	public int getSize() {
+		return this.size;
+	}
+
+	/** Returns true if the heap holds no elements. */
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	/**
+	 * Checks whether a handle is currently in the heap.
+	 *
+	 * @param handle The handle to look up.
+	 * @return true if the handle is in the heap.
+	 */
+	public boolean contains(int handle) {
+		return handle >= 0 && handle < positions.length && positions[handle] != NOT_IN_HEAP;
+	}
+
+	/**
+	 * Returns the key currently associated with a handle.
+	 *
+	 * @param handle A handle in the heap.
+	 * @return Its key.
+	 * @throws IllegalArgumentException If the handle is not in the heap.
+	 */
+	public int keyOf(int handle) {
+		return keys[slotOf(handle)];
+	}
+
+	/**
+	 * Inserts a handle with its key and restores the heap property.
+	 *
+	 * @param handle A handle from 0 to getMaxHandle() that is not yet in the heap.
+	 * @param key    The priority of the handle.
+	 * @throws IllegalArgumentException If the handle is out of range or already
+	 *                                  in the heap, or the heap is full.
+	 */
+	public void insert(int handle, int key) {
+		if (handle < 0 || handle > maxHandle) {
+			throw new IllegalArgumentException(DHeapError.INVALID_HANDLE.getMessage());
+		}
+		if (contains(handle)) {
+			throw new IllegalArgumentException(DHeapError.DUPLICATE_HANDLE.getMessage());
+		}
+		if (!DHeapValidator.canInsert(size)) {
+			throw new IllegalArgumentException(DHeapError.HEAP_OVERFLOW.getMessage());
+		}
+		ensureCapacity(size + 1);
+		ensureHandleCapacity(handle + 1);
+
+		keys[size] = key;
+		handles[size] = handle;
+		positions[handle] = size;
+		size++;
+		heapifyUp(size - 1);
+	}
+
+	/**
+	 * Returns the handle with the maximum key without removing it.
+	 *
+	 * @return The handle on top of the heap.
+	 * @throws IllegalStateException If the heap is empty.
+	 */
+	public int peekHandle() {
+		checkNotEmpty();
+		return handles[0];
+	}
+
+	/**
+	 * Returns the maximum key without removing it.
+	 *
+	 * @return The maximum key.
+	 * @throws IllegalStateException If the heap is empty.
+	 */
+	public int peekKey() {
+		checkNotEmpty();
+		return keys[0];
+	}
+
+	/**
+	 * Removes the maximum key and returns its handle.
+	 *
+	 * @return The handle that was on top of the heap.
+	 * @throws IllegalStateException If the heap is empty.
+	 */
+	public int extractMaxHandle() {
+		checkNotEmpty();
+		int handle = handles[0];
+		removeSlot(0);
+		return handle;
+	}
+
+	/**
+	 * Raises the key of a handle and moves it up the tree.
+	 *
+	 * @param handle A handle in the heap.
+	 * @param newKey The new key, not smaller than the current one.
+	 * @throws IllegalArgumentException If the handle is not in the heap or the key
+	 *                                  would decrease.
+	 */
+	public void increaseKey(int handle, int newKey) {
+		int slot = slotOf(handle);
+		if (newKey < keys[slot]) {
+			throw new IllegalArgumentException(DHeapError.KEY_NOT_INCREASED.getMessage());
+		}
+		keys[slot] = newKey;
+		heapifyUp(slot);
+	}
+
+	/**
+	 * Lowers the key of a handle and moves it down the tree.
+	 *
+	 * @param handle A handle in the heap.
+	 * @param newKey The new key, not larger than the current one.
+	 * @throws IllegalArgumentException If the handle is not in the heap or the key
+	 *                                  would increase.
+	 */
+	public void decreaseKey(int handle, int newKey) {
+		int slot = slotOf(handle);
+		if (newKey > keys[slot]) {
+			throw new IllegalArgumentException(DHeapError.KEY_NOT_DECREASED.getMessage());
+		}
+		keys[slot] = newKey;
+		heapifyDown(slot);
+	}
+
+	/**
+	 * Sets the key of a handle to any value and moves it in whichever direction
+	 * restores the heap property.
+	 *
+	 * @param handle A handle in the heap.
+	 * @param newKey The new key.
+	 * @throws IllegalArgumentException If the handle is not in the heap.
+	 */
+	public void changeKey(int handle, int newKey) {
+		int slot = slotOf(handle);
+		int oldKey = keys[slot];
+		keys[slot] = newKey;
+		if (newKey > oldKey) {
+			heapifyUp(slot);
+		} else {
+			heapifyDown(slot);
+		}
+	}
+
+	/**
+	 * Removes a handle from the heap.
+	 *
+	 * @param handle A handle in the heap.
+	 * @return The key the handle had.
+	 * @throws IllegalArgumentException If the handle is not in the heap.
+	 */
+	public int remove(int handle) {
+		int slot = slotOf(handle);
+		int key = keys[slot];
+		removeSlot(slot);
+		return key;
+	}
+
+	/**
+	 * Changes the value of 'd' and re-heapifies the elements in place.
+	 *
+	 * @param newD The new value of 'd'.
+	 * @throws IllegalArgumentException If newD is out of valid range.
+	 */
+	public void changeD(int newD) {
+		if (!DHeapValidator.isValidD(newD)) {
+			throw new IllegalArgumentException(DHeapError.INVALID_D.getMessage());
+		}
+		this.d = newD;
+		for (int i = DHeapArrays.lastParent(size, d); i >= 0; i--) {
+			heapifyDown(i);
+		}
+	}
+
+	/**
+	 * Makes sure the heap can hold at least minCapacity elements without growing
+	 * again.
+	 *
+	 * @param minCapacity The number of elements the heap must be able to hold.
+	 * @throws IllegalArgumentException If minCapacity exceeds MAX_CAPACITY.
+	 */
+	public void ensureCapacity(int minCapacity) {
+		if (minCapacity <= keys.length) {
+			return;
+		}
+		if (!DHeapValidator.isValidCapacity(minCapacity)) {
+			throw new IllegalArgumentException(DHeapError.HEAP_OVERFLOW.getMessage());
+		}
+		int newCapacity = DHeapArrays.newCapacity(keys.length, minCapacity, DHeapMax.MAX_CAPACITY);
+		keys = Arrays.copyOf(keys, newCapacity);
+		handles = Arrays.copyOf(handles, newCapacity);
+	}
+
+	/**
+	 * Grows the position map so that handles below minHandles can be stored.
+	 *
+	 * @param minHandles One more than the largest handle that must fit.
+	 */
+	private void ensureHandleCapacity(int minHandles) {
+		if (minHandles <= positions.length) {
+			return;
+		}
+		int oldLength = positions.length;
+		positions = Arrays.copyOf(positions, DHeapArrays.newCapacity(oldLength, minHandles, maxHandle + 1));
+		Arrays.fill(positions, oldLength, positions.length, NOT_IN_HEAP);
+	}
+
+	/**
+	 * Removes the element in a slot by moving the last element into it and
+	 * sifting that element in whichever direction is needed.
+	 *
+	 * @param slot The slot to empty.
+	 */
+	private void removeSlot(int slot) {
+		positions[handles[slot]] = NOT_IN_HEAP;
+		size--;
+		if (slot == size) {
+			return; // The last element was removed, nothing to fix
+		}
+
+		int oldKey = keys[slot];
+		move(size, slot);
+		if (keys[slot] > oldKey) {
+			heapifyUp(slot);
+		} else {
+			heapifyDown(slot);
+		}
+	}
+
+	/**
+	 * Returns the slot of a handle.
+	 *
+	 * @param handle The handle to look up.
+	 * @return Its slot.
+	 * @throws IllegalArgumentException If the handle is not in the heap.
+	 */
+	private int slotOf(int handle) {
+		if (!contains(handle)) {
+			throw new IllegalArgumentException(DHeapError.HANDLE_NOT_FOUND.getMessage());
+		}
+		return positions[handle];
+	}
+
+	/** Copies the element in slot 'from' to slot 'to' and updates its position. */
+	private void move(int from, int to) {
+		keys[to] = keys[from];
+		handles[to] = handles[from];
+		positions[handles[to]] = to;
+	}
+
+	/**
+	 * Moves the element at slot i up the tree. Smaller parents move down into the
+	 * hole, and each move updates the position of the moved handle.
+	 *
+	 * @param i Slot of the element.
+	 */
+	private void heapifyUp(int i) {
+		int key = keys[i];
+		int handle = handles[i];
+		while (i > 0) {
+			int p = DHeapArrays.parent(i, d);
+			if (keys[p] >= key) {
+				break;
+			}
+			move(p, i);
+			i = p;
+		}
+		keys[i] = key;
+		handles[i] = handle;
+		positions[handle] = i;
+	}
+
+	/**
+	 * Moves the element at slot i down the tree. Larger children move up into the
+	 * hole, and each move updates the position of the moved handle.
+	 *
+	 * @param i Slot of the element.
+	 */
+	private void heapifyDown(int i) {
+		int key = keys[i];
+		int handle = handles[i];
+		int lastParent = DHeapArrays.lastParent(size, d);
+
+		while (i <= lastParent) {
+			int first = DHeapArrays.firstChild(i, d);
+			int end = first + Math.min(d, size - first);
+			int maxIndex = first;
+			for (int c = first + 1; c < end; c++) {
+				if (keys[c] > keys[maxIndex]) {
+					maxIndex = c;
+				}
+			}
+
+			if (keys[maxIndex] <= key) {
+				break;
+			}
+			move(maxIndex, i);
+			i = maxIndex;
+		}
+
+		keys[i] = key;
+		handles[i] = handle;
+		positions[handle] = i;
+	}
+
+	/** Throws if there is nothing to extract. */
+	private void checkNotEmpty() {
+		if (!DHeapValidator.canExtract(size)) {
+			throw new IllegalStateException(DHeapError.HEAP_UNDERFLOW.getMessage());
+		}
+	}
+}
@@ -0,0 +1,43 @@
+/**
+ * IntPriorityQueue - The common API of the int max-priority queues.
+ *
+ * DHeapMax is the general-purpose implementation. RadixHeapMax and
+ * BucketQueueMax trade generality for speed: the radix heap requires that no
+ * key larger than the last extracted one is inserted (a monotone workload,
+ * like event simulation or Dijkstra), and the bucket queue requires keys in a
+ * small fixed range. Code written against this interface can switch between
+ * them without other changes.
+ */
+public interface IntPriorityQueue {
+
+	/**
+	 * Inserts a key.
+	 *
+	 * @param key The value to insert.
+	 * @throws IllegalArgumentException If the queue is full or the key is not
+	 *                                  accepted by the implementation.
+	 */
+	void insert(int key);
+
+	/**
+	 * Removes and returns the largest key.
+	 *
+	 * @return The largest key.
+	 * @throws IllegalStateException If the queue is empty.
+	 */
+	int extractMax();
+
+	/**
+	 * Returns the largest key without removing it.
+	 *
+	 * @return The largest key.
+	 * @throws IllegalStateException If the queue is empty.
+	 */
+	int peek();
+
+	/** Returns the number of keys in the queue. */
+	int getSize();
+
+	/** Returns true if the queue holds no keys. */
+	boolean isEmpty();
+}
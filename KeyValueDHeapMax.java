@@ -0,0 +1,200 @@
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * KeyValueDHeapMax - A D-ary Max Heap of int keys, each carrying an int value.
+ *
+ * The keys and their values are kept in two parallel int arrays that are
+ * moved in lockstep during the sifts. Comparisons only touch the dense key
+ * array, while the value tells the caller which item a key belongs to (e.g. an
+ * index into a table of jobs).
+ *
+ * Both arrays are int[]: the keys are int priorities like those of DHeapMax,
+ * and the value is an int handle rather than an object, so that the values
+ * stay a dense primitive array as well. Long keys would need their own copies
+ * of the paired sifts in DHeapArrays; a caller whose priorities fit in fewer
+ * bits can pack the priority and the handle into one long for LongDHeapMax.
+ */
+public class KeyValueDHeapMax {
+
+	private int[] keys; // Array representation of the heap
+	private int[] values; // values[i] belongs to keys[i]
+	private int size; // Number of elements in the heap
+	private int d; // Number of children per node (D-ary)
+
+	/**
+	 * Constructs a key/value D-ary Max Heap with the default initial capacity.
+	 *
+	 * @param d The number of children per node.
+	 * @throws IllegalArgumentException If d is out of valid range.
+	 */
+	public KeyValueDHeapMax(int d) {
+		this(d, DHeapMax.DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructs a key/value D-ary Max Heap with the given initial capacity.
+	 *
+	 * @param d               The number of children per node.
+	 * @param initialCapacity The number of elements to allocate room for.
+	 * @throws IllegalArgumentException If d or initialCapacity is out of range.
+	 */
+	public KeyValueDHeapMax(int d, int initialCapacity) {
+		if (!DHeapValidator.isValidD(d)) {
+			throw new IllegalArgumentException(DHeapError.INVALID_D.getMessage());
+		}
+		if (!DHeapValidator.isValidCapacity(initialCapacity)) {
+			throw new IllegalArgumentException(DHeapError.INVALID_CAPACITY.getMessage());
+		}
+		this.d = d;
+		this.keys = new int[initialCapacity];
+		this.values = new int[initialCapacity];
+	}
+
+	/** Returns the current value of 'd'. */
+	public int getD() {
+		return this.d;
+	}
+
+	/** Returns the current size of the heap. */
+	public int getSize() {
+		return this.size;
+	}
+
+	/** Returns true if the heap holds no elements. */
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	/**
+	 * Makes sure the heap can hold at least minCapacity elements without growing
+	 * again.
+	 *
+	 * @param minCapacity The number of elements the heap must be able to hold.
+	 * @throws IllegalArgumentException If minCapacity exceeds MAX_CAPACITY.
+	 */
+	public void ensureCapacity(int minCapacity) {
+		if (minCapacity <= keys.length) {
+			return;
+		}
+		if (!DHeapValidator.isValidCapacity(minCapacity)) {
+			throw new IllegalArgumentException(DHeapError.HEAP_OVERFLOW.getMessage());
+		}
+		int newCapacity = DHeapArrays.newCapacity(keys.length, minCapacity, DHeapMax.MAX_CAPACITY);
+		keys = Arrays.copyOf(keys, newCapacity);
+		values = Arrays.copyOf(values, newCapacity);
+	}
+
+	/**
+	 * Inserts a key with its value and restores the heap property.
+	 *
+	 * @param key   The priority of the element.
+	 * @param value The value carried along with the key.
+	 * @throws IllegalArgumentException If the heap reaches its maximum capacity.
+	 */
+	public void insert(int key, int value) {
+		if (!DHeapValidator.canInsert(size)) {
+			throw new IllegalArgumentException(DHeapError.HEAP_OVERFLOW.getMessage());
+		}
+		ensureCapacity(size + 1);
+		keys[size] = key;
+		values[size] = value;
+		DHeapArrays.siftUp(keys, values, 0, d, size);
+		size++;
+	}
+
+	/**
+	 * Returns the maximum key without removing it.
+	 *
+	 * @return The maximum key.
+	 * @throws IllegalStateException If the heap is empty.
+	 */
+	public int peekKey() {
+		checkNotEmpty();
+		return keys[0];
+	}
+
+	/**
+	 * Returns the value of the maximum key without removing it.
+	 *
+	 * @return The value belonging to the maximum key.
+	 * @throws IllegalStateException If the heap is empty.
+	 */
+	public int peekValue() {
+		checkNotEmpty();
+		return values[0];
+	}
+
+	/**
+	 * Removes the maximum key and returns its value. Call peekKey() first if the
+	 * key itself is needed as well.
+	 *
+	 * @return The value belonging to the maximum key.
+	 * @throws IllegalStateException If the heap is empty.
+	 */
+	public int extractMaxValue() {
+		checkNotEmpty();
+		int value = values[0];
+		size--;
+		keys[0] = keys[size]; // Replace root with last element
+		values[0] = values[size];
+		DHeapArrays.siftDown(keys, values, 0, size, d, 0);
+		return value;
+	}
+
+	/**
+	 * Replaces the maximum key and its value with a new pair and sifts the new
+	 * pair down: one sift instead of the two of an extract followed by an insert.
+	 *
+	 * @param key   The new key.
+	 * @param value The value carried along with the new key.
+	 * @throws IllegalStateException If the heap is empty.
+	 */
+	public void replaceMax(int key, int value) {
+		checkNotEmpty();
+		keys[0] = key;
+		values[0] = value;
+		DHeapArrays.siftDown(keys, values, 0, size, d, 0);
+	}
+
+	/**
+	 * Changes the value of 'd' and re-heapifies the elements in place.
+	 *
+	 * @param newD The new value of 'd'.
+	 * @throws IllegalArgumentException If newD is out of valid range.
+	 */
+	public void changeD(int newD) {
+		if (!DHeapValidator.isValidD(newD)) {
+			throw new IllegalArgumentException(DHeapError.INVALID_D.getMessage());
+		}
+		this.d = newD;
+		DHeapArrays.heapify(keys, values, 0, size, d);
+	}
+
+	/**
+	 * Replaces the contents of the heap with ranges of unordered keys and their
+	 * values, and heapifies them bottom-up.
+	 *
+	 * @param keys   The source keys.
+	 * @param values The source values, parallel to keys.
+	 * @param from   Index of the first pair to use.
+	 * @param len    Number of pairs to use.
+	 * @throws IndexOutOfBoundsException If the range is outside of either array.
+	 */
+	public void buildDHeap(int[] keys, int[] values, int from, int len) {
+		Objects.checkFromIndexSize(from, len, keys.length);
+		Objects.checkFromIndexSize(from, len, values.length);
+		ensureCapacity(len);
+		System.arraycopy(keys, from, this.keys, 0, len);
+		System.arraycopy(values, from, this.values, 0, len);
+		size = len;
+		DHeapArrays.heapify(this.keys, this.values, 0, size, d);
+	}
+
+	/** Throws if there is nothing to extract. */
+	private void checkNotEmpty() {
+		if (!DHeapValidator.canExtract(size)) {
+			throw new IllegalStateException(DHeapError.HEAP_UNDERFLOW.getMessage());
+		}
+	}
+}
@@ -0,0 +1,161 @@
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * LongDHeapMax - A D-ary Max Heap of primitive long keys.
+ *
+ * Same structure and growth policy as DHeapMax, but for the full long range
+ * (e.g. timestamps). Keys are stored in a long[] and are never boxed.
+ */
+public class LongDHeapMax {
+
+	private long[] heap; // Array representation of the heap
+	private int size; // Number of elements in the heap
+	private int d; // Number of children per node (D-ary)
+
+	/**
+	 * Constructs a D-ary Max Heap of longs with the default initial capacity.
+	 *
+	 * @param d The number of children per node.
+	 * @throws IllegalArgumentException If d is out of valid range.
+	 */
+	public LongDHeapMax(int d) {
+		this(d, DHeapMax.DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructs a D-ary Max Heap of longs with the given initial capacity.
+	 *
+	 * @param d               The number of children per node.
+	 * @param initialCapacity The number of elements to allocate room for.
+	 * @throws IllegalArgumentException If d or initialCapacity is out of range.
+	 */
+	public LongDHeapMax(int d, int initialCapacity) {
+		if (!DHeapValidator.isValidD(d)) {
+			throw new IllegalArgumentException(DHeapError.INVALID_D.getMessage());
+		}
+		if (!DHeapValidator.isValidCapacity(initialCapacity)) {
+			throw new IllegalArgumentException(DHeapError.INVALID_CAPACITY.getMessage());
+		}
+		this.d = d;
+		this.heap = new long[initialCapacity];
+	}
+
+	/** Returns the current value of 'd'. */
+	public int getD() {
+		return this.d;
+	}
+
+	/** Returns the current size of the heap. */
+	public int getSize() {
+		return this.size;
+	}
+
+	/** Returns true if the heap holds no elements. */
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	/** Returns the number of elements the heap can hold before it grows. */
+	public int getCapacity() {
+		return this.heap.length;
+	}
+
+	/**
+	 * Makes sure the heap can hold at least minCapacity elements without growing
+	 * again.
+	 *
+	 * @param minCapacity The number of elements the heap must be able to hold.
+	 * @throws IllegalArgumentException If minCapacity exceeds MAX_CAPACITY.
+	 */
+	public void ensureCapacity(int minCapacity) {
+		if (minCapacity <= heap.length) {
+			return;
+		}
+		if (!DHeapValidator.isValidCapacity(minCapacity)) {
+			throw new IllegalArgumentException(DHeapError.HEAP_OVERFLOW.getMessage());
+		}
+		heap = Arrays.copyOf(heap, DHeapArrays.newCapacity(heap.length, minCapacity, DHeapMax.MAX_CAPACITY));
+	}
+
+	/** Shrinks the backing array to the current size (at least one element). */
+	public void trimToSize() {
+		int newCapacity = Math.max(size, 1);
+		if (newCapacity < heap.length) {
+			heap = Arrays.copyOf(heap, newCapacity);
+		}
+	}
+
+	/**
+	 * Inserts a new key into the heap and restores the heap property.
+	 *
+	 * @param key The value to insert into the heap.
+	 * @throws IllegalArgumentException If the heap reaches its maximum capacity.
+	 */
+	public void insert(long key) {
+		if (!DHeapValidator.canInsert(size)) {
+			throw new IllegalArgumentException(DHeapError.HEAP_OVERFLOW.getMessage());
+		}
+		ensureCapacity(size + 1);
+		heap[size] = key;
+		DHeapArrays.siftUp(heap, 0, d, size);
+		size++;
+	}
+
+	/**
+	 * Returns the maximum element without removing it.
+	 *
+	 * @return The maximum element.
+	 * @throws IllegalStateException If the heap is empty.
+	 */
+	public long peek() {
+		if (!DHeapValidator.canExtract(size)) {
+			throw new IllegalStateException(DHeapError.HEAP_UNDERFLOW.getMessage());
+		}
+		return heap[0];
+	}
+
+	/**
+	 * Extracts the maximum element (root) from the heap.
+	 *
+	 * @return The maximum element.
+	 * @throws IllegalStateException If the heap is empty.
+	 */
+	public long extractMax() {
+		long max = peek();
+		heap[0] = heap[--size]; // Replace root with last element
+		DHeapArrays.siftDown(heap, 0, size, d, 0);
+		return max;
+	}
+
+	/**
+	 * Changes the value of 'd' and re-heapifies the elements in place.
+	 *
+	 * @param newD The new value of 'd'.
+	 * @throws IllegalArgumentException If newD is out of valid range.
+	 */
+	public void changeD(int newD) {
+		if (!DHeapValidator.isValidD(newD)) {
+			throw new IllegalArgumentException(DHeapError.INVALID_D.getMessage());
+		}
+		this.d = newD;
+		DHeapArrays.heapify(heap, 0, size, d);
+	}
+
+	/**
+	 * Replaces the contents of the heap with a range of an unordered array and
+	 * heapifies it bottom-up.
+	 *
+	 * @param values The source array.
+	 * @param from   Index of the first value to use.
+	 * @param len    Number of values to use.
+	 * @throws IndexOutOfBoundsException If the range is outside of values.
+	 */
+	public void buildDHeap(long[] values, int from, int len) {
+		Objects.checkFromIndexSize(from, len, values.length);
+		ensureCapacity(len);
+		System.arraycopy(values, from, heap, 0, len);
+		size = len;
+		DHeapArrays.heapify(heap, 0, size, d);
+	}
+}
@@ -0,0 +1,540 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+
+/**
+ * MappedDHeapMax - A persistent D-ary Max Heap stored in a memory-mapped file.
+ *
+ * The elements live in the file, not on the Java heap, so the heap is not
+ * limited by -Xmx and survives restarts: opening an existing file only reads
+ * its header. The file is laid out as a 32 byte header followed by the heap
+ * array (little-endian ints, root first):
+ *
+ * - 0: magic "DHPM" - 4: format version - 8: d - 12: pending key of the sift in
+ * progress - 16: state (high int) and size (low int), written as one long - 24:
+ * hole of the sift in progress - 28: dirty flag (modified since the last
+ * force())
+ *
+ * Crash consistency: every sift moves a hole and records the hole in the header
+ * after each move, and the key being sifted is stored in the header before the
+ * sift starts. Repeating a move is harmless, so if the process dies in the
+ * middle of a sift, open() finishes it from the recorded hole. changeD and
+ * buildDHeap mark the file as REBUILD; the sifts of the heapify record their
+ * key and hole in the same way (hole -1 between two sifts), so open() puts the
+ * key of an interrupted sift back and heapifies again. buildDHeap first copies
+ * the new values behind the current elements, then switches to them with one
+ * header write (state COPY, the staging index in the hole field) and copies
+ * them to the front; open() repeats that copy, so a crash leaves either the
+ * old or the new elements, never a mix. Writes reach the disk in any order
+ * until force() returns, so after a power loss only the state of the last
+ * force() is guaranteed; a file that was not forced is checked on open (O(n))
+ * and heapified again if the check fails. Files that were closed or forced
+ * open without touching the elements.
+ */
+public class MappedDHeapMax implements Closeable {
+
+	public static final int MAGIC = 0x4D504844; // "DHPM" in little-endian
+	public static final int VERSION = 1; // Format version written by this class
+	private static final int HEADER_BYTES = 32;
+	public static final int MAX_CAPACITY = (Integer.MAX_VALUE - HEADER_BYTES) / Integer.BYTES; // One mapping
+
+	// Header offsets
+	private static final int MAGIC_OFFSET = 0;
+	private static final int VERSION_OFFSET = 4;
+	private static final int D_OFFSET = 8;
+	private static final int PENDING_OFFSET = 12;
+	private static final int STATE_SIZE_OFFSET = 16;
+	private static final int HOLE_OFFSET = 24;
+	private static final int DIRTY_OFFSET = 28;
+
+	// Operation in progress, stored in the header
+	private static final int IDLE = 0;
+	private static final int SIFT_UP = 1;
+	private static final int SIFT_DOWN = 2;
+	private static final int REBUILD = 3;
+	private static final int COPY = 4;
+	private static final int NO_HOLE = -1; // Hole field between the sifts of a rebuild
+
+	private final FileChannel channel;
+	private MappedByteBuffer buffer; // Header followed by the heap array
+	private int capacity; // Number of elements that fit in the mapping
+	private int size; // Number of elements in the heap
+	private int d; // Number of children per node (D-ary)
+	private boolean dirty; // Mirrors the dirty flag of the header
+
+	/**
+	 * Opens a heap file, or creates an empty one if it does not exist.
+	 *
+	 * @param file The heap file.
+	 * @param d    The number of children per node of a new file; an existing
+	 *             file keeps the d stored in its header.
+	 * @return The opened heap.
+	 * @throws IllegalArgumentException If d is out of valid range.
+	 * @throws IOException              If the file cannot be mapped or is not a
+	 *                                  heap file.
+	 */
+	public static MappedDHeapMax open(Path file, int d) throws IOException {
+		if (!DHeapValidator.isValidD(d)) {
+			throw new IllegalArgumentException(DHeapError.INVALID_D.getMessage());
+		}
+		return new MappedDHeapMax(file, d);
+	}
+
+	/**
+	 * Opens an existing heap file.
+	 *
+	 * @param file The heap file.
+	 * @return The opened heap.
+	 * @throws IOException If the file does not exist, cannot be mapped or is not
+	 *                     a heap file.
+	 */
+	public static MappedDHeapMax open(Path file) throws IOException {
+		if (!Files.exists(file)) {
+			throw new IOException(file + " does not exist");
+		}
+		return new MappedDHeapMax(file, 0);
+	}
+
+	/**
+	 * Maps the file and either formats it (new file) or validates its header and
+	 * recovers an interrupted operation (existing file).
+	 *
+	 * @param file The heap file.
+	 * @param d    The value of d for a new file.
+	 * @throws IOException If the file cannot be mapped or is not a heap file.
+	 */
+	private MappedDHeapMax(Path file, int d) throws IOException {
+		this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		try {
+			long length = channel.size();
+			if (length == 0) {
+				map(DHeapMax.DEFAULT_CAPACITY);
+				format(d);
+			} else {
+				if (length < HEADER_BYTES || length > HEADER_BYTES + (long) MAX_CAPACITY * Integer.BYTES) {
+					throw new IOException(DHeapError.INVALID_HEAP_FILE.getMessage());
+				}
+				map((int) ((length - HEADER_BYTES) / Integer.BYTES));
+				load();
+			}
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/** Returns the current value of 'd'. */
+	public int getD() {
+		return this.d;
+	}
+
+	/** Returns the current size of the heap. */
+	public int getSize() {
+		return this.size;
+	}
+
+	/** Returns true if the heap holds no elements. */
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	/** Returns the number of elements the current mapping can hold. */
+	public int getCapacity() {
+		return this.capacity;
+	}
+
+	/**
+	 * Inserts a new key and restores the heap property. The file grows when the
+	 * mapping is full.
+	 *
+	 * @param key The value to insert into the heap.
+	 * @throws IllegalArgumentException If the heap reaches MAX_CAPACITY.
+	 * @throws IOException              If the file cannot be grown.
+	 */
+	public void insert(int key) throws IOException {
+		if (size >= MAX_CAPACITY) {
+			throw new IllegalArgumentException(DHeapError.HEAP_OVERFLOW.getMessage());
+		}
+		ensureCapacity(size + 1);
+		markDirty();
+		buffer.putInt(PENDING_OFFSET, key);
+		buffer.putInt(HOLE_OFFSET, size);
+		writeStateAndSize(SIFT_UP, size + 1); // The sift now owns the new slot
+		size++;
+		siftUp(size - 1, key);
+	}
+
+	/**
+	 * Returns the maximum element without removing it.
+	 *
+	 * @return The maximum element.
+	 * @throws IllegalStateException If the heap is empty.
+	 */
+	public int peek() {
+		checkNotEmpty();
+		return get(0);
+	}
+
+	/**
+	 * Removes and returns the maximum element.
+	 *
+	 * @return The maximum element.
+	 * @throws IllegalStateException If the heap is empty.
+	 */
+	public int extractMax() {
+		checkNotEmpty();
+		int max = get(0);
+		int last = get(size - 1);
+		markDirty();
+		buffer.putInt(PENDING_OFFSET, last);
+		buffer.putInt(HOLE_OFFSET, 0);
+		writeStateAndSize(SIFT_DOWN, size - 1); // Drops the last slot and the old root at once
+		size--;
+		siftDown(0, last);
+		return max;
+	}
+
+	/**
+	 * Changes the value of 'd' and re-heapifies the file in place.
+	 *
+	 * @param newD The new value of 'd'.
+	 * @throws IllegalArgumentException If newD is out of valid range.
+	 */
+	public void changeD(int newD) {
+		if (!DHeapValidator.isValidD(newD)) {
+			throw new IllegalArgumentException(DHeapError.INVALID_D.getMessage());
+		}
+		markDirty();
+		buffer.putInt(HOLE_OFFSET, NO_HOLE);
+		writeStateAndSize(REBUILD, size);
+		buffer.putInt(D_OFFSET, newD);
+		this.d = newD;
+		heapify();
+	}
+
+	/**
+	 * Replaces the contents of the heap with a range of unordered values and
+	 * heapifies them bottom-up. Unless the heap is empty, the values are first
+	 * staged behind the current elements, so the file may grow to hold both; if
+	 * both would exceed MAX_CAPACITY, the heap is emptied before the copy
+	 * instead, and a crash while copying leaves it empty.
+	 *
+	 * @param values The source array.
+	 * @param from   Index of the first value to use.
+	 * @param len    Number of values to use.
+	 * @throws IndexOutOfBoundsException If the range is outside of values.
+	 * @throws IllegalArgumentException  If len exceeds MAX_CAPACITY.
+	 * @throws IOException               If the file cannot be grown.
+	 */
+	public void buildDHeap(int[] values, int from, int len) throws IOException {
+		Objects.checkFromIndexSize(from, len, values.length);
+		if (len > MAX_CAPACITY) {
+			throw new IllegalArgumentException(DHeapError.HEAP_OVERFLOW.getMessage());
+		}
+		int stage = Math.max(size, len); // Clear of the current elements and of the target range
+		if (size == 0 || (long) stage + len > MAX_CAPACITY) {
+			stage = 0; // Nothing to keep, or no room for both
+		}
+		ensureCapacity(stage + len);
+		markDirty();
+		if (stage == 0) {
+			writeStateAndSize(IDLE, 0); // The heap is empty while copying
+			size = 0;
+		}
+		buffer.asIntBuffer().put(HEADER_BYTES / Integer.BYTES + stage, values, from, len);
+		buffer.putInt(HOLE_OFFSET, stage);
+		writeStateAndSize(COPY, len); // From here on open() completes the build
+		size = len;
+		copyStaged(stage);
+	}
+
+	/**
+	 * Makes sure the file can hold at least minCapacity elements, growing the
+	 * file and the mapping by half when needed.
+	 *
+	 * @param minCapacity The number of elements the heap must be able to hold.
+	 * @throws IllegalArgumentException If minCapacity exceeds MAX_CAPACITY.
+	 * @throws IOException              If the file cannot be grown.
+	 */
+	public void ensureCapacity(int minCapacity) throws IOException {
+		if (minCapacity <= capacity) {
+			return;
+		}
+		if (minCapacity > MAX_CAPACITY) {
+			throw new IllegalArgumentException(DHeapError.HEAP_OVERFLOW.getMessage());
+		}
+		map(DHeapArrays.newCapacity(capacity, minCapacity, MAX_CAPACITY));
+	}
+
+	/**
+	 * Writes all changes to the storage device. Once force() returns, the file
+	 * holds a valid heap even if the machine loses power afterwards.
+	 */
+	public void force() {
+		buffer.force(); // Data and header first, still marked dirty
+		if (dirty) {
+			buffer.putInt(DIRTY_OFFSET, 0);
+			buffer.force(); // Then the clean mark
+			dirty = false;
+		}
+	}
+
+	/**
+	 * Forces all changes to the storage device and closes the file. The mapping
+	 * itself is released by the garbage collector.
+	 *
+	 * @throws IOException If the file cannot be closed.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (channel.isOpen()) {
+			force();
+			channel.close();
+		}
+	}
+
+	/**
+	 * Maps the header plus newCapacity elements. Mapping beyond the end of the
+	 * file extends it.
+	 *
+	 * @param newCapacity The number of elements to map.
+	 * @throws IOException If the file cannot be mapped.
+	 */
+	private void map(int newCapacity) throws IOException {
+		long bytes = HEADER_BYTES + (long) newCapacity * Integer.BYTES;
+		buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		capacity = newCapacity;
+	}
+
+	/**
+	 * Writes the header of an empty heap.
+	 *
+	 * @param d The number of children per node.
+	 */
+	private void format(int d) {
+		this.d = d;
+		this.size = 0;
+		buffer.putInt(VERSION_OFFSET, VERSION);
+		buffer.putInt(D_OFFSET, d);
+		writeStateAndSize(IDLE, 0);
+		buffer.putInt(MAGIC_OFFSET, MAGIC); // Last, so a half formatted file is rejected
+		buffer.force();
+	}
+
+	/**
+	 * Reads and validates the header of an existing file and completes an
+	 * operation that was interrupted by a crash.
+	 *
+	 * @throws IOException If the file is not a heap file of a supported version.
+	 */
+	private void load() throws IOException {
+		if (buffer.getInt(MAGIC_OFFSET) != MAGIC || buffer.getInt(VERSION_OFFSET) != VERSION) {
+			throw new IOException(DHeapError.INVALID_HEAP_FILE.getMessage());
+		}
+		long stateAndSize = buffer.getLong(STATE_SIZE_OFFSET);
+		int state = (int) (stateAndSize >>> 32);
+		d = buffer.getInt(D_OFFSET);
+		size = (int) stateAndSize;
+		dirty = buffer.getInt(DIRTY_OFFSET) != 0;
+		int hole = buffer.getInt(HOLE_OFFSET);
+		if (!DHeapValidator.isValidD(d) || size < 0 || size > capacity || state < IDLE || state > COPY
+				|| (state == SIFT_UP || state == SIFT_DOWN) && (hole < 0 || hole >= Math.max(size, 1))
+				|| state == REBUILD && (hole < NO_HOLE || hole >= size)
+				|| state == COPY && (hole < 0 || hole > capacity - size || hole > 0 && hole < size)) {
+			throw new IOException(DHeapError.INVALID_HEAP_FILE.getMessage());
+		}
+
+		int pending = buffer.getInt(PENDING_OFFSET);
+		if (state == SIFT_UP) {
+			siftUp(hole, pending);
+		} else if (state == SIFT_DOWN) {
+			siftDown(hole, pending);
+		} else if (state == COPY) {
+			markDirty();
+			copyStaged(hole);
+		} else if (state == REBUILD || dirty && !isHeap()) {
+			markDirty();
+			if (state == REBUILD && hole != NO_HOLE) {
+				set(hole, pending); // The key of the interrupted sift
+			}
+			heapify();
+		}
+	}
+
+	/**
+	 * Copies the size staged values of buildDHeap to the front of the array and
+	 * heapifies them. Repeating the copy is harmless, as the two ranges do not
+	 * overlap.
+	 *
+	 * @param stage Index of the first staged value (0 if they are in place).
+	 */
+	private void copyStaged(int stage) {
+		if (stage > 0) {
+			IntBuffer ints = buffer.asIntBuffer();
+			ints.put(HEADER_BYTES / Integer.BYTES, ints, HEADER_BYTES / Integer.BYTES + stage, size);
+		}
+		buffer.putInt(HOLE_OFFSET, NO_HOLE);
+		writeStateAndSize(REBUILD, size);
+		heapify();
+	}
+
+	/**
+	 * Moves the key up from the hole at index i. Each step copies the parent into
+	 * the hole and then records the new hole in the header.
+	 *
+	 * @param i   Index of the hole.
+	 * @param key The key being sifted.
+	 */
+	private void siftUp(int i, int key) {
+		while (i > 0) {
+			int p = DHeapArrays.parent(i, d);
+			int parent = get(p);
+			if (parent >= key) {
+				break;
+			}
+			set(i, parent);
+			buffer.putInt(HOLE_OFFSET, p);
+			i = p;
+		}
+		finishSift(i, key);
+	}
+
+	/**
+	 * Moves the key down from the hole at index i. Each step copies the largest
+	 * child into the hole and then records the new hole in the header.
+	 *
+	 * @param i   Index of the hole.
+	 * @param key The key being sifted.
+	 */
+	private void siftDown(int i, int key) {
+		if (size == 0) {
+			finishSift(-1, key); // The last element was extracted, nothing to place
+			return;
+		}
+		int lastParent = DHeapArrays.lastParent(size, d);
+		while (i <= lastParent) {
+			int first = DHeapArrays.firstChild(i, d);
+			int end = first + Math.min(d, size - first);
+			int maxIndex = first;
+			int maxValue = get(first);
+			for (int c = first + 1; c < end; c++) {
+				int value = get(c);
+				if (value > maxValue) {
+					maxIndex = c;
+					maxValue = value;
+				}
+			}
+			if (maxValue <= key) {
+				break;
+			}
+			set(i, maxValue);
+			buffer.putInt(HOLE_OFFSET, maxIndex);
+			i = maxIndex;
+		}
+		finishSift(i, key);
+	}
+
+	/**
+	 * Places the sifted key into its final hole and marks the heap idle.
+	 *
+	 * @param i   Index of the final hole, or -1 if the key is not stored.
+	 * @param key The key being sifted.
+	 */
+	private void finishSift(int i, int key) {
+		if (i >= 0) {
+			set(i, key);
+		}
+		writeStateAndSize(IDLE, size);
+	}
+
+	/**
+	 * Restores the heap property with Floyd's bottom-up method, then marks the
+	 * heap idle. Runs in state REBUILD: like siftDown, each sift stores its key
+	 * and then every hole in the header, and clears the hole once the key is
+	 * placed.
+	 */
+	private void heapify() {
+		int lastParent = DHeapArrays.lastParent(size, d);
+		for (int i = lastParent; i >= 0; i--) {
+			int key = get(i);
+			buffer.putInt(PENDING_OFFSET, key);
+			buffer.putInt(HOLE_OFFSET, i);
+			int hole = i;
+			while (hole <= lastParent) {
+				int first = DHeapArrays.firstChild(hole, d);
+				int end = first + Math.min(d, size - first);
+				int maxIndex = first;
+				for (int c = first + 1; c < end; c++) {
+					if (get(c) > get(maxIndex)) {
+						maxIndex = c;
+					}
+				}
+				if (get(maxIndex) <= key) {
+					break;
+				}
+				set(hole, get(maxIndex));
+				buffer.putInt(HOLE_OFFSET, maxIndex);
+				hole = maxIndex;
+			}
+			set(hole, key);
+			buffer.putInt(HOLE_OFFSET, NO_HOLE);
+		}
+		writeStateAndSize(IDLE, size);
+	}
+
+	/**
+	 * Checks the heap property of every parent.
+	 *
+	 * @return true if no child is larger than its parent.
+	 */
+	private boolean isHeap() {
+		for (int i = 1; i < size; i++) {
+			if (get(i) > get(DHeapArrays.parent(i, d))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/** Sets the dirty flag of the header before the first change after force(). */
+	private void markDirty() {
+		if (!dirty) {
+			buffer.putInt(DIRTY_OFFSET, 1);
+			dirty = true;
+		}
+	}
+
+	/**
+	 * Writes the state and the size with a single aligned 8 byte store, so a crash
+	 * never separates a new size from the operation that needs it.
+	 */
+	private void writeStateAndSize(int state, int size) {
+		buffer.putLong(STATE_SIZE_OFFSET, (long) state << 32 | (size & 0xFFFFFFFFL));
+	}
+
+	/** Returns the element at index i of the heap array. */
+	private int get(int i) {
+		return buffer.getInt(HEADER_BYTES + i * Integer.BYTES);
+	}
+
+	/** Stores value at index i of the heap array. */
+	private void set(int i, int value) {
+		buffer.putInt(HEADER_BYTES + i * Integer.BYTES, value);
+	}
+
+	/** Throws if there is nothing to extract. */
+	private void checkNotEmpty() {
+		if (!DHeapValidator.canExtract(size)) {
+			throw new IllegalStateException(DHeapError.HEAP_UNDERFLOW.getMessage());
+		}
+	}
+}
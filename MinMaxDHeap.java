@@ -0,0 +1,344 @@
+import java.util.Arrays;
+
+/**
+ * MinMaxDHeap - A double-ended D-ary heap of int keys (interval heap).
+ *
+ * Both the largest and the smallest key can be peeked in O(1) and extracted in
+ * O(d log_d n), from a single array. The heap is an interval heap: logical node
+ * i holds two keys, heap[2i] <= heap[2i + 1], and the interval of every node
+ * contains the intervals of its children. The low ends therefore form a D-ary
+ * min-heap and the high ends a D-ary max-heap over the same nodes, using the
+ * parent/firstChild arithmetic of DHeapArrays. When the size is odd, the last
+ * node holds a single key, which belongs to both ends.
+ *
+ * A heap can be given a maximum size. offer then keeps the heap at that size
+ * by evicting the smallest key, which suits capacity-limited queues that serve
+ * the highest priority first and drop the lowest: one array of keys replaces a
+ * max-heap and a min-heap kept in sync.
+ */
+public class MinMaxDHeap implements IntPriorityQueue {
+
+	private int[] heap; // Node i holds heap[2i] (low end) and heap[2i + 1] (high end)
+	private int size; // Number of keys in the heap
+	private final int d; // Number of children per node (D-ary)
+	private final int maxSize; // Largest number of keys the heap may hold
+	private long evictions; // Number of keys dropped by offer
+
+	/**
+	 * Constructs an unbounded double-ended heap.
+	 *
+	 * @param d The number of children per node.
+	 * @throws IllegalArgumentException If d is out of valid range.
+	 */
+	public MinMaxDHeap(int d) {
+		this(d, DHeapMax.MAX_CAPACITY);
+	}
+
+	/**
+	 * Constructs a double-ended heap that holds at most maxSize keys. The array
+	 * starts small and grows up to maxSize on demand.
+	 *
+	 * @param d       The number of children per node.
+	 * @param maxSize The largest number of keys the heap may hold.
+	 * @throws IllegalArgumentException If d or maxSize is out of range.
+	 */
+	public MinMaxDHeap(int d, int maxSize) {
+		if (!DHeapValidator.isValidD(d)) {
+			throw new IllegalArgumentException(DHeapError.INVALID_D.getMessage());
+		}
+		if (!DHeapValidator.isValidCapacity(maxSize)) {
+			throw new IllegalArgumentException(DHeapError.INVALID_CAPACITY.getMessage());
+		}
+		this.d = d;
+		this.maxSize = maxSize;
+		this.heap = new int[Math.min(maxSize, DHeapMax.DEFAULT_CAPACITY)];
+	}
+
+	/** Returns the value of 'd'. */
+	public int getD() {
+		return this.d;
+	}
+
+	@Override
+	public int getSize() {
+		return this.size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	/** Returns the largest number of keys the heap may hold. */
+	public int getMaxSize() {
+		return this.maxSize;
+	}
+
+	/** Returns true if the heap holds getMaxSize() keys. */
+	public boolean isFull() {
+		return this.size == this.maxSize;
+	}
+
+	/** Returns the number of keys offer has dropped, evicted or rejected. */
+	public long getEvictions() {
+		return this.evictions;
+	}
+
+	/**
+	 * Inserts a key.
+	 *
+	 * @param key The value to insert.
+	 * @throws IllegalArgumentException If the heap holds getMaxSize() keys; use
+	 *                                  offer to evict the smallest key instead.
+	 */
+	@Override
+	public void insert(int key) {
+		if (size == maxSize) {
+			throw new IllegalArgumentException(DHeapError.HEAP_OVERFLOW.getMessage());
+		}
+		if (size == heap.length) {
+			heap = Arrays.copyOf(heap, DHeapArrays.newCapacity(size, size + 1, maxSize));
+		}
+		int i = size >>> 1; // Node that receives the key
+		if ((size & 1) == 1) {
+			// The last node holds one key: the new key becomes its low or high end
+			int other = heap[size - 1];
+			size++;
+			if (key < other) {
+				heap[size - 1] = other;
+				siftUpMin(i, key);
+			} else {
+				siftUpMax(i, key);
+			}
+			return;
+		}
+		size++;
+		if (i == 0) {
+			heap[0] = key;
+			return;
+		}
+		int p = DHeapArrays.parent(i, d);
+		if (key < heap[2 * p]) {
+			siftUpMin(i, key);
+		} else if (key > heap[2 * p + 1]) {
+			heap[2 * i] = heap[2 * p + 1]; // The single key of node i is its high end
+			siftUpMax(p, key);
+		} else {
+			heap[2 * i] = key;
+		}
+	}
+
+	/**
+	 * Offers a key to a heap of bounded size. If the heap is full, the smallest
+	 * of the kept keys and the offered key is dropped.
+	 *
+	 * @param key The value to offer.
+	 * @return true if the key was kept.
+	 */
+	public boolean offer(int key) {
+		if (size < maxSize) {
+			insert(key);
+			return true;
+		}
+		evictions++;
+		if (key <= heap[0]) {
+			return false;
+		}
+		siftDownMin(key); // Replace the smallest key
+		return true;
+	}
+
+	/**
+	 * Returns the largest key without removing it.
+	 *
+	 * @return The largest key.
+	 * @throws IllegalStateException If the heap is empty.
+	 */
+	public int peekMax() {
+		checkNotEmpty();
+		return size == 1 ? heap[0] : heap[1];
+	}
+
+	/**
+	 * Returns the smallest key without removing it.
+	 *
+	 * @return The smallest key.
+	 * @throws IllegalStateException If the heap is empty.
+	 */
+	public int peekMin() {
+		checkNotEmpty();
+		return heap[0];
+	}
+
+	/** Same as peekMax. */
+	@Override
+	public int peek() {
+		return peekMax();
+	}
+
+	/**
+	 * Removes and returns the largest key.
+	 *
+	 * @return The largest key.
+	 * @throws IllegalStateException If the heap is empty.
+	 */
+	@Override
+	public int extractMax() {
+		int max = peekMax();
+		int last = heap[--size];
+		if (size > 1) {
+			siftDownMax(last);
+		}
+		return max;
+	}
+
+	/**
+	 * Removes and returns the smallest key.
+	 *
+	 * @return The smallest key.
+	 * @throws IllegalStateException If the heap is empty.
+	 */
+	public int extractMin() {
+		int min = peekMin();
+		int last = heap[--size];
+		if (size > 0) {
+			siftDownMin(last);
+		}
+		return min;
+	}
+
+	/** Removes all keys. */
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * Returns the keys in array order (low and high end of node 0, then of node
+	 * 1, and so on).
+	 *
+	 * @return A new array of getSize() keys.
+	 */
+	public int[] toArray() {
+		return Arrays.copyOf(heap, size);
+	}
+
+	/** Throws if the heap is empty. */
+	private void checkNotEmpty() {
+		if (!DHeapValidator.canExtract(size)) {
+			throw new IllegalStateException(DHeapError.HEAP_UNDERFLOW.getMessage());
+		}
+	}
+
+	/**
+	 * Moves a key up the low ends, starting at node i, until the parent's low
+	 * end is not larger.
+	 */
+	private void siftUpMin(int i, int key) {
+		while (i > 0) {
+			int p = DHeapArrays.parent(i, d);
+			if (heap[2 * p] <= key) {
+				break;
+			}
+			heap[2 * i] = heap[2 * p];
+			i = p;
+		}
+		heap[2 * i] = key;
+	}
+
+	/**
+	 * Moves a key up the high ends, starting at node i, until the parent's high
+	 * end is not smaller.
+	 */
+	private void siftUpMax(int i, int key) {
+		while (i > 0) {
+			int p = DHeapArrays.parent(i, d);
+			if (heap[2 * p + 1] >= key) {
+				break;
+			}
+			heap[2 * i + 1] = heap[2 * p + 1];
+			i = p;
+		}
+		heap[2 * i + 1] = key;
+	}
+
+	/**
+	 * Fills the empty low end of the root with a key: the smallest low end of the
+	 * children moves up while it is smaller than the key. On each node the key is
+	 * swapped with the high end if it is larger, so that the node stays ordered.
+	 */
+	private void siftDownMin(int key) {
+		int nodes = (size + 1) >>> 1;
+		int lastParent = DHeapArrays.lastParent(nodes, d); // Nodes beyond this one are leaves
+		int i = 0;
+		while (2 * i + 1 < size) { // Node i holds two keys
+			if (key > heap[2 * i + 1]) {
+				int high = heap[2 * i + 1];
+				heap[2 * i + 1] = key;
+				key = high;
+			}
+			if (i > lastParent) {
+				break;
+			}
+			int first = DHeapArrays.firstChild(i, d);
+			int end = first + Math.min(d, nodes - first);
+			int best = first;
+			for (int c = first + 1; c < end; c++) {
+				if (heap[2 * c] < heap[2 * best]) {
+					best = c;
+				}
+			}
+			if (heap[2 * best] >= key) {
+				break;
+			}
+			heap[2 * i] = heap[2 * best];
+			i = best;
+		}
+		heap[2 * i] = key;
+	}
+
+	/**
+	 * Fills the empty high end of the root with a key: the largest high end of
+	 * the children moves up while it is larger than the key. On each node the key
+	 * is swapped with the low end if it is smaller. A child with a single key
+	 * offers that key as its high end.
+	 */
+	private void siftDownMax(int key) {
+		int nodes = (size + 1) >>> 1;
+		int lastParent = DHeapArrays.lastParent(nodes, d); // Nodes beyond this one are leaves
+		int i = 0;
+		while (2 * i + 1 < size) { // Node i holds two keys
+			if (key < heap[2 * i]) {
+				int low = heap[2 * i];
+				heap[2 * i] = key;
+				key = low;
+			}
+			if (i > lastParent) {
+				heap[2 * i + 1] = key;
+				return;
+			}
+			int first = DHeapArrays.firstChild(i, d);
+			int end = first + Math.min(d, nodes - first);
+			int best = first;
+			int bestKey = high(first);
+			for (int c = first + 1; c < end; c++) {
+				int h = high(c);
+				if (h > bestKey) {
+					best = c;
+					bestKey = h;
+				}
+			}
+			if (bestKey <= key) {
+				heap[2 * i + 1] = key;
+				return;
+			}
+			heap[2 * i + 1] = bestKey;
+			i = best;
+		}
+		heap[2 * i] = key; // The last node, which holds a single key
+	}
+
+	/** Returns the high end of node c, which is its only key if it holds one. */
+	private int high(int c) {
+		return 2 * c + 1 < size ? heap[2 * c + 1] : heap[2 * c];
+	}
+}
@@ -0,0 +1,164 @@
+/**
+ * PairingHeapMax - A max pairing heap of int keys with O(1) meld.
+ *
+ * The heap is a multiway tree of nodes: every node keeps its first child and
+ * its next sibling. insert and meld link two roots with one comparison, so
+ * both run in O(1); extractMax removes the root and combines its children with
+ * the two-pass pairing (pair them left to right, then link the pairs right to
+ * left), which costs O(log n) amortized.
+ *
+ * Unlike DHeapMax, which copies the elements of the other heap when melding,
+ * meld here takes over the other heap's tree in constant time, so it suits
+ * workloads that merge heaps often. The price is one node object per element
+ * and pointer chasing on extraction.
+ */
+public class PairingHeapMax implements IntPriorityQueue {
+
+	private Node root; // Largest element, null if the heap is empty
+	private int size; // Number of elements in the heap
+
+	/** A tree node: its key, its first child and its next sibling. */
+	private static final class Node {
+		final int key;
+		Node child;
+		Node sibling;
+
+		Node(int key) {
+			this.key = key;
+		}
+	}
+
+	/** Returns the current size of the heap. */
+	public int getSize() {
+		return this.size;
+	}
+
+	/** Returns true if the heap holds no elements. */
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	/**
+	 * Inserts a new key in O(1) by linking it with the root.
+	 *
+	 * @param key The value to insert into the heap.
+	 * @throws IllegalArgumentException If the heap is full.
+	 */
+	public void insert(int key) {
+		if (size == Integer.MAX_VALUE) {
+			throw new IllegalArgumentException(DHeapError.HEAP_OVERFLOW.getMessage());
+		}
+		Node node = new Node(key);
+		root = root == null ? node : link(root, node);
+		size++;
+	}
+
+	/**
+	 * Returns the maximum element (root) without removing it.
+	 *
+	 * @return The maximum element.
+	 * @throws IllegalStateException If the heap is empty.
+	 */
+	public int peek() {
+		if (root == null) {
+			throw new IllegalStateException(DHeapError.HEAP_UNDERFLOW.getMessage());
+		}
+		return root.key;
+	}
+
+	/**
+	 * Extracts the maximum element (root) from the heap.
+	 *
+	 * @return The maximum element.
+	 * @throws IllegalStateException If the heap is empty.
+	 */
+	public int extractMax() {
+		int max = peek();
+		root = combineSiblings(root.child);
+		size--;
+		return max;
+	}
+
+	/**
+	 * Moves all elements of another pairing heap into this one in O(1); the
+	 * other heap is left empty.
+	 *
+	 * @param other The heap to take the elements from.
+	 * @throws IllegalArgumentException If other is this heap, or the heap would
+	 *                                  exceed its maximum size.
+	 */
+	public void meld(PairingHeapMax other) {
+		if (other == this) {
+			throw new IllegalArgumentException(DHeapError.MELD_WITH_ITSELF.getMessage());
+		}
+		if ((long) size + other.size > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException(DHeapError.HEAP_OVERFLOW.getMessage());
+		}
+		if (other.root != null) {
+			root = root == null ? other.root : link(root, other.root);
+			size += other.size;
+			other.root = null;
+			other.size = 0;
+		}
+	}
+
+	/** Removes all elements. */
+	public void clear() {
+		root = null;
+		size = 0;
+	}
+
+	/**
+	 * Makes the root with the smaller key the first child of the other root.
+	 *
+	 * @return The root with the larger key.
+	 */
+	private static Node link(Node a, Node b) {
+		if (a.key < b.key) {
+			Node t = a;
+			a = b;
+			b = t;
+		}
+		b.sibling = a.child;
+		a.child = b;
+		return a;
+	}
+
+	/**
+	 * Combines a list of sibling trees into one tree with the two-pass pairing,
+	 * without recursion so that long child lists cannot overflow the stack.
+	 *
+	 * @param first The first sibling, or null.
+	 * @return The root of the combined tree, or null for an empty list.
+	 */
+	private static Node combineSiblings(Node first) {
+		// First pass: link the siblings in pairs, pushing each pair on a stack
+		// that is threaded through the sibling links
+		Node pairs = null;
+		while (first != null) {
+			Node a = first;
+			Node b = a.sibling;
+			if (b == null) {
+				a.sibling = pairs; // An odd sibling out
+				pairs = a;
+				break;
+			}
+			first = b.sibling;
+			a.sibling = null;
+			b.sibling = null;
+			Node pair = link(a, b);
+			pair.sibling = pairs;
+			pairs = pair;
+		}
+
+		// Second pass: link the pairs from the last one back to the first
+		Node result = null;
+		while (pairs != null) {
+			Node next = pairs.sibling;
+			pairs.sibling = null;
+			result = result == null ? pairs : link(result, pairs);
+			pairs = next;
+		}
+		return result;
+	}
+}
@@ -0,0 +1,162 @@
+import java.util.Arrays;
+
+/**
+ * RadixHeapMax - A monotone max-priority queue of int keys (radix heap).
+ *
+ * A radix heap needs no comparisons between keys. It only works for monotone
+ * workloads: a key may only be inserted if it is not larger than the last
+ * extracted key. Event simulations and Dijkstra's algorithm (with reversed
+ * priorities) have this property.
+ *
+ * Keys are kept in 33 buckets. Bucket 0 holds the keys equal to the last
+ * extracted key, and bucket b holds the keys whose highest bit that differs
+ * from the last extracted key is bit b - 1. When bucket 0 runs empty, the
+ * lowest non-empty bucket is emptied again: its largest key becomes the new
+ * last key, and every key of the bucket moves to a lower bucket. A key can
+ * only move down, so it moves at most 32 times, and insert and extractMax
+ * cost O(1) amortized plus the 33-bucket scan.
+ */
+public class RadixHeapMax implements IntPriorityQueue {
+
+	private static final int BUCKETS = Integer.SIZE + 1;
+	private static final int INITIAL_BUCKET_CAPACITY = 16;
+
+	private final int[][] buckets = new int[BUCKETS][];
+	private final int[] bucketSizes = new int[BUCKETS];
+	private int size; // Number of keys in the queue
+	private int last = Integer.MAX_VALUE; // Last extracted key, the upper bound for inserts
+	private int top; // Largest key, valid only if topValid
+	private boolean topValid;
+
+	/** Constructs an empty radix heap that accepts any first key. */
+	public RadixHeapMax() {
+		for (int b = 0; b < BUCKETS; b++) {
+			buckets[b] = new int[INITIAL_BUCKET_CAPACITY];
+		}
+	}
+
+	@Override
+	public int getSize() {
+		return this.size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	/**
+	 * Returns the last extracted key; no larger key can be inserted.
+	 * Integer.MAX_VALUE before the first extraction.
+	 */
+	public int getLast() {
+		return this.last;
+	}
+
+	/**
+	 * Inserts a key in O(1).
+	 *
+	 * @param key The value to insert, not larger than getLast().
+	 * @throws IllegalArgumentException If the key is larger than the last
+	 *                                  extracted key, or the queue is full.
+	 */
+	@Override
+	public void insert(int key) {
+		if (key > last) {
+			throw new IllegalArgumentException(DHeapError.NOT_MONOTONE.getMessage());
+		}
+		if (size == DHeapMax.MAX_CAPACITY) {
+			throw new IllegalArgumentException(DHeapError.HEAP_OVERFLOW.getMessage());
+		}
+		push(bucket(key), key);
+		size++;
+		if (topValid && key > top) {
+			top = key;
+		}
+	}
+
+	@Override
+	public int peek() {
+		if (size == 0) {
+			throw new IllegalStateException(DHeapError.HEAP_UNDERFLOW.getMessage());
+		}
+		if (!topValid) {
+			if (bucketSizes[0] > 0) {
+				top = last;
+			} else {
+				int b = lowestNonEmptyBucket();
+				top = max(buckets[b], bucketSizes[b]);
+			}
+			topValid = true;
+		}
+		return top;
+	}
+
+	@Override
+	public int extractMax() {
+		if (size == 0) {
+			throw new IllegalStateException(DHeapError.HEAP_UNDERFLOW.getMessage());
+		}
+		if (bucketSizes[0] == 0) {
+			// The largest key of the lowest bucket is the maximum: make it the
+			// last key and spread that bucket over the lower ones
+			int b = lowestNonEmptyBucket();
+			int[] keys = buckets[b];
+			int count = bucketSizes[b];
+			last = topValid ? top : max(keys, count);
+			bucketSizes[b] = 0;
+			for (int i = 0; i < count; i++) {
+				push(bucket(keys[i]), keys[i]); // Always a bucket below b
+			}
+		}
+		bucketSizes[0]--;
+		size--;
+		topValid = bucketSizes[0] > 0; // Then the next maximum is last again
+		top = last;
+		return last;
+	}
+
+	/** Removes all keys; the next inserted key may be any value again. */
+	public void clear() {
+		Arrays.fill(bucketSizes, 0);
+		size = 0;
+		last = Integer.MAX_VALUE;
+		topValid = false;
+	}
+
+	/** Returns the bucket of a key relative to the last extracted key. */
+	private int bucket(int key) {
+		return Integer.SIZE - Integer.numberOfLeadingZeros(key ^ last);
+	}
+
+	/** Returns the index of the first non-empty bucket above bucket 0. */
+	private int lowestNonEmptyBucket() {
+		int b = 1;
+		while (bucketSizes[b] == 0) {
+			b++;
+		}
+		return b;
+	}
+
+	/** Appends a key to a bucket, growing the bucket when it is full. */
+	private void push(int b, int key) {
+		int count = bucketSizes[b];
+		if (count == buckets[b].length) {
+			buckets[b] = Arrays.copyOf(buckets[b],
+					DHeapArrays.newCapacity(count, count + 1, DHeapMax.MAX_CAPACITY));
+		}
+		buckets[b][count] = key;
+		bucketSizes[b] = count + 1;
+	}
+
+	/** Returns the largest of the first count keys. */
+	private static int max(int[] keys, int count) {
+		int max = keys[0];
+		for (int i = 1; i < count; i++) {
+			if (keys[i] > max) {
+				max = keys[i];
+			}
+		}
+		return max;
+	}
+}
@@ -0,0 +1,139 @@
+package dheap.jmh;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * ConcurrentDHeapBenchmark - Scaling of the thread-safe heaps with the
+ * number of threads.
+ *
+ * All threads share one heap of 'prefill' keys and alternate between an insert
+ * and a pollMax, so the size stays about the same. The modes are: - LOCKED: a
+ * DHeapMax behind one ReentrantLock, the baseline. - STRICT: ConcurrentDHeapMax
+ * in strict mode (one lock per node). - RELAXED: ConcurrentDHeapMax in relaxed
+ * mode with two stripes per thread.
+ *
+ * JMH runs one thread count per run (-t). The main method runs the benchmark
+ * for 1, 2, 4, 8, 16 and 32 threads and prints the scaling table:
+ *
+ * java -cp target/benchmarks.jar dheap.jmh.ConcurrentDHeapBenchmark
+ *
+ * Further JMH options are passed through, e.g. -f 1 -p mode=STRICT.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class ConcurrentDHeapBenchmark {
+
+	private static final int[] THREADS = { 1, 2, 4, 8, 16, 32 };
+
+	@Param({ "LOCKED", "STRICT", "RELAXED" })
+	public String mode;
+
+	@Param({ "4" })
+	public int d;
+
+	@Param({ "100000" })
+	public int prefill;
+
+	private Object heap; // A DHeapMax in LOCKED mode, a ConcurrentDHeapMax otherwise
+	private final ReentrantLock lock = new ReentrantLock(); // Guards the DHeapMax in LOCKED mode
+	private boolean locked;
+
+	/** Fills a new shared heap before every iteration. */
+	@Setup(Level.Iteration)
+	public void setUp(BenchmarkParams params) {
+		locked = mode.equals("LOCKED");
+		if (locked) {
+			heap = Heaps.newDHeap(d, 2 * prefill);
+		} else {
+			heap = Heaps.newConcurrent(d, mode, 2 * params.getThreads());
+		}
+		Random rnd = new Random(42);
+		for (int i = 0; i < prefill; i++) {
+			insert(rnd.nextInt());
+		}
+	}
+
+	/** One insert and one pollMax by the calling thread; the score counts pairs. */
+	@Benchmark
+	public OptionalInt insertPoll() {
+		insert(ThreadLocalRandom.current().nextInt());
+		return poll();
+	}
+
+	private void insert(int key) {
+		if (locked) {
+			lock.lock();
+			try {
+				Heaps.insert(heap, key);
+			} finally {
+				lock.unlock();
+			}
+		} else {
+			Heaps.concurrentInsert(heap, key);
+		}
+	}
+
+	private OptionalInt poll() {
+		if (locked) {
+			lock.lock();
+			try {
+				return OptionalInt.of(Heaps.extract(heap));
+			} finally {
+				lock.unlock();
+			}
+		}
+		return Heaps.concurrentPoll(heap);
+	}
+
+	/**
+	 * Runs the benchmark for every thread count and prints the throughput of each
+	 * mode.
+	 *
+	 * @param args JMH command line options.
+	 */
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+		CommandLineOptions options = new CommandLineOptions(args);
+		List<RunResult> results = new ArrayList<>();
+		for (int threads : THREADS) {
+			results.addAll(new Runner(new OptionsBuilder().parent(options)
+					.include(ConcurrentDHeapBenchmark.class.getName() + ".insertPoll").threads(threads).build())
+					.run());
+		}
+		System.out.printf("%n%-8s %7s %14s%n", "mode", "threads", "pairs/us");
+		for (RunResult result : results) {
+			BenchmarkParams params = result.getParams();
+			System.out.printf("%-8s %7d %14.3f%n", params.getParam("mode"), params.getThreads(),
+					result.getPrimaryResult().getScore());
+		}
+	}
+}
@@ -0,0 +1,102 @@
+package dheap.jmh;
+
+import java.lang.invoke.MethodHandle;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * DHeapBatchBenchmark - insertAll and extractTopK against one insert or
+ * exctractDMax per key.
+ *
+ * Every call moves a batch of keys into a heap of n random keys and takes the
+ * batch largest keys out again, so the heap keeps its size. bulk does both
+ * with insertAll and extractTopK; insertEach replaces insertAll by one insert
+ * per key, extractEach replaces extractTopK by one exctractDMax per key. The
+ * difference to bulk is the saving of each batch operation. Ascending batches
+ * are larger than every key in the heap, the worst case of per-key sift-up.
+ *
+ * Scores are per batch; add "-prof gc" for the bytes allocated per batch.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class DHeapBatchBenchmark {
+
+	private static final MethodHandle INSERT_ALL = Heaps.method("DHeapMax", "insertAll", void.class, int[].class,
+			int.class, int.class);
+	private static final MethodHandle EXTRACT_TOP_K = Heaps.method("DHeapMax", "extractTopK", int.class, int.class,
+			int[].class);
+
+	@Param({ "2", "4", "8" })
+	public int d;
+
+	@Param({ "1000000" })
+	public int n;
+
+	@Param({ "16", "1024" })
+	public int batch;
+
+	@Param({ "random", "ascending" })
+	public String distribution;
+
+	private Object heap; // The DHeapMax
+	private int[] keys; // The batch
+	private int[] out; // The keys taken by extractTopK
+
+	/** Builds the heap and the batch. */
+	@Setup(Level.Trial)
+	public void setUp() {
+		heap = Heaps.newDHeap(d, n + batch);
+		Heaps.build(heap, Heaps.values("random", n, new Random(42)), 0, n);
+		keys = Heaps.values(distribution, batch, new Random(7));
+		if (distribution.equals("ascending")) {
+			for (int i = 0; i < batch; i++) {
+				keys[i] += Integer.MAX_VALUE - batch; // Larger than every key in the heap
+			}
+		}
+		out = new int[batch];
+	}
+
+	/** insertAll, then extractTopK. */
+	@Benchmark
+	public int bulk() throws Throwable {
+		INSERT_ALL.invokeExact(heap, keys, 0, batch);
+		return (int) EXTRACT_TOP_K.invokeExact(heap, batch, out);
+	}
+
+	/** One insert per key, then extractTopK. */
+	@Benchmark
+	public int insertEach() throws Throwable {
+		for (int i = 0; i < batch; i++) {
+			Heaps.insert(heap, keys[i]);
+		}
+		return (int) EXTRACT_TOP_K.invokeExact(heap, batch, out);
+	}
+
+	/** insertAll, then one exctractDMax per key. */
+	@Benchmark
+	public int extractEach() throws Throwable {
+		INSERT_ALL.invokeExact(heap, keys, 0, batch);
+		int sum = 0;
+		for (int i = 0; i < batch; i++) {
+			sum += Heaps.extract(heap);
+		}
+		return sum;
+	}
+}
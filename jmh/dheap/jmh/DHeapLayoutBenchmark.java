@@ -0,0 +1,70 @@
+package dheap.jmh;
+
+import java.lang.invoke.MethodHandle;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * DHeapLayoutBenchmark - The default layout against the cache-aligned layout
+ * on a heap larger than the CPU caches.
+ *
+ * Every call replaces the maximum (extract followed by insert), which keeps
+ * the size fixed and walks a full root-to-leaf path. JMH cannot show cache
+ * misses by itself; add "-prof perfnorm" on Linux to get them per call.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class DHeapLayoutBenchmark {
+
+	private static final int KEYS = 1 << 20; // Keys cycled through by extractInsert
+	private static final MethodHandle SET_CACHE_ALIGNED = Heaps.method("DHeapMax", "setCacheAligned", void.class,
+			boolean.class);
+
+	@Param({ "4", "8", "16", "32" })
+	public int d;
+
+	@Param({ "8000000" })
+	public int n;
+
+	@Param({ "false", "true" })
+	public boolean aligned;
+
+	private Object heap; // The DHeapMax
+	private int[] keys; // Keys inserted by extractInsert
+	private int next; // Index of the next key to insert
+
+	/** Builds the heap of n random keys in the chosen layout. */
+	@Setup(Level.Trial)
+	public void setUp() throws Throwable {
+		heap = Heaps.newDHeap(d, n);
+		SET_CACHE_ALIGNED.invokeExact(heap, aligned);
+		Heaps.build(heap, Heaps.values("random", n, new Random(42)), 0, n);
+		keys = Heaps.values("random", KEYS, new Random(7));
+	}
+
+	/** One extract and one insert, so the heap stays at n elements. */
+	@Benchmark
+	public int extractInsert() {
+		int max = Heaps.extract(heap);
+		Heaps.insert(heap, keys[next]);
+		next = (next + 1) & (KEYS - 1);
+		return max;
+	}
+}
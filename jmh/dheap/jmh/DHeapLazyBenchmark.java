@@ -0,0 +1,95 @@
+package dheap.jmh;
+
+import java.lang.invoke.MethodHandle;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * DHeapLazyBenchmark - Eager against lazy insertion on bursts of inserts.
+ *
+ * Every call inserts OPS keys into a fresh heap of n random keys, in bursts of
+ * 'burst' inserts that are each followed by one extract; the extracts fold
+ * the lazy buffer and are part of the score, which is per insert. The heap
+ * grows during the call, so it is rebuilt before every call. Ascending keys
+ * are larger than every key in the heap, the worst case for eager sift-up.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 10)
+@Fork(value = 2, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class DHeapLazyBenchmark {
+
+	private static final int OPS = 2_000_000; // Inserts per call
+	private static final MethodHandle SET_LAZY_INSERT = Heaps.method("DHeapMax", "setLazyInsert", void.class,
+			boolean.class);
+
+	@Param({ "2", "4", "8" })
+	public int d;
+
+	@Param({ "1000000" })
+	public int n;
+
+	@Param({ "1", "16", "256", "4096" })
+	public int burst;
+
+	@Param({ "random", "ascending" })
+	public String distribution;
+
+	@Param({ "false", "true" })
+	public boolean lazy;
+
+	private int[] base; // The n keys the heap is built from
+	private int[] keys; // The inserted keys
+	private Object heap; // The DHeapMax
+
+	/** Creates the keys. */
+	@Setup(Level.Trial)
+	public void setUp() {
+		base = Heaps.values("random", n, new Random(42));
+		keys = Heaps.values(distribution, OPS, new Random(7));
+		if (distribution.equals("ascending")) {
+			for (int i = 0; i < OPS; i++) {
+				keys[i] += Integer.MAX_VALUE - OPS; // Larger than every key in the heap
+			}
+		}
+	}
+
+	/** Builds a fresh heap of the n keys. */
+	@Setup(Level.Iteration)
+	public void build() throws Throwable {
+		heap = Heaps.newDHeap(d, n + OPS);
+		Heaps.build(heap, base, 0, n);
+		SET_LAZY_INSERT.invokeExact(heap, lazy);
+	}
+
+	/** Inserts all keys in bursts, each followed by one extract. */
+	@Benchmark
+	@OperationsPerInvocation(OPS)
+	public long bursts() {
+		long sum = 0;
+		for (int i = 0; i < OPS; i += burst) {
+			int end = Math.min(OPS, i + burst);
+			for (int j = i; j < end; j++) {
+				Heaps.insert(heap, keys[j]);
+			}
+			sum += Heaps.extract(heap);
+		}
+		return sum;
+	}
+}
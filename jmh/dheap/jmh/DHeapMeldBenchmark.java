@@ -0,0 +1,145 @@
+package dheap.jmh;
+
+import java.lang.invoke.MethodHandle;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+/**
+ * DHeapMeldBenchmark - Ways of combining shard heaps into one.
+ *
+ * n random keys are spread round-robin over the shards, which are combined
+ * one after the other into the first shard: reinsert extracts every key of a
+ * shard and inserts it into the target, meld uses DHeapMax.meld, pairingMeld
+ * the O(1) PairingHeapMax.meld. drain and pairingDrain extract every key of
+ * the combined heap, the price the pairing heap pays for its cheap meld.
+ *
+ * Combining consumes the shards, so every call gets fresh ones.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 10)
+@Fork(value = 2, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class DHeapMeldBenchmark {
+
+	private static final int D = 4;
+	private static final MethodHandle NEW_DHEAP = Heaps.constructor("DHeapMax", int.class);
+	private static final MethodHandle IS_EMPTY = Heaps.method("DHeapMax", "isEmpty", boolean.class);
+	private static final MethodHandle MELD = Heaps.method("DHeapMax", "meld", void.class, Heaps.type("DHeapMax"));
+	private static final MethodHandle NEW_PAIRING = Heaps.constructor("PairingHeapMax");
+	private static final MethodHandle PAIRING_INSERT = Heaps.method("PairingHeapMax", "insert", void.class,
+			int.class);
+	private static final MethodHandle PAIRING_IS_EMPTY = Heaps.method("PairingHeapMax", "isEmpty", boolean.class);
+	private static final MethodHandle PAIRING_EXTRACT = Heaps.method("PairingHeapMax", "extractMax", int.class);
+	private static final MethodHandle PAIRING_MELD = Heaps.method("PairingHeapMax", "meld", void.class,
+			Heaps.type("PairingHeapMax"));
+
+	@Param({ "1000000" })
+	public int n;
+
+	@Param({ "2", "16", "256", "4096" })
+	public int shards;
+
+	private int[] values; // The n random keys
+	private Object[] heaps; // The DHeapMax shards
+	private Object[] pairing; // The PairingHeapMax shards
+
+	/** Creates the keys. */
+	@Setup(Level.Trial)
+	public void setUp() {
+		values = Heaps.values("random", n, new Random(42));
+	}
+
+	/** Spreads the keys over fresh shards of the kind the benchmark uses, combined for the drains. */
+	@Setup(Level.Iteration)
+	public void spread(BenchmarkParams params) throws Throwable {
+		String name = params.getBenchmark();
+		if (name.endsWith(".pairingMeld") || name.endsWith(".pairingDrain")) {
+			pairing = new Object[shards];
+			for (int s = 0; s < shards; s++) {
+				pairing[s] = (Object) NEW_PAIRING.invokeExact();
+			}
+			for (int i = 0; i < n; i++) {
+				PAIRING_INSERT.invokeExact(pairing[i % shards], values[i]);
+			}
+			if (name.endsWith(".pairingDrain")) {
+				pairingMeld();
+			}
+		} else {
+			heaps = new Object[shards];
+			for (int s = 0; s < shards; s++) {
+				heaps[s] = (Object) NEW_DHEAP.invokeExact(D);
+			}
+			for (int i = 0; i < n; i++) {
+				Heaps.insert(heaps[i % shards], values[i]);
+			}
+			if (name.endsWith(".drain")) {
+				meld();
+			}
+		}
+	}
+
+	/** Moves every shard into the first one by extract and insert. */
+	@Benchmark
+	public Object reinsert() throws Throwable {
+		for (int s = 1; s < shards; s++) {
+			while (!(boolean) IS_EMPTY.invokeExact(heaps[s])) {
+				Heaps.insert(heaps[0], Heaps.extract(heaps[s]));
+			}
+		}
+		return heaps[0];
+	}
+
+	/** Melds every shard into the first one. */
+	@Benchmark
+	public Object meld() throws Throwable {
+		for (int s = 1; s < shards; s++) {
+			MELD.invokeExact(heaps[0], heaps[s]);
+		}
+		return heaps[0];
+	}
+
+	/** Melds every pairing shard into the first one. */
+	@Benchmark
+	public Object pairingMeld() throws Throwable {
+		for (int s = 1; s < shards; s++) {
+			PAIRING_MELD.invokeExact(pairing[0], pairing[s]);
+		}
+		return pairing[0];
+	}
+
+	/** Extracts every key of the melded d-ary heap. */
+	@Benchmark
+	public long drain() throws Throwable {
+		long sum = 0;
+		while (!(boolean) IS_EMPTY.invokeExact(heaps[0])) {
+			sum += Heaps.extract(heaps[0]);
+		}
+		return sum;
+	}
+
+	/** Extracts every key of the melded pairing heap. */
+	@Benchmark
+	public long pairingDrain() throws Throwable {
+		long sum = 0;
+		while (!(boolean) PAIRING_IS_EMPTY.invokeExact(pairing[0])) {
+			sum += (int) PAIRING_EXTRACT.invokeExact(pairing[0]);
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,139 @@
+package dheap.jmh;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * DHeapMergeBenchmark - Cost of the DHeapMerge k-way merge per arity and
+ * fan-in, and of the external sort.
+ *
+ * merge merges fanIn descending runs of n / fanIn random keys each from
+ * IntBuffers into one buffer; the time per element grows with log(fanIn) and
+ * depends on the arity d of the merge heap. sortFile sorts a file of n random
+ * ints in runs of runLength elements, so it includes the spill of the sorted
+ * runs and the file merge with its read buffers.
+ *
+ * java -jar target/benchmarks.jar DHeapMergeBenchmark -p d=4 -p fanIn=256
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class DHeapMergeBenchmark {
+
+	private static final MethodHandle MERGE = Heaps.staticMethod("DHeapMerge", "merge", void.class, int.class,
+			IntBuffer[].class, IntBuffer.class);
+	private static final MethodHandle SORT_FILE = Heaps.staticMethod("DHeapMerge", "sortFile", void.class,
+			Path.class, Path.class, int.class, int.class, Path.class);
+
+	@Param({ "2", "4", "8", "16" })
+	public int d;
+
+	/** The runs of the in-memory merge. */
+	@State(Scope.Thread)
+	public static class Runs {
+		@Param({ "1000000" })
+		public int n;
+
+		@Param({ "16", "256", "4096" })
+		public int fanIn;
+
+		int[] keys; // fanIn descending runs of n / fanIn keys, one after the other
+		int runLength;
+		IntBuffer[] buffers;
+		IntBuffer out;
+
+		/** Sorts the runs once. */
+		@Setup(Level.Trial)
+		public void setUp() {
+			runLength = n / fanIn;
+			keys = Heaps.values("random", runLength * fanIn, new Random(42));
+			for (int r = 0; r < fanIn; r++) {
+				int from = r * runLength;
+				Arrays.sort(keys, from, from + runLength);
+				for (int i = from, j = from + runLength - 1; i < j; i++, j--) {
+					int t = keys[i];
+					keys[i] = keys[j];
+					keys[j] = t;
+				}
+			}
+			buffers = new IntBuffer[fanIn];
+			out = IntBuffer.allocate(keys.length);
+		}
+	}
+
+	/** The input file of the external sort. */
+	@State(Scope.Thread)
+	public static class Input {
+		@Param({ "4000000" })
+		public int n;
+
+		@Param({ "65536", "1048576" })
+		public int runLength;
+
+		Path dir;
+		Path in;
+		Path out;
+
+		/** Writes n random ints to a temporary file. */
+		@Setup(Level.Trial)
+		public void setUp() throws IOException {
+			dir = Files.createTempDirectory("dheap-merge");
+			in = dir.resolve("in.bin");
+			out = dir.resolve("out.bin");
+			ByteBuffer bytes = ByteBuffer.allocate(n * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+			bytes.asIntBuffer().put(Heaps.values("random", n, new Random(42)));
+			Files.write(in, bytes.array());
+		}
+
+		/** Deletes the files. */
+		@TearDown(Level.Trial)
+		public void tearDown() throws IOException {
+			Files.deleteIfExists(in);
+			Files.deleteIfExists(out);
+			Files.delete(dir);
+		}
+	}
+
+	/** Merges the runs from their buffers into one buffer. */
+	@Benchmark
+	public Object merge(Runs runs) throws Throwable {
+		for (int r = 0; r < runs.fanIn; r++) {
+			runs.buffers[r] = IntBuffer.wrap(runs.keys, r * runs.runLength, runs.runLength);
+		}
+		runs.out.clear();
+		MERGE.invokeExact(d, runs.buffers, runs.out);
+		return runs.out;
+	}
+
+	/** Sorts the input file into the output file. */
+	@Benchmark
+	public Object sortFile(Input input) throws Throwable {
+		SORT_FILE.invokeExact(input.in, input.out, input.runLength, d, input.dir);
+		return input.out;
+	}
+}
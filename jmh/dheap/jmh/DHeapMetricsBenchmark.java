@@ -0,0 +1,90 @@
+package dheap.jmh;
+
+import java.lang.invoke.MethodHandle;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+/**
+ * DHeapMetricsBenchmark - Cost of the DHeapMetrics instrumentation.
+ *
+ * Every call replaces the maximum of a heap of n random keys (extract
+ * followed by insert). plain runs in a VM without -Ddheap.metrics, flagOnly in
+ * one with the flag but without metrics on the heap, metered with the flag and
+ * DHeapMax.enableMetrics. plain and flagOnly should be equal: the disabled
+ * instrumentation is folded away by the JIT.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class DHeapMetricsBenchmark {
+
+	private static final int KEYS = 1 << 20; // Keys cycled through by extractInsert
+	private static final MethodHandle ENABLE_METRICS = Heaps.method("DHeapMax", "enableMetrics",
+			Heaps.type("DHeapMetrics"));
+
+	@Param({ "2", "4", "16" })
+	public int d;
+
+	@Param({ "1000000" })
+	public int n;
+
+	private Object heap; // The DHeapMax
+	private int[] keys; // Keys inserted by extractInsert
+	private int next; // Index of the next key to insert
+
+	/** Builds the heap of n random keys, with metrics for the metered benchmark. */
+	@Setup(Level.Trial)
+	public void setUp(BenchmarkParams params) throws Throwable {
+		heap = Heaps.newDHeap(d, n);
+		if (params.getBenchmark().endsWith(".metered")) {
+			ENABLE_METRICS.invoke(heap);
+		}
+		Heaps.build(heap, Heaps.values("random", n, new Random(42)), 0, n);
+		keys = Heaps.values("random", KEYS, new Random(7));
+	}
+
+	/** Without the flag. */
+	@Benchmark
+	public int plain() {
+		return extractInsert();
+	}
+
+	/** With the flag, on a heap without metrics. */
+	@Benchmark
+	@Fork(value = 2, jvmArgsAppend = { "-Xms2g", "-Xmx2g", "-Ddheap.metrics=true" })
+	public int flagOnly() {
+		return extractInsert();
+	}
+
+	/** With the flag, on a heap with metrics. */
+	@Benchmark
+	@Fork(value = 2, jvmArgsAppend = { "-Xms2g", "-Xmx2g", "-Ddheap.metrics=true" })
+	public int metered() {
+		return extractInsert();
+	}
+
+	/** One extract and one insert, so the heap stays at n elements. */
+	private int extractInsert() {
+		int max = Heaps.extract(heap);
+		Heaps.insert(heap, keys[next]);
+		next = (next + 1) & (KEYS - 1);
+		return max;
+	}
+}
@@ -0,0 +1,128 @@
+package dheap.jmh;
+
+import java.lang.invoke.MethodHandle;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * DHeapMinMaxBenchmark - A capacity-limited queue kept in one MinMaxDHeap
+ * against the same queue kept in two IndexedDHeapMax heaps (one on the keys,
+ * one on the inverted keys) synced through shared handles.
+ *
+ * Every call runs OPS operations on fresh queues: each offers a random key,
+ * which evicts the smallest key once the queue is full, and every fourth also
+ * extracts the largest key. The score is per operation. The min-max heap
+ * needs 4 bytes per key, the synced heaps 24 (key, handle and position in
+ * each).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 10)
+@Fork(value = 2, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class DHeapMinMaxBenchmark {
+
+	private static final int OPS = 4_000_000; // Operations per call
+	private static final int D = 4;
+	private static final MethodHandle NEW_MIN_MAX = Heaps.constructor("MinMaxDHeap", int.class, int.class);
+	private static final MethodHandle OFFER = Heaps
+			.discardResult(Heaps.method("MinMaxDHeap", "offer", boolean.class, int.class));
+	private static final MethodHandle EXTRACT_MAX = Heaps.method("MinMaxDHeap", "extractMax", int.class);
+	private static final MethodHandle NEW_INDEXED = Heaps.constructor("IndexedDHeapMax", int.class, int.class);
+	private static final MethodHandle INSERT = Heaps.method("IndexedDHeapMax", "insert", void.class, int.class,
+			int.class);
+	private static final MethodHandle PEEK_KEY = Heaps.method("IndexedDHeapMax", "peekKey", int.class);
+	private static final MethodHandle PEEK_HANDLE = Heaps.method("IndexedDHeapMax", "peekHandle", int.class);
+	private static final MethodHandle CHANGE_KEY = Heaps.method("IndexedDHeapMax", "changeKey", void.class,
+			int.class, int.class);
+	private static final MethodHandle EXTRACT_MAX_HANDLE = Heaps.method("IndexedDHeapMax", "extractMaxHandle",
+			int.class);
+	private static final MethodHandle REMOVE = Heaps
+			.discardResult(Heaps.method("IndexedDHeapMax", "remove", int.class, int.class));
+
+	@Param({ "1000", "100000", "1000000" })
+	public int capacity;
+
+	private int[] keys; // The offered keys
+	private Object minMax; // The MinMaxDHeap
+	private Object max; // The IndexedDHeapMax of the keys
+	private Object min; // The IndexedDHeapMax of the inverted keys
+
+	/** Creates the keys. */
+	@Setup(Level.Trial)
+	public void setUp() {
+		keys = Heaps.values("random", OPS, new Random(7));
+	}
+
+	/** Creates empty queues. */
+	@Setup(Level.Iteration)
+	public void newQueues() throws Throwable {
+		minMax = (Object) NEW_MIN_MAX.invokeExact(D, capacity);
+		max = (Object) NEW_INDEXED.invokeExact(D, capacity);
+		min = (Object) NEW_INDEXED.invokeExact(D, capacity);
+	}
+
+	/** The queue in one MinMaxDHeap; returns the sum of the extracted keys. */
+	@Benchmark
+	@OperationsPerInvocation(OPS)
+	public long minMaxHeap() throws Throwable {
+		long sum = 0;
+		for (int i = 0; i < OPS; i++) {
+			OFFER.invokeExact(minMax, keys[i]);
+			if ((i & 3) == 3) {
+				sum += (int) EXTRACT_MAX.invokeExact(minMax);
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * The queue in two heaps: max holds the keys and min their complements
+	 * (~key reverses the order without overflow), both under the same handle.
+	 * Returns the sum of the extracted keys.
+	 */
+	@Benchmark
+	@OperationsPerInvocation(OPS)
+	public long syncedHeaps() throws Throwable {
+		int[] free = new int[capacity]; // Stack of unused handles
+		for (int h = 0; h < capacity; h++) {
+			free[h] = capacity - 1 - h;
+		}
+		int freeCount = capacity;
+		long sum = 0;
+		for (int i = 0; i < OPS; i++) {
+			int key = keys[i];
+			if (freeCount > 0) {
+				int handle = free[--freeCount];
+				INSERT.invokeExact(max, handle, key);
+				INSERT.invokeExact(min, handle, ~key);
+			} else if (key > ~(int) PEEK_KEY.invokeExact(min)) {
+				int handle = (int) PEEK_HANDLE.invokeExact(min); // Reuse the handle of the evicted smallest key
+				CHANGE_KEY.invokeExact(min, handle, ~key);
+				CHANGE_KEY.invokeExact(max, handle, key);
+			}
+			if ((i & 3) == 3) {
+				sum += (int) PEEK_KEY.invokeExact(max);
+				int handle = (int) EXTRACT_MAX_HANDLE.invokeExact(max);
+				REMOVE.invokeExact(min, handle);
+				free[freeCount++] = handle;
+			}
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,89 @@
+package dheap.jmh;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * DHeapOpsBenchmark - The basic DHeapMax operations.
+ *
+ * Measures the DHeapMax operations for every combination of d, heap size and
+ * key distribution. insertExtract keeps the heap at n elements (one insert and
+ * one extract per call), build rebuilds it from the n keys, and changeD
+ * alternates between d and a second arity.
+ *
+ * Run with "mvn -B package -Pjmh" and "java -jar target/benchmarks.jar
+ * DHeapOpsBenchmark"; the parameters can be narrowed with -p, e.g. -p d=4.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class DHeapOpsBenchmark {
+
+	private static final int KEYS = 1 << 20; // Keys cycled through by insertExtract
+
+	@Param({ "2", "4", "8", "16", "64" })
+	public int d;
+
+	@Param({ "1000", "1000000" })
+	public int n;
+
+	@Param({ "random", "ascending", "descending", "duplicates" })
+	public String distribution;
+
+	private int[] values; // The n keys the heap is built from
+	private int[] keys; // Keys inserted by insertExtract
+	private int next; // Index of the next key to insert
+	private Object heap; // The DHeapMax
+	private int otherD; // changeD alternates between d and otherD
+	private boolean switched;
+
+	/** Builds the heap of n keys before every iteration. */
+	@Setup(Level.Iteration)
+	public void setUp() {
+		values = Heaps.values(distribution, n, new Random(42));
+		keys = Heaps.values(distribution, KEYS, new Random(7));
+		heap = Heaps.newDHeap(d, n + 1);
+		Heaps.build(heap, values, 0, n);
+		otherD = d == 2 ? 4 : d / 2;
+		switched = false;
+	}
+
+	/** One insert and one extract, so the heap stays at n elements. */
+	@Benchmark
+	public int insertExtract() {
+		Heaps.insert(heap, keys[next]);
+		next = (next + 1) & (KEYS - 1);
+		return Heaps.extract(heap);
+	}
+
+	/** Rebuilds the heap from the n unordered keys. */
+	@Benchmark
+	public Object build() {
+		Heaps.build(heap, values, 0, n);
+		return heap;
+	}
+
+	/** Re-heapifies the n elements under the other arity. */
+	@Benchmark
+	public Object changeD() {
+		switched = !switched;
+		Heaps.changeD(heap, switched ? otherD : d);
+		return heap;
+	}
+}
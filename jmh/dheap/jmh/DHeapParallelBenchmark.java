@@ -0,0 +1,114 @@
+package dheap.jmh;
+
+import java.lang.invoke.MethodHandle;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * DHeapParallelBenchmark - buildDHeapParallel with pools of increasing
+ * parallelism against the sequential buildDHeap, and the parallel against the
+ * sequential parse and build of the same keys as strings.
+ *
+ * The speedup of a pool size is build / buildParallel. The string benchmarks
+ * use the common pool, as buildDHeapParallel(String[]) does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class DHeapParallelBenchmark {
+
+	private static final MethodHandle BUILD_PARALLEL = Heaps.method("DHeapMax", "buildDHeapParallel", void.class,
+			int[].class, int.class, int.class, ForkJoinPool.class);
+	private static final MethodHandle BUILD_FROM_STRINGS = Heaps.method("DHeapMax", "buildDHeap", void.class,
+			String[].class);
+	private static final MethodHandle BUILD_PARALLEL_FROM_STRINGS = Heaps.method("DHeapMax", "buildDHeapParallel",
+			void.class, String[].class);
+
+	@Param({ "2", "4", "16" })
+	public int d;
+
+	@Param({ "10000000" })
+	public int n;
+
+	private int[] values; // The n random keys
+	private String[] parts; // The same keys as strings
+	private Object heap; // The DHeapMax
+
+	/** The pool of buildParallel. */
+	@State(Scope.Thread)
+	public static class Pool {
+		@Param({ "1", "2", "4", "8", "16" })
+		public int threads;
+
+		ForkJoinPool pool;
+
+		/** Starts the pool. */
+		@Setup(Level.Trial)
+		public void setUp() {
+			pool = new ForkJoinPool(threads);
+		}
+
+		/** Stops the pool. */
+		@TearDown(Level.Trial)
+		public void tearDown() {
+			pool.shutdown();
+		}
+	}
+
+	/** Creates the keys and the heap. */
+	@Setup(Level.Trial)
+	public void setUp() {
+		values = Heaps.values("random", n, new Random(42));
+		parts = new String[n];
+		for (int i = 0; i < n; i++) {
+			parts[i] = Integer.toString(values[i]);
+		}
+		heap = Heaps.newDHeap(d, n);
+	}
+
+	/** The sequential buildDHeap. */
+	@Benchmark
+	public Object build() {
+		Heaps.build(heap, values, 0, n);
+		return heap;
+	}
+
+	/** buildDHeapParallel on a pool of the given size. */
+	@Benchmark
+	public Object buildParallel(Pool pool) throws Throwable {
+		BUILD_PARALLEL.invokeExact(heap, values, 0, n, pool.pool);
+		return heap;
+	}
+
+	/** buildDHeap(String[]): parse and build on one thread. */
+	@Benchmark
+	public Object buildFromStrings() throws Throwable {
+		BUILD_FROM_STRINGS.invokeExact(heap, parts);
+		return heap;
+	}
+
+	/** buildDHeapParallel(String[]): parse and build on the common pool. */
+	@Benchmark
+	public Object buildParallelFromStrings() throws Throwable {
+		BUILD_PARALLEL_FROM_STRINGS.invokeExact(heap, parts);
+		return heap;
+	}
+}
@@ -0,0 +1,105 @@
+package dheap.jmh;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * DHeapParseBenchmark - Loading n 4 digit keys from text into a heap.
+ *
+ * split is the way the user interface used to do it (split,
+ * DHeapValidator.checkHeapInput, buildDHeap(String[])); parserLine and
+ * parserStream use DHeapInputParser on one line and on a byte stream. Add
+ * "-prof gc" to see the garbage of the split.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class DHeapParseBenchmark {
+
+	private static final int MAX_VALID_NUMBER = Heaps.intField("DHeapValidator", "MAX_VALID_NUMBER");
+	private static final MethodHandle CHECK_HEAP_INPUT = Heaps.staticMethod("DHeapValidator", "checkHeapInput",
+			boolean.class, String[].class);
+	private static final MethodHandle BUILD_FROM_STRINGS = Heaps.method("DHeapMax", "buildDHeap", void.class,
+			String[].class);
+	private static final MethodHandle BUILD_FROM_PARSER = Heaps.method("DHeapMax", "buildDHeap", void.class,
+			Heaps.type("DHeapInputParser"));
+	private static final MethodHandle FOR_USER_INPUT = Heaps.staticMethod("DHeapInputParser", "forUserInput",
+			Heaps.type("DHeapInputParser"));
+	private static final MethodHandle PARSE_LINE = Heaps.method("DHeapInputParser", "parse", boolean.class,
+			String.class);
+	private static final MethodHandle PARSE_STREAM = Heaps.method("DHeapInputParser", "parse", boolean.class,
+			InputStream.class);
+
+	@Param({ "1000000" })
+	public int n;
+
+	private String line; // The n keys as text
+	private byte[] bytes; // The same text as bytes
+	private Object parser; // The DHeapInputParser
+	private Object heap; // The DHeapMax
+
+	/** Creates the text. */
+	@Setup(Level.Trial)
+	public void setUp() throws Throwable {
+		Random rnd = new Random(42);
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < n; i++) {
+			text.append(rnd.nextInt(2 * MAX_VALID_NUMBER + 1) - MAX_VALID_NUMBER).append(' ');
+		}
+		line = text.toString().trim();
+		bytes = line.getBytes(StandardCharsets.ISO_8859_1);
+		parser = (Object) FOR_USER_INPUT.invokeExact();
+		heap = Heaps.newDHeap(4, n);
+	}
+
+	/** split, checkHeapInput and buildDHeap(String[]). */
+	@Benchmark
+	public Object split() throws Throwable {
+		String[] parts = line.split("\\s+");
+		if (!(boolean) CHECK_HEAP_INPUT.invokeExact(parts)) {
+			throw new IllegalStateException("Input rejected");
+		}
+		BUILD_FROM_STRINGS.invokeExact(heap, parts);
+		return heap;
+	}
+
+	/** DHeapInputParser on the line, then buildDHeap(parser). */
+	@Benchmark
+	public Object parserLine() throws Throwable {
+		if (!(boolean) PARSE_LINE.invokeExact(parser, line)) {
+			throw new IllegalStateException("Input rejected");
+		}
+		BUILD_FROM_PARSER.invokeExact(heap, parser);
+		return heap;
+	}
+
+	/** DHeapInputParser on a byte stream, then buildDHeap(parser). */
+	@Benchmark
+	public Object parserStream() throws Throwable {
+		if (!(boolean) PARSE_STREAM.invokeExact(parser, (InputStream) new ByteArrayInputStream(bytes))) {
+			throw new IllegalStateException("Input rejected");
+		}
+		BUILD_FROM_PARSER.invokeExact(heap, parser);
+		return heap;
+	}
+}
@@ -0,0 +1,177 @@
+package dheap.jmh;
+
+import java.lang.invoke.MethodHandle;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * DHeapRadixBenchmark - DHeapMax against the specialized queues on the
+ * workloads they are made for.
+ *
+ * Every call runs OPS steady-state steps (one extract, then one insert) on
+ * fresh queues of n keys; the score is per step. The monotone workload
+ * inserts keys up to 'spread' below the key just extracted, as an event
+ * simulation does, and compares RadixHeapMax with DHeapMax. The bounded
+ * workload inserts random keys from the 4 digit user input range and compares
+ * BucketQueueMax with DHeapMax.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 10)
+@Fork(value = 2, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class DHeapRadixBenchmark {
+
+	private static final int OPS = 2_000_000; // Steps per call
+	private static final int D = 4;
+	private static final int MIN_VALID_NUMBER = Heaps.intField("DHeapValidator", "MIN_VALID_NUMBER");
+	private static final int MAX_VALID_NUMBER = Heaps.intField("DHeapValidator", "MAX_VALID_NUMBER");
+	private static final MethodHandle NEW_RADIX = Heaps.constructor("RadixHeapMax");
+	private static final MethodHandle RADIX_INSERT = Heaps.method("RadixHeapMax", "insert", void.class, int.class);
+	private static final MethodHandle RADIX_EXTRACT = Heaps.method("RadixHeapMax", "extractMax", int.class);
+	private static final MethodHandle NEW_BUCKET = Heaps.staticMethod("BucketQueueMax", "forUserInput",
+			Heaps.type("BucketQueueMax"));
+	private static final MethodHandle BUCKET_INSERT = Heaps.method("BucketQueueMax", "insert", void.class,
+			int.class);
+	private static final MethodHandle BUCKET_EXTRACT = Heaps.method("BucketQueueMax", "extractMax", int.class);
+
+	@Param({ "1000", "100000", "1000000" })
+	public int n;
+
+	/** Keys and fresh queues of the monotone workload. */
+	@State(Scope.Thread)
+	public static class Monotone {
+		@Param({ "1024", "1048576" })
+		public int spread;
+
+		int[] base; // The n initial keys, up to spread below Integer.MAX_VALUE
+		int[] deltas; // Distance of each inserted key below the key just extracted
+		Object heap; // The DHeapMax
+		Object radix; // The RadixHeapMax
+
+		/** Creates the keys. */
+		@Setup(Level.Trial)
+		public void setUp(DHeapRadixBenchmark benchmark) {
+			Random rnd = new Random(7);
+			base = new int[benchmark.n];
+			for (int i = 0; i < base.length; i++) {
+				base[i] = Integer.MAX_VALUE - rnd.nextInt(spread);
+			}
+			deltas = new int[OPS];
+			for (int i = 0; i < OPS; i++) {
+				deltas[i] = rnd.nextInt(spread);
+			}
+		}
+
+		/** Fills fresh queues; the keys only go down, so they cannot be reused. */
+		@Setup(Level.Iteration)
+		public void fill() throws Throwable {
+			heap = Heaps.newDHeap(D, base.length);
+			Heaps.build(heap, base, 0, base.length);
+			radix = (Object) NEW_RADIX.invokeExact();
+			for (int key : base) {
+				RADIX_INSERT.invokeExact(radix, key);
+			}
+		}
+	}
+
+	/** Keys and fresh queues of the bounded workload. */
+	@State(Scope.Thread)
+	public static class Bounded {
+		int[] base; // The n initial keys
+		int[] keys; // The inserted keys
+		Object heap; // The DHeapMax
+		Object bucket; // The BucketQueueMax
+
+		/** Creates the keys. */
+		@Setup(Level.Trial)
+		public void setUp(DHeapRadixBenchmark benchmark) {
+			Random rnd = new Random(7);
+			int range = MAX_VALID_NUMBER - MIN_VALID_NUMBER + 1;
+			base = new int[benchmark.n];
+			for (int i = 0; i < base.length; i++) {
+				base[i] = MIN_VALID_NUMBER + rnd.nextInt(range);
+			}
+			keys = new int[OPS];
+			for (int i = 0; i < OPS; i++) {
+				keys[i] = MIN_VALID_NUMBER + rnd.nextInt(range);
+			}
+		}
+
+		/** Fills fresh queues. */
+		@Setup(Level.Iteration)
+		public void fill() throws Throwable {
+			heap = Heaps.newDHeap(D, base.length);
+			Heaps.build(heap, base, 0, base.length);
+			bucket = (Object) NEW_BUCKET.invokeExact();
+			for (int key : base) {
+				BUCKET_INSERT.invokeExact(bucket, key);
+			}
+		}
+	}
+
+	/** Monotone workload on DHeapMax. */
+	@Benchmark
+	@OperationsPerInvocation(OPS)
+	public long monotoneDHeap(Monotone m) {
+		long sum = 0;
+		for (int delta : m.deltas) {
+			int max = Heaps.extract(m.heap);
+			Heaps.insert(m.heap, max - delta);
+			sum += max;
+		}
+		return sum;
+	}
+
+	/** Monotone workload on RadixHeapMax. */
+	@Benchmark
+	@OperationsPerInvocation(OPS)
+	public long monotoneRadix(Monotone m) throws Throwable {
+		long sum = 0;
+		for (int delta : m.deltas) {
+			int max = (int) RADIX_EXTRACT.invokeExact(m.radix);
+			RADIX_INSERT.invokeExact(m.radix, max - delta);
+			sum += max;
+		}
+		return sum;
+	}
+
+	/** Bounded workload on DHeapMax. */
+	@Benchmark
+	@OperationsPerInvocation(OPS)
+	public long boundedDHeap(Bounded b) {
+		long sum = 0;
+		for (int key : b.keys) {
+			sum += Heaps.extract(b.heap);
+			Heaps.insert(b.heap, key);
+		}
+		return sum;
+	}
+
+	/** Bounded workload on BucketQueueMax. */
+	@Benchmark
+	@OperationsPerInvocation(OPS)
+	public long boundedBucket(Bounded b) throws Throwable {
+		long sum = 0;
+		for (int key : b.keys) {
+			sum += (int) BUCKET_EXTRACT.invokeExact(b.bucket);
+			BUCKET_INSERT.invokeExact(b.bucket, key);
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,110 @@
+package dheap.jmh;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandle;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * DHeapSnapshotBenchmark - Restoring a heap from text against restoring it
+ * from a binary snapshot.
+ *
+ * parseText splits a line of n keys and builds the heap with
+ * buildDHeap(String[]); readSnapshot and writeSnapshot restore and save the
+ * same heap as a raw or compressed snapshot in memory. Keys are in the 4 digit
+ * range accepted by the user interface, which is what the compression is made
+ * for.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class DHeapSnapshotBenchmark {
+
+	private static final int MAX_VALID_NUMBER = Heaps.intField("DHeapValidator", "MAX_VALID_NUMBER");
+	private static final MethodHandle BUILD_FROM_STRINGS = Heaps.method("DHeapMax", "buildDHeap", void.class,
+			String[].class);
+	private static final MethodHandle WRITE_SNAPSHOT = Heaps.method("DHeapMax", "writeSnapshot", void.class,
+			OutputStream.class, boolean.class);
+	private static final MethodHandle READ_SNAPSHOT = Heaps.staticMethod("DHeapMax", "readSnapshot",
+			Heaps.type("DHeapMax"), InputStream.class);
+
+	@Param({ "1000000" })
+	public int n;
+
+	private Object heap; // The DHeapMax of the n keys
+	private String line; // The n keys as text
+
+	/** Builds the heap and its text form. */
+	@Setup(Level.Trial)
+	public void setUp() {
+		Random rnd = new Random(42);
+		int[] values = new int[n];
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < n; i++) {
+			values[i] = rnd.nextInt(2 * MAX_VALID_NUMBER + 1) - MAX_VALID_NUMBER;
+			text.append(values[i]).append(' ');
+		}
+		heap = Heaps.newDHeap(4, n);
+		Heaps.build(heap, values, 0, n);
+		line = text.toString();
+	}
+
+	/** A snapshot of the heap, raw or compressed. */
+	@State(Scope.Thread)
+	public static class Snapshot {
+		@Param({ "false", "true" })
+		public boolean compressed;
+
+		byte[] bytes; // The snapshot
+		ByteArrayOutputStream out; // Reused by writeSnapshot
+
+		/** Writes the snapshot once. */
+		@Setup(Level.Trial)
+		public void setUp(DHeapSnapshotBenchmark benchmark) throws Throwable {
+			out = new ByteArrayOutputStream();
+			WRITE_SNAPSHOT.invokeExact(benchmark.heap, (OutputStream) out, compressed);
+			bytes = out.toByteArray();
+		}
+	}
+
+	/** split and buildDHeap(String[]). */
+	@Benchmark
+	public Object parseText() throws Throwable {
+		Object parsed = Heaps.newDHeap(4, 1);
+		BUILD_FROM_STRINGS.invokeExact(parsed, line.trim().split(" "));
+		return parsed;
+	}
+
+	/** readSnapshot from memory. */
+	@Benchmark
+	public Object readSnapshot(Snapshot snapshot) throws Throwable {
+		return (Object) READ_SNAPSHOT.invokeExact((InputStream) new ByteArrayInputStream(snapshot.bytes));
+	}
+
+	/** writeSnapshot to memory. */
+	@Benchmark
+	public Object writeSnapshot(Snapshot snapshot) throws Throwable {
+		snapshot.out.reset();
+		WRITE_SNAPSHOT.invokeExact(heap, (OutputStream) snapshot.out, snapshot.compressed);
+		return snapshot.out;
+	}
+}
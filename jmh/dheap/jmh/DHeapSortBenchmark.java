@@ -0,0 +1,93 @@
+package dheap.jmh;
+
+import java.lang.invoke.MethodHandle;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * DHeapSortBenchmark - DHeapSort with the standard and the bottom-up
+ * extraction for several arities against Arrays.sort and
+ * Arrays.parallelSort, on random and on ascending input.
+ *
+ * The unsorted input is copied into the array before every call, outside of
+ * the measured time; a sort of n keys takes well over a millisecond, so the
+ * per-call setup does not distort the score.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class DHeapSortBenchmark {
+
+	private static final MethodHandle SORT = Heaps.staticMethod("DHeapSort", "sort", void.class, int[].class,
+			int.class, int.class, int.class, boolean.class);
+
+	@Param({ "1000000" })
+	public int n;
+
+	@Param({ "random", "ascending" })
+	public String distribution;
+
+	private int[] values; // The unsorted input
+	private int[] a; // The array that is sorted
+
+	/** The arity and extraction of DHeapSort. */
+	@State(Scope.Thread)
+	public static class Arity {
+		@Param({ "2", "4", "8" })
+		public int d;
+
+		@Param({ "false", "true" })
+		public boolean bottomUp;
+	}
+
+	/** Creates the input. */
+	@Setup(Level.Trial)
+	public void setUp() {
+		values = Heaps.values(distribution, n, new Random(42));
+		a = new int[n];
+	}
+
+	/** Restores the unsorted input. */
+	@Setup(Level.Invocation)
+	public void copy() {
+		System.arraycopy(values, 0, a, 0, n);
+	}
+
+	/** Arrays.sort (dual-pivot quicksort). */
+	@Benchmark
+	public int[] arraysSort() {
+		Arrays.sort(a);
+		return a;
+	}
+
+	/** Arrays.parallelSort on the common pool. */
+	@Benchmark
+	public int[] parallelSort() {
+		Arrays.parallelSort(a);
+		return a;
+	}
+
+	/** DHeapSort. */
+	@Benchmark
+	public int[] dHeapSort(Arity arity) throws Throwable {
+		SORT.invokeExact(a, 0, n, arity.d, arity.bottomUp);
+		return a;
+	}
+}
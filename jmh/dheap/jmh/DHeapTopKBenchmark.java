@@ -0,0 +1,107 @@
+package dheap.jmh;
+
+import java.lang.invoke.MethodHandle;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collector;
+import java.util.stream.IntStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * DHeapTopKBenchmark - Ways to keep the k largest of a stream of n random
+ * keys: the bounded DHeapTopK, a bounded PriorityQueue, and a DHeapMax of all
+ * keys followed by extractTopK. parallelStream and boxedStream collect a
+ * parallel stream with DHeapTopK.of and with the boxing DHeapTopK.collector.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class DHeapTopKBenchmark {
+
+	private static final MethodHandle NEW_TOP_K = Heaps.constructor("DHeapTopK", int.class);
+	private static final MethodHandle OFFER_ALL = Heaps.method("DHeapTopK", "offerAll", void.class, int[].class);
+	private static final MethodHandle OF = Heaps.staticMethod("DHeapTopK", "of", int[].class, IntStream.class,
+			int.class);
+	private static final MethodHandle COLLECTOR = Heaps.staticMethod("DHeapTopK", "collector", Collector.class,
+			int.class);
+	private static final MethodHandle EXTRACT_TOP_K = Heaps.method("DHeapMax", "extractTopK", int.class, int.class,
+			int[].class);
+
+	@Param({ "10000000" })
+	public int n;
+
+	@Param({ "10", "1000", "100000" })
+	public int k;
+
+	private int[] values; // The stream
+	private int[] out; // The k largest keys
+
+	/** Creates the stream. */
+	@Setup(Level.Trial)
+	public void setUp() {
+		values = Heaps.values("random", n, new Random(42));
+		out = new int[k];
+	}
+
+	/** DHeapTopK.offerAll. */
+	@Benchmark
+	public Object topK() throws Throwable {
+		Object topK = (Object) NEW_TOP_K.invokeExact(k);
+		OFFER_ALL.invokeExact(topK, values);
+		return topK;
+	}
+
+	/** A PriorityQueue of at most k boxed keys. */
+	@Benchmark
+	public Object priorityQueue() {
+		PriorityQueue<Integer> queue = new PriorityQueue<>(k);
+		for (int v : values) {
+			if (queue.size() < k) {
+				queue.add(v);
+			} else if (v > queue.peek()) {
+				queue.poll();
+				queue.add(v);
+			}
+		}
+		return queue;
+	}
+
+	/** DHeapTopK.of on a parallel IntStream: one primitive collector per thread. */
+	@Benchmark
+	public int[] parallelStream() throws Throwable {
+		return (int[]) OF.invokeExact(Arrays.stream(values).parallel(), k);
+	}
+
+	/** DHeapTopK.collector on a parallel Stream of boxed keys. */
+	@Benchmark
+	@SuppressWarnings("unchecked")
+	public int[] boxedStream() throws Throwable {
+		Collector<Integer, ?, int[]> collector = (Collector<Integer, ?, int[]>) COLLECTOR.invokeExact(k);
+		return Arrays.stream(values).boxed().parallel().collect(collector);
+	}
+
+	/** buildDHeap of all keys, then extractTopK. */
+	@Benchmark
+	public int fullHeap() throws Throwable {
+		Object heap = Heaps.newDHeap(4, n);
+		Heaps.build(heap, values, 0, n);
+		return (int) EXTRACT_TOP_K.invokeExact(heap, k, out);
+	}
+}
@@ -0,0 +1,94 @@
+package dheap.jmh;
+
+import java.lang.invoke.MethodHandle;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * DHeapTuneBenchmark - A fixed d against a d tuned by DHeapArityTuner on a
+ * workload whose mix shifts between phases.
+ *
+ * Every call replays one trace on a fresh heap: CYCLES cycles of a fill phase
+ * of 90% inserts and a drain phase of 90% extracts, PHASE_OPS operations each.
+ * Inserted keys grow over time with some noise, like deadlines or timestamps,
+ * so inserts rise far in the tree. The tuned heap starts at the same d. The
+ * score is per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(value = 2, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class DHeapTuneBenchmark {
+
+	private static final int PHASE_OPS = 1_000_000;
+	private static final int CYCLES = 4;
+	private static final int OPS = 2 * PHASE_OPS * CYCLES;
+	private static final MethodHandle NEW_DHEAP = Heaps.constructor("DHeapMax", int.class);
+	private static final MethodHandle ENABLE_AUTO_TUNE = Heaps.method("DHeapMax", "enableAutoTune",
+			Heaps.type("DHeapArityTuner"));
+	private static final MethodHandle IS_EMPTY = Heaps.method("DHeapMax", "isEmpty", boolean.class);
+
+	@Param({ "2", "4", "8", "16", "32" })
+	public int d;
+
+	@Param({ "false", "true" })
+	public boolean tuned;
+
+	private boolean[] isInsert; // The trace: true = insert of keys[i], false = extract
+	private int[] keys;
+	private Object heap; // The DHeapMax
+
+	/** Creates the trace. */
+	@Setup(Level.Trial)
+	public void setUp() {
+		isInsert = new boolean[OPS];
+		keys = new int[OPS];
+		Random rnd = new Random(42);
+		int tick = 0;
+		for (int i = 0; i < OPS; i++) {
+			boolean fill = (i / PHASE_OPS) % 2 == 0;
+			isInsert[i] = rnd.nextInt(10) < (fill ? 9 : 1);
+			keys[i] = tick++ + rnd.nextInt(1024);
+		}
+	}
+
+	/** Creates a fresh heap. */
+	@Setup(Level.Iteration)
+	public void newHeap() throws Throwable {
+		heap = (Object) NEW_DHEAP.invokeExact(d);
+		if (tuned) {
+			ENABLE_AUTO_TUNE.invoke(heap);
+		}
+	}
+
+	/** Replays the trace; an extract on an empty heap is skipped. */
+	@Benchmark
+	@OperationsPerInvocation(OPS)
+	public long trace() throws Throwable {
+		long sum = 0;
+		for (int i = 0; i < OPS; i++) {
+			if (isInsert[i]) {
+				Heaps.insert(heap, keys[i]);
+			} else if (!(boolean) IS_EMPTY.invokeExact(heap)) {
+				sum += Heaps.extract(heap);
+			}
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,113 @@
+package dheap.jmh;
+
+import java.lang.invoke.MethodHandle;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * DHeapVectorBenchmark - The scalar against the SIMD scan for the largest
+ * child.
+ *
+ * scalarScan and vectorScan find the largest of one group of d siblings,
+ * cycling through the groups of an array of n random keys. The heap
+ * benchmarks replace the maximum of a heap of n keys (extract followed by
+ * insert); heapScalar runs in a VM with the default scalar scan, heapVector in
+ * one started with -Ddheap.vector=true.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms2g", "-Xmx2g", "--add-modules=jdk.incubator.vector" })
+public class DHeapVectorBenchmark {
+
+	private static final int KEYS = 1 << 20; // Keys cycled through by the heap benchmarks
+	private static final MethodHandle MAX_INDEX = Heaps.staticMethod("DHeapVectorScan", "maxIndex", int.class,
+			int[].class, int.class, int.class);
+
+	@Param({ "8", "16", "32" })
+	public int d;
+
+	@Param({ "1000000" })
+	public int n;
+
+	private int[] values; // The n keys of the scans and the heap
+	private int groups; // Groups of d keys in values
+	private int group; // The group scanned next
+	private Object heap; // The DHeapMax
+	private int[] keys; // Keys inserted by the heap benchmarks
+	private int next; // Index of the next key to insert
+
+	/** Creates the keys and builds the heap. */
+	@Setup(Level.Trial)
+	public void setUp() {
+		values = Heaps.values("random", n, new Random(42));
+		groups = n / d;
+		heap = Heaps.newDHeap(d, n);
+		Heaps.build(heap, values, 0, n);
+		keys = Heaps.values("random", KEYS, new Random(7));
+	}
+
+	/** Returns the first index of the next group. */
+	private int nextGroup() {
+		int from = group * d;
+		group = group + 1 == groups ? 0 : group + 1;
+		return from;
+	}
+
+	/** The index of the largest key of a group, found by a plain loop. */
+	@Benchmark
+	public int scalarScan() {
+		int from = nextGroup();
+		int maxIndex = from;
+		for (int c = from + 1; c < from + d; c++) {
+			if (values[c] > values[maxIndex]) {
+				maxIndex = c;
+			}
+		}
+		return maxIndex;
+	}
+
+	/** The index of the largest key of a group, found by DHeapVectorScan. */
+	@Benchmark
+	public int vectorScan() throws Throwable {
+		int from = nextGroup();
+		return (int) MAX_INDEX.invokeExact(values, from, from + d);
+	}
+
+	/** extract+insert with the scalar child scan. */
+	@Benchmark
+	public int heapScalar() {
+		return extractInsert();
+	}
+
+	/** extract+insert with the SIMD child scan. */
+	@Benchmark
+	@Fork(value = 2, jvmArgsAppend = { "-Xms2g", "-Xmx2g", "--add-modules=jdk.incubator.vector",
+			"-Ddheap.vector=true" })
+	public int heapVector() {
+		return extractInsert();
+	}
+
+	/** One extract and one insert, so the heap stays at n elements. */
+	private int extractInsert() {
+		int max = Heaps.extract(heap);
+		Heaps.insert(heap, keys[next]);
+		next = (next + 1) & (KEYS - 1);
+		return max;
+	}
+}
@@ -0,0 +1,261 @@
+package dheap.jmh;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.OptionalInt;
+import java.util.Random;
+
+/**
+ * Heaps - Calls into the heap classes for the JMH benchmarks.
+ *
+ * JMH refuses benchmark classes in the default package, and a class in a named
+ * package cannot import the default package the heaps live in. The benchmarks
+ * therefore reach the heaps through method handles: the DHeapMax operations
+ * most benchmarks share are wrapped below, and the others are looked up with
+ * method, staticMethod and constructor into static final fields of the
+ * benchmark that uses them. Static final handles are constants, so the JIT
+ * inlines them like direct calls.
+ */
+final class Heaps {
+
+	private static final MethodHandle NEW_DHEAP; // (int d, int capacity) -> DHeapMax
+	private static final MethodHandle INSERT; // (DHeapMax, int) -> void
+	private static final MethodHandle EXTRACT; // (DHeapMax) -> int
+	private static final MethodHandle BUILD; // (DHeapMax, int[], int, int) -> void
+	private static final MethodHandle CHANGE_D; // (DHeapMax, int) -> void
+	private static final MethodHandle NEW_CONCURRENT; // (int d, Mode, int stripes) -> ConcurrentDHeapMax
+	private static final MethodHandle CONCURRENT_INSERT; // (ConcurrentDHeapMax, int) -> void
+	private static final MethodHandle CONCURRENT_POLL; // (ConcurrentDHeapMax) -> OptionalInt
+	private static final Class<?> MODE; // ConcurrentDHeapMax.Mode
+
+	static {
+		try {
+			MethodHandles.Lookup lookup = MethodHandles.lookup();
+			Class<?> dheap = Class.forName("DHeapMax");
+			NEW_DHEAP = lookup.findConstructor(dheap, MethodType.methodType(void.class, int.class, int.class))
+					.asType(MethodType.methodType(Object.class, int.class, int.class));
+			INSERT = virtual(lookup, dheap, "insert", void.class, int.class);
+			EXTRACT = virtual(lookup, dheap, "exctractDMax", int.class);
+			BUILD = virtual(lookup, dheap, "buildDHeap", void.class, int[].class, int.class, int.class);
+			CHANGE_D = virtual(lookup, dheap, "changeD", void.class, int.class);
+			Class<?> concurrent = Class.forName("ConcurrentDHeapMax");
+			MODE = Class.forName("ConcurrentDHeapMax$Mode");
+			NEW_CONCURRENT = lookup
+					.findConstructor(concurrent, MethodType.methodType(void.class, int.class, MODE, int.class))
+					.asType(MethodType.methodType(Object.class, int.class, Object.class, int.class));
+			CONCURRENT_INSERT = virtual(lookup, concurrent, "insert", void.class, int.class);
+			CONCURRENT_POLL = virtual(lookup, concurrent, "pollMax", OptionalInt.class);
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	private Heaps() {
+	}
+
+	/** Looks up an instance method and erases its receiver type to Object. */
+	private static MethodHandle virtual(MethodHandles.Lookup lookup, Class<?> owner, String name, Class<?> result,
+			Class<?>... parameters) throws ReflectiveOperationException {
+		MethodHandle handle = lookup.findVirtual(owner, name, MethodType.methodType(result, parameters));
+		return handle.asType(handle.type().changeParameterType(0, Object.class));
+	}
+
+	/** Returns the heap class of that name (default package, nested classes with '$'). */
+	static Class<?> type(String name) {
+		try {
+			return Class.forName(name);
+		} catch (ClassNotFoundException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	/**
+	 * Looks up an instance method of a heap class. The receiver and every
+	 * parameter or result of a heap class are erased to Object, so callers in
+	 * this package can use invokeExact.
+	 */
+	static MethodHandle method(String owner, String name, Class<?> result, Class<?>... parameters) {
+		try {
+			MethodHandle handle = lookup(owner).findVirtual(type(owner), name,
+					MethodType.methodType(result, parameters));
+			return handle.asType(erase(handle.type()));
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	/** Looks up a static method of a heap class, erased like method. */
+	static MethodHandle staticMethod(String owner, String name, Class<?> result, Class<?>... parameters) {
+		try {
+			MethodHandle handle = lookup(owner).findStatic(type(owner), name,
+					MethodType.methodType(result, parameters));
+			return handle.asType(erase(handle.type()));
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	/** Looks up a constructor of a heap class, erased like method. */
+	static MethodHandle constructor(String owner, Class<?>... parameters) {
+		try {
+			MethodHandle handle = lookup(owner).findConstructor(type(owner),
+					MethodType.methodType(void.class, parameters));
+			return handle.asType(erase(handle.type()));
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	/** Returns the handle with its result dropped, for calls whose result is not needed. */
+	static MethodHandle discardResult(MethodHandle handle) {
+		return handle.asType(handle.type().changeReturnType(void.class));
+	}
+
+	/** Returns the value of a static int field of a heap class. */
+	static int intField(String owner, String name) {
+		try {
+			return (int) lookup(owner).findStaticGetter(type(owner), name, int.class).invokeExact();
+		} catch (Throwable t) {
+			throw new ExceptionInInitializerError(t);
+		}
+	}
+
+	/**
+	 * Returns a lookup with full access to a heap class, so package-private
+	 * members such as DHeapVectorScan.maxIndex can be benchmarked too. The heaps
+	 * and the benchmarks share the unnamed module, which allows it.
+	 */
+	private static MethodHandles.Lookup lookup(String owner) throws IllegalAccessException {
+		return MethodHandles.privateLookupIn(type(owner), MethodHandles.lookup());
+	}
+
+	/** Replaces the classes of the default package in a method type by Object. */
+	private static MethodType erase(MethodType type) {
+		for (int i = 0; i < type.parameterCount(); i++) {
+			if (isHeapClass(type.parameterType(i))) {
+				type = type.changeParameterType(i, Object.class);
+			}
+		}
+		return isHeapClass(type.returnType()) ? type.changeReturnType(Object.class) : type;
+	}
+
+	/** Returns true for (arrays of) classes of the default package. */
+	private static boolean isHeapClass(Class<?> c) {
+		while (c.isArray()) {
+			c = c.getComponentType();
+		}
+		return !c.isPrimitive() && c.getPackageName().isEmpty();
+	}
+
+	/** Returns a new DHeapMax(d, capacity). */
+	static Object newDHeap(int d, int capacity) {
+		try {
+			return (Object) NEW_DHEAP.invokeExact(d, capacity);
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+	}
+
+	/** Calls heap.insert(key). */
+	static void insert(Object heap, int key) {
+		try {
+			INSERT.invokeExact(heap, key);
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+	}
+
+	/** Calls heap.exctractDMax(). */
+	static int extract(Object heap) {
+		try {
+			return (int) EXTRACT.invokeExact(heap);
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+	}
+
+	/** Calls heap.buildDHeap(values, from, len). */
+	static void build(Object heap, int[] values, int from, int len) {
+		try {
+			BUILD.invokeExact(heap, values, from, len);
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+	}
+
+	/** Calls heap.changeD(d). */
+	static void changeD(Object heap, int d) {
+		try {
+			CHANGE_D.invokeExact(heap, d);
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+	}
+
+	/** Returns a new ConcurrentDHeapMax(d, mode, stripes), mode being "STRICT" or "RELAXED". */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	static Object newConcurrent(int d, String mode, int stripes) {
+		try {
+			return (Object) NEW_CONCURRENT.invokeExact(d, (Object) Enum.valueOf((Class) MODE, mode), stripes);
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+	}
+
+	/** Calls heap.insert(key) on a ConcurrentDHeapMax. */
+	static void concurrentInsert(Object heap, int key) {
+		try {
+			CONCURRENT_INSERT.invokeExact(heap, key);
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+	}
+
+	/** Calls heap.pollMax() on a ConcurrentDHeapMax. */
+	static OptionalInt concurrentPoll(Object heap) {
+		try {
+			return (OptionalInt) CONCURRENT_POLL.invokeExact(heap);
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+	}
+
+	/**
+	 * Returns keys of a distribution: "random", "ascending", "descending" or
+	 * "duplicates" (16 distinct keys).
+	 */
+	static int[] values(String distribution, int n, Random rnd) {
+		int[] values = new int[n];
+		for (int i = 0; i < n; i++) {
+			switch (distribution) {
+			case "ascending":
+				values[i] = i;
+				break;
+			case "descending":
+				values[i] = n - i;
+				break;
+			case "duplicates":
+				values[i] = rnd.nextInt(16);
+				break;
+			case "random":
+				values[i] = rnd.nextInt();
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown distribution: " + distribution);
+			}
+		}
+		return values;
+	}
+
+	/** Unchecked rethrow of what a method handle threw. */
+	static RuntimeException rethrow(Throwable t) {
+		if (t instanceof RuntimeException) {
+			return (RuntimeException) t;
+		}
+		if (t instanceof Error) {
+			throw (Error) t;
+		}
+		return new IllegalStateException(t);
+	}
+}
@@ -0,0 +1,119 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Collections;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for BucketQueueMax: random workloads are replayed against a
+ * java.util.PriorityQueue, which must return the same keys in the same order.
+ */
+class BucketQueueMaxTest {
+
+	private static final int OPERATIONS = 200_000;
+
+	/** Replays random inserts, peeks and extracts of keys in [min, max]. */
+	private static void replay(long seed, int min, int max, int insertPercent) {
+		Random random = new Random(seed);
+		BucketQueueMax queue = new BucketQueueMax(min, max);
+		PriorityQueue<Integer> reference = new PriorityQueue<>(Collections.reverseOrder());
+		long range = (long) max - min + 1;
+		for (int op = 0; op < OPERATIONS; op++) {
+			if (reference.isEmpty() || random.nextInt(100) < insertPercent) {
+				int key = (int) (min + (long) (random.nextDouble() * range));
+				queue.insert(key);
+				reference.add(key);
+			} else if (random.nextInt(4) == 0) {
+				assertEquals((int) reference.peek(), queue.peek(), "peek at operation " + op);
+			} else {
+				assertEquals((int) reference.poll(), queue.extractMax(), "extractMax at operation " + op);
+			}
+			assertEquals(reference.size(), queue.getSize());
+		}
+		while (!reference.isEmpty()) {
+			assertEquals((int) reference.poll(), queue.extractMax());
+		}
+		assertTrue(queue.isEmpty());
+	}
+
+	/** The 4 digit range of the user interface, with many duplicates. */
+	@Test
+	void matchesPriorityQueueOnUserRange() {
+		replay(1, DHeapValidator.MIN_VALID_NUMBER, DHeapValidator.MAX_VALID_NUMBER, 55);
+	}
+
+	/** A wide range: the keys are sparse, so extracts skip empty bitmap words. */
+	@Test
+	void matchesPriorityQueueOnSparseKeys() {
+		replay(2, -1_000_000, 1_000_000, 50);
+	}
+
+	/** A range that is not a multiple of 64 and a drain-heavy mix. */
+	@Test
+	void matchesPriorityQueueOnOddRange() {
+		replay(3, 7, 7 + 64 * 64 + 5, 40);
+	}
+
+	/** The ends of the range and a single-key range. */
+	@Test
+	void handlesRangeEnds() {
+		BucketQueueMax queue = new BucketQueueMax(Integer.MAX_VALUE - 100, Integer.MAX_VALUE);
+		queue.insert(Integer.MAX_VALUE - 100);
+		queue.insert(Integer.MAX_VALUE);
+		assertEquals(Integer.MAX_VALUE, queue.extractMax());
+		assertEquals(Integer.MAX_VALUE - 100, queue.extractMax());
+
+		BucketQueueMax single = new BucketQueueMax(-5, -5);
+		single.insert(-5);
+		single.insert(-5);
+		assertEquals(-5, single.extractMax());
+		assertEquals(-5, single.peek());
+		assertEquals(1, single.getSize());
+	}
+
+	/** Keys outside the range and invalid ranges are rejected. */
+	@Test
+	void rejectsInvalidKeysAndRanges() {
+		BucketQueueMax queue = new BucketQueueMax(0, 9);
+		IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> queue.insert(10));
+		assertEquals(DHeapError.KEY_OUT_OF_RANGE.getMessage(), e.getMessage());
+		assertThrows(IllegalArgumentException.class, () -> queue.insert(-1));
+		assertTrue(queue.isEmpty());
+
+		e = assertThrows(IllegalArgumentException.class, () -> new BucketQueueMax(1, 0));
+		assertEquals(DHeapError.INVALID_KEY_RANGE.getMessage() + ": 0 keys, at most " + BucketQueueMax.MAX_RANGE,
+				e.getMessage());
+		e = assertThrows(IllegalArgumentException.class, () -> new BucketQueueMax(0, BucketQueueMax.MAX_RANGE));
+		assertEquals(DHeapError.INVALID_KEY_RANGE.getMessage() + ": " + (BucketQueueMax.MAX_RANGE + 1L)
+				+ " keys, at most " + BucketQueueMax.MAX_RANGE, e.getMessage());
+	}
+
+	/** An empty queue throws on peek and extractMax. */
+	@Test
+	void throwsWhenEmpty() {
+		BucketQueueMax queue = BucketQueueMax.forUserInput();
+		assertThrows(IllegalStateException.class, queue::peek);
+		assertThrows(IllegalStateException.class, queue::extractMax);
+	}
+
+	/** clear empties the queue, which then works as before. */
+	@Test
+	void clearEmptiesTheQueue() {
+		BucketQueueMax queue = new BucketQueueMax(0, 10_000);
+		for (int key = 0; key <= 10_000; key += 37) {
+			queue.insert(key);
+			queue.insert(key);
+		}
+		queue.clear();
+		assertTrue(queue.isEmpty());
+		assertThrows(IllegalStateException.class, queue::peek);
+		queue.insert(3);
+		queue.insert(9000);
+		assertEquals(9000, queue.extractMax());
+		assertEquals(3, queue.extractMax());
+	}
+}
@@ -0,0 +1,134 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for ConcurrentDHeapMax in both modes: the strict mode must extract in
+ * order, the relaxed MultiQueue must neither lose nor duplicate keys under
+ * contention. The strict heap itself is tested in FineGrainedDHeapMaxTest.
+ */
+class ConcurrentDHeapMaxTest {
+
+	/** The strict mode has no stripes and drains in order. */
+	@Test
+	void strictModeExtractsInOrder() {
+		ConcurrentDHeapMax heap = new ConcurrentDHeapMax(4);
+		assertEquals(ConcurrentDHeapMax.Mode.STRICT, heap.getMode());
+		assertEquals(0, heap.getStripeCount());
+		Random random = new Random(1);
+		int[] keys = new int[10_000];
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = random.nextInt();
+			heap.insert(keys[i]);
+		}
+		assertEquals(keys.length, heap.getSize());
+		Arrays.sort(keys);
+		for (int i = keys.length - 1; i >= 0; i--) {
+			assertEquals(keys[i], heap.extractMax());
+		}
+		assertTrue(heap.isEmpty());
+		assertThrows(IllegalStateException.class, heap::extractMax);
+	}
+
+	/** A relaxed heap with one stripe is an ordinary locked heap. */
+	@Test
+	void singleStripeExtractsInOrder() {
+		ConcurrentDHeapMax heap = new ConcurrentDHeapMax(2, ConcurrentDHeapMax.Mode.RELAXED, 1);
+		for (int key : new int[] { 3, 9, 1, 7 }) {
+			heap.insert(key);
+		}
+		for (int expected : new int[] { 9, 7, 3, 1 }) {
+			assertEquals(expected, heap.extractMax());
+		}
+		assertFalse(heap.pollMax().isPresent());
+	}
+
+	/** A relaxed heap on one thread returns every key once, even when nearly empty. */
+	@Test
+	void relaxedModeReturnsEveryKey() {
+		ConcurrentDHeapMax heap = new ConcurrentDHeapMax(4, ConcurrentDHeapMax.Mode.RELAXED, 8);
+		assertEquals(8, heap.getStripeCount());
+		int n = 10_000;
+		for (int key = 0; key < n; key++) {
+			heap.insert(key);
+		}
+		assertEquals(n, heap.getSize());
+		boolean[] seen = new boolean[n];
+		for (int i = 0; i < n; i++) {
+			int key = heap.extractMax();
+			assertFalse(seen[key], "key " + key + " extracted twice");
+			seen[key] = true;
+		}
+		assertTrue(heap.isEmpty());
+		assertFalse(heap.pollMax().isPresent());
+	}
+
+	/** Both modes keep every key when producers and consumers run together. */
+	@Test
+	void losesNoKeysUnderContention() throws InterruptedException {
+		for (ConcurrentDHeapMax.Mode mode : ConcurrentDHeapMax.Mode.values()) {
+			for (int threads : new int[] { 2, 4, 8 }) {
+				ConcurrentDHeapMax heap = new ConcurrentDHeapMax(4, mode, 2 * threads);
+				int perThread = 20_000;
+				List<int[]> extracted = Collections.synchronizedList(new ArrayList<>());
+				FineGrainedDHeapMaxTest.runThreads(threads, t -> {
+					int[] mine = new int[perThread];
+					int count = 0;
+					for (int i = 0; i < perThread; i++) {
+						heap.insert(t * perThread + i);
+						if ((i & 1) == 1) {
+							OptionalInt max = heap.pollMax();
+							if (max.isPresent()) {
+								mine[count++] = max.getAsInt();
+							}
+						}
+					}
+					extracted.add(Arrays.copyOf(mine, count));
+				});
+
+				boolean[] seen = new boolean[threads * perThread];
+				for (int[] keys : extracted) {
+					for (int key : keys) {
+						assertFalse(seen[key], mode + ": key " + key + " extracted twice");
+						seen[key] = true;
+					}
+				}
+				OptionalInt max;
+				int previous = Integer.MAX_VALUE;
+				while ((max = heap.pollMax()).isPresent()) {
+					int key = max.getAsInt();
+					if (mode == ConcurrentDHeapMax.Mode.STRICT) {
+						assertTrue(key <= previous, "the strict drain is not in order");
+						previous = key;
+					}
+					assertFalse(seen[key], mode + ": key " + key + " extracted twice");
+					seen[key] = true;
+				}
+				for (int key = 0; key < seen.length; key++) {
+					assertTrue(seen[key], mode + ": key " + key + " was lost");
+				}
+			}
+		}
+	}
+
+	/** Invalid arguments are rejected. */
+	@Test
+	void rejectsInvalidArguments() {
+		IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+				() -> new ConcurrentDHeapMax(4, ConcurrentDHeapMax.Mode.RELAXED, 0));
+		assertEquals(DHeapError.INVALID_STRIPES.getMessage(), e.getMessage());
+		assertThrows(IllegalArgumentException.class, () -> new ConcurrentDHeapMax(0));
+		assertThrows(IllegalArgumentException.class,
+				() -> new ConcurrentDHeapMax(0, ConcurrentDHeapMax.Mode.RELAXED, 4));
+	}
+}
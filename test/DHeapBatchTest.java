@@ -0,0 +1,150 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for DHeapBatch: the commands of a trace, the error lines of invalid
+ * commands, the summary, and the command line options of run.
+ */
+class DHeapBatchTest {
+
+	/** Runs a trace and returns the output lines. */
+	private static List<String> execute(String trace, int d, boolean autoD, boolean lazy, boolean echo)
+			throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		PrintStream out = new PrintStream(bytes, false, StandardCharsets.ISO_8859_1);
+		DHeapBatch batch = new DHeapBatch(d, autoD, lazy, out, echo);
+		batch.execute(new ByteArrayInputStream(trace.getBytes(StandardCharsets.ISO_8859_1)));
+		out.flush();
+		return Arrays.asList(bytes.toString(StandardCharsets.ISO_8859_1).split("\\R"));
+	}
+
+	/** Returns the lines before the summary. */
+	private static List<String> body(List<String> lines) {
+		List<String> body = new ArrayList<>();
+		for (String line : lines) {
+			if (line.startsWith("Batch summary:")) {
+				return body;
+			}
+			body.add(line);
+		}
+		throw new AssertionError("no summary in " + lines);
+	}
+
+	/** Returns the summary line. */
+	private static String summary(List<String> lines) {
+		return lines.get(body(lines).size());
+	}
+
+	/** Every command runs; extracts are echoed in order and print shows the levels. */
+	@Test
+	void executesCommands() throws IOException {
+		for (boolean lazy : new boolean[] { false, true }) {
+			String trace = "# a comment\n\nbuild 5 3 9 1\n  insert 7  \ninsert -2\nextract\nchangeD 3\nextract\nprint\n";
+			List<String> lines = execute(trace, 2, false, lazy, true);
+			List<String> body = body(lines);
+			assertEquals(Arrays.asList("9", "7", "d-ary Heap: ", "5 "), body.subList(0, 4), "lazy=" + lazy);
+			String[] level = body.get(4).trim().split(" "); // The order of siblings depends on the insert mode
+			Arrays.sort(level);
+			assertArrayEquals(new String[] { "-2", "1", "3" }, level, "lazy=" + lazy);
+			assertEquals(6, body.size(), "lazy=" + lazy);
+			assertTrue(summary(lines).contains(" 7 operations "), summary(lines));
+			assertTrue(summary(lines).endsWith("0 errors, final size 4, d=3"), summary(lines));
+		}
+	}
+
+	/** The summary has one latency row per command that ran, and none for the others. */
+	@Test
+	void summarizesLatencies() throws IOException {
+		List<String> lines = execute("insert 1\ninsert 2\nextract\n", 4, false, false, false);
+		assertTrue(body(lines).isEmpty(), "extracts are not echoed: " + lines);
+		List<String> rows = lines.subList(body(lines).size() + 2, lines.size());
+		assertEquals(2, rows.size(), rows.toString());
+		assertTrue(rows.get(0).matches("insert +2( +\\d+){4}"), rows.get(0));
+		assertTrue(rows.get(1).matches("extract +1( +\\d+){4}"), rows.get(1));
+		assertTrue(lines.get(body(lines).size() + 1).startsWith("command"), lines.toString());
+	}
+
+	/** Invalid lines are reported with their line number and counted, and the batch goes on. */
+	@Test
+	void reportsErrorLines() throws IOException {
+		String trace = "extract\ninsert x\ninsert 1 2\nbuild 1 a\nchangeD 0\nchangeD\nfrobnicate 3\ninsert 4\nextract\n";
+		List<String> lines = execute(trace, 4, false, false, true);
+		List<String> body = body(lines);
+		assertEquals(8, body.size(), body.toString());
+		assertEquals("line 1: " + DHeapError.HEAP_UNDERFLOW.getMessage(), body.get(0));
+		assertEquals("line 2: " + DHeapError.NON_INTEGER_INPUT.getMessage() + ": x", body.get(1));
+		assertEquals("line 3: " + DHeapError.NON_INTEGER_INPUT.getMessage() + ": 1 2", body.get(2));
+		assertTrue(body.get(3).startsWith("line 4: "), body.get(3));
+		assertEquals("line 5: " + DHeapError.INVALID_D.getMessage() + ": 0", body.get(4));
+		assertEquals("line 6: " + DHeapError.INVALID_D.getMessage() + ": ", body.get(5));
+		assertEquals("line 7: " + DHeapError.UNKNOWN_COMMAND.getMessage() + ": frobnicate", body.get(6));
+		assertEquals("4", body.get(7));
+		assertTrue(summary(lines).contains(" 2 operations "), summary(lines));
+		assertTrue(summary(lines).endsWith("7 errors, final size 0, d=4"), summary(lines));
+	}
+
+	/** The arity tuner adds its line to the summary. */
+	@Test
+	void reportsArityTuner() throws IOException {
+		List<String> lines = execute("insert 1\nextract\n", 2, true, false, false);
+		assertTrue(lines.get(body(lines).size() + 1).startsWith("Arity tuner: "), lines.toString());
+	}
+
+	/** Runs run with captured streams; returns { stdout, stderr }. */
+	private static String[] run(String... args) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ByteArrayOutputStream err = new ByteArrayOutputStream();
+		PrintStream errStream = new PrintStream(err, true, StandardCharsets.ISO_8859_1);
+		DHeapBatch.run(args, out, errStream);
+		return new String[] { out.toString(StandardCharsets.ISO_8859_1), err.toString(StandardCharsets.ISO_8859_1) };
+	}
+
+	/** A command file with options runs with the given d and echo. */
+	@Test
+	void runsFile(@TempDir Path dir) throws IOException {
+		Path file = dir.resolve("trace.txt");
+		Files.writeString(file, "build 1 2 3\nextract\n");
+		String[] output = run(file.toString(), "--d", "3", "--lazy", "--echo");
+		assertEquals("", output[1]);
+		assertTrue(output[0].startsWith("3" + System.lineSeparator() + "Batch summary: 2 operations"), output[0]);
+		assertTrue(output[0].contains("final size 2, d=3"), output[0]);
+	}
+
+	/** An invalid --d is one line on stderr, nothing on stdout, and nothing runs. */
+	@Test
+	void rejectsInvalidD() throws IOException {
+		PrintStream systemOut = System.out;
+		ByteArrayOutputStream captured = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(captured, true, StandardCharsets.ISO_8859_1));
+		try {
+			String[][] cases = { { "--d", "x" }, { "--d", "0" }, { "--d", "4 4" }, { "--d", "99999999999" } };
+			for (String[] args : cases) {
+				String[] output = run(args);
+				assertEquals("", output[0], Arrays.toString(args));
+				assertArrayEquals(new String[] { "--d: " + DHeapError.INVALID_D.getMessage() + ": " + args[1] },
+						output[1].split("\\R"), Arrays.toString(args));
+			}
+			String[] output = run("--d");
+			assertEquals("", output[0]);
+			assertEquals("--d: " + DHeapError.MISSING_OPTION_VALUE.getMessage(), output[1].trim());
+		} finally {
+			System.setOut(systemOut);
+		}
+		assertEquals("", captured.toString(StandardCharsets.ISO_8859_1), "nothing goes to System.out");
+	}
+}
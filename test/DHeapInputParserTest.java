@@ -0,0 +1,273 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for DHeapInputParser: signs, leading zeros and numbers beyond the 9
+ * digit fast path, tokens cut by the 64 KB chunks of a line and by arbitrary
+ * stream reads, and random inputs against a reference parser built on
+ * String.split and BigInteger.
+ */
+class DHeapInputParserTest {
+
+	private static final int CHUNK_BYTES = 64 * 1024; // DHeapInputParser.CHUNK_BYTES
+	private static final String[] SPACES = { " ", "  ", "\n", "\r\n", "\t", "\f" };
+
+	/** An InputStream that returns at most maxRead bytes per read, at random. */
+	private static final class ShortReads extends InputStream {
+		private final byte[] bytes;
+		private final Random random;
+		private final int maxRead;
+		private int position;
+
+		ShortReads(String text, Random random, int maxRead) {
+			this.bytes = text.getBytes(StandardCharsets.ISO_8859_1);
+			this.random = random;
+			this.maxRead = maxRead;
+		}
+
+		@Override
+		public int read() {
+			return position < bytes.length ? bytes[position++] & 0xFF : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (position == bytes.length) {
+				return -1;
+			}
+			int n = Math.min(Math.min(len, 1 + random.nextInt(maxRead)), bytes.length - position);
+			System.arraycopy(bytes, position, b, off, n);
+			position += n;
+			return n;
+		}
+	}
+
+	/** The expected outcome of a parse: the values, or the message of the first bad token. */
+	private static final class Outcome {
+		final int[] values;
+		final String errorMessage;
+
+		Outcome(int[] values, String errorMessage) {
+			this.values = values;
+			this.errorMessage = errorMessage;
+		}
+	}
+
+	/** Parses like DHeapInputParser, but token by token with split and BigInteger. */
+	private static Outcome reference(String text, int min, int max) {
+		int[] values = new int[text.length() / 2 + 1];
+		int count = 0;
+		for (String token : text.trim().split("[ \n\r\t\f]+")) {
+			if (token.isEmpty()) {
+				continue;
+			}
+			DHeapError error = null;
+			if (!token.matches("[+-]?[0-9]+")) {
+				error = DHeapError.INVALID_INPUT;
+			} else {
+				BigInteger value = new BigInteger(token);
+				if (value.compareTo(BigInteger.valueOf(min)) < 0 || value.compareTo(BigInteger.valueOf(max)) > 0) {
+					error = DHeapError.INVALID_NUMBER_RANGE;
+				} else {
+					values[count++] = value.intValue();
+				}
+			}
+			if (error != null) {
+				return new Outcome(null,
+						"The issue: " + token + " " + error.getMessage() + " (value " + (count + 1) + ")");
+			}
+		}
+		return new Outcome(Arrays.copyOf(values, count), null);
+	}
+
+	/** Checks the result of a parse against the reference. */
+	private static void assertParsed(Outcome expected, boolean ok, DHeapInputParser parser, String where) {
+		assertEquals(expected.errorMessage, parser.getErrorMessage(), where);
+		assertEquals(expected.errorMessage == null, ok, where);
+		if (ok) {
+			assertArrayEquals(expected.values, parser.toArray(), where);
+		}
+	}
+
+	/** Parses a line and returns the values, failing on an error. */
+	private static int[] parse(String line) {
+		DHeapInputParser parser = new DHeapInputParser(Integer.MIN_VALUE, Integer.MAX_VALUE);
+		assertTrue(parser.parse(line), () -> line + ": " + parser.getErrorMessage());
+		return parser.toArray();
+	}
+
+	/** Returns the error message of a line that must not parse. */
+	private static String error(DHeapInputParser parser, String line) {
+		assertFalse(parser.parse(line), line);
+		return parser.getErrorMessage();
+	}
+
+	/** An optional sign per token; a sign alone, doubled or trailing is invalid. */
+	@Test
+	void parsesSigns() {
+		assertArrayEquals(new int[] { 5, 5, -5, 0, 0, 0 }, parse("5 +5 -5 0 +0 -0"));
+		DHeapInputParser parser = new DHeapInputParser(-10, 10);
+		for (String token : new String[] { "+", "-", "--5", "+-5", "-+5", "5-", "5+", "1-2", "+ 5" }) {
+			String bad = token.equals("+ 5") ? "+" : token;
+			assertEquals("The issue: " + bad + " " + DHeapError.INVALID_INPUT.getMessage() + " (value 2)",
+					error(parser, "1 " + token + " 3"), token);
+		}
+	}
+
+	/** Leading zeros are skipped, however many there are, before the range check. */
+	@Test
+	void parsesLeadingZeros() {
+		assertArrayEquals(new int[] { 7, -7, 7, 0, 0, 123, Integer.MAX_VALUE, Integer.MIN_VALUE },
+				parse("007 -0007 +000000000000000007 0000000000 -00000000000000 000000000123 "
+						+ "000000000000002147483647 -00000000000002147483648"));
+		DHeapInputParser parser = new DHeapInputParser(-10, 10);
+		assertEquals("The issue: 00000000011 " + DHeapError.INVALID_NUMBER_RANGE.getMessage() + " (value 1)",
+				error(parser, "00000000011"));
+	}
+
+	/** Numbers of more than 9 digits leave the fast path and are range checked exactly. */
+	@Test
+	void parsesLongNumbers() {
+		assertArrayEquals(new int[] { 999_999_999, 1_000_000_000, 2_147_483_647, -2_147_483_648, -1_234_567_890 },
+				parse("999999999 1000000000 2147483647 -2147483648 -1234567890"));
+		DHeapInputParser parser = new DHeapInputParser(Integer.MIN_VALUE, Integer.MAX_VALUE);
+		for (String token : new String[] { "2147483648", "-2147483649", "9999999999", "99999999999",
+				"100000000000000000000000", "-99999999999999999999" }) {
+			assertEquals("The issue: " + token + " " + DHeapError.INVALID_NUMBER_RANGE.getMessage() + " (value 3)",
+					error(parser, "1 2 " + token + " 4"), token);
+		}
+		assertEquals("The issue: 12345678901x " + DHeapError.INVALID_INPUT.getMessage() + " (value 1)",
+				error(parser, "12345678901x"), "a bad character beats the length");
+	}
+
+	/** A token that straddles a 64 KB chunk of a line is carried over, at every cut position. */
+	@Test
+	void carriesTokensAcrossChunks() {
+		String[] tokens = { "-2147483648", "+1234567890", "0000000000042", "-7", "12345", "+0", "1x3", "--1" };
+		DHeapInputParser parser = new DHeapInputParser(Integer.MIN_VALUE, Integer.MAX_VALUE);
+		for (String token : tokens) {
+			for (int cut = 0; cut <= token.length(); cut++) {
+				// Padding of "1 " pairs, so that the token starts cut bytes before the chunk end
+				int start = CHUNK_BYTES - cut;
+				StringBuilder line = new StringBuilder(start + 20);
+				line.append(start % 2 == 1 ? " " : "");
+				line.append("1 ".repeat(start / 2));
+				line.append(token).append(cut % 2 == 0 ? " 5" : "");
+				String text = line.toString();
+				String where = token + " cut " + cut;
+				assertParsed(reference(text, Integer.MIN_VALUE, Integer.MAX_VALUE), parser.parse(text), parser, where);
+			}
+		}
+	}
+
+	/** Stream reads of a few bytes cut the tokens everywhere. */
+	@Test
+	void parsesShortReads() throws IOException {
+		Random random = new Random(1);
+		for (int trial = 0; trial < 300; trial++) {
+			String text = randomText(random, 1 + random.nextInt(60), trial % 3 != 0);
+			int min = random.nextBoolean() ? Integer.MIN_VALUE : -10_000;
+			int max = random.nextBoolean() ? Integer.MAX_VALUE : 10_000;
+			DHeapInputParser parser = new DHeapInputParser(min, max);
+			boolean ok = parser.parse(new ShortReads(text, random, 1 + random.nextInt(8)));
+			assertParsed(reference(text, min, max), ok, parser, "'" + text + "'");
+		}
+	}
+
+	/** Long random inputs through lines, streams and files give the same result as the reference. */
+	@Test
+	void matchesReference(@TempDir Path dir) throws IOException {
+		Random random = new Random(2);
+		for (int trial = 0; trial < 20; trial++) {
+			boolean userInput = trial % 4 >= 2;
+			DHeapInputParser parser = userInput ? DHeapInputParser.forUserInput()
+					: new DHeapInputParser(Integer.MIN_VALUE, Integer.MAX_VALUE);
+			int min = userInput ? DHeapValidator.MIN_VALID_NUMBER : Integer.MIN_VALUE;
+			int max = userInput ? DHeapValidator.MAX_VALID_NUMBER : Integer.MAX_VALUE;
+			String text = randomText(random, 20_000 + random.nextInt(40_000), trial % 2 == 0);
+			Outcome expected = reference(text, min, max);
+			assertParsed(expected, parser.parse(text), parser, "line " + trial);
+			assertParsed(expected, parser.parse(new ByteArrayInputStream(text.getBytes(StandardCharsets.ISO_8859_1))),
+					parser, "stream " + trial);
+			Path file = dir.resolve("input" + trial);
+			Files.writeString(file, text, StandardCharsets.ISO_8859_1);
+			assertParsed(expected, parser.parse(file), parser, "file " + trial);
+		}
+	}
+
+	/** Empty input, whitespace only, and the state of a parse after a failed one. */
+	@Test
+	void parsesEmptyInputs() {
+		DHeapInputParser parser = DHeapInputParser.forUserInput();
+		for (String line : new String[] { "", " ", " \n\t\r\f " }) {
+			assertTrue(parser.parse(line));
+			assertEquals(0, parser.getCount());
+			assertNull(parser.getErrorMessage());
+		}
+		assertFalse(parser.parse("1 2 99999"));
+		assertTrue(parser.parse("-12"));
+		assertEquals(1, parser.getCount());
+		assertEquals(-12, parser.get(0));
+		assertNull(parser.getErrorMessage());
+	}
+
+	/**
+	 * Returns whitespace separated random tokens: mostly valid numbers of any
+	 * length, with signs and leading zeros, and a bad token now and then if
+	 * withErrors is set.
+	 */
+	private static String randomText(Random random, int tokens, boolean withErrors) {
+		StringBuilder text = new StringBuilder();
+		if (random.nextBoolean()) {
+			text.append(SPACES[random.nextInt(SPACES.length)]);
+		}
+		for (int t = 0; t < tokens; t++) {
+			if (t > 0) {
+				text.append(SPACES[random.nextInt(SPACES.length)]);
+			}
+			int kind = random.nextInt(20);
+			if (kind == 0) {
+				text.append(random.nextBoolean() ? '-' : '+');
+			} else if (kind == 1) {
+				text.append('0').append('0');
+			}
+			if (withErrors && random.nextInt(2_000) == 0) {
+				text.append(new String[] { "x", "-", "+", "1.5", "--3", "7a" }[random.nextInt(6)]);
+				continue;
+			}
+			switch (random.nextInt(4)) {
+			case 0:
+				text.append(random.nextInt(10_000));
+				break;
+			case 1:
+				text.append(random.nextInt() & Integer.MAX_VALUE);
+				break;
+			case 2:
+				text.append(random.nextInt(withErrors ? 100_000 : 10_000));
+				break;
+			default:
+				text.append(withErrors && random.nextInt(50) == 0 ? "98765432109876" : "9999");
+			}
+		}
+		if (random.nextBoolean()) {
+			text.append(SPACES[random.nextInt(SPACES.length)]);
+		}
+		return text.toString();
+	}
+}
@@ -0,0 +1,249 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for DHeapMax: random workloads of every operation that changes the
+ * heap (insert, extract, insertAll, extractTopK, meld, changeD, builds) are
+ * replayed against a java.util.PriorityQueue, with lazy inserts, shrinking
+ * and the cache-aligned layout switched on and off.
+ */
+class DHeapMaxTest {
+
+	private static final int[] ARITIES = { 1, 2, 3, 4, 8, 16 };
+
+	/** Options of a replayed heap. */
+	private static final int LAZY = 1;
+	private static final int SHRINK = 2;
+	private static final int ALIGNED = 4;
+
+	/** Returns a heap with the given options. */
+	private static DHeapMax newHeap(int d, int options) {
+		DHeapMax heap = new DHeapMax(d);
+		heap.setLazyInsert((options & LAZY) != 0);
+		heap.setShrinkOnExtract((options & SHRINK) != 0);
+		heap.setCacheAligned((options & ALIGNED) != 0);
+		return heap;
+	}
+
+	/** Returns the next arity for changeD; d = 1 (a sorted list) only for tiny heaps. */
+	private static int nextD(Random random, int size) {
+		int d = ARITIES[random.nextInt(ARITIES.length)];
+		return d == 1 && size > 100 ? 2 : d;
+	}
+
+	/** Replays a random mix of all operations for one arity and set of options. */
+	private static void replay(int d, int options, long seed, int operations) {
+		Random random = new Random(seed);
+		DHeapMax heap = newHeap(d, options);
+		int maxBatch = d == 1 ? 20 : 1_500; // A 1-ary heap costs O(n) per operation
+		PriorityQueue<Integer> reference = new PriorityQueue<>(Collections.reverseOrder());
+		int[] out = new int[5_000];
+		for (int op = 0; op < operations; op++) {
+			int choice = random.nextInt(100);
+			String where = "d=" + heap.getD() + " options=" + options + " operation " + op;
+			if (choice < 45) {
+				int key = random.nextInt(10_000) - 5_000;
+				heap.insert(key);
+				reference.add(key);
+			} else if (choice < 80) {
+				if (reference.isEmpty()) {
+					assertThrows(IllegalStateException.class, heap::extractMax, where);
+				} else {
+					assertEquals((int) reference.peek(), heap.peek(), where);
+					assertEquals((int) reference.poll(), heap.extractMax(), where);
+				}
+			} else if (choice < 88) {
+				// Small batches sift up, large ones are re-heapified bottom-up
+				int len = random.nextBoolean() ? random.nextInt(8) : random.nextInt(maxBatch);
+				int[] keys = new int[len + 3];
+				for (int i = 0; i < keys.length; i++) {
+					keys[i] = random.nextInt(10_000) - 5_000;
+				}
+				heap.insertAll(keys, 3, len);
+				for (int i = 3; i < keys.length; i++) {
+					reference.add(keys[i]);
+				}
+			} else if (choice < 94) {
+				// Small k extracts at the root, large k uses the candidate walk
+				int k = random.nextBoolean() ? random.nextInt(4) : random.nextInt(out.length);
+				int count = heap.extractTopK(k, out);
+				assertEquals(Math.min(k, reference.size()), count, where);
+				for (int j = 0; j < count; j++) {
+					assertEquals((int) reference.poll(), out[j], where + " top " + j);
+				}
+			} else if (choice < 98) {
+				DHeapMax other = newHeap(random.nextBoolean() ? heap.getD() : nextD(random, heap.getSize()), options);
+				int n = random.nextInt(2) == 0 ? random.nextInt(20) : random.nextInt(maxBatch);
+				for (int i = 0; i < n; i++) {
+					int key = random.nextInt(10_000) - 5_000;
+					other.insert(key);
+					reference.add(key);
+				}
+				heap.meld(other);
+				assertEquals(0, other.getSize(), where);
+			} else {
+				heap.changeD(nextD(random, heap.getSize()));
+			}
+			assertEquals(reference.size(), heap.getSize(), where);
+			assertTrue(heap.getPending() == 0 || (options & LAZY) != 0, where);
+		}
+		while (!reference.isEmpty()) {
+			assertEquals((int) reference.poll(), heap.extractMax());
+		}
+		assertTrue(heap.isEmpty());
+	}
+
+	/** Every arity matches the reference with the default options. */
+	@Test
+	void matchesPriorityQueue() {
+		for (int d : ARITIES) {
+			replay(d, 0, d, d == 1 ? 2_000 : 10_000);
+		}
+	}
+
+	/** Lazy inserts are folded in by the next operation that needs the order. */
+	@Test
+	void matchesPriorityQueueWithLazyInserts() {
+		for (int d : ARITIES) {
+			replay(d, LAZY, 100 + d, d == 1 ? 2_000 : 10_000);
+		}
+	}
+
+	/** The backing array shrinks while extracting and stays correct. */
+	@Test
+	void matchesPriorityQueueWhenShrinking() {
+		for (int d : ARITIES) {
+			replay(d, SHRINK, 200 + d, d == 1 ? 2_000 : 10_000);
+		}
+	}
+
+	/** The cache-aligned layout moves the root to another offset; changeD moves it again. */
+	@Test
+	void matchesPriorityQueueCacheAligned() {
+		for (int d : ARITIES) {
+			replay(d, ALIGNED, 300 + d, d == 1 ? 2_000 : 10_000);
+			replay(d, LAZY | SHRINK | ALIGNED, 400 + d, d == 1 ? 2_000 : 10_000);
+		}
+	}
+
+	/** A heap built from values (sequentially or in parallel) drains in order. */
+	@Test
+	void buildsFromValues() {
+		Random random = new Random(5);
+		int[] values = new int[100_000];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = random.nextInt();
+		}
+		int[] sorted = Arrays.copyOfRange(values, 10, values.length);
+		Arrays.sort(sorted);
+		for (int d : new int[] { 2, 4, 16 }) {
+			DHeapMax heap = new DHeapMax(d);
+			heap.insert(Integer.MAX_VALUE); // Replaced by the build
+			heap.buildDHeap(values, 10, values.length - 10);
+			DHeapMax parallel = new DHeapMax(d);
+			parallel.buildDHeapParallel(values, 10, values.length - 10);
+			for (int i = sorted.length - 1; i >= 0; i--) {
+				assertEquals(sorted[i], heap.extractMax());
+				assertEquals(sorted[i], parallel.extractMax());
+			}
+		}
+	}
+
+	/** Growing, trimming and shrinking the backing array. */
+	@Test
+	void managesCapacity() {
+		DHeapMax heap = new DHeapMax(4, 16);
+		assertEquals(16, heap.getCapacity());
+		for (int key = 0; key < 1_000; key++) {
+			heap.insert(key);
+		}
+		assertTrue(heap.getCapacity() >= 1_000);
+		heap.ensureCapacity(5_000);
+		assertTrue(heap.getCapacity() >= 5_000);
+		heap.trimToSize();
+		assertEquals(1_000, heap.getCapacity());
+		assertThrows(IllegalArgumentException.class, () -> heap.ensureCapacity(DHeapMax.MAX_CAPACITY + 1));
+
+		heap.setShrinkOnExtract(true);
+		for (int key = 999; key >= 10; key--) {
+			assertEquals(key, heap.extractMax());
+		}
+		assertTrue(heap.getCapacity() < 100, "the array shrinks with the heap");
+		assertTrue(heap.getCapacity() >= 16, "but not below the initial capacity");
+		for (int key = 9; key >= 0; key--) {
+			assertEquals(key, heap.extractMax());
+		}
+		heap.trimToSize();
+		assertEquals(1, heap.getCapacity());
+		heap.insert(7);
+		assertEquals(7, heap.peek());
+	}
+
+	/** Lazy inserts stay pending until an operation needs the heap order. */
+	@Test
+	void buffersLazyInserts() {
+		DHeapMax heap = new DHeapMax(3);
+		heap.setLazyInsert(true);
+		for (int key : new int[] { 4, 8, 1, 9, 2 }) {
+			heap.insert(key);
+		}
+		assertEquals(5, heap.getPending());
+		assertEquals(5, heap.getSize());
+		assertEquals(9, heap.peek());
+		assertEquals(0, heap.getPending());
+		heap.insert(20);
+		heap.insert(0);
+		heap.setLazyInsert(false); // Flushes
+		assertEquals(0, heap.getPending());
+		int[] out = new int[7];
+		assertEquals(7, heap.extractTopK(10, out));
+		assertArrayEquals(new int[] { 20, 9, 8, 4, 2, 1, 0 }, out);
+	}
+
+	/** meld takes all elements of the other heap, whichever is larger. */
+	@Test
+	void meldsHeaps() {
+		DHeapMax small = new DHeapMax(4);
+		DHeapMax large = new DHeapMax(4);
+		for (int key = 0; key < 100; key++) {
+			(key % 10 == 0 ? small : large).insert(key);
+		}
+		small.meld(large); // The larger heap's array is taken over
+		assertEquals(100, small.getSize());
+		assertEquals(0, large.getSize());
+		large.insert(1_000);
+		large.meld(small);
+		assertEquals(1_000, large.extractMax());
+		for (int key = 99; key >= 0; key--) {
+			assertEquals(key, large.extractMax());
+		}
+		IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> small.meld(small));
+		assertEquals(DHeapError.MELD_WITH_ITSELF.getMessage(), e.getMessage());
+	}
+
+	/** Errors on empty heaps, bad arguments and bad ranges. */
+	@Test
+	void rejectsInvalidUse() {
+		DHeapMax heap = new DHeapMax(2);
+		assertThrows(IllegalStateException.class, heap::peek);
+		assertThrows(IllegalStateException.class, heap::extractMax);
+		assertEquals(0, heap.extractTopK(5, new int[0]));
+		heap.insert(1);
+		heap.insert(2);
+		assertThrows(IndexOutOfBoundsException.class, () -> heap.extractTopK(2, new int[1]));
+		assertThrows(IndexOutOfBoundsException.class, () -> heap.insertAll(new int[3], 2, 2));
+		assertThrows(IllegalArgumentException.class, () -> heap.changeD(0));
+		assertEquals(2, heap.getD());
+		assertThrows(IllegalArgumentException.class, () -> new DHeapMax(DHeapMax.D_MAX_VAL + 1));
+		assertEquals(2, heap.extractMax());
+	}
+}
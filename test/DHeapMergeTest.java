@@ -0,0 +1,184 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for DHeapMerge: merges of in-memory runs and run files are compared
+ * with Arrays.sort of all elements, and sortFile is checked for single-run,
+ * multi-run and multi-pass inputs and for leaving no temporary files behind,
+ * also when it fails.
+ */
+class DHeapMergeTest {
+
+	@TempDir
+	Path dir;
+
+	/** Returns the values sorted in descending order. */
+	private static int[] descending(int[] values) {
+		int[] sorted = values.clone();
+		Arrays.sort(sorted);
+		for (int i = 0, j = sorted.length - 1; i < j; i++, j--) {
+			int t = sorted[i];
+			sorted[i] = sorted[j];
+			sorted[j] = t;
+		}
+		return sorted;
+	}
+
+	/** Returns k descending runs of random lengths (some empty) and duplicate-rich keys. */
+	private static int[][] randomRuns(Random random, int k) {
+		int[][] runs = new int[k][];
+		for (int r = 0; r < k; r++) {
+			int[] run = new int[random.nextInt(4) == 0 ? 0 : random.nextInt(500)];
+			for (int i = 0; i < run.length; i++) {
+				run[i] = random.nextInt(1_000) - 500;
+			}
+			runs[r] = descending(run);
+		}
+		return runs;
+	}
+
+	/** Returns all elements of the runs in one array. */
+	private static int[] concat(int[][] runs) {
+		return Stream.of(runs).flatMapToInt(IntStream::of).toArray();
+	}
+
+	/** Writes raw little-endian ints to a file. */
+	private static Path writeInts(Path file, int[] values) throws IOException {
+		ByteBuffer bytes = ByteBuffer.allocate(values.length * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		bytes.asIntBuffer().put(values);
+		Files.write(file, bytes.array());
+		return file;
+	}
+
+	/** Reads a file of raw little-endian ints. */
+	private static int[] readInts(Path file) throws IOException {
+		IntBuffer ints = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+		int[] values = new int[ints.remaining()];
+		ints.get(values);
+		return values;
+	}
+
+	/** Returns the files in a directory. */
+	private static List<Path> list(Path directory) throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.toList();
+		}
+	}
+
+	/** Iterator and buffer merges return every element in descending order. */
+	@Test
+	void mergesRuns() {
+		Random random = new Random(1);
+		for (int d : new int[] { 1, 2, 4, 16 }) {
+			for (int k : new int[] { 0, 1, 2, 7, 100 }) {
+				int[][] runs = randomRuns(random, k);
+				int[] expected = descending(concat(runs));
+
+				List<PrimitiveIterator.OfInt> iterators = new ArrayList<>();
+				for (int[] run : runs) {
+					iterators.add(IntStream.of(run).iterator());
+				}
+				PrimitiveIterator.OfInt merged = DHeapMerge.merge(d, iterators);
+				int[] out = new int[expected.length];
+				for (int i = 0; i < out.length; i++) {
+					out[i] = merged.nextInt();
+				}
+				assertFalse(merged.hasNext());
+				assertThrows(NoSuchElementException.class, merged::nextInt);
+				assertArrayEquals(expected, out, "iterators, d=" + d + " k=" + k);
+
+				IntBuffer[] buffers = new IntBuffer[k];
+				for (int r = 0; r < k; r++) {
+					buffers[r] = IntBuffer.wrap(runs[r]);
+				}
+				IntBuffer target = IntBuffer.allocate(expected.length);
+				DHeapMerge.merge(d, buffers, target);
+				assertArrayEquals(expected, target.array(), "buffers, d=" + d + " k=" + k);
+				for (IntBuffer buffer : buffers) {
+					assertFalse(buffer.hasRemaining());
+				}
+			}
+		}
+	}
+
+	/** Run files, including empty ones and ones longer than a read buffer, merge into one file. */
+	@Test
+	void mergesFiles() throws IOException {
+		Random random = new Random(2);
+		int[][] runs = randomRuns(random, 20);
+		int[] big = new int[100_000]; // Several read buffers long
+		for (int i = 0; i < big.length; i++) {
+			big[i] = random.nextInt();
+		}
+		runs[3] = descending(big);
+		List<Path> files = new ArrayList<>();
+		for (int r = 0; r < runs.length; r++) {
+			files.add(writeInts(dir.resolve("run" + r), runs[r]));
+		}
+		Path out = dir.resolve("out");
+		Files.write(out, new byte[] { 1, 2, 3 }); // Replaced
+		DHeapMerge.mergeFiles(4, files, out);
+		assertArrayEquals(descending(concat(runs)), readInts(out));
+	}
+
+	/** sortFile sorts inputs of one run, several runs and several merge passes. */
+	@Test
+	void sortsFiles() throws IOException {
+		Random random = new Random(3);
+		Path temp = Files.createDirectory(dir.resolve("temp"));
+		int[][] cases = { // { n, runLength, d }
+				{ 0, 16, 4 }, { 1, 16, 2 }, { 1_000, 5_000, 4 }, { 100_000, 7_919, 3 },
+				{ 3_000, 2, 8 } }; // 1500 runs: more than MAX_FAN_IN, two merge passes
+		for (int[] c : cases) {
+			int[] values = new int[c[0]];
+			for (int i = 0; i < values.length; i++) {
+				values[i] = random.nextInt(2_000) - 1_000;
+			}
+			Path in = writeInts(dir.resolve("in"), values);
+			Path out = dir.resolve("out");
+			DHeapMerge.sortFile(in, out, c[1], c[2], temp);
+			assertArrayEquals(descending(values), readInts(out), "n=" + c[0] + " runLength=" + c[1]);
+			assertEquals(List.of(), list(temp), "temporary run files left behind");
+		}
+	}
+
+	/** A failed sort deletes the run files it wrote, and bad arguments are rejected. */
+	@Test
+	void cleansUpOnFailure() throws IOException {
+		Path temp = Files.createDirectory(dir.resolve("temp"));
+		Path in = writeInts(dir.resolve("in"), new Random(4).ints(10_000).toArray());
+		Path out = Files.createDirectory(dir.resolve("out")); // A directory cannot be written as a file
+		assertThrows(IOException.class, () -> DHeapMerge.sortFile(in, out, 100, 4, temp));
+		assertEquals(List.of(), list(temp), "run files after a failed merge");
+		assertThrows(IOException.class, () -> DHeapMerge.sortFile(in, out, 3, 4, temp));
+		assertEquals(List.of(), list(temp), "run files after merge passes and a failed final merge");
+
+		assertThrows(IOException.class,
+				() -> DHeapMerge.sortFile(dir.resolve("missing"), dir.resolve("o"), 100, 4, temp));
+		IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+				() -> DHeapMerge.sortFile(in, dir.resolve("o"), 0, 4, temp));
+		assertEquals(DHeapError.INVALID_CAPACITY.getMessage(), e.getMessage());
+		assertThrows(IllegalArgumentException.class, () -> DHeapMerge.sortFile(in, dir.resolve("o"), 100, 0, temp));
+		assertEquals(List.of(), list(temp));
+	}
+}
@@ -0,0 +1,189 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for the snapshots of DHeapMax: round trips of the raw and compressed
+ * encodings with and without the cache-aligned layout, through streams and
+ * file channels, and the rejection of corrupt snapshots and of well-formed
+ * snapshots that are not in heap order.
+ */
+class DHeapSnapshotTest {
+
+	private static final int HEADER_BYTES = 32; // Header fields and their checksum
+
+	/** Returns a heap of n random keys with the given layout and one pending lazy insert. */
+	private static DHeapMax newHeap(int d, int n, boolean aligned, Random random) {
+		DHeapMax heap = new DHeapMax(d);
+		heap.setCacheAligned(aligned);
+		int[] keys = new int[n];
+		for (int i = 0; i < n; i++) {
+			keys[i] = random.nextInt() >> random.nextInt(32); // Small and large differences
+		}
+		heap.buildDHeap(keys, 0, n);
+		if (n > 0) {
+			heap.setLazyInsert(true);
+			heap.extractMax();
+			heap.insert(keys[0]); // Pending until the snapshot flushes it
+		}
+		return heap;
+	}
+
+	/** Returns the bytes of a snapshot of the heap. */
+	private static byte[] snapshot(DHeapMax heap, boolean compressed) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		heap.writeSnapshot(out, compressed);
+		return out.toByteArray();
+	}
+
+	/** Extracts every key of the heap in order. */
+	private static int[] drain(DHeapMax heap) {
+		int[] keys = new int[heap.getSize()];
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = heap.extractMax();
+		}
+		return keys;
+	}
+
+	/** Checks that a restored heap matches the heap it was written from. */
+	private static void assertRestored(DHeapMax expected, DHeapMax restored, String where) {
+		assertEquals(expected.getD(), restored.getD(), where);
+		assertEquals(expected.getSize(), restored.getSize(), where);
+		assertEquals(expected.isCacheAligned(), restored.isCacheAligned(), where);
+		assertArrayEquals(drain(expected), drain(restored), where);
+	}
+
+	/** Checks that reading the bytes fails with the given error. */
+	private static void assertRejected(byte[] bytes, DHeapError error, String where) {
+		IOException e = assertThrows(IOException.class,
+				() -> DHeapMax.readSnapshot(new ByteArrayInputStream(bytes)), where);
+		assertEquals(error.getMessage(), e.getMessage(), where);
+	}
+
+	/** Both encodings and layouts restore the same heap, including sizes beyond one I/O chunk. */
+	@Test
+	void roundTrips() throws IOException {
+		Random random = new Random(1);
+		for (int d : new int[] { 2, 3, 8 }) {
+			for (int n : new int[] { 0, 1, 1_000, 50_000 }) {
+				for (boolean compressed : new boolean[] { false, true }) {
+					for (boolean aligned : new boolean[] { false, true }) {
+						String where = "d=" + d + " n=" + n + " compressed=" + compressed + " aligned=" + aligned;
+						DHeapMax heap = newHeap(d, n, aligned, random);
+						byte[] bytes = snapshot(heap, compressed);
+						DHeapMax restored = DHeapMax.readSnapshot(new ByteArrayInputStream(bytes));
+						assertRestored(heap, restored, where);
+					}
+				}
+			}
+		}
+	}
+
+	/** A snapshot written to and read from a FileChannel, which also bounds the payload by the file size. */
+	@Test
+	void roundTripsThroughFile(@TempDir Path dir) throws IOException {
+		Random random = new Random(2);
+		for (boolean compressed : new boolean[] { false, true }) {
+			DHeapMax heap = newHeap(4, 100_000, true, random);
+			Path file = dir.resolve("heap" + compressed + ".snap");
+			try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+				heap.writeSnapshot(out, compressed);
+			}
+			try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+				assertRestored(heap, DHeapMax.readSnapshot(in), "compressed=" + compressed);
+			}
+		}
+	}
+
+	/** Every single flipped header byte is caught by the header checksum. */
+	@Test
+	void rejectsFlippedHeaderByte() throws IOException {
+		for (boolean compressed : new boolean[] { false, true }) {
+			byte[] bytes = snapshot(newHeap(4, 100, false, new Random(3)), compressed);
+			for (int i = 0; i < HEADER_BYTES; i++) {
+				byte[] corrupt = bytes.clone();
+				corrupt[i] ^= 0x10;
+				assertRejected(corrupt, DHeapError.INVALID_SNAPSHOT, "compressed=" + compressed + " byte " + i);
+			}
+		}
+	}
+
+	/** A flipped payload byte fails the trailer checksum or the payload decoding. */
+	@Test
+	void rejectsFlippedPayloadByte() throws IOException {
+		Random random = new Random(4);
+		for (boolean compressed : new boolean[] { false, true }) {
+			byte[] bytes = snapshot(newHeap(4, 1_000, false, random), compressed);
+			for (int trial = 0; trial < 50; trial++) {
+				byte[] corrupt = bytes.clone();
+				int i = HEADER_BYTES + random.nextInt(bytes.length - HEADER_BYTES - Integer.BYTES);
+				corrupt[i] ^= 1 << random.nextInt(8);
+				assertRejected(corrupt, DHeapError.INVALID_SNAPSHOT, "compressed=" + compressed + " byte " + i);
+			}
+		}
+	}
+
+	/** A wrong trailer is rejected even though the header and payload are intact. */
+	@Test
+	void rejectsBadTrailer() throws IOException {
+		for (boolean compressed : new boolean[] { false, true }) {
+			byte[] bytes = snapshot(newHeap(4, 1_000, false, new Random(5)), compressed);
+			for (int i = bytes.length - Integer.BYTES; i < bytes.length; i++) {
+				byte[] corrupt = bytes.clone();
+				corrupt[i] ^= (byte) 0x80;
+				assertRejected(corrupt, DHeapError.INVALID_SNAPSHOT, "compressed=" + compressed + " byte " + i);
+			}
+		}
+	}
+
+	/** Snapshots cut off in the header, the payload or the trailer are rejected by streams and files. */
+	@Test
+	void rejectsTruncatedSnapshot(@TempDir Path dir) throws IOException {
+		for (boolean compressed : new boolean[] { false, true }) {
+			byte[] bytes = snapshot(newHeap(4, 100_000, false, new Random(6)), compressed);
+			int[] lengths = { 0, HEADER_BYTES - 1, HEADER_BYTES, HEADER_BYTES + 1, bytes.length / 2,
+					bytes.length - Integer.BYTES, bytes.length - 1 };
+			for (int length : lengths) {
+				String where = "compressed=" + compressed + " length " + length;
+				byte[] truncated = Arrays.copyOf(bytes, length);
+				assertRejected(truncated, DHeapError.INVALID_SNAPSHOT, where);
+
+				Path file = dir.resolve("truncated.snap");
+				Files.write(file, truncated);
+				try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+					IOException e = assertThrows(IOException.class, () -> DHeapMax.readSnapshot(in), where);
+					assertEquals(DHeapError.INVALID_SNAPSHOT.getMessage(), e.getMessage(), where);
+				}
+			}
+		}
+	}
+
+	/** A well-formed snapshot whose elements are not in heap order is rejected on restore. */
+	@Test
+	void rejectsNonHeapOrder() throws IOException {
+		for (int flags : new int[] { 0, DHeapSnapshot.COMPRESSED }) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			DHeapSnapshot.write(Channels.newChannel(out), new int[] { 9, 7, 8, 1, 2, 10 }, 0, 6, 2, flags);
+			assertRejected(out.toByteArray(), DHeapError.SNAPSHOT_NOT_HEAP, "flags=" + flags);
+
+			out.reset();
+			DHeapSnapshot.write(Channels.newChannel(out), new int[] { 0, 9, 7, 8, 1, 2 }, 1, 5, 2, flags);
+			DHeapMax restored = DHeapMax.readSnapshot(new ByteArrayInputStream(out.toByteArray()));
+			assertArrayEquals(new int[] { 9, 8, 7, 2, 1 }, drain(restored), "flags=" + flags);
+		}
+	}
+}
@@ -0,0 +1,158 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for DHeapSort: int[] and long[] ranges of several distributions and
+ * sizes are sorted with both sifts for several d and compared with
+ * Arrays.sort, which checks sortedness and the permutation at once. The
+ * elements outside the range must stay where they are.
+ */
+class DHeapSortTest {
+
+	private static final int[] ARITIES = { 1, 2, 3, 4, 5, 8, 16 };
+	private static final int[] SIZES = { 0, 1, 2, 3, 4, 5, 17, 100, 1_000, 10_000 };
+	private static final String[] DISTRIBUTIONS = { "random", "ascending", "descending", "duplicates", "equal",
+			"extremes" };
+
+	/** Returns n values of a distribution. */
+	private static long[] values(String distribution, int n, Random random) {
+		long[] values = new long[n];
+		for (int i = 0; i < n; i++) {
+			switch (distribution) {
+			case "ascending":
+				values[i] = i;
+				break;
+			case "descending":
+				values[i] = n - i;
+				break;
+			case "duplicates":
+				values[i] = random.nextInt(8);
+				break;
+			case "equal":
+				values[i] = 42;
+				break;
+			case "extremes":
+				values[i] = random.nextBoolean() ? Long.MAX_VALUE - random.nextInt(2) : Long.MIN_VALUE + random.nextInt(2);
+				break;
+			default:
+				values[i] = random.nextLong();
+			}
+		}
+		return values;
+	}
+
+	/** Returns the values as ints; the extremes become the int extremes. */
+	private static int[] toInts(long[] values) {
+		int[] ints = new int[values.length];
+		for (int i = 0; i < values.length; i++) {
+			long v = values[i];
+			ints[i] = v >= Long.MAX_VALUE - 1 ? Integer.MAX_VALUE - (int) (Long.MAX_VALUE - v)
+					: v <= Long.MIN_VALUE + 1 ? Integer.MIN_VALUE + (int) (v - Long.MIN_VALUE) : (int) v;
+		}
+		return ints;
+	}
+
+	/** Every arity, size and distribution of int[], with both sifts, inside a larger array. */
+	@Test
+	void sortsInts() {
+		Random random = new Random(1);
+		for (int d : ARITIES) {
+			for (int n : SIZES) {
+				if (d == 1 && n > 1_000) {
+					continue; // A 1-ary heap is a list: O(n^2)
+				}
+				for (String distribution : DISTRIBUTIONS) {
+					int[] values = toInts(values(distribution, n, random));
+					int[] expected = values.clone();
+					Arrays.sort(expected);
+					for (boolean bottomUp : new boolean[] { false, true }) {
+						String where = "d=" + d + " n=" + n + " " + distribution + " bottomUp=" + bottomUp;
+						int[] a = new int[n + 5];
+						Arrays.fill(a, -1);
+						System.arraycopy(values, 0, a, 3, n);
+						DHeapSort.sort(a, 3, 3 + n, d, bottomUp);
+						assertArrayEquals(expected, Arrays.copyOfRange(a, 3, 3 + n), where);
+						assertArrayEquals(new int[] { -1, -1, -1 }, Arrays.copyOf(a, 3), where);
+						assertArrayEquals(new int[] { -1, -1 }, Arrays.copyOfRange(a, 3 + n, a.length), where);
+					}
+					int[] a = values.clone();
+					DHeapSort.sort(a, d);
+					assertArrayEquals(expected, a, "sort(a, d) d=" + d + " n=" + n + " " + distribution);
+				}
+			}
+		}
+	}
+
+	/** Every arity, size and distribution of long[], with both sifts, inside a larger array. */
+	@Test
+	void sortsLongs() {
+		Random random = new Random(2);
+		for (int d : ARITIES) {
+			for (int n : SIZES) {
+				if (d == 1 && n > 1_000) {
+					continue;
+				}
+				for (String distribution : DISTRIBUTIONS) {
+					long[] values = values(distribution, n, random);
+					long[] expected = values.clone();
+					Arrays.sort(expected);
+					for (boolean bottomUp : new boolean[] { false, true }) {
+						String where = "d=" + d + " n=" + n + " " + distribution + " bottomUp=" + bottomUp;
+						long[] a = new long[n + 5];
+						Arrays.fill(a, -1);
+						System.arraycopy(values, 0, a, 3, n);
+						DHeapSort.sort(a, 3, 3 + n, d, bottomUp);
+						assertArrayEquals(expected, Arrays.copyOfRange(a, 3, 3 + n), where);
+						assertArrayEquals(new long[] { -1, -1, -1 }, Arrays.copyOf(a, 3), where);
+						assertArrayEquals(new long[] { -1, -1 }, Arrays.copyOfRange(a, 3 + n, a.length), where);
+					}
+					long[] a = values.clone();
+					DHeapSort.sort(a, d);
+					assertArrayEquals(expected, a, "sort(a, d) d=" + d + " n=" + n + " " + distribution);
+				}
+			}
+		}
+	}
+
+	/** Large inputs with the default arity, and wide int heaps with the bottom-up sift. */
+	@Test
+	void sortsLargeArrays() {
+		Random random = new Random(3);
+		long[] longs = values("random", 200_000, random);
+		int[] ints = toInts(longs);
+		long[] expectedLongs = longs.clone();
+		int[] expectedInts = ints.clone();
+		Arrays.sort(expectedLongs);
+		Arrays.sort(expectedInts);
+		DHeapSort.sort(longs);
+		DHeapSort.sort(ints);
+		assertArrayEquals(expectedLongs, longs);
+		assertArrayEquals(expectedInts, ints);
+		for (int d : new int[] { 8, 32 }) {
+			int[] wide = toInts(values("random", 50_000, random));
+			int[] expected = wide.clone();
+			Arrays.sort(expected);
+			DHeapSort.sort(wide, 0, wide.length, d, true);
+			assertArrayEquals(expected, wide, "d=" + d);
+		}
+	}
+
+	/** Invalid ranges and arities are rejected before anything is moved. */
+	@Test
+	void checksArguments() {
+		int[] ints = { 3, 1, 2 };
+		long[] longs = { 3, 1, 2 };
+		assertThrows(IllegalArgumentException.class, () -> DHeapSort.sort(ints, 0));
+		assertThrows(IllegalArgumentException.class, () -> DHeapSort.sort(longs, DHeapMax.D_MAX_VAL + 1));
+		assertThrows(IndexOutOfBoundsException.class, () -> DHeapSort.sort(ints, 2, 1, 2, false));
+		assertThrows(IndexOutOfBoundsException.class, () -> DHeapSort.sort(longs, 0, 4, 2, true));
+		assertThrows(IndexOutOfBoundsException.class, () -> DHeapSort.sort(ints, -1, 2, 2, true));
+		assertArrayEquals(new int[] { 3, 1, 2 }, ints);
+		assertArrayEquals(new long[] { 3, 1, 2 }, longs);
+	}
+}
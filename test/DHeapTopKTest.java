@@ -0,0 +1,130 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for DHeapTopK: offer, offerAll and merge against a sorted copy of the
+ * stream, and the sequential, parallel and boxed stream paths.
+ */
+class DHeapTopKTest {
+
+	/** Returns n random values with many duplicates. */
+	private static int[] values(int n, long seed) {
+		Random random = new Random(seed);
+		int[] values = new int[n];
+		for (int i = 0; i < n; i++) {
+			values[i] = random.nextInt(n / 2 + 1) - n / 4;
+		}
+		return values;
+	}
+
+	/** Returns the k largest values, largest first. */
+	private static int[] expected(int[] values, int k) {
+		int[] sorted = values.clone();
+		Arrays.sort(sorted);
+		int[] top = new int[Math.min(k, sorted.length)];
+		for (int i = 0; i < top.length; i++) {
+			top[i] = sorted[sorted.length - 1 - i];
+		}
+		return top;
+	}
+
+	/** offer keeps the k largest values and tells whether each one got in. */
+	@Test
+	void offersValues() {
+		for (int d : new int[] { 1, 2, 4, 8 }) {
+			for (int k : new int[] { 1, 5, 100, 5_000 }) {
+				int[] values = values(2_000, k + d);
+				DHeapTopK topK = new DHeapTopK(k, d);
+				for (int i = 0; i < values.length; i++) {
+					int min = topK.getSize() < k ? Integer.MIN_VALUE : topK.peekMin();
+					assertEquals(topK.getSize() < k || values[i] > min, topK.offer(values[i]), "d=" + d + " k=" + k);
+				}
+				String where = "d=" + d + " k=" + k;
+				assertEquals(values.length, topK.getOffered(), where);
+				assertEquals(Math.min(k, values.length), topK.getSize(), where);
+				int[] expected = expected(values, k);
+				assertArrayEquals(expected, topK.toSortedArray(), where);
+				assertEquals(expected[expected.length - 1], topK.peekMin(), where);
+			}
+		}
+	}
+
+	/** offerAll of an array range matches offer one value at a time. */
+	@Test
+	void offersRanges() {
+		int[] values = values(10_000, 1);
+		for (int k : new int[] { 1, 64, 20_000 }) {
+			DHeapTopK topK = new DHeapTopK(k, 3);
+			topK.offerAll(values, 0, 10); // Not full yet for the larger k
+			topK.offerAll(values, 10, values.length - 10);
+			assertEquals(values.length, topK.getOffered());
+			assertArrayEquals(expected(values, k), topK.toSortedArray(), "k=" + k);
+		}
+		assertThrows(IndexOutOfBoundsException.class, () -> new DHeapTopK(4).offerAll(values, 1, values.length));
+	}
+
+	/** merge keeps the k largest of both collectors and adds up the offered counts. */
+	@Test
+	void mergesCollectors() {
+		int[] values = values(6_000, 2);
+		for (int k : new int[] { 1, 50, 10_000 }) {
+			DHeapTopK left = new DHeapTopK(k);
+			DHeapTopK right = new DHeapTopK(k, 8);
+			left.offerAll(values, 0, 1_000);
+			right.offerAll(values, 1_000, 5_000);
+			int[] rightBefore = right.toSortedArray();
+			assertSame(left, left.merge(right));
+			assertEquals(values.length, left.getOffered());
+			assertArrayEquals(expected(values, k), left.toSortedArray(), "k=" + k);
+			assertArrayEquals(rightBefore, right.toSortedArray(), "the other collector is not modified");
+			left.merge(new DHeapTopK(k)); // Merging an empty collector changes nothing
+			assertArrayEquals(expected(values, k), left.toSortedArray(), "k=" + k);
+		}
+	}
+
+	/** Sequential, parallel and boxed streams give the same result. */
+	@Test
+	void collectsStreams() {
+		int[] values = values(200_000, 3);
+		for (int k : new int[] { 1, 10, 1_000, 300_000 }) {
+			int[] expected = expected(values, k);
+			assertArrayEquals(expected, DHeapTopK.of(Arrays.stream(values), k), "sequential k=" + k);
+			assertArrayEquals(expected, DHeapTopK.of(Arrays.stream(values).parallel(), k, 2), "parallel k=" + k);
+			assertArrayEquals(expected, Arrays.stream(values).boxed().parallel().collect(DHeapTopK.collector(k)),
+					"boxed k=" + k);
+
+			DHeapTopK topK = new DHeapTopK(k);
+			topK.offer(Integer.MIN_VALUE);
+			topK.offerAll(Arrays.stream(values).parallel());
+			assertEquals(values.length + 1, topK.getOffered(), "k=" + k);
+			assertArrayEquals(expected, Arrays.copyOf(topK.toSortedArray(), expected.length), "offerAll k=" + k);
+		}
+		assertArrayEquals(new int[0], DHeapTopK.of(IntStream.empty().parallel(), 3));
+	}
+
+	/** Invalid arguments and an empty collector. */
+	@Test
+	void checksArguments() {
+		assertThrows(IllegalArgumentException.class, () -> new DHeapTopK(0));
+		assertThrows(IllegalArgumentException.class, () -> new DHeapTopK(4, 0));
+		assertThrows(IllegalArgumentException.class, () -> DHeapTopK.collector(0));
+		assertThrows(IllegalArgumentException.class, () -> DHeapTopK.of(IntStream.empty(), 0));
+		assertThrows(IllegalArgumentException.class, () -> DHeapTopK.of(IntStream.empty(), 1, 0));
+		DHeapTopK topK = new DHeapTopK(3);
+		assertTrue(topK.isEmpty());
+		assertThrows(IllegalStateException.class, topK::peekMin);
+		assertTrue(topK.offer(1));
+		assertFalse(topK.isEmpty());
+		assertEquals(1, topK.peekMin());
+	}
+}
@@ -0,0 +1,127 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for DoubleDHeapMax: the order-preserving mapping to longs, including
+ * NaN, the infinities, -0.0 and subnormals, and random workloads replayed
+ * against a java.util.PriorityQueue ordered by Double.compare.
+ */
+class DoubleDHeapMaxTest {
+
+	/** Values at the edges of the double order, in ascending Double.compare order. */
+	private static final double[] SPECIAL = { Double.NEGATIVE_INFINITY, -Double.MAX_VALUE, -1.5, -Double.MIN_NORMAL,
+			-Double.MIN_VALUE, -0.0, 0.0, Double.MIN_VALUE, Double.MIN_NORMAL, 1.5, Double.MAX_VALUE,
+			Double.POSITIVE_INFINITY, Double.NaN };
+
+	/** Returns a random key, often one of the special values. */
+	private static double nextKey(Random random) {
+		if (random.nextInt(4) == 0) {
+			return SPECIAL[random.nextInt(SPECIAL.length)];
+		}
+		return Double.longBitsToDouble(random.nextLong()); // Any bit pattern, NaNs included
+	}
+
+	/** The mapped longs compare like Double.compare, and the mapping round-trips. */
+	@Test
+	void mapsToSortableLongs() {
+		for (int i = 0; i < SPECIAL.length; i++) {
+			for (int j = 0; j < SPECIAL.length; j++) {
+				assertEquals(Integer.signum(Double.compare(SPECIAL[i], SPECIAL[j])),
+						Integer.signum(Long.compare(DoubleDHeapMax.toSortableLong(SPECIAL[i]),
+								DoubleDHeapMax.toSortableLong(SPECIAL[j]))),
+						SPECIAL[i] + " vs " + SPECIAL[j]);
+			}
+		}
+		Random random = new Random(1);
+		for (int trial = 0; trial < 100_000; trial++) {
+			double a = nextKey(random);
+			double b = nextKey(random);
+			assertEquals(Integer.signum(Double.compare(a, b)), Integer.signum(
+					Long.compare(DoubleDHeapMax.toSortableLong(a), DoubleDHeapMax.toSortableLong(b))), a + " vs " + b);
+			assertEquals(0, Double.compare(a, DoubleDHeapMax.fromSortableLong(DoubleDHeapMax.toSortableLong(a))),
+					"round trip of " + a);
+		}
+	}
+
+	/** NaN is the largest key, -0.0 comes after 0.0, and every NaN comes back as Double.NaN. */
+	@Test
+	void ordersSpecialValues() {
+		DoubleDHeapMax heap = new DoubleDHeapMax(3);
+		List<Double> keys = new ArrayList<>();
+		for (double key : SPECIAL) {
+			keys.add(key);
+		}
+		Collections.shuffle(keys, new Random(2));
+		for (double key : keys) {
+			heap.insert(key);
+		}
+		heap.insert(Double.longBitsToDouble(0xFFF0_0000_0000_0001L)); // A negative NaN with a payload
+		assertEquals(Double.doubleToRawLongBits(Double.NaN), Double.doubleToRawLongBits(heap.extractMax()));
+		assertEquals(Double.doubleToRawLongBits(Double.NaN), Double.doubleToRawLongBits(heap.extractMax()));
+		for (int i = SPECIAL.length - 2; i >= 0; i--) {
+			double max = heap.extractMax();
+			assertEquals(Double.doubleToRawLongBits(SPECIAL[i]), Double.doubleToRawLongBits(max), "key " + i);
+		}
+		assertTrue(heap.isEmpty());
+		assertThrows(IllegalStateException.class, heap::peek);
+	}
+
+	/** Random workloads with changeD and builds match the reference. */
+	@Test
+	void matchesPriorityQueue() {
+		for (int d : new int[] { 1, 2, 4, 8 }) {
+			Random random = new Random(10 + d);
+			DoubleDHeapMax heap = new DoubleDHeapMax(d, 1);
+			PriorityQueue<Double> reference = new PriorityQueue<>(Collections.reverseOrder());
+			for (int op = 0; op < (d == 1 ? 2_000 : 20_000); op++) {
+				int choice = random.nextInt(100);
+				String where = "d=" + heap.getD() + " operation " + op;
+				if (choice < 55) {
+					double key = nextKey(random);
+					heap.insert(key);
+					reference.add(key);
+				} else if (choice < 98) {
+					if (!reference.isEmpty()) {
+						assertEquals(0, Double.compare(reference.peek(), heap.peek()), where);
+						assertEquals(0, Double.compare(reference.poll(), heap.extractMax()), where);
+					}
+				} else if (choice < 99) {
+					heap.changeD(2 + random.nextInt(7));
+				} else {
+					double[] values = new double[random.nextInt(500)];
+					reference.clear();
+					for (int i = 0; i < values.length; i++) {
+						values[i] = nextKey(random);
+						reference.add(values[i]);
+					}
+					heap.buildDHeap(values, 0, values.length);
+				}
+				assertEquals(reference.size(), heap.getSize(), where);
+			}
+			while (!reference.isEmpty()) {
+				assertEquals(0, Double.compare(reference.poll(), heap.extractMax()));
+			}
+		}
+	}
+
+	/** The argument checks of the underlying long heap apply. */
+	@Test
+	void checksArguments() {
+		assertThrows(IllegalArgumentException.class, () -> new DoubleDHeapMax(0));
+		assertThrows(IllegalArgumentException.class, () -> new DoubleDHeapMax(2, 0));
+		DoubleDHeapMax heap = new DoubleDHeapMax(2, 4);
+		assertEquals(4, heap.getCapacity());
+		assertThrows(IllegalArgumentException.class, () -> heap.changeD(0));
+		assertThrows(IllegalArgumentException.class, () -> heap.ensureCapacity(DHeapMax.MAX_CAPACITY + 1));
+		assertThrows(IndexOutOfBoundsException.class, () -> heap.buildDHeap(new double[3], 2, 2));
+	}
+}
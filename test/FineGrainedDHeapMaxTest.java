@@ -0,0 +1,261 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for FineGrainedDHeapMax: sequential workloads are replayed against a
+ * java.util.PriorityQueue, and multi-threaded runs check that no key is lost
+ * or duplicated, that the rest drains in order, and that every extraction
+ * returns a key at least as large as every completed insert still in the heap.
+ */
+class FineGrainedDHeapMaxTest {
+
+	private static final int[] ARITIES = { 1, 2, 3, 4, 8 };
+	private static final int[] THREADS = { 2, 4, 8 };
+
+	/** Replays random inserts and extractions on one thread. */
+	private static void replay(int d, long seed, int operations) {
+		Random random = new Random(seed);
+		FineGrainedDHeapMax heap = new FineGrainedDHeapMax(d);
+		PriorityQueue<Integer> reference = new PriorityQueue<>(Collections.reverseOrder());
+		for (int op = 0; op < operations; op++) {
+			if (random.nextInt(10) < 6) {
+				int key = random.nextInt(2_000) - 1_000;
+				heap.insert(key);
+				reference.add(key);
+			} else {
+				OptionalInt max = heap.pollMax();
+				assertEquals(reference.isEmpty(), !max.isPresent(), "pollMax at operation " + op);
+				if (max.isPresent()) {
+					assertEquals((int) reference.poll(), max.getAsInt(), "pollMax at operation " + op);
+				}
+			}
+			assertEquals(reference.size(), heap.getSize());
+		}
+		while (!reference.isEmpty()) {
+			assertEquals((int) reference.poll(), heap.pollMax().getAsInt());
+		}
+		assertTrue(heap.isEmpty());
+		assertFalse(heap.pollMax().isPresent());
+	}
+
+	/** Every arity matches the reference on one thread. */
+	@Test
+	void matchesPriorityQueueSequentially() {
+		for (int d : ARITIES) {
+			replay(d, d, d == 1 ? 3_000 : 100_000);
+		}
+	}
+
+	/** A heap spread over more segments than the initial directory holds. */
+	@Test
+	void growsBeyondTheInitialDirectory() {
+		FineGrainedDHeapMax heap = new FineGrainedDHeapMax(4);
+		int n = 150_000; // More than 16 segments of 4096 nodes
+		Random random = new Random(7);
+		int[] keys = new int[n];
+		for (int i = 0; i < n; i++) {
+			keys[i] = random.nextInt();
+			heap.insert(keys[i]);
+		}
+		Arrays.sort(keys);
+		for (int i = n - 1; i >= 0; i--) {
+			assertEquals(keys[i], heap.pollMax().getAsInt());
+		}
+		assertTrue(heap.isEmpty());
+	}
+
+	/**
+	 * An insert stopped after its key reached the root, before it marked the
+	 * key AVAILABLE: an extraction takes that key, and the late completion of
+	 * the insert does not disturb the heap.
+	 */
+	@Test
+	void extractsAnUnfinishedInsertAtTheRoot() {
+		for (int d : new int[] { 2, 4 }) {
+			FineGrainedDHeapMax heap = new FineGrainedDHeapMax(d);
+			for (int key = 1; key <= 50; key++) {
+				heap.insert(key);
+			}
+			long owner = FineGrainedDHeapMax.FIRST_OWNER + 1_000_000; // No real thread
+			assertTrue(heap.rise(1_000, owner), "the key rises to the root");
+			assertEquals(51, heap.getSize());
+			assertEquals(1_000, heap.pollMax().getAsInt(), "the unfinished insert is the maximum");
+			heap.finish(owner); // Too late, the key is gone
+			heap.insert(500);
+			for (int expected : new int[] { 500, 50, 49 }) {
+				assertEquals(expected, heap.pollMax().getAsInt());
+			}
+			for (int expected = 48; expected >= 1; expected--) {
+				assertEquals(expected, heap.pollMax().getAsInt());
+			}
+			assertTrue(heap.isEmpty());
+		}
+	}
+
+	/** An unfinished insert that is completed in time stays in the heap. */
+	@Test
+	void finishesAnInsertAtTheRoot() {
+		FineGrainedDHeapMax heap = new FineGrainedDHeapMax(3);
+		heap.insert(5);
+		long owner = FineGrainedDHeapMax.FIRST_OWNER + 1_000_000;
+		assertTrue(heap.rise(9, owner));
+		heap.finish(owner);
+		heap.insert(7);
+		assertEquals(9, heap.pollMax().getAsInt());
+		assertEquals(7, heap.pollMax().getAsInt());
+		assertEquals(5, heap.pollMax().getAsInt());
+	}
+
+	/**
+	 * Producers and consumers run at the same time; afterwards the extracted and
+	 * the remaining keys together are exactly the inserted ones, and the rest
+	 * drains in order.
+	 */
+	@Test
+	void losesNoKeysUnderContention() throws InterruptedException {
+		for (int threads : THREADS) {
+			for (int d : new int[] { 2, 4, 16 }) {
+				FineGrainedDHeapMax heap = new FineGrainedDHeapMax(d);
+				int perThread = 20_000;
+				List<int[]> extracted = Collections.synchronizedList(new ArrayList<>());
+				runThreads(threads, t -> {
+					Random random = new Random(t);
+					int[] mine = new int[perThread];
+					int count = 0;
+					for (int i = 0; i < perThread; i++) {
+						heap.insert(t * perThread + i); // Unique keys
+						if (random.nextInt(3) == 0) {
+							OptionalInt max = heap.pollMax();
+							if (max.isPresent()) {
+								mine[count++] = max.getAsInt();
+							}
+						}
+					}
+					extracted.add(Arrays.copyOf(mine, count));
+				});
+
+				boolean[] seen = new boolean[threads * perThread];
+				for (int[] keys : extracted) {
+					for (int key : keys) {
+						assertFalse(seen[key], "key " + key + " extracted twice");
+						seen[key] = true;
+					}
+				}
+				int previous = Integer.MAX_VALUE;
+				OptionalInt max;
+				while ((max = heap.pollMax()).isPresent()) {
+					int key = max.getAsInt();
+					assertTrue(key <= previous, "the drain is not in order");
+					assertFalse(seen[key], "key " + key + " extracted twice");
+					seen[key] = true;
+					previous = key;
+				}
+				for (int key = 0; key < seen.length; key++) {
+					assertTrue(seen[key], "key " + key + " was lost");
+				}
+			}
+		}
+	}
+
+	/**
+	 * One consumer extracts while producers insert increasing keys, which all
+	 * rise to the root. Every extracted key must be at least as large as every
+	 * key whose insert completed before the extraction started and that is
+	 * still in the heap.
+	 */
+	@Test
+	void extractionsAreLinearizable() throws InterruptedException {
+		for (int producers : THREADS) {
+			FineGrainedDHeapMax heap = new FineGrainedDHeapMax(4);
+			int perThread = 5_000;
+			ConcurrentSkipListSet<Integer> completed = new ConcurrentSkipListSet<>();
+			AtomicInteger running = new AtomicInteger(producers);
+			List<String> violations = Collections.synchronizedList(new ArrayList<>());
+			Thread consumer = new Thread(() -> {
+				ConcurrentSkipListSet<Integer> taken = new ConcurrentSkipListSet<>();
+				while (running.get() > 0 || !heap.isEmpty()) {
+					Integer bound = null;
+					for (Integer key : completed.descendingSet()) {
+						if (!taken.contains(key)) {
+							bound = key;
+							break;
+						}
+					}
+					OptionalInt max = heap.pollMax();
+					if (max.isPresent()) {
+						taken.add(max.getAsInt());
+						completed.remove(max.getAsInt());
+						if (bound != null && max.getAsInt() < bound) {
+							violations.add(max.getAsInt() + " extracted while " + bound + " was in the heap");
+						}
+					}
+				}
+			});
+			consumer.start();
+			runThreads(producers, t -> {
+				for (int i = 0; i < perThread; i++) {
+					int key = i * producers + t; // Unique and increasing per thread
+					heap.insert(key);
+					completed.add(key);
+				}
+				running.decrementAndGet();
+			});
+			consumer.join();
+			assertEquals(List.of(), violations);
+			assertTrue(heap.isEmpty());
+		}
+	}
+
+	/** Invalid arguments are rejected. */
+	@Test
+	void rejectsInvalidD() {
+		assertThrows(IllegalArgumentException.class, () -> new FineGrainedDHeapMax(0));
+		assertThrows(IllegalArgumentException.class, () -> new FineGrainedDHeapMax(DHeapMax.D_MAX_VAL + 1));
+	}
+
+	/** The body of a test thread. */
+	interface Worker {
+		void run(int thread) throws Exception;
+	}
+
+	/** Starts the workers together and waits for all of them; rethrows the first failure. */
+	static void runThreads(int threads, Worker worker) throws InterruptedException {
+		CountDownLatch start = new CountDownLatch(1);
+		List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+		Thread[] pool = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			int id = t;
+			pool[t] = new Thread(() -> {
+				try {
+					start.await();
+					worker.run(id);
+				} catch (Throwable e) {
+					failures.add(e);
+				}
+			});
+			pool[t].start();
+		}
+		start.countDown();
+		for (Thread thread : pool) {
+			thread.join();
+		}
+		if (!failures.isEmpty()) {
+			throw new AssertionError(failures.get(0));
+		}
+	}
+}
@@ -0,0 +1,181 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for IndexedDHeapMax: random key updates and removals by handle against
+ * a plain array of the key of every handle, checking the position map through
+ * contains and keyOf after every operation, and the bounds of the handles.
+ */
+class IndexedDHeapMaxTest {
+
+	/** Returns the largest key of the handles in the model, or null if there are none. */
+	private static Integer max(int[] keys, boolean[] present) {
+		Integer max = null;
+		for (int h = 0; h < keys.length; h++) {
+			if (present[h] && (max == null || keys[h] > max)) {
+				max = keys[h];
+			}
+		}
+		return max;
+	}
+
+	/** Checks every handle of the model against the heap. */
+	private static void assertMatches(IndexedDHeapMax heap, int[] keys, boolean[] present, String where) {
+		int size = 0;
+		for (int h = 0; h < keys.length; h++) {
+			assertEquals(present[h], heap.contains(h), where + " handle " + h);
+			if (present[h]) {
+				assertEquals(keys[h], heap.keyOf(h), where + " handle " + h);
+				size++;
+			}
+		}
+		assertEquals(size, heap.getSize(), where);
+		Integer max = max(keys, present);
+		if (max != null) {
+			assertEquals(max.intValue(), heap.peekKey(), where);
+			assertEquals(max.intValue(), keys[heap.peekHandle()], where);
+		}
+	}
+
+	/** Random inserts, key changes, removals and extracts keep the position map in step. */
+	@Test
+	void matchesModel() {
+		int handles = 300;
+		for (int d : new int[] { 1, 2, 3, 4, 8 }) {
+			Random random = new Random(d);
+			IndexedDHeapMax heap = new IndexedDHeapMax(d, 1, handles - 1);
+			int[] keys = new int[handles];
+			boolean[] present = new boolean[handles];
+			for (int op = 0; op < 20_000; op++) {
+				String where = "d=" + heap.getD() + " operation " + op;
+				int h = random.nextInt(handles);
+				int key = random.nextInt(1_000) - 500;
+				int choice = random.nextInt(100);
+				if (choice < 35) {
+					if (present[h]) {
+						assertThrows(IllegalArgumentException.class, () -> heap.insert(h, key), where);
+					} else {
+						heap.insert(h, key);
+						present[h] = true;
+						keys[h] = key;
+					}
+				} else if (choice < 50) {
+					if (present[h]) {
+						int newKey = keys[h] + random.nextInt(300);
+						heap.increaseKey(h, newKey);
+						keys[h] = newKey;
+					}
+				} else if (choice < 65) {
+					if (present[h]) {
+						int newKey = keys[h] - random.nextInt(300);
+						heap.decreaseKey(h, newKey);
+						keys[h] = newKey;
+					}
+				} else if (choice < 75) {
+					if (present[h]) {
+						heap.changeKey(h, key);
+						keys[h] = key;
+					}
+				} else if (choice < 87) {
+					if (present[h]) {
+						assertEquals(keys[h], heap.remove(h), where);
+						present[h] = false;
+					} else {
+						assertThrows(IllegalArgumentException.class, () -> heap.remove(h), where);
+					}
+				} else if (choice < 99) {
+					if (!heap.isEmpty()) {
+						int max = max(keys, present);
+						int handle = heap.extractMaxHandle();
+						assertTrue(present[handle], where);
+						assertEquals(max, keys[handle], where);
+						present[handle] = false;
+					}
+				} else {
+					heap.changeD(1 + random.nextInt(8));
+				}
+				assertMatches(heap, keys, present, where);
+			}
+		}
+	}
+
+	/** Keys that go the wrong way are rejected and leave the heap as it was. */
+	@Test
+	void rejectsWrongDirection() {
+		IndexedDHeapMax heap = new IndexedDHeapMax(4);
+		heap.insert(3, 10);
+		heap.insert(7, 20);
+		IllegalArgumentException increase = assertThrows(IllegalArgumentException.class,
+				() -> heap.increaseKey(3, 9));
+		assertEquals(DHeapError.KEY_NOT_INCREASED.getMessage(), increase.getMessage());
+		IllegalArgumentException decrease = assertThrows(IllegalArgumentException.class,
+				() -> heap.decreaseKey(3, 11));
+		assertEquals(DHeapError.KEY_NOT_DECREASED.getMessage(), decrease.getMessage());
+		heap.increaseKey(3, 10); // An equal key is allowed both ways
+		heap.decreaseKey(3, 10);
+		assertEquals(10, heap.keyOf(3));
+		heap.increaseKey(3, 25);
+		assertEquals(3, heap.peekHandle());
+		heap.decreaseKey(3, -5);
+		assertEquals(7, heap.peekHandle());
+		assertEquals(20, heap.remove(7));
+		assertEquals(3, heap.extractMaxHandle());
+		assertTrue(heap.isEmpty());
+	}
+
+	/** Handles outside the bound, absent handles and handles inserted twice. */
+	@Test
+	void checksHandles() {
+		IndexedDHeapMax heap = new IndexedDHeapMax(2, 4, 99);
+		assertEquals(99, heap.getMaxHandle());
+		heap.insert(99, 1); // The map grows to the bound
+		heap.insert(0, 2);
+		assertTrue(heap.contains(99));
+		for (int handle : new int[] { -1, 100, Integer.MAX_VALUE }) {
+			IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> heap.insert(handle, 1));
+			assertEquals(DHeapError.INVALID_HANDLE.getMessage(), e.getMessage(), "handle " + handle);
+			assertFalse(heap.contains(handle));
+		}
+		IllegalArgumentException duplicate = assertThrows(IllegalArgumentException.class, () -> heap.insert(99, 5));
+		assertEquals(DHeapError.DUPLICATE_HANDLE.getMessage(), duplicate.getMessage());
+		assertEquals(1, heap.keyOf(99));
+		for (int handle : new int[] { -1, 5, 100 }) {
+			IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> heap.keyOf(handle));
+			assertEquals(DHeapError.HANDLE_NOT_FOUND.getMessage(), e.getMessage(), "handle " + handle);
+			assertThrows(IllegalArgumentException.class, () -> heap.remove(handle));
+			assertThrows(IllegalArgumentException.class, () -> heap.changeKey(handle, 0));
+		}
+		heap.remove(99);
+		heap.insert(99, 3); // A removed handle can be inserted again
+		assertEquals(99, heap.peekHandle());
+
+		assertEquals(IndexedDHeapMax.DEFAULT_MAX_HANDLE, new IndexedDHeapMax(2).getMaxHandle());
+		for (int maxHandle : new int[] { -1, DHeapMax.MAX_CAPACITY }) {
+			IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+					() -> new IndexedDHeapMax(2, 4, maxHandle));
+			assertEquals(DHeapError.INVALID_MAX_HANDLE.getMessage(), e.getMessage(), "maxHandle " + maxHandle);
+		}
+		IndexedDHeapMax single = new IndexedDHeapMax(2, 16, 0); // The map is not larger than the bound
+		single.insert(0, 7);
+		assertThrows(IllegalArgumentException.class, () -> single.insert(1, 7));
+	}
+
+	/** Invalid arguments and an empty heap. */
+	@Test
+	void checksArguments() {
+		assertThrows(IllegalArgumentException.class, () -> new IndexedDHeapMax(0));
+		assertThrows(IllegalArgumentException.class, () -> new IndexedDHeapMax(2, 0));
+		IndexedDHeapMax heap = new IndexedDHeapMax(2, 1);
+		assertThrows(IllegalStateException.class, heap::peekKey);
+		assertThrows(IllegalStateException.class, heap::peekHandle);
+		assertThrows(IllegalStateException.class, heap::extractMaxHandle);
+		assertThrows(IllegalArgumentException.class, () -> heap.changeD(DHeapMax.D_MAX_VAL + 1));
+		assertThrows(IllegalArgumentException.class, () -> heap.ensureCapacity(DHeapMax.MAX_CAPACITY + 1));
+	}
+}
@@ -0,0 +1,140 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Collections;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for KeyValueDHeapMax: every value is a unique id whose key is
+ * remembered, so a value that came apart from its key during a sift shows up
+ * as a wrong key for that id. The keys are replayed against a
+ * java.util.PriorityQueue.
+ */
+class KeyValueDHeapMaxTest {
+
+	/** Checks the root pair: the key is the reference maximum and belongs to the value. */
+	private static void assertRoot(KeyValueDHeapMax heap, PriorityQueue<Integer> reference, int[] keyOf,
+			String where) {
+		assertEquals(reference.peek(), heap.peekKey(), where);
+		assertEquals(heap.peekKey(), keyOf[heap.peekValue()], where + " value " + heap.peekValue());
+	}
+
+	/** Removes the root pair from the heap and the reference, checking both. */
+	private static void extract(KeyValueDHeapMax heap, PriorityQueue<Integer> reference, int[] keyOf,
+			boolean[] extracted, String where) {
+		assertRoot(heap, reference, keyOf, where);
+		int key = heap.peekKey();
+		int value = heap.extractMaxValue();
+		assertEquals(key, keyOf[value], where);
+		assertFalse(extracted[value], where + " value " + value + " extracted twice");
+		extracted[value] = true;
+		reference.poll();
+	}
+
+	/** Random inserts, extracts, replaceMax, changeD and builds keep every value with its key. */
+	@Test
+	void keepsValuesWithKeys() {
+		for (int d : new int[] { 1, 2, 3, 4, 8 }) {
+			Random random = new Random(d);
+			int operations = d == 1 ? 3_000 : 30_000;
+			int[] keyOf = new int[operations * 10]; // Builds use up to 500 values each
+			boolean[] extracted = new boolean[keyOf.length];
+			int nextValue = 0;
+			int keyRange = d % 2 == 0 ? 50 : Integer.MAX_VALUE; // Many duplicates, or hardly any
+			KeyValueDHeapMax heap = new KeyValueDHeapMax(d, 1);
+			PriorityQueue<Integer> reference = new PriorityQueue<>(Collections.reverseOrder());
+			for (int op = 0; op < operations; op++) {
+				int choice = random.nextInt(100);
+				String where = "d=" + heap.getD() + " operation " + op;
+				if (choice < 50) {
+					int key = random.nextInt(keyRange) - keyRange / 2;
+					keyOf[nextValue] = key;
+					heap.insert(key, nextValue++);
+					reference.add(key);
+				} else if (choice < 80) {
+					if (!reference.isEmpty()) {
+						extract(heap, reference, keyOf, extracted, where);
+					}
+				} else if (choice < 98) {
+					if (!reference.isEmpty()) {
+						assertRoot(heap, reference, keyOf, where);
+						extracted[heap.peekValue()] = true;
+						int key = random.nextInt(keyRange) - keyRange / 2;
+						keyOf[nextValue] = key;
+						heap.replaceMax(key, nextValue++);
+						reference.poll();
+						reference.add(key);
+					}
+				} else if (choice < 99) {
+					heap.changeD(1 + random.nextInt(8));
+				} else {
+					int len = random.nextInt(500);
+					int from = random.nextInt(5);
+					int[] keys = new int[from + len + 3];
+					int[] values = new int[keys.length];
+					reference.clear();
+					for (int i = from; i < from + len; i++) {
+						keys[i] = random.nextInt(keyRange) - keyRange / 2;
+						keyOf[nextValue] = keys[i];
+						values[i] = nextValue++;
+						reference.add(keys[i]);
+					}
+					heap.buildDHeap(keys, values, from, len);
+				}
+				assertEquals(reference.size(), heap.getSize(), where);
+			}
+			while (!reference.isEmpty()) {
+				extract(heap, reference, keyOf, extracted, "d=" + heap.getD() + " drain");
+			}
+			assertTrue(heap.isEmpty());
+		}
+	}
+
+	/** replaceMax with a key below, equal to and above the old maximum. */
+	@Test
+	void replacesMax() {
+		KeyValueDHeapMax heap = new KeyValueDHeapMax(3);
+		int[] keys = { 40, 10, 30, 20, 50, 0 };
+		for (int i = 0; i < keys.length; i++) {
+			heap.insert(keys[i], 100 + i);
+		}
+		heap.replaceMax(5, 7); // 50 goes, 40 comes up
+		assertEquals(40, heap.peekKey());
+		assertEquals(100, heap.peekValue());
+		heap.replaceMax(40, 8); // An equal key stays at the root
+		assertEquals(40, heap.peekKey());
+		assertEquals(8, heap.peekValue());
+		heap.replaceMax(99, 9);
+		assertEquals(99, heap.peekKey());
+		assertEquals(9, heap.peekValue());
+		assertEquals(keys.length, heap.getSize());
+		int[] expectedKeys = { 99, 30, 20, 10, 5, 0 };
+		int[] expectedValues = { 9, 102, 103, 101, 7, 105 };
+		for (int i = 0; i < expectedKeys.length; i++) {
+			assertEquals(expectedKeys[i], heap.peekKey(), "extract " + i);
+			assertEquals(expectedValues[i], heap.extractMaxValue(), "extract " + i);
+		}
+		assertThrows(IllegalStateException.class, () -> heap.replaceMax(1, 1));
+	}
+
+	/** Invalid arguments and an empty heap. */
+	@Test
+	void checksArguments() {
+		assertThrows(IllegalArgumentException.class, () -> new KeyValueDHeapMax(0));
+		assertThrows(IllegalArgumentException.class, () -> new KeyValueDHeapMax(2, 0));
+		KeyValueDHeapMax heap = new KeyValueDHeapMax(2, 1);
+		assertThrows(IllegalStateException.class, heap::peekKey);
+		assertThrows(IllegalStateException.class, heap::peekValue);
+		assertThrows(IllegalStateException.class, heap::extractMaxValue);
+		assertThrows(IllegalArgumentException.class, () -> heap.changeD(DHeapMax.D_MAX_VAL + 1));
+		assertThrows(IllegalArgumentException.class, () -> heap.ensureCapacity(DHeapMax.MAX_CAPACITY + 1));
+		assertThrows(IndexOutOfBoundsException.class, () -> heap.buildDHeap(new int[4], new int[3], 1, 3));
+		assertThrows(IndexOutOfBoundsException.class, () -> heap.buildDHeap(new int[3], new int[4], 1, 3));
+		assertTrue(heap.isEmpty());
+	}
+}
@@ -0,0 +1,136 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for LongDHeapMax: random workloads over the full long range replayed
+ * against a java.util.PriorityQueue, bulk builds, capacity management and the
+ * long sift routines of DHeapArrays it is built on.
+ */
+class LongDHeapMaxTest {
+
+	private static final int[] ARITIES = { 1, 2, 3, 4, 8, 16 };
+
+	/** Returns a random key, often one of the extremes of the long range. */
+	private static long nextKey(Random random) {
+		switch (random.nextInt(8)) {
+		case 0:
+			return Long.MAX_VALUE - random.nextInt(3);
+		case 1:
+			return Long.MIN_VALUE + random.nextInt(3);
+		case 2:
+			return random.nextInt(5) - 2; // Duplicates around zero
+		default:
+			return random.nextLong();
+		}
+	}
+
+	/** Every arity matches the reference for inserts, extracts and changeD. */
+	@Test
+	void matchesPriorityQueue() {
+		for (int d : ARITIES) {
+			Random random = new Random(d);
+			LongDHeapMax heap = new LongDHeapMax(d, 1);
+			PriorityQueue<Long> reference = new PriorityQueue<>(Collections.reverseOrder());
+			for (int op = 0; op < (d == 1 ? 2_000 : 20_000); op++) {
+				int choice = random.nextInt(100);
+				String where = "d=" + heap.getD() + " operation " + op;
+				if (choice < 55) {
+					long key = nextKey(random);
+					heap.insert(key);
+					reference.add(key);
+				} else if (choice < 99) {
+					if (reference.isEmpty()) {
+						assertThrows(IllegalStateException.class, heap::extractMax, where);
+					} else {
+						assertEquals((long) reference.peek(), heap.peek(), where);
+						assertEquals((long) reference.poll(), heap.extractMax(), where);
+					}
+				} else {
+					heap.changeD(ARITIES[1 + random.nextInt(ARITIES.length - 1)]);
+				}
+				assertEquals(reference.size(), heap.getSize(), where);
+			}
+			while (!reference.isEmpty()) {
+				assertEquals((long) reference.poll(), heap.extractMax());
+			}
+			assertTrue(heap.isEmpty());
+		}
+	}
+
+	/** A heap built from a range of values drains in order. */
+	@Test
+	void buildsFromValues() {
+		Random random = new Random(5);
+		long[] values = new long[50_000];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = nextKey(random);
+		}
+		long[] sorted = Arrays.copyOfRange(values, 10, values.length);
+		Arrays.sort(sorted);
+		for (int d : new int[] { 2, 4, 16 }) {
+			LongDHeapMax heap = new LongDHeapMax(d);
+			heap.insert(Long.MAX_VALUE); // Replaced by the build
+			heap.buildDHeap(values, 10, values.length - 10);
+			for (int i = sorted.length - 1; i >= 0; i--) {
+				assertEquals(sorted[i], heap.extractMax());
+			}
+		}
+		assertThrows(IndexOutOfBoundsException.class, () -> new LongDHeapMax(2).buildDHeap(values, 1, values.length));
+	}
+
+	/** Growing and trimming the backing array, and the argument checks. */
+	@Test
+	void managesCapacity() {
+		LongDHeapMax heap = new LongDHeapMax(4, 16);
+		assertEquals(16, heap.getCapacity());
+		for (long key = 0; key < 1_000; key++) {
+			heap.insert(key);
+		}
+		assertTrue(heap.getCapacity() >= 1_000);
+		heap.trimToSize();
+		assertEquals(1_000, heap.getCapacity());
+		assertThrows(IllegalArgumentException.class, () -> heap.ensureCapacity(DHeapMax.MAX_CAPACITY + 1));
+		assertThrows(IllegalArgumentException.class, () -> heap.changeD(0));
+		assertThrows(IllegalArgumentException.class, () -> new LongDHeapMax(0));
+		assertThrows(IllegalArgumentException.class, () -> new LongDHeapMax(2, 0));
+	}
+
+	/** The bottom-up sift places a value like a plain sift from the root. */
+	@Test
+	void siftsDownBottomUp() {
+		Random random = new Random(7);
+		for (int d : new int[] { 2, 3, 4, 8 }) {
+			for (int trial = 0; trial < 200; trial++) {
+				int size = 1 + random.nextInt(300);
+				int base = random.nextInt(3);
+				long[] a = new long[base + size];
+				for (int i = base; i < a.length; i++) {
+					a[i] = nextKey(random);
+				}
+				DHeapArrays.heapify(a, base, size, d);
+				long value = nextKey(random);
+				long[] expected = a.clone();
+				expected[base] = value;
+				DHeapArrays.siftDown(expected, base, size, d, 0);
+				DHeapArrays.siftDownBottomUp(a, base, size, d, value);
+
+				long[] actual = Arrays.copyOfRange(a, base, a.length);
+				long[] reference = Arrays.copyOfRange(expected, base, expected.length);
+				for (int i = 1; i < size; i++) {
+					assertTrue(actual[i] <= actual[DHeapArrays.parent(i, d)], "d=" + d + " index " + i);
+				}
+				Arrays.sort(actual);
+				Arrays.sort(reference);
+				assertEquals(Arrays.toString(reference), Arrays.toString(actual), "d=" + d);
+			}
+		}
+	}
+}
@@ -0,0 +1,275 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Recovery tests for MappedDHeapMax. Each test writes a heap file as it looks
+ * when the process dies at a given point of an operation (header state, hole,
+ * pending key and a half-moved array), opens it, and checks that the heap
+ * holds exactly the keys it should and returns them in order.
+ */
+class MappedDHeapMaxTest {
+
+	// Header layout and states, as documented in MappedDHeapMax
+	private static final int HEADER_BYTES = 32;
+	private static final int IDLE = 0;
+	private static final int SIFT_UP = 1;
+	private static final int SIFT_DOWN = 2;
+	private static final int REBUILD = 3;
+	private static final int COPY = 4;
+	private static final int NO_HOLE = -1;
+	private static final int GARBAGE = 0x5A5A5A5A; // Stale content of a slot the crash left behind
+
+	@TempDir
+	Path dir;
+
+	/** Writes a heap file with the given header fields and array. */
+	private Path writeFile(String name, int d, int state, int size, int pending, int hole, boolean dirty,
+			int[] array) throws IOException {
+		ByteBuffer b = ByteBuffer.allocate(HEADER_BYTES + array.length * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		b.putInt(0, MappedDHeapMax.MAGIC);
+		b.putInt(4, MappedDHeapMax.VERSION);
+		b.putInt(8, d);
+		b.putInt(12, pending);
+		b.putLong(16, (long) state << 32 | (size & 0xFFFFFFFFL));
+		b.putInt(24, hole);
+		b.putInt(28, dirty ? 1 : 0);
+		for (int i = 0; i < array.length; i++) {
+			b.putInt(HEADER_BYTES + i * Integer.BYTES, array[i]);
+		}
+		Path file = dir.resolve(name);
+		Files.write(file, b.array());
+		return file;
+	}
+
+	/** Opens a file and checks that it holds exactly the expected keys, extracting them in order. */
+	private static void assertRecovered(Path file, int[] expected) throws IOException {
+		int[] sorted = expected.clone();
+		Arrays.sort(sorted);
+		try (MappedDHeapMax heap = MappedDHeapMax.open(file)) {
+			assertEquals(expected.length, heap.getSize(), "size after recovery");
+			int[] drained = new int[heap.getSize()];
+			for (int i = drained.length - 1; i >= 0; i--) {
+				drained[i] = heap.extractMax();
+			}
+			assertArrayEquals(sorted, drained, "keys after recovery");
+		}
+	}
+
+	/** Returns a valid d-ary max heap of n random keys, built with DHeapArrays. */
+	private static int[] randomHeap(Random random, int n, int d) {
+		int[] a = randomKeys(random, n);
+		DHeapArrays.heapify(a, 0, n, d);
+		return a;
+	}
+
+	/** Returns n random keys in no particular order. */
+	private static int[] randomKeys(Random random, int n) {
+		int[] a = new int[n];
+		for (int i = 0; i < n; i++) {
+			a[i] = random.nextInt(1000) - 500;
+		}
+		return a;
+	}
+
+	/** Returns a copy of a with one more key appended. */
+	private static int[] plus(int[] a, int key) {
+		int[] b = Arrays.copyOf(a, a.length + 1);
+		b[a.length] = key;
+		return b;
+	}
+
+	/**
+	 * An insert is interrupted after every possible number of hole moves, and
+	 * also after a move whose new hole was not yet recorded.
+	 */
+	@Test
+	void recoversInterruptedInsert() throws IOException {
+		Random random = new Random(1);
+		for (int d : new int[] { 1, 2, 4, 7 }) {
+			int n = d == 1 ? 20 : 200;
+			int[] heap = randomHeap(random, n, d);
+			int key = 10_000; // Larger than every key: rises to the root
+			int[] array = Arrays.copyOf(heap, n + 1);
+			array[n] = GARBAGE;
+			int hole = n;
+			while (true) {
+				writeFile("up", d, SIFT_UP, n + 1, key, hole, true, array);
+				assertRecovered(dir.resolve("up"), plus(heap, key));
+				if (hole == 0) {
+					break;
+				}
+				int p = DHeapArrays.parent(hole, d);
+				array[hole] = array[p]; // The move is done, the header still has the old hole
+				writeFile("up", d, SIFT_UP, n + 1, key, hole, true, array);
+				assertRecovered(dir.resolve("up"), plus(heap, key));
+				hole = p;
+			}
+		}
+	}
+
+	/**
+	 * An extract is interrupted after every possible number of hole moves, and
+	 * also after a move whose new hole was not yet recorded.
+	 */
+	@Test
+	void recoversInterruptedExtract() throws IOException {
+		Random random = new Random(2);
+		for (int d : new int[] { 1, 2, 4, 7 }) {
+			int n = d == 1 ? 20 : 200;
+			int[] heap = randomHeap(random, n, d);
+			int size = n - 1;
+			int key = heap[size]; // The last key replaces the root
+			int[] expected = Arrays.copyOfRange(heap, 1, n);
+			int[] array = heap.clone();
+			array[size] = GARBAGE; // The last slot is no longer part of the heap
+			int hole = 0;
+			while (true) {
+				writeFile("down", d, SIFT_DOWN, size, key, hole, true, array);
+				assertRecovered(dir.resolve("down"), expected);
+				int first = DHeapArrays.firstChild(hole, d);
+				if (first >= size) {
+					break;
+				}
+				int max = first;
+				for (int c = first + 1; c < Math.min(first + d, size); c++) {
+					if (array[c] > array[max]) {
+						max = c;
+					}
+				}
+				if (array[max] <= key) {
+					break;
+				}
+				array[hole] = array[max];
+				writeFile("down", d, SIFT_DOWN, size, key, hole, true, array);
+				assertRecovered(dir.resolve("down"), expected);
+				hole = max;
+			}
+		}
+	}
+
+	/** Extracting the only element is interrupted before it is finished. */
+	@Test
+	void recoversInterruptedExtractOfLastElement() throws IOException {
+		Path file = writeFile("last", 4, SIFT_DOWN, 0, 42, 0, true, new int[] { 42, GARBAGE });
+		assertRecovered(file, new int[0]);
+	}
+
+	/**
+	 * A rebuild (changeD, or the heapify of buildDHeap) is interrupted between
+	 * two sifts, and in the middle of a sift whose key is only in the header.
+	 */
+	@Test
+	void recoversInterruptedRebuild() throws IOException {
+		Random random = new Random(3);
+		int d = 3;
+		int n = 500;
+		int[] keys = randomKeys(random, n);
+
+		writeFile("between", d, REBUILD, n, GARBAGE, NO_HOLE, true, keys);
+		assertRecovered(dir.resolve("between"), keys);
+
+		for (int i = DHeapArrays.lastParent(n, d); i >= 0; i -= 17) {
+			int[] array = keys.clone();
+			int child = DHeapArrays.firstChild(i, d);
+			array[i] = array[child]; // First move of the sift of node i: its key is only in the header
+			writeFile("within", d, REBUILD, n, keys[i], child, true, array);
+			assertRecovered(dir.resolve("within"), keys);
+		}
+	}
+
+	/**
+	 * A buildDHeap is interrupted while the staged values are copied to the
+	 * front: every prefix of the copy must lead to the new values.
+	 */
+	@Test
+	void recoversInterruptedCopy() throws IOException {
+		Random random = new Random(4);
+		int d = 4;
+		int oldSize = 300;
+		int len = 200;
+		int stage = Math.max(oldSize, len);
+		int[] old = randomHeap(random, oldSize, d);
+		int[] values = randomKeys(random, len);
+		for (int copied = 0; copied <= len; copied += 25) {
+			int[] array = Arrays.copyOf(old, stage + len);
+			System.arraycopy(values, 0, array, stage, len);
+			System.arraycopy(values, 0, array, 0, copied);
+			writeFile("copy", d, COPY, len, GARBAGE, stage, true, array);
+			assertRecovered(dir.resolve("copy"), values);
+		}
+
+		// A build into an empty heap stages the values in place
+		writeFile("inplace", d, COPY, len, GARBAGE, 0, true, Arrays.copyOf(values, len));
+		assertRecovered(dir.resolve("inplace"), values);
+	}
+
+	/** A file that was not forced is checked and heapified; a clean one is trusted. */
+	@Test
+	void heapifiesDirtyFileOnly() throws IOException {
+		int[] unordered = { 1, 5, 3, 9, 2 };
+		writeFile("dirty", 2, IDLE, unordered.length, 0, 0, true, unordered);
+		assertRecovered(dir.resolve("dirty"), unordered);
+
+		writeFile("clean", 2, IDLE, unordered.length, 0, 0, false, unordered);
+		try (MappedDHeapMax heap = MappedDHeapMax.open(dir.resolve("clean"))) {
+			assertEquals(1, heap.peek(), "a clean file is opened without touching the elements");
+		}
+	}
+
+	/** Headers that no crash can produce are rejected. */
+	@Test
+	void rejectsInvalidHeaders() throws IOException {
+		int[] array = { 9, 5, 3, 0 };
+		Path[] files = {
+				writeFile("state", 2, COPY + 1, 3, 0, 0, true, array),
+				writeFile("uphole", 2, SIFT_UP, 3, 0, 3, true, array),
+				writeFile("rebuildhole", 2, REBUILD, 3, 0, 3, true, array),
+				writeFile("copyoverlap", 2, COPY, 2, 0, 1, true, array),
+				writeFile("copyend", 2, COPY, 2, 0, 3, true, array),
+				writeFile("size", 2, IDLE, 5, 0, 0, true, array),
+				writeFile("d", 0, IDLE, 3, 0, 0, true, array) };
+		for (Path file : files) {
+			IOException e = assertThrows(IOException.class, () -> MappedDHeapMax.open(file), file.toString());
+			assertEquals(DHeapError.INVALID_HEAP_FILE.getMessage(), e.getMessage());
+		}
+
+		Path magic = writeFile("magic", 2, IDLE, 3, 0, 0, false, array);
+		byte[] bytes = Files.readAllBytes(magic);
+		bytes[0] ^= 1;
+		Files.write(magic, bytes);
+		assertThrows(IOException.class, () -> MappedDHeapMax.open(magic));
+	}
+
+	/** Operations survive close and reopen, including a change of d. */
+	@Test
+	void reopensWithSameContents() throws IOException {
+		Random random = new Random(5);
+		Path file = dir.resolve("heap");
+		int[] keys = randomKeys(random, 5_000);
+		try (MappedDHeapMax heap = MappedDHeapMax.open(file, 2)) {
+			for (int key : keys) {
+				heap.insert(key);
+			}
+			heap.changeD(8);
+		}
+		assertRecovered(file, keys);
+
+		try (MappedDHeapMax heap = MappedDHeapMax.open(file)) {
+			assertEquals(8, heap.getD());
+			heap.buildDHeap(keys, 0, 100);
+		}
+		assertRecovered(file, Arrays.copyOf(keys, 100));
+	}
+}
@@ -0,0 +1,193 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for MinMaxDHeap: random workloads on both ends are replayed against a
+ * sorted multiset (TreeMap of counts), and the interval heap property is
+ * checked on the array after every operation of the smaller runs.
+ */
+class MinMaxDHeapTest {
+
+	private static final int[] ARITIES = { 1, 2, 3, 4, 8, 16 };
+
+	/** Adds a key to the multiset. */
+	private static void add(TreeMap<Integer, Integer> keys, int key) {
+		keys.merge(key, 1, Integer::sum);
+	}
+
+	/** Removes one copy of a key from the multiset. */
+	private static void remove(TreeMap<Integer, Integer> keys, int key) {
+		if (keys.merge(key, -1, Integer::sum) == 0) {
+			keys.remove(key);
+		}
+	}
+
+	/**
+	 * Checks the interval heap property: every node's low end is not larger than
+	 * its high end, and its interval lies within its parent's.
+	 */
+	private static void assertIntervalHeap(MinMaxDHeap heap) {
+		int[] a = heap.toArray();
+		int d = heap.getD();
+		int nodes = (a.length + 1) / 2;
+		for (int i = 0; i < nodes; i++) {
+			int low = a[2 * i];
+			int high = 2 * i + 1 < a.length ? a[2 * i + 1] : low;
+			assertTrue(low <= high, "node " + i + " is not an interval");
+			if (i > 0) {
+				int p = DHeapArrays.parent(i, d);
+				assertTrue(a[2 * p] <= low && high <= a[2 * p + 1], "node " + i + " leaves its parent's interval");
+			}
+		}
+	}
+
+	/** Replays random inserts and extracts at both ends for one arity. */
+	private static void replay(int d, long seed, int operations, int keyRange, boolean checkShape) {
+		Random random = new Random(seed);
+		MinMaxDHeap heap = new MinMaxDHeap(d);
+		TreeMap<Integer, Integer> reference = new TreeMap<>();
+		int size = 0;
+		for (int op = 0; op < operations; op++) {
+			int choice = random.nextInt(10);
+			if (size == 0 || choice < 5) {
+				int key = random.nextInt(keyRange) - keyRange / 2;
+				heap.insert(key);
+				add(reference, key);
+				size++;
+			} else if (choice < 7) {
+				int max = reference.lastKey();
+				assertEquals(max, heap.peekMax());
+				assertEquals(max, heap.extractMax(), "extractMax at operation " + op);
+				remove(reference, max);
+				size--;
+			} else if (choice < 9) {
+				int min = reference.firstKey();
+				assertEquals(min, heap.peekMin());
+				assertEquals(min, heap.extractMin(), "extractMin at operation " + op);
+				remove(reference, min);
+				size--;
+			} else {
+				assertEquals((int) reference.lastKey(), heap.peek());
+			}
+			assertEquals(size, heap.getSize());
+			if (checkShape) {
+				assertIntervalHeap(heap);
+			}
+		}
+		while (size > 0) {
+			int max = reference.lastKey();
+			assertEquals(max, heap.extractMax());
+			remove(reference, max);
+			size--;
+		}
+		assertTrue(heap.isEmpty());
+	}
+
+	/** Every arity matches the multiset, with the heap shape checked each step. */
+	@Test
+	void matchesSortedMultisetForEveryArity() {
+		for (int d : ARITIES) {
+			replay(d, 10 + d, d == 1 ? 2_000 : 5_000, 1_000, true);
+		}
+	}
+
+	/** Long runs with many duplicate keys. */
+	@Test
+	void matchesSortedMultisetOnLongRuns() {
+		for (int d : ARITIES) {
+			replay(d, 20 + d, d == 1 ? 20_000 : 200_000, 50, false);
+		}
+	}
+
+	/** offer keeps the maxSize largest keys and counts every dropped key. */
+	@Test
+	void offerKeepsTheLargestKeys() {
+		Random random = new Random(7);
+		for (int d : ARITIES) {
+			int maxSize = 100;
+			MinMaxDHeap heap = new MinMaxDHeap(d, maxSize);
+			TreeMap<Integer, Integer> kept = new TreeMap<>();
+			long dropped = 0;
+			for (int i = 0; i < 20_000; i++) {
+				int key = random.nextInt(10_000);
+				boolean expectKept = i < maxSize || key > kept.firstKey();
+				assertEquals(expectKept, heap.offer(key), "offer of " + key);
+				if (i >= maxSize) {
+					dropped++;
+					if (expectKept) {
+						remove(kept, kept.firstKey());
+					}
+				}
+				if (expectKept) {
+					add(kept, key);
+				}
+				assertEquals((int) kept.firstKey(), heap.peekMin());
+				assertEquals((int) kept.lastKey(), heap.peekMax());
+			}
+			assertTrue(heap.isFull());
+			assertEquals(dropped, heap.getEvictions());
+			assertIntervalHeap(heap);
+			while (!kept.isEmpty()) {
+				int min = kept.firstKey();
+				assertEquals(min, heap.extractMin());
+				remove(kept, min);
+			}
+		}
+	}
+
+	/** A single key is both the minimum and the maximum. */
+	@Test
+	void singleKeyIsBothEnds() {
+		MinMaxDHeap heap = new MinMaxDHeap(4);
+		heap.insert(42);
+		assertEquals(42, heap.peekMin());
+		assertEquals(42, heap.peekMax());
+		assertEquals(42, heap.extractMin());
+		assertTrue(heap.isEmpty());
+		heap.insert(5);
+		heap.insert(3);
+		assertArrayEquals(new int[] { 3, 5 }, heap.toArray());
+	}
+
+	/** Errors: empty heap, full heap, invalid arguments. */
+	@Test
+	void rejectsInvalidUse() {
+		MinMaxDHeap heap = new MinMaxDHeap(2, 2);
+		assertThrows(IllegalStateException.class, heap::peekMin);
+		assertThrows(IllegalStateException.class, heap::extractMax);
+		assertThrows(IllegalStateException.class, heap::extractMin);
+		heap.insert(1);
+		heap.insert(2);
+		IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> heap.insert(3));
+		assertEquals(DHeapError.HEAP_OVERFLOW.getMessage(), e.getMessage());
+		assertFalse(heap.offer(0));
+		assertEquals(1, heap.getEvictions());
+
+		assertThrows(IllegalArgumentException.class, () -> new MinMaxDHeap(0));
+		assertThrows(IllegalArgumentException.class, () -> new MinMaxDHeap(DHeapMax.D_MAX_VAL + 1));
+		assertThrows(IllegalArgumentException.class, () -> new MinMaxDHeap(2, 0));
+	}
+
+	/** clear empties the heap, which can then be refilled. */
+	@Test
+	void clearEmptiesTheHeap() {
+		MinMaxDHeap heap = new MinMaxDHeap(3);
+		for (int i = 0; i < 1000; i++) {
+			heap.insert(i);
+		}
+		heap.clear();
+		assertTrue(heap.isEmpty());
+		heap.insert(-1);
+		heap.insert(1);
+		assertEquals(-1, heap.extractMin());
+		assertEquals(1, heap.extractMax());
+	}
+}
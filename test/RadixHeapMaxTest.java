@@ -0,0 +1,113 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Collections;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for RadixHeapMax: random monotone workloads are replayed against a
+ * java.util.PriorityQueue, which must return the same keys in the same order.
+ */
+class RadixHeapMaxTest {
+
+	private static final int OPERATIONS = 200_000;
+
+	/** Replays a monotone workload whose keys lie at most 'spread' below the last extracted key. */
+	private static void replay(long seed, int spread, int insertPercent) {
+		Random random = new Random(seed);
+		RadixHeapMax heap = new RadixHeapMax();
+		PriorityQueue<Integer> reference = new PriorityQueue<>(Collections.reverseOrder());
+		for (int op = 0; op < OPERATIONS; op++) {
+			if (reference.isEmpty() || random.nextInt(100) < insertPercent) {
+				long low = Math.max(Integer.MIN_VALUE, (long) heap.getLast() - spread);
+				int key = (int) (low + (long) (random.nextDouble() * ((long) heap.getLast() - low + 1)));
+				heap.insert(key);
+				reference.add(key);
+			} else if (random.nextInt(4) == 0) {
+				assertEquals((int) reference.peek(), heap.peek(), "peek at operation " + op);
+			} else {
+				assertEquals((int) reference.poll(), heap.extractMax(), "extractMax at operation " + op);
+			}
+			assertEquals(reference.size(), heap.getSize());
+		}
+		while (!reference.isEmpty()) {
+			assertEquals((int) reference.poll(), heap.extractMax());
+		}
+		assertTrue(heap.isEmpty());
+	}
+
+	/** Keys close to the last key: mostly the low buckets. */
+	@Test
+	void matchesPriorityQueueWithSmallSpread() {
+		replay(1, 100, 60);
+	}
+
+	/** Keys across the whole int range, including negative ones: every bucket is used. */
+	@Test
+	void matchesPriorityQueueWithFullSpread() {
+		replay(2, Integer.MAX_VALUE, 55);
+	}
+
+	/** Many equal keys: bucket 0 holds several copies of the last key. */
+	@Test
+	void matchesPriorityQueueWithDuplicates() {
+		replay(3, 3, 70);
+	}
+
+	/** The extreme keys fall into the highest bucket and come out in order. */
+	@Test
+	void handlesExtremeKeys() {
+		RadixHeapMax heap = new RadixHeapMax();
+		heap.insert(Integer.MAX_VALUE);
+		heap.insert(Integer.MIN_VALUE);
+		heap.insert(0);
+		heap.insert(Integer.MIN_VALUE);
+		assertEquals(Integer.MAX_VALUE, heap.extractMax());
+		assertEquals(0, heap.extractMax());
+		assertEquals(Integer.MIN_VALUE, heap.peek());
+		assertEquals(Integer.MIN_VALUE, heap.extractMax());
+		assertEquals(Integer.MIN_VALUE, heap.extractMax());
+		assertTrue(heap.isEmpty());
+	}
+
+	/** A key above the last extracted key is rejected and leaves the heap unchanged. */
+	@Test
+	void rejectsNonMonotoneInsert() {
+		RadixHeapMax heap = new RadixHeapMax();
+		heap.insert(10);
+		heap.insert(5);
+		assertEquals(10, heap.extractMax());
+		IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> heap.insert(11));
+		assertEquals(DHeapError.NOT_MONOTONE.getMessage(), e.getMessage());
+		heap.insert(10); // Equal to the last key is allowed
+		assertEquals(2, heap.getSize());
+		assertEquals(10, heap.extractMax());
+		assertEquals(5, heap.extractMax());
+	}
+
+	/** An empty heap throws on peek and extractMax. */
+	@Test
+	void throwsWhenEmpty() {
+		RadixHeapMax heap = new RadixHeapMax();
+		assertThrows(IllegalStateException.class, heap::peek);
+		assertThrows(IllegalStateException.class, heap::extractMax);
+	}
+
+	/** clear removes the keys and lifts the monotone bound. */
+	@Test
+	void clearResetsTheBound() {
+		RadixHeapMax heap = new RadixHeapMax();
+		heap.insert(100);
+		heap.insert(50);
+		heap.extractMax();
+		heap.clear();
+		assertTrue(heap.isEmpty());
+		assertEquals(Integer.MAX_VALUE, heap.getLast());
+		heap.insert(1000);
+		assertEquals(1000, heap.extractMax());
+	}
+}